@@ -0,0 +1,125 @@
+package codes.thischwa.cf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Limits the number of requests in flight by an adaptive limit according to a {@link
+ * CfConcurrencyLimit} policy: additive increase by one per round trip while the round-trip times
+ * stay flat, multiplicative decrease on overload.
+ *
+ * <p>The lowest round-trip time is tracked per {@link CfRequest}, because e.g. a listing takes
+ * longer than a single lookup. It's the minimum of the current and the previous window of samples,
+ * so a lasting change of the baseline is learned within two windows.
+ *
+ * <p>The limiter is guarded by its monitor, it's only held to take or return a slot and to adjust
+ * the limit, never while a request is sent.
+ */
+@Slf4j
+final class AdaptiveLimiter {
+
+  /** The number of samples after which the lowest round-trip time is learned anew. */
+  private static final int RTT_WINDOW = 250;
+
+  private final CfConcurrencyLimit policy;
+  private final LongSupplier nanoClock;
+  private final CfClientMetrics metrics;
+
+  private final long[] minRtt = new long[CfRequest.values().length];
+  private final long[] windowMinRtt = new long[CfRequest.values().length];
+  private final int[] windowSamples = new int[CfRequest.values().length];
+  private double limit;
+  private int inFlight;
+  private boolean decreased;
+  private long lastDecrease;
+
+  AdaptiveLimiter(CfConcurrencyLimit policy, LongSupplier nanoClock, CfClientMetrics metrics) {
+    this.policy = policy;
+    this.nanoClock = nanoClock;
+    this.metrics = metrics;
+    this.limit = policy.initialLimit();
+    metrics.recordConcurrencyLimit(policy.initialLimit());
+  }
+
+  /**
+   * Takes a slot, waiting for one up to the maximum wait of the policy. A granted slot must be
+   * returned by {@link #release}.
+   *
+   * @return {@code true} if a slot was taken, {@code false} if none got free in time
+   */
+  synchronized boolean acquire() throws InterruptedException {
+    long remaining = policy.maxWait().toNanos();
+    long deadline = System.nanoTime() + remaining;
+    while (inFlight >= (int) limit) {
+      if (remaining <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      remaining = deadline - System.nanoTime();
+    }
+    inFlight++;
+    return true;
+  }
+
+  /**
+   * Returns a slot and adjusts the limit by the outcome of its request.
+   *
+   * @param request the kind of the request
+   * @param sentAt the time the request was sent, by the clock of the limiter
+   * @param healthy {@code true} if the API answered properly, {@code false} if it signaled
+   *     overload or the request failed, {@code null} if the request wasn't sent or was abandoned
+   */
+  synchronized void release(CfRequest request, long sentAt, @Nullable Boolean healthy) {
+    int used = inFlight--;
+    if (healthy != null) {
+      long now = nanoClock.getAsLong();
+      if (!healthy || isSlow(request.ordinal(), now - sentAt)) {
+        decrease(sentAt, now);
+      } else if (used * 2 >= limit) {
+        // +1 per round trip of a full window, i.e. 1 / limit per response
+        setLimit(Math.min(policy.maxLimit(), limit + 1.0 / limit));
+      }
+    }
+    notifyAll();
+  }
+
+  synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  /** Records the round-trip time and checks it against the lowest one. */
+  private boolean isSlow(int kind, long rtt) {
+    if (windowSamples[kind] == 0 || rtt < windowMinRtt[kind]) {
+      windowMinRtt[kind] = rtt;
+    }
+    if (minRtt[kind] == 0 || rtt < minRtt[kind]) {
+      minRtt[kind] = rtt;
+    }
+    if (++windowSamples[kind] == RTT_WINDOW) {
+      minRtt[kind] = windowMinRtt[kind];
+      windowSamples[kind] = 0;
+    }
+    return rtt > minRtt[kind] * policy.rttTolerance();
+  }
+
+  /** Decreases the limit, unless it was decreased after the request was sent. */
+  private void decrease(long sentAt, long now) {
+    if (decreased && sentAt - lastDecrease < 0) {
+      return;
+    }
+    decreased = true;
+    lastDecrease = now;
+    setLimit(Math.max(policy.minLimit(), limit * policy.backoffRatio()));
+  }
+
+  private void setLimit(double newLimit) {
+    int before = (int) limit;
+    limit = newLimit;
+    if ((int) limit != before) {
+      log.debug("Concurrency limit changed from {} to {}.", before, (int) limit);
+      metrics.recordConcurrencyLimit((int) limit);
+    }
+  }
+}
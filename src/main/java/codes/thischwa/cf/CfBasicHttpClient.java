@@ -2,154 +2,420 @@ package codes.thischwa.cf;
 
 import codes.thischwa.cf.model.AbstractEntity;
 import codes.thischwa.cf.model.AbstractResponse;
-import com.fasterxml.jackson.annotation.JsonInclude;
+import codes.thischwa.cf.model.ErrorResponse;
+import codes.thischwa.cf.model.RecordSingleResponse;
+import codes.thischwa.cf.model.ResponseMessage;
+import codes.thischwa.cf.transport.CfTransport;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategies;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import java.nio.charset.StandardCharsets;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.hc.client5.http.classic.methods.HttpDelete;
-import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.classic.methods.HttpPatch;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.classic.methods.HttpPut;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.ClassicHttpRequest;
-import org.apache.hc.core5.http.ClassicHttpResponse;
-import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.HttpHeaders;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
-import org.apache.hc.core5.http.io.entity.StringEntity;
-import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.apache.hc.core5.http.Method;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Abstract base class for creating HTTP clients to interact with the Cloudflare API. Provides
  * methods for handling GET and POST requests and includes utilities for constructing HTTP clients,
  * managing authentication, and handling JSON serialization.
+ *
+ * <p>The requests are sent by a {@link CfTransport}, which is either owned by the client or shared
+ * with other clients. An owned transport is released by {@link #close()}. The client passes all
+ * headers, including the authentication, with each request.
+ *
+ * <p>Each {@link CfRequest} is guarded by a circuit breaker, reads and writes are separated by
+ * bulkheads, as configured by {@link CfResilience}. Reads can be hedged according to a {@link
+ * CfHedging} policy. The requests in flight can be bounded by an adaptive {@link
+ * CfConcurrencyLimit}. A request scheduler configured by {@link CfScheduling} sends the waiting
+ * requests by their {@link CfPriority}, fair between zones and accounts.
+ *
+ * <p>Each call is recorded as a JDK Flight Recorder event, see {@link CfRequestEvent}, with the
+ * time waiting for admission, on the network and parsing the response. The events cost nearly
+ * nothing while no recording is running.
  */
 @Slf4j
-abstract class CfBasicHttpClient {
+abstract class CfBasicHttpClient implements Closeable {
   private final String baseUrl;
-  private final String authEmail;
-  private final String authKey;
-  private final String authToken;
+  private final Map<String, String> headers;
+  private final Map<String, String> headersWithBody;
 
-  private final ObjectMapper objectMapper;
+  private final JsonCodec jsonCodec;
+  private final CfTransport transport;
+  private final boolean ownsTransport;
+  @Nullable private final RateLimiter rateLimiter;
+  private final CfClientMetrics metrics;
+  private final Map<CfRequest, CircuitBreaker> circuitBreakers = new EnumMap<>(CfRequest.class);
+  @Nullable private final Semaphore readBulkhead;
+  @Nullable private final Semaphore writeBulkhead;
+  private final long bulkheadWaitNanos;
+  @Nullable private final Hedger hedger;
+  @Nullable private final AdaptiveLimiter limiter;
+  @Nullable private final RequestScheduler scheduler;
 
-  CfBasicHttpClient(String baseUrl, String authEmail, String authKey, String authToken) {
+  CfBasicHttpClient(
+      String baseUrl,
+      CfCredentials credentials,
+      JsonCodec jsonCodec,
+      CfTransport transport,
+      boolean ownsTransport,
+      @Nullable RateLimiter rateLimiter,
+      CfResilience resilience,
+      @Nullable CfHedging hedging,
+      @Nullable CfConcurrencyLimit concurrencyLimit,
+      @Nullable RequestScheduler scheduler) {
     this.baseUrl = baseUrl;
-    this.authEmail = authEmail;
-    this.authKey = authKey;
-    this.authToken = authToken;
-    this.objectMapper = initObjectMapper();
-  }
-
-  private ObjectMapper initObjectMapper() {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.registerModule(new JavaTimeModule());
-    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
-    return mapper;
-  }
-
-  private CloseableHttpClient createHttpClient() {
-    return HttpClients.custom()
-        .addRequestInterceptorFirst(
-            (request, context, execChain) -> {
-              request.addHeader(HttpHeaders.ACCEPT_CHARSET, "UTF-8");
-              request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
-              request.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
-              request.addHeader(
-                  HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType());
-              request.addHeader("X-Auth-Email", authEmail);
-              request.addHeader("X-Auth-Key", authKey);
-              request.addHeader("X-Auth-Token", authToken);
-            })
-        .build();
+    Map<String, String> requestHeaders = new LinkedHashMap<>();
+    requestHeaders.put("Accept-Charset", "UTF-8");
+    requestHeaders.put("Accept", "application/json");
+    putIfNotNull(requestHeaders, "X-Auth-Email", credentials.authEmail());
+    putIfNotNull(requestHeaders, "X-Auth-Key", credentials.authKey());
+    putIfNotNull(requestHeaders, "X-Auth-Token", credentials.authToken());
+    this.headers = Collections.unmodifiableMap(requestHeaders);
+    Map<String, String> requestHeadersWithBody = new LinkedHashMap<>(requestHeaders);
+    requestHeadersWithBody.put("Content-Type", "application/json");
+    this.headersWithBody = Collections.unmodifiableMap(requestHeadersWithBody);
+    this.jsonCodec = jsonCodec;
+    this.transport = transport;
+    this.ownsTransport = ownsTransport;
+    this.rateLimiter = rateLimiter;
+    this.metrics = new CfClientMetrics();
+    for (CfRequest request : CfRequest.values()) {
+      circuitBreakers.put(
+          request,
+          new CircuitBreaker(
+              request.name(),
+              resilience.failureThreshold(),
+              resilience.openDuration().toNanos(),
+              System::nanoTime,
+              metrics));
+    }
+    this.readBulkhead = bulkhead(resilience.maxConcurrentReads());
+    this.writeBulkhead = bulkhead(resilience.maxConcurrentWrites());
+    this.bulkheadWaitNanos = resilience.bulkheadWait().toNanos();
+    this.hedger = hedging == null ? null : new Hedger(hedging, rateLimiter, metrics);
+    this.limiter =
+        concurrencyLimit == null
+            ? null
+            : new AdaptiveLimiter(concurrencyLimit, System::nanoTime, metrics);
+    this.scheduler = scheduler;
+  }
+
+  private static void putIfNotNull(Map<String, String> map, String key, @Nullable String value) {
+    if (value != null) {
+      map.put(key, value);
+    }
+  }
+
+  @Nullable
+  private static Semaphore bulkhead(int size) {
+    return size == 0 ? null : new Semaphore(size);
+  }
+
+  /**
+   * Releases the underlying HTTP client and its connections, if they aren't shared with other
+   * clients. The client can't be used afterward.
+   */
+  @Override
+  public void close() throws IOException {
+    if (hedger != null) {
+      hedger.close();
+    }
+    if (ownsTransport) {
+      transport.close();
+    }
+  }
+
+  /**
+   * Retrieves the metrics of the requests sent by this client.
+   *
+   * @return the metrics of this client
+   */
+  public CfClientMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Retrieves the current state of the circuit breaker of a kind of request.
+   *
+   * @param request the kind of request
+   * @return the state of its circuit breaker
+   */
+  public CircuitState getCircuitState(CfRequest request) {
+    return circuitBreakers.get(request).getState();
   }
 
   private <T extends AbstractResponse> T executeRequest(
-      ClassicHttpRequest request, Class<T> responseType) throws CloudflareApiException {
-    String logUri = null;
-    try (CloseableHttpClient client = createHttpClient()) {
-      ResultWrapper result =
-          client.execute(
-              request,
-              (ClassicHttpResponse response) ->
-                  new ResultWrapper(
-                      response.getCode(),
-                      EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8)));
-
-      logUri = request.getRequestUri();
-      if (result.statusCode >= 200 && result.statusCode < 300) {
-        return objectMapper.readValue(result.responseBody, responseType);
-      } else {
-        log.error(
-            "{} request failed for URL {}: Status {}",
-            request.getMethod(),
-            request.getUri(),
-            result.statusCode);
-        throw new CloudflareApiException(
-            request.getMethod() + " request failed with status code: " + result.statusCode);
+      CfRequest request,
+      Method method,
+      String endpoint,
+      byte @Nullable [] payload,
+      Class<T> responseType)
+      throws CloudflareApiException {
+    CircuitBreaker circuitBreaker = circuitBreakers.get(request);
+    CircuitBreaker.Permit permit = circuitBreaker.tryAcquire();
+    if (permit == CircuitBreaker.Permit.DENIED) {
+      throw new CloudflareUnavailableException("The circuit of " + request + " is open.");
+    }
+    Semaphore bulkhead = method == Method.GET ? readBulkhead : writeBulkhead;
+    String url = buildUrl(endpoint);
+    CfRequestEvent event = new CfRequestEvent();
+    event.begin();
+    long entered = System.nanoTime();
+    long received = 0;
+    CountingInputStream counted = null;
+    Boolean healthy = null;
+    boolean scheduled = false;
+    boolean acquired = false;
+    boolean limited = false;
+    long start = 0;
+    boolean sent = false;
+    boolean success = false;
+    try {
+      scheduled = schedule(request, method, endpoint);
+      acquired = acquireBulkhead(bulkhead, request);
+      limited = acquireLimit(request);
+      if (rateLimiter != null) {
+        waitForRateLimit(request);
       }
+      start = System.nanoTime();
+      sent = true;
+      healthy = false;
+      CfTransport.Request transportRequest =
+          new CfTransport.Request(
+              method.name(), url, payload == null ? headers : headersWithBody, payload);
+      try (CfTransport.Response result =
+          hedger != null && method == Method.GET
+              ? hedger.execute(request, () -> transport.send(transportRequest))
+              : transport.send(transportRequest)) {
+        received = System.nanoTime();
+        event.status = result.statusCode();
+        InputStream body = result.body();
+        if (event.isEnabled()) {
+          counted = new CountingInputStream(body);
+          body = counted;
+        }
+        healthy = result.statusCode() != 429 && result.statusCode() < 500;
+        if (result.statusCode() >= 200 && result.statusCode() < 300) {
+          T response = jsonCodec.read(body, responseType);
+          success = true;
+          return response;
+        } else {
+          log.error("{} request failed for URL {}: Status {}", method, url, result.statusCode());
+          throw new CloudflareApiException(
+              method + " request failed with status code: " + result.statusCode(),
+              result.statusCode(),
+              readErrors(body));
+        }
+      }
+    } catch (CloudflareApiException e) {
+      throw e;
     } catch (JsonProcessingException e) {
-      log.error("JSON parsing error for request to {}", logUri, e);
+      log.error("JSON parsing error for request to {}", url, e);
       throw new CloudflareApiException("Error processing JSON response", e);
+    } catch (InterruptedException e) {
+      healthy = null;
+      Thread.currentThread().interrupt();
+      throw new CloudflareApiException("Request interrupted", e);
     } catch (Exception e) {
       log.error("Error during request execution", e);
       throw new CloudflareApiException("Request failed", e);
+    } finally {
+      long end = System.nanoTime();
+      if (sent) {
+        metrics.recordRequest(end - start, success);
+      }
+      if (limited) {
+        limiter.release(request, start, healthy);
+      }
+      if (acquired) {
+        bulkhead.release();
+      }
+      if (scheduled) {
+        scheduler.release();
+      }
+      circuitBreaker.onResult(permit, healthy);
+      event.end();
+      if (event.shouldCommit()) {
+        event.request = request.name();
+        event.method = method.name();
+        event.endpoint = request.getPath();
+        event.success = success;
+        event.bytesOut = payload == null ? 0 : payload.length;
+        event.bytesIn = counted == null ? 0 : counted.count;
+        event.admissionDuration = (sent ? start : end) - entered;
+        event.networkDuration = sent ? (received == 0 ? end : received) - start : 0;
+        event.parseDuration = received == 0 ? 0 : end - received;
+        event.commit();
+      }
+    }
+  }
+
+  /** Waits for a permit of the rate limiter, a wait is recorded as {@link CfRateLimitEvent}. */
+  private void waitForRateLimit(CfRequest request) throws InterruptedException {
+    CfRateLimitEvent event = new CfRateLimitEvent();
+    event.begin();
+    long waited = rateLimiter.acquire();
+    metrics.recordRateLimitWait(waited);
+    event.end();
+    if (waited > 0 && event.shouldCommit()) {
+      event.request = request.name();
+      event.commit();
+    }
+  }
+
+  /** Reads the errors from the body of a failed request, if it contains any. */
+  private List<ResponseMessage> readErrors(InputStream body) {
+    try {
+      List<ResponseMessage> errors = jsonCodec.read(body, ErrorResponse.class).getErrors();
+      return errors == null ? List.of() : errors;
+    } catch (IOException e) {
+      log.debug("Body of the failed request isn't an API response: {}", e.getMessage());
+      return List.of();
     }
   }
 
+  /**
+   * Waits for a free slot of the bulkhead, if any.
+   *
+   * @return {@code true} if a slot was taken and must be released
+   */
+  private boolean acquireBulkhead(@Nullable Semaphore bulkhead, CfRequest request)
+      throws InterruptedException, CloudflareUnavailableException {
+    if (bulkhead == null) {
+      return false;
+    }
+    if (!bulkhead.tryAcquire(bulkheadWaitNanos, TimeUnit.NANOSECONDS)) {
+      metrics.recordBulkheadRejection();
+      throw new CloudflareUnavailableException("The bulkhead of " + request + " is full.");
+    }
+    return true;
+  }
+
+  /**
+   * Waits for the scheduler to send the request, if any.
+   *
+   * @return {@code true} if the request was granted and must be released
+   */
+  private boolean schedule(CfRequest request, Method method, String endpoint)
+      throws InterruptedException, CloudflareUnavailableException {
+    if (scheduler == null) {
+      return false;
+    }
+    CfPriority priority = priorityOf(request, method);
+    if (!scheduler.acquire(priority, new ZoneFlow(this, zoneOf(endpoint)))) {
+      metrics.recordSchedulingRejection();
+      throw new CloudflareUnavailableException(
+          "The " + priority + " request " + request + " waited too long to be sent.");
+    }
+    return true;
+  }
+
+  /**
+   * Determines the priority of a request: the one set by {@link CfPriority#call}, otherwise writes
+   * are critical, listings of whole zones or accounts are bulk and other reads are interactive.
+   */
+  static CfPriority priorityOf(CfRequest request, Method method) {
+    CfPriority current = CfPriority.current();
+    if (current != null) {
+      return current;
+    }
+    if (method != Method.GET) {
+      return CfPriority.CRITICAL;
+    }
+    return request == CfRequest.RECORD_LIST || request == CfRequest.ZONE_LIST
+        ? CfPriority.BULK
+        : CfPriority.INTERACTIVE;
+  }
+
+  /** Extracts the zone id of an endpoint, or an empty string if it's not zone-specific. */
+  static String zoneOf(String endpoint) {
+    if (!endpoint.startsWith("/zones/")) {
+      return "";
+    }
+    int start = "/zones/".length();
+    int end = start;
+    while (end < endpoint.length() && endpoint.charAt(end) != '/' && endpoint.charAt(end) != '?') {
+      end++;
+    }
+    return endpoint.substring(start, end);
+  }
+
+  /** The flow of a request for the scheduler: the client, i.e. its account, and the zone. */
+  private record ZoneFlow(Object client, String zone) {}
+
+  /**
+   * Waits for a free slot of the adaptive concurrency limit, if any.
+   *
+   * @return {@code true} if a slot was taken and must be released
+   */
+  private boolean acquireLimit(CfRequest request)
+      throws InterruptedException, CloudflareUnavailableException {
+    if (limiter == null) {
+      return false;
+    }
+    if (!limiter.acquire()) {
+      metrics.recordConcurrencyLimitRejection();
+      throw new CloudflareUnavailableException(
+          "The concurrency limit of " + limiter.getLimit() + " is reached for " + request + ".");
+    }
+    return true;
+  }
+
   /** Sends a GET request to the given endpoint and maps the response. */
-  <T extends AbstractResponse> T getRequest(String endpoint, Class<T> responseType)
-      throws CloudflareApiException {
-    HttpGet request = new HttpGet(buildUrl(endpoint));
-    return executeRequest(request, responseType);
+  <T extends AbstractResponse> T getRequest(
+      CfRequest request, String endpoint, Class<T> responseType) throws CloudflareApiException {
+    return executeRequest(request, Method.GET, endpoint, null, responseType);
   }
 
   /** Sends a DELETE request to the given endpoint and maps the response. */
-  <T extends AbstractResponse> T deleteRequest(String endpoint)
+  <T extends AbstractResponse> T deleteRequest(CfRequest request, String endpoint)
       throws CloudflareApiException {
-    HttpDelete request = new HttpDelete(buildUrl(endpoint));
-    return executeRequest(request, (Class<T>) codes.thischwa.cf.model.RecordSingleResponse.class);
+    return executeRequest(
+        request, Method.DELETE, endpoint, null, (Class<T>) RecordSingleResponse.class);
   }
 
   /** Sends a POST request with a payload to the given endpoint and maps the response. */
   <T extends AbstractResponse, R extends AbstractEntity> T postRequest(
-      String endpoint, R requestPayload) throws CloudflareApiException {
-    HttpPost request = new HttpPost(buildUrl(endpoint));
-    setRequestPayload(request, requestPayload);
-    return executeRequest(request, (Class<T>) codes.thischwa.cf.model.RecordSingleResponse.class);
+      CfRequest request, String endpoint, R requestPayload) throws CloudflareApiException {
+    return executeRequest(
+        request,
+        Method.POST,
+        endpoint,
+        serialize(requestPayload),
+        (Class<T>) RecordSingleResponse.class);
   }
 
   /** Sends a PUT request with a payload to the given endpoint and maps the response. */
   <T extends AbstractResponse, R extends AbstractEntity> T putRequest(
-      String endpoint, R requestPayload, Class<T> responseType) throws CloudflareApiException {
-    HttpPut request = new HttpPut(buildUrl(endpoint));
-    setRequestPayload(request, requestPayload);
-    return executeRequest(request, responseType);
+      CfRequest request, String endpoint, R requestPayload, Class<T> responseType)
+      throws CloudflareApiException {
+    return executeRequest(request, Method.PUT, endpoint, serialize(requestPayload), responseType);
   }
 
   /** Sends a PATCH request with a payload to the given endpoint and maps the response. */
   <T extends AbstractResponse, R extends AbstractEntity> T patchRequest(
-      String endpoint, R requestPayload) throws CloudflareApiException {
-    HttpPatch request = new HttpPatch(buildUrl(endpoint));
-    setRequestPayload(request, requestPayload);
-    return executeRequest(request, (Class<T>) codes.thischwa.cf.model.RecordSingleResponse.class);
+      CfRequest request, String endpoint, R requestPayload) throws CloudflareApiException {
+    return executeRequest(
+        request,
+        Method.PATCH,
+        endpoint,
+        serialize(requestPayload),
+        (Class<T>) RecordSingleResponse.class);
   }
 
-  /** Sets the JSON payload for a request. */
-  private <R extends AbstractEntity> void setRequestPayload(
-      BasicClassicHttpRequest request, R requestPayload) throws CloudflareApiException {
+  /** Serializes the JSON payload of a request directly to UTF-8 bytes. */
+  private <R extends AbstractEntity> byte[] serialize(R requestPayload)
+      throws CloudflareApiException {
     try {
-      request.setEntity(
-          new StringEntity(
-              objectMapper.writeValueAsString(requestPayload), ContentType.APPLICATION_JSON));
+      return jsonCodec.write(requestPayload);
     } catch (JsonProcessingException e) {
       throw new CloudflareApiException("Error serializing JSON payload", e);
     }
@@ -159,5 +425,37 @@ abstract class CfBasicHttpClient {
     return baseUrl + endpoint;
   }
 
-  private record ResultWrapper(int statusCode, String responseBody) {}
+  /** Counts the bytes read from the body of a response, for the {@link CfRequestEvent}. */
+  private static final class CountingInputStream extends FilterInputStream {
+    long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
 }
@@ -0,0 +1,31 @@
+package codes.thischwa.cf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event of a lookup in a cache of the client, e.g. the zone index of {@link
+ * CfClientRegistry}. The duration of a miss includes loading the missing entry.
+ */
+@Name(CfCacheEvent.NAME)
+@Label("Cloudflare Cache Lookup")
+@Category({"Cloudflare", "DNS Client"})
+@Description("A lookup in a cache of the client, a hit or a miss.")
+@StackTrace(false)
+final class CfCacheEvent extends Event {
+
+  static final String NAME = "codes.thischwa.cf.CacheLookup";
+
+  @Label("Cache")
+  String cache;
+
+  @Label("Key")
+  String key;
+
+  @Label("Hit")
+  boolean hit;
+}
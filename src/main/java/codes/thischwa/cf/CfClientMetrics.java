@@ -0,0 +1,186 @@
+package codes.thischwa.cf;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of the requests sent by a {@link CfDnsClient}. The counters are updated
+ * concurrently without locking and can be read at any time.
+ */
+public final class CfClientMetrics {
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder requestNanos = new LongAdder();
+  private final LongAdder rateLimitWaits = new LongAdder();
+  private final LongAdder rateLimitWaitNanos = new LongAdder();
+  private final LongAdder bulkheadRejections = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final LongAdder concurrencyLimitRejections = new LongAdder();
+  private final LongAdder schedulingRejections = new LongAdder();
+  private volatile int concurrencyLimit;
+  private final Map<CircuitState, LongAdder> circuitTransitions = new EnumMap<>(CircuitState.class);
+
+  CfClientMetrics() {
+    for (CircuitState state : CircuitState.values()) {
+      circuitTransitions.put(state, new LongAdder());
+    }
+  }
+
+  void recordRequest(long nanos, boolean success) {
+    requests.increment();
+    requestNanos.add(nanos);
+    if (!success) {
+      failures.increment();
+    }
+  }
+
+  void recordRateLimitWait(long nanos) {
+    if (nanos > 0) {
+      rateLimitWaits.increment();
+      rateLimitWaitNanos.add(nanos);
+    }
+  }
+
+  void recordCircuitTransition(CircuitState to) {
+    circuitTransitions.get(to).increment();
+  }
+
+  void recordBulkheadRejection() {
+    bulkheadRejections.increment();
+  }
+
+  void recordHedge() {
+    hedges.increment();
+  }
+
+  void recordHedgeWin() {
+    hedgeWins.increment();
+  }
+
+  void recordConcurrencyLimit(int limit) {
+    concurrencyLimit = limit;
+  }
+
+  void recordConcurrencyLimitRejection() {
+    concurrencyLimitRejections.increment();
+  }
+
+  void recordSchedulingRejection() {
+    schedulingRejections.increment();
+  }
+
+  /**
+   * Retrieves the number of requests sent to the API.
+   *
+   * @return the number of requests
+   */
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  /**
+   * Retrieves the number of requests which failed, either by a transport or an HTTP error.
+   *
+   * @return the number of failed requests
+   */
+  public long getFailureCount() {
+    return failures.sum();
+  }
+
+  /**
+   * Retrieves the accumulated duration of all requests, including the JSON processing.
+   *
+   * @return the accumulated duration of all requests
+   */
+  public Duration getRequestTime() {
+    return Duration.ofNanos(requestNanos.sum());
+  }
+
+  /**
+   * Retrieves the number of requests which had to wait for the rate limiter.
+   *
+   * @return the number of requests delayed by the rate limiter
+   */
+  public long getRateLimitWaitCount() {
+    return rateLimitWaits.sum();
+  }
+
+  /**
+   * Retrieves the accumulated time spent waiting for the rate limiter.
+   *
+   * @return the accumulated waiting time
+   */
+  public Duration getRateLimitWaitTime() {
+    return Duration.ofNanos(rateLimitWaitNanos.sum());
+  }
+
+  /**
+   * Retrieves the number of transitions of the circuit breakers into the given state.
+   *
+   * @param to the state the circuit breakers changed to
+   * @return the number of transitions into the state
+   */
+  public long getCircuitTransitionCount(CircuitState to) {
+    return circuitTransitions.get(to).sum();
+  }
+
+  /**
+   * Retrieves the number of requests which weren't sent, because their bulkhead was full.
+   *
+   * @return the number of requests rejected by the bulkheads
+   */
+  public long getBulkheadRejectionCount() {
+    return bulkheadRejections.sum();
+  }
+
+  /**
+   * Retrieves the number of hedges sent for slow reads.
+   *
+   * @return the number of hedges
+   */
+  public long getHedgeCount() {
+    return hedges.sum();
+  }
+
+  /**
+   * Retrieves the number of hedges which were answered before the original request.
+   *
+   * @return the number of hedges which won
+   */
+  public long getHedgeWinCount() {
+    return hedgeWins.sum();
+  }
+
+  /**
+   * Retrieves the current adaptive concurrency limit, i.e. the number of requests which may be in
+   * flight at the same time.
+   *
+   * @return the current limit, or 0 if the client has no adaptive concurrency limit
+   */
+  public int getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  /**
+   * Retrieves the number of requests which failed fast, because no slot of the adaptive
+   * concurrency limit got free in time.
+   *
+   * @return the number of rejected requests
+   */
+  public long getConcurrencyLimitRejectionCount() {
+    return concurrencyLimitRejections.sum();
+  }
+
+  /**
+   * Retrieves the number of requests which failed, because the request scheduler didn't send them
+   * within the maximum wait.
+   *
+   * @return the number of rejected requests
+   */
+  public long getSchedulingRejectionCount() {
+    return schedulingRejections.sum();
+  }
+}
@@ -0,0 +1,286 @@
+package codes.thischwa.cf;
+
+import codes.thischwa.cf.model.ZoneEntity;
+import codes.thischwa.cf.transport.CfTransport;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * CfClientRegistry hands out {@link CfDnsClient} instances for multiple Cloudflare accounts.
+ *
+ * <p>All clients of a registry share one HTTP transport, including its connection pool and I/O
+ * threads, and the JSON mapping. Each account keeps its own rate limit bucket and its own {@link
+ * CfClientMetrics}. A zone name is routed to the client of the account owning the zone by an index,
+ * which is built from the zone listings of all accounts on the first lookup and then cached. An
+ * unknown zone refreshes the index at most once per {@link #MIN_REFRESH_INTERVAL}, or after an
+ * account was registered, so repeated lookups of a missing zone don't list all zones each time.
+ * The lookups are recorded as JDK Flight Recorder events, see {@link CfCacheEvent}.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * try (CfClientRegistry registry = new CfClientRegistry()) {
+ *   registry.register("customer-a", new CfCredentials("a@example.com", "keyA", "tokenA"));
+ *   registry.register("customer-b", new CfCredentials("b@example.com", "keyB", "tokenB"));
+ *
+ *   CfDnsClient client = registry.clientForZone("example.com");
+ *   ZoneEntity zone = client.zoneInfo("example.com");
+ * }
+ * </code></pre>
+ *
+ * <p>The clients handed out by the registry must not be closed individually, the shared resources
+ * are released by {@link #close()}.
+ */
+@Slf4j
+public class CfClientRegistry implements Closeable {
+
+  /** The default size of the connection pool shared by all accounts. */
+  public static final int DEFAULT_MAX_CONNECTIONS = 50;
+
+  /** The minimum time between two refreshes of the zone index caused by unknown zones. */
+  public static final Duration MIN_REFRESH_INTERVAL = Duration.ofSeconds(30);
+
+  private static final String ZONE_INDEX_CACHE = "zoneIndex";
+
+  private final String baseUrl;
+  private final CfTransport transport;
+  private final JsonCodec jsonCodec;
+  private final int rateLimitCapacity;
+  private final double rateLimitPerSecond;
+  @Nullable private final RequestScheduler scheduler;
+
+  private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  private final Map<String, String> zoneIndex = new ConcurrentHashMap<>();
+  private final Object zoneIndexLock = new Object();
+  private boolean zoneIndexStale = true;
+  private long zoneIndexRefreshed;
+
+  /**
+   * Constructs a registry for the default base URL of the Cloudflare API, using HTTP/1.1 and the
+   * global rate limit of the Cloudflare API per account.
+   */
+  public CfClientRegistry() {
+    this(CfDnsClient.DEFAULT_BASEURL, CfProtocol.HTTP_1_1);
+  }
+
+  /**
+   * Constructs a registry using the global rate limit of the Cloudflare API per account.
+   *
+   * @param baseUrl The base URL of the Cloudflare API to be used for requests.
+   * @param protocol The HTTP protocol used by all clients.
+   */
+  public CfClientRegistry(String baseUrl, CfProtocol protocol) {
+    this(
+        baseUrl,
+        protocol,
+        RateLimiter.CLOUDFLARE_CAPACITY,
+        RateLimiter.CLOUDFLARE_PERMITS_PER_SECOND);
+  }
+
+  /**
+   * Constructs a registry with a custom rate limit per account.
+   *
+   * @param baseUrl The base URL of the Cloudflare API to be used for requests.
+   * @param protocol The HTTP protocol used by all clients.
+   * @param rateLimitCapacity The number of requests an account can send in a burst.
+   * @param rateLimitPerSecond The number of requests per second an account can send in average.
+   */
+  public CfClientRegistry(
+      String baseUrl, CfProtocol protocol, int rateLimitCapacity, double rateLimitPerSecond) {
+    this(baseUrl, protocol, rateLimitCapacity, rateLimitPerSecond, null);
+  }
+
+  /**
+   * Constructs a registry with a custom rate limit per account and a request scheduler shared by
+   * all clients. The scheduler sends the waiting requests by their {@link CfPriority} and lets the
+   * accounts and their zones take turns, so a bulk job of one account can't starve the others.
+   *
+   * @param baseUrl The base URL of the Cloudflare API to be used for requests.
+   * @param protocol The HTTP protocol used by all clients.
+   * @param rateLimitCapacity The number of requests an account can send in a burst.
+   * @param rateLimitPerSecond The number of requests per second an account can send in average.
+   * @param scheduling The settings of the shared request scheduler, or {@code null} to disable it.
+   */
+  public CfClientRegistry(
+      String baseUrl,
+      CfProtocol protocol,
+      int rateLimitCapacity,
+      double rateLimitPerSecond,
+      @Nullable CfScheduling scheduling) {
+    this.baseUrl = baseUrl;
+    this.transport = protocol.createTransport(DEFAULT_MAX_CONNECTIONS, CfTimeouts.DEFAULT);
+    this.jsonCodec = JsonCodec.shared();
+    this.rateLimitCapacity = rateLimitCapacity;
+    this.rateLimitPerSecond = rateLimitPerSecond;
+    this.scheduler =
+        scheduling == null ? null : new RequestScheduler(scheduling, System::nanoTime);
+  }
+
+  /**
+   * Registers an account and returns its client. Registering an account again with the same
+   * credentials returns the existing client.
+   *
+   * @param account The name of the account, used to look up its client.
+   * @param credentials The credentials of the account.
+   * @return the client of the account
+   * @throws IllegalArgumentException if the account is already registered with other credentials
+   */
+  public CfDnsClient register(String account, CfCredentials credentials) {
+    boolean known = accounts.containsKey(account);
+    Account registered =
+        accounts.computeIfAbsent(
+            account,
+            name ->
+                new Account(
+                    credentials,
+                    new CfDnsClient(
+                        true,
+                        baseUrl,
+                        credentials,
+                        jsonCodec,
+                        transport,
+                        false,
+                        new RateLimiter(rateLimitCapacity, rateLimitPerSecond),
+                        CfResilience.DEFAULT,
+                        null,
+                        null,
+                        scheduler)));
+    if (!registered.credentials().equals(credentials)) {
+      throw new IllegalArgumentException(
+          "Account " + account + " is already registered with other credentials.");
+    }
+    if (!known) {
+      synchronized (zoneIndexLock) {
+        zoneIndexStale = true;
+      }
+    }
+    return registered.client();
+  }
+
+  /**
+   * Retrieves the client of an account.
+   *
+   * @param account The name of the account.
+   * @return the client of the account
+   * @throws IllegalArgumentException if the account isn't registered
+   */
+  public CfDnsClient client(String account) {
+    Account registered = accounts.get(account);
+    if (registered == null) {
+      throw new IllegalArgumentException("Account " + account + " isn't registered.");
+    }
+    return registered.client();
+  }
+
+  /**
+   * Retrieves the names of all registered accounts.
+   *
+   * @return the names of the accounts
+   */
+  public Set<String> accounts() {
+    return Set.copyOf(accounts.keySet());
+  }
+
+  /**
+   * Retrieves the client of the account which owns the given zone.
+   *
+   * @param zoneName The name of the zone, e.g. "example.com".
+   * @return the client of the account owning the zone
+   * @throws CloudflareNotFoundException if no registered account owns the zone
+   * @throws CloudflareApiException if an error occurs while building the zone index
+   */
+  public CfDnsClient clientForZone(String zoneName) throws CloudflareApiException {
+    return client(accountForZone(zoneName));
+  }
+
+  /**
+   * Retrieves the name of the account which owns the given zone. If the zone isn't indexed yet,
+   * the index is refreshed once, unless it was refreshed within the {@link #MIN_REFRESH_INTERVAL}
+   * and no account was registered since.
+   *
+   * @param zoneName The name of the zone, e.g. "example.com".
+   * @return the name of the account owning the zone
+   * @throws CloudflareNotFoundException if no registered account owns the zone
+   * @throws CloudflareApiException if an error occurs while building the zone index
+   */
+  public String accountForZone(String zoneName) throws CloudflareApiException {
+    CfCacheEvent event = new CfCacheEvent();
+    event.begin();
+    String account = zoneIndex.get(zoneName);
+    if (account != null) {
+      commit(event, zoneName, true);
+      return account;
+    }
+    boolean hit = false;
+    try {
+      synchronized (zoneIndexLock) {
+        account = zoneIndex.get(zoneName);
+        if (account == null) {
+          if (zoneIndexStale
+              || System.nanoTime() - zoneIndexRefreshed >= MIN_REFRESH_INTERVAL.toNanos()) {
+            refreshZoneIndex();
+            account = zoneIndex.get(zoneName);
+          }
+        } else {
+          hit = true;
+        }
+      }
+    } finally {
+      commit(event, zoneName, hit);
+    }
+    if (account == null) {
+      throw new CloudflareNotFoundException("Zone not found in any account: " + zoneName);
+    }
+    return account;
+  }
+
+  private static void commit(CfCacheEvent event, String zoneName, boolean hit) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.cache = ZONE_INDEX_CACHE;
+      event.key = zoneName;
+      event.hit = hit;
+      event.commit();
+    }
+  }
+
+  /**
+   * Rebuilds the zone index from the zone listings of all registered accounts. Concurrent
+   * refreshes are serialized.
+   *
+   * @throws CloudflareApiException if an error occurs while retrieving the zones of an account
+   */
+  public void refreshZoneIndex() throws CloudflareApiException {
+    synchronized (zoneIndexLock) {
+      Map<String, String> fresh = new HashMap<>();
+      for (Map.Entry<String, Account> entry : accounts.entrySet()) {
+        for (ZoneEntity zone : entry.getValue().client().zoneListAll()) {
+          fresh.put(zone.getName(), entry.getKey());
+        }
+      }
+      zoneIndex.keySet().retainAll(fresh.keySet());
+      zoneIndex.putAll(fresh);
+      zoneIndexStale = false;
+      zoneIndexRefreshed = System.nanoTime();
+      log.debug("Zone index refreshed: {} zones of {} accounts.", fresh.size(), accounts.size());
+    }
+  }
+
+  /**
+   * Releases the resources shared by all clients of this registry. The clients can't be used
+   * afterward.
+   */
+  @Override
+  public void close() throws IOException {
+    transport.close();
+  }
+
+  private record Account(CfCredentials credentials, CfDnsClient client) {}
+}
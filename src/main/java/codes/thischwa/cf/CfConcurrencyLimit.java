@@ -0,0 +1,62 @@
+package codes.thischwa.cf;
+
+import java.time.Duration;
+
+/**
+ * Represents the policy of the adaptive concurrency limit, which finds the highest number of
+ * requests in flight the API currently handles well, instead of a fixed number tuned by hand.
+ *
+ * <p>The limit grows by one per round trip while the limit is in use and the requests are answered
+ * in time, i.e. by {@code 1 / limit} with each such request. It's multiplied by the backoff ratio
+ * if the API signals overload: a response with status 429 or 5xx, a failed request, or a
+ * round-trip time above the tolerated multiple of the lowest recent round-trip time of the same
+ * {@link CfRequest}. The limit is reduced once per round trip at most, so a burst of failures of
+ * requests sent at the same time doesn't collapse it.
+ *
+ * <p>A request waits up to {@code maxWait} for a free slot, then it fails fast with a {@link
+ * CloudflareUnavailableException}. The current limit is published by {@link
+ * CfClientMetrics#getConcurrencyLimit()}.
+ *
+ * @param initialLimit the limit to start with
+ * @param minLimit the lower bound of the limit
+ * @param maxLimit the upper bound of the limit
+ * @param backoffRatio the factor applied to the limit on overload, e.g. 0.75
+ * @param rttTolerance the multiple of the lowest round-trip time regarded as overload, e.g. 2.0
+ * @param maxWait the maximum time a request waits for a free slot
+ */
+public record CfConcurrencyLimit(
+    int initialLimit,
+    int minLimit,
+    int maxLimit,
+    double backoffRatio,
+    double rttTolerance,
+    Duration maxWait) {
+
+  /**
+   * The default policy: starting with 10 requests in flight, between 1 and 100, reduced by 25 % on
+   * overload or a doubled round-trip time, waiting up to 10 seconds for a slot.
+   */
+  public static final CfConcurrencyLimit DEFAULT =
+      new CfConcurrencyLimit(10, 1, 100, 0.75, 2.0, Duration.ofSeconds(10));
+
+  /**
+   * Constructs the policy and checks it.
+   *
+   * @throws IllegalArgumentException if a value is out of range
+   */
+  public CfConcurrencyLimit {
+    if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+      throw new IllegalArgumentException(
+          "Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit.");
+    }
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("Backoff ratio must be within (0, 1).");
+    }
+    if (rttTolerance <= 1) {
+      throw new IllegalArgumentException("RTT tolerance must be greater than 1.");
+    }
+    if (maxWait.isNegative()) {
+      throw new IllegalArgumentException("Max wait must not be negative.");
+    }
+  }
+}
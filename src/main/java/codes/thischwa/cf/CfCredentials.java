@@ -0,0 +1,17 @@
+package codes.thischwa.cf;
+
+/**
+ * Represents the credentials of a Cloudflare account, used for the authentication of the API
+ * requests.
+ *
+ * @param authEmail The email address associated with the Cloudflare account.
+ * @param authKey The API key of the Cloudflare account.
+ * @param authToken The API token for accessing specific resources within the Cloudflare account.
+ */
+public record CfCredentials(String authEmail, String authKey, String authToken) {
+
+  @Override
+  public String toString() {
+    return "CfCredentials[authEmail=" + authEmail + "]";
+  }
+}
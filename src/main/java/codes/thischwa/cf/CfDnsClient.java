@@ -1,23 +1,47 @@
 package codes.thischwa.cf;
 
+import codes.thischwa.cf.model.AbstractMultipleResponse;
 import codes.thischwa.cf.model.AbstractResponse;
 import codes.thischwa.cf.model.PagingRequest;
 import codes.thischwa.cf.model.RecordEntity;
 import codes.thischwa.cf.model.RecordMultipleResponse;
 import codes.thischwa.cf.model.RecordSingleResponse;
 import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.RecordView;
+import codes.thischwa.cf.model.RecordViewMultipleResponse;
+import codes.thischwa.cf.model.ResponseMessage;
 import codes.thischwa.cf.model.ZoneEntity;
 import codes.thischwa.cf.model.ZoneMultipleResponse;
+import codes.thischwa.cf.transport.CfTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Flow;
 import java.util.stream.Collectors;
-import lombok.Setter;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * CfDnsClient is a client interface to interact with Cloudflare DNS service. It allows managing DNS
  * records and zones within the Cloudflare system, including creating, updating, retrieving, and
  * deleting DNS records.
  *
+ * <p>A CfDnsClient is immutable and thread-safe. One instance should be shared by all threads
+ * working with an account, so they share its connections, circuit breakers and limits. It is
+ * configured by its {@link Builder}:
+ *
+ * <pre><code>
+ * CfDnsClient cfDnsClient = CfDnsClient.builder()
+ *     .tokenAuth("yourApiToken")
+ *     .protocol(CfProtocol.HTTP_2)
+ *     .timeouts(CfTimeouts.DEFAULT)
+ *     .hedging(CfHedging.DEFAULT)
+ *     .build();
+ * </code></pre>
+ *
  * <p>Example:
  *
  * <pre><code>
@@ -33,18 +57,26 @@ import lombok.extern.slf4j.Slf4j;
  * System.out.println("Zone ID: " + zone.getId());
  *
  * // Retrieve records of a zone
- * List<RecordEntity> records = cfDnsClient.sldListAll(zone, "sld");
- * records.forEach(record ->
+ * List&lt;RecordEntity&gt; records = cfDnsClient.sldListAll(zone, "sld");
+ * records.forEach(record -&gt;
  *     System.out.println("Record Type: " + record.getType() + ", Value: " + record.getContent())
  * );
  * </code></pre>
  */
-@Setter
 @Slf4j
 public class CfDnsClient extends CfBasicHttpClient {
-  private static final String DEFAULT_BASEURL = "https://api.cloudflare.com/client/v4";
+  static final String DEFAULT_BASEURL = "https://api.cloudflare.com/client/v4";
 
-  private boolean emptyResultThrowsException;
+  @Getter private final boolean emptyResultThrowsException;
+
+  /**
+   * Indicates if records are checked and normalized by the {@link RecordValidator} before they are
+   * created or updated. It's enabled by default for clients of the {@link Builder}, and disabled
+   * for the ones of the constructors, which send the records as given.
+   */
+  @Getter private final boolean recordValidation;
+
+  private final List<RecordListener> recordListeners;
 
   /**
    * Constructs a CfDnsClient instance for interacting with the Cloudflare DNS API.
@@ -75,7 +107,9 @@ public class CfDnsClient extends CfBasicHttpClient {
 
   /**
    * Constructs a new instance of {@code CfDnsClient}, which facilitates interactions with the
-   * Cloudflare DNS API.
+   * Cloudflare DNS API. It has the defaults of the {@link Builder}, except that the records are
+   * sent without validation and there are no circuit breakers and bulkheads ({@link
+   * CfResilience#DISABLED}). Further settings are made by the {@link #builder()}.
    *
    * @param emptyResultThrowsException Specifies if an exception should be thrown when the API
    *     response is empty. Default is true.
@@ -90,8 +124,121 @@ public class CfDnsClient extends CfBasicHttpClient {
       String authEmail,
       String authKey,
       String authToken) {
-    super(baseUrl, authEmail, authKey, authToken);
+    this(
+        builder()
+            .baseUrl(baseUrl)
+            .credentials(new CfCredentials(authEmail, authKey, authToken))
+            .emptyResultThrowsException(emptyResultThrowsException)
+            .recordValidation(false)
+            .resilience(CfResilience.DISABLED));
+  }
+
+  private CfDnsClient(Builder builder) {
+    this(
+        builder.emptyResultThrowsException,
+        builder.recordValidation,
+        List.copyOf(builder.recordListeners),
+        builder.baseUrl,
+        Objects.requireNonNull(builder.credentials),
+        builder.objectMapper == null ? JsonCodec.shared() : new JsonCodec(builder.objectMapper),
+        builder.transport != null
+            ? builder.transport
+            : builder.protocol.createTransport(
+                builder.maxConnections > 0
+                    ? builder.maxConnections
+                    : builder.resilience.connectionsNeeded(),
+                builder.timeouts),
+        builder.transport == null,
+        builder.rateLimitCapacity == 0
+            ? null
+            : new RateLimiter(builder.rateLimitCapacity, builder.rateLimitPerSecond),
+        builder.resilience,
+        builder.hedging,
+        builder.concurrencyLimit,
+        builder.scheduling == null
+            ? null
+            : new RequestScheduler(builder.scheduling, System::nanoTime));
+  }
+
+  /**
+   * Constructs a new instance of {@code CfDnsClient} with the given resources, which may be shared
+   * with other clients. Used by the {@link CfClientRegistry}.
+   */
+  CfDnsClient(
+      boolean emptyResultThrowsException,
+      String baseUrl,
+      CfCredentials credentials,
+      JsonCodec jsonCodec,
+      CfTransport transport,
+      boolean ownsTransport,
+      @Nullable RateLimiter rateLimiter,
+      CfResilience resilience,
+      @Nullable CfHedging hedging,
+      @Nullable CfConcurrencyLimit concurrencyLimit,
+      @Nullable RequestScheduler scheduler) {
+    this(
+        emptyResultThrowsException,
+        false,
+        List.of(),
+        baseUrl,
+        credentials,
+        jsonCodec,
+        transport,
+        ownsTransport,
+        rateLimiter,
+        resilience,
+        hedging,
+        concurrencyLimit,
+        scheduler);
+  }
+
+  private CfDnsClient(
+      boolean emptyResultThrowsException,
+      boolean recordValidation,
+      List<RecordListener> recordListeners,
+      String baseUrl,
+      CfCredentials credentials,
+      JsonCodec jsonCodec,
+      CfTransport transport,
+      boolean ownsTransport,
+      @Nullable RateLimiter rateLimiter,
+      CfResilience resilience,
+      @Nullable CfHedging hedging,
+      @Nullable CfConcurrencyLimit concurrencyLimit,
+      @Nullable RequestScheduler scheduler) {
+    super(
+        baseUrl,
+        credentials,
+        jsonCodec,
+        transport,
+        ownsTransport,
+        rateLimiter,
+        resilience,
+        hedging,
+        concurrencyLimit,
+        scheduler);
     this.emptyResultThrowsException = emptyResultThrowsException;
+    this.recordValidation = recordValidation;
+    this.recordListeners = recordListeners;
+  }
+
+  /**
+   * Creates a new {@link ObjectMapper} with the configuration required for the Cloudflare API. It
+   * can be customized and passed to the clients.
+   *
+   * @return a new, pre-configured {@code ObjectMapper}
+   */
+  public static ObjectMapper createObjectMapper() {
+    return JsonCodec.createObjectMapper();
+  }
+
+  /**
+   * Creates a builder for a new client.
+   *
+   * @return a new builder
+   */
+  public static Builder builder() {
+    return new Builder();
   }
 
   /**
@@ -115,7 +262,8 @@ public class CfDnsClient extends CfBasicHttpClient {
    */
   public List<ZoneEntity> zoneListAll(PagingRequest pagingRequest) throws CloudflareApiException {
     String endpoint = pagingRequest.addQueryString(CfRequest.ZONE_LIST.buildPath());
-    ZoneMultipleResponse response = getRequest(endpoint, ZoneMultipleResponse.class);
+    ZoneMultipleResponse response =
+        getRequest(CfRequest.ZONE_LIST, endpoint, ZoneMultipleResponse.class);
     checkResponse(response);
     return response.getResult();
   }
@@ -125,14 +273,30 @@ public class CfDnsClient extends CfBasicHttpClient {
    *
    * @param name The name of the zone to retrieve information for.
    * @return A {@link ZoneEntity} object that contains details of the specified zone.
+   * @throws CloudflareNotFoundException If the zone doesn't exist.
    * @throws CloudflareApiException If an error occurs while making the API request or processing
    *     the response.
    */
   public ZoneEntity zoneInfo(String name) throws CloudflareApiException {
+    return zoneFind(name)
+        .orElseThrow(() -> new CloudflareNotFoundException("Zone not found: " + name));
+  }
+
+  /**
+   * Looks up a DNS zone by its name. Unlike {@link #zoneInfo(String)}, a missing zone is an
+   * ordinary result and doesn't cause an exception.
+   *
+   * @param name The name of the zone to look up.
+   * @return the zone, or an empty {@code Optional} if it doesn't exist
+   * @throws CloudflareApiException If an error occurs while interacting with the Cloudflare API.
+   */
+  public Optional<ZoneEntity> zoneFind(String name) throws CloudflareApiException {
     String endpoint = CfRequest.ZONE_INFO.buildPath(name);
-    ZoneMultipleResponse response = getRequest(endpoint, ZoneMultipleResponse.class);
-    checkResponse(response, true);
-    return response.getResult().get(0);
+    ZoneMultipleResponse response =
+        getRequest(CfRequest.ZONE_INFO, endpoint, ZoneMultipleResponse.class);
+    checkResponse(response);
+    List<ZoneEntity> zones = response.getResult();
+    return zones == null || zones.isEmpty() ? Optional.empty() : Optional.of(zones.get(0));
   }
 
   /**
@@ -163,11 +327,111 @@ public class CfDnsClient extends CfBasicHttpClient {
     String fqdn = sld + "." + zone.getName();
     String endpoint =
         pagingRequest.addQueryString(CfRequest.RECORD_INFO_NAME.buildPath(zone.getId(), fqdn));
-    RecordMultipleResponse resp = getRequest(endpoint, RecordMultipleResponse.class);
+    RecordMultipleResponse resp =
+        getRequest(CfRequest.RECORD_INFO_NAME, endpoint, RecordMultipleResponse.class);
     checkResponse(resp);
     return resp.getResult();
   }
 
+  /**
+   * Retrieves all records of a specific second-level domain (SLD) within a given DNS zone as
+   * lightweight {@link RecordView} instances.
+   *
+   * @param zone The DNS zone entity for which the SLD records are to be fetched.
+   * @param sld The second-level domain name for which the records are retrieved.
+   * @return A list of {@code RecordView} objects representing the DNS records associated with the
+   *     provided SLD.
+   * @throws CloudflareApiException If an error occurs while interacting with the Cloudflare API.
+   */
+  public List<RecordView> sldViewListAll(ZoneEntity zone, String sld)
+      throws CloudflareApiException {
+    return sldViewListAll(zone, sld, PagingRequest.defaultPaging());
+  }
+
+  /**
+   * Retrieves all records of a specific second-level domain (SLD) within a given DNS zone as
+   * lightweight {@link RecordView} instances.
+   *
+   * @param zone The DNS zone entity for which the SLD records are to be fetched.
+   * @param sld The second-level domain name for which the records are retrieved.
+   * @param pagingRequest The paging request.
+   * @return A list of {@code RecordView} objects representing the DNS records associated with the
+   *     provided SLD.
+   * @throws CloudflareApiException If an error occurs while interacting with the Cloudflare API.
+   */
+  public List<RecordView> sldViewListAll(
+      ZoneEntity zone, String sld, PagingRequest pagingRequest) throws CloudflareApiException {
+    String fqdn = sld + "." + zone.getName();
+    String endpoint =
+        pagingRequest.addQueryString(CfRequest.RECORD_INFO_NAME.buildPath(zone.getId(), fqdn));
+    RecordViewMultipleResponse resp =
+        getRequest(CfRequest.RECORD_INFO_NAME, endpoint, RecordViewMultipleResponse.class);
+    checkResponse(resp);
+    return resp.getResult();
+  }
+
+  /**
+   * Retrieves all records of a given DNS zone as lightweight {@link RecordView} instances. This is
+   * the preferred way for large listings or exports, because a {@code RecordView} needs
+   * considerably less heap than a {@link RecordEntity}.
+   *
+   * @param zone The DNS zone entity for which the records are to be fetched.
+   * @return A list of {@code RecordView} objects representing the DNS records of the zone.
+   * @throws CloudflareApiException If an error occurs while interacting with the Cloudflare API.
+   */
+  public List<RecordView> recordViewListAll(ZoneEntity zone) throws CloudflareApiException {
+    return recordViewListAll(zone, PagingRequest.defaultPaging());
+  }
+
+  /**
+   * Retrieves all records of a given DNS zone as lightweight {@link RecordView} instances.
+   *
+   * @param zone The DNS zone entity for which the records are to be fetched.
+   * @param pagingRequest The paging request.
+   * @return A list of {@code RecordView} objects representing the DNS records of the zone.
+   * @throws CloudflareApiException If an error occurs while interacting with the Cloudflare API.
+   */
+  public List<RecordView> recordViewListAll(ZoneEntity zone, PagingRequest pagingRequest)
+      throws CloudflareApiException {
+    String endpoint = pagingRequest.addQueryString(CfRequest.RECORD_LIST.buildPath(zone.getId()));
+    RecordViewMultipleResponse resp =
+        getRequest(CfRequest.RECORD_LIST, endpoint, RecordViewMultipleResponse.class);
+    checkResponse(resp);
+    return resp.getResult();
+  }
+
+  /**
+   * Publishes all records of a given DNS zone with backpressure. The pages of the listing are
+   * fetched on demand of the subscriber, so the records are never held in memory at once, unlike
+   * with {@link #recordViewListAll(ZoneEntity)}. An empty zone completes the subscription without
+   * records.
+   *
+   * @param zone The DNS zone entity for which the records are to be published.
+   * @param perPage The number of records fetched per page.
+   * @return A publisher of the records of the zone, each subscription starts with the first page.
+   */
+  public Flow.Publisher<RecordEntity> recordPublisher(ZoneEntity zone, int perPage) {
+    String path = CfRequest.RECORD_LIST.buildPath(zone.getId());
+    return new RecordPublisher(
+        pagingRequest -> recordPage(CfRequest.RECORD_LIST, path, pagingRequest), perPage);
+  }
+
+  /**
+   * Publishes the records of a specific second-level domain (SLD) within a given DNS zone with
+   * backpressure. The pages of the listing are fetched on demand of the subscriber.
+   *
+   * @param zone The DNS zone entity for which the SLD records are to be published.
+   * @param sld The second-level domain name for which the records are published.
+   * @param perPage The number of records fetched per page.
+   * @return A publisher of the records of the SLD, each subscription starts with the first page.
+   */
+  public Flow.Publisher<RecordEntity> sldPublisher(ZoneEntity zone, String sld, int perPage) {
+    String fqdn = sld + "." + zone.getName();
+    String path = CfRequest.RECORD_INFO_NAME.buildPath(zone.getId(), fqdn);
+    return new RecordPublisher(
+        pagingRequest -> recordPage(CfRequest.RECORD_INFO_NAME, path, pagingRequest), perPage);
+  }
+
   /**
    * Retrieves detailed information about a specific second-level domain (SLD) record for a given
    * zone and record type from the Cloudflare API.
@@ -176,16 +440,45 @@ public class CfDnsClient extends CfBasicHttpClient {
    * @param sld the second-level domain (SLD) for which the record information is requested
    * @param type the type of DNS record (e.g., A, AAAA, CNAME) being queried
    * @return the record entity containing detailed information about the requested SLD and record
-   *     type
+   *     type, or {@code null} if it doesn't exist and {@code emptyResultThrowsException} is
+   *     disabled
    * @throws CloudflareApiException if an error occurs during interaction with the Cloudflare API
    */
+  @Nullable
   public RecordEntity sldInfo(ZoneEntity zone, String sld, RecordType type)
       throws CloudflareApiException {
+    Optional<RecordEntity> rec = sldFind(zone, sld, type);
+    if (rec.isEmpty() && emptyResultThrowsException) {
+      throw new CloudflareNotFoundException("No result found");
+    }
+    return rec.orElse(null);
+  }
+
+  /**
+   * Looks up the record of a specific second-level domain (SLD) and record type within a given
+   * zone. Unlike {@link #sldInfo}, a missing record is an ordinary result and doesn't cause an
+   * exception, independent of {@code emptyResultThrowsException}. It's the preferred way for
+   * reconciliation loops, which expect missing records regularly.
+   *
+   * @param zone the zone entity that contains information about the DNS zone
+   * @param sld the second-level domain (SLD) for which the record is looked up
+   * @param type the type of DNS record (e.g., A, AAAA, CNAME)
+   * @return the record, or an empty {@code Optional} if it doesn't exist
+   * @throws CloudflareApiException if an error occurs during interaction with the Cloudflare API
+   *     or more than one record matches
+   */
+  public Optional<RecordEntity> sldFind(ZoneEntity zone, String sld, RecordType type)
+      throws CloudflareApiException {
     String fqdn = sld + "." + zone.getName();
     String endpoint = CfRequest.RECORD_INFO_NAME_TYPE.buildPath(zone.getId(), fqdn, type);
-    RecordMultipleResponse resp = getRequest(endpoint, RecordMultipleResponse.class);
-    checkResponse(resp, true);
-    return resp.getResult().get(0);
+    RecordMultipleResponse resp =
+        getRequest(CfRequest.RECORD_INFO_NAME_TYPE, endpoint, RecordMultipleResponse.class);
+    checkSuccess(resp);
+    int totalCount = resp.getResultInfo().getTotalCount();
+    if (totalCount > 1) {
+      throw new CloudflareApiException("Unexpected result count: " + totalCount);
+    }
+    return totalCount == 0 ? Optional.empty() : Optional.of(resp.getResult().get(0));
   }
 
   /**
@@ -193,15 +486,20 @@ public class CfDnsClient extends CfBasicHttpClient {
    *
    * @param zone The zone entity where the record will be created. Contains details such as zone ID.
    * @param rec The record entity representing the DNS record to be created, including its
-   *     attributes.
+   *     attributes. With {@link #isRecordValidation()}, its name and content are normalized in
+   *     place.
    * @return The created record entity as returned by the Cloudflare API.
+   * @throws CloudflareValidationException If the record is rejected by the {@link
+   *     RecordValidator}, no request is sent then.
    * @throws CloudflareApiException If an error occurs while interacting with the Cloudflare API.
    */
   public RecordEntity recordCreate(ZoneEntity zone, RecordEntity rec)
       throws CloudflareApiException {
+    validate(zone, rec);
     String endpoint = CfRequest.RECORD_CREATE.buildPath(zone.getId());
-    RecordSingleResponse resp = postRequest(endpoint, rec);
+    RecordSingleResponse resp = postRequest(CfRequest.RECORD_CREATE, endpoint, rec);
     checkResponse(resp);
+    notifyChanged(zone, resp.getResult());
     return resp.getResult();
   }
 
@@ -235,9 +533,19 @@ public class CfDnsClient extends CfBasicHttpClient {
    */
   public boolean recordDelete(ZoneEntity zone, String id) throws CloudflareApiException {
     String endpoint = CfRequest.RECORD_DELETE.buildPath(zone.getId(), id);
-    RecordSingleResponse resp = deleteRequest(endpoint);
+    RecordSingleResponse resp = deleteRequest(CfRequest.RECORD_DELETE, endpoint);
     checkResponse(resp);
-    return resp.getResult().getId().equals(id);
+    boolean deleted = resp.getResult().getId().equals(id);
+    if (deleted) {
+      for (RecordListener listener : recordListeners) {
+        try {
+          listener.recordDeleted(zone, id);
+        } catch (RuntimeException e) {
+          log.warn("Record listener {} failed.", listener, e);
+        }
+      }
+    }
+    return deleted;
   }
 
   /**
@@ -245,21 +553,41 @@ public class CfDnsClient extends CfBasicHttpClient {
    *
    * @param zone the zone entity containing the ID of the target zone
    * @param rec the record entity containing the ID of the DNS record to be updated and its updated
-   *     data
+   *     data, with {@link #isRecordValidation()} its name and content are normalized in place
    * @return the updated record entity as returned by the Cloudflare API
+   * @throws CloudflareValidationException if the record is rejected by the {@link
+   *     RecordValidator}, no request is sent then
    * @throws CloudflareApiException if an error occurs while interacting with the Cloudflare API
    */
   public RecordEntity recordUpdate(ZoneEntity zone, RecordEntity rec)
       throws CloudflareApiException {
+    validate(zone, rec);
     // reset all dates, it causes an API issue
     rec.setModifiedOn(null);
     rec.setCreatedOn(null);
     String endpoint = CfRequest.RECORD_UPDATE.buildPath(zone.getId(), rec.getId());
-    RecordSingleResponse resp = patchRequest(endpoint, rec);
+    RecordSingleResponse resp = patchRequest(CfRequest.RECORD_UPDATE, endpoint, rec);
     checkResponse(resp);
+    notifyChanged(zone, resp.getResult());
     return resp.getResult();
   }
 
+  private void notifyChanged(ZoneEntity zone, RecordEntity rec) {
+    for (RecordListener listener : recordListeners) {
+      try {
+        listener.recordChanged(zone, rec);
+      } catch (RuntimeException e) {
+        log.warn("Record listener {} failed.", listener, e);
+      }
+    }
+  }
+
+  private void validate(ZoneEntity zone, RecordEntity rec) throws CloudflareValidationException {
+    if (recordValidation) {
+      RecordValidator.validate(zone.getName(), rec);
+    }
+  }
+
   /**
    * Attempts to delete a DNS record of a specific type for a given zone and second-level domain
    * (SLD), if it exists.
@@ -273,35 +601,298 @@ public class CfDnsClient extends CfBasicHttpClient {
   public void recordDeleteTypeIfExists(ZoneEntity zone, String sld, RecordType type)
       throws CloudflareApiException {
     String fqdn = sld + "." + zone.getName();
-    try {
-      RecordEntity rec = sldInfo(zone, sld, type);
-      recordDelete(zone, rec);
+    Optional<RecordEntity> rec = sldFind(zone, sld, type);
+    if (rec.isPresent()) {
+      recordDelete(zone, rec.get());
       log.debug("Record {} of type {} successful deleted.", fqdn, type);
-    } catch (CloudflareNotFoundException e) {
+    } else {
       log.debug("Record {} of type {} does not exist.", fqdn, type);
     }
   }
 
+  private RecordMultipleResponse recordPage(
+      CfRequest request, String path, PagingRequest pagingRequest) throws CloudflareApiException {
+    RecordMultipleResponse resp =
+        getRequest(request, pagingRequest.addQueryString(path), RecordMultipleResponse.class);
+    checkSuccess(resp);
+    return resp;
+  }
+
   private void checkResponse(AbstractResponse resp) throws CloudflareApiException {
-    checkResponse(resp, false);
+    checkSuccess(resp);
+
+    if (resp instanceof RecordMultipleResponse || resp instanceof RecordViewMultipleResponse) {
+      AbstractMultipleResponse<?> respMulti = (AbstractMultipleResponse<?>) resp;
+      if (emptyResultThrowsException && respMulti.getResultInfo().getTotalCount() == 0) {
+        throw new CloudflareNotFoundException("No result found");
+      }
+    }
   }
 
-  private void checkResponse(AbstractResponse resp, boolean singleResultExpected)
-      throws CloudflareApiException {
+  private static void checkSuccess(AbstractResponse resp) throws CloudflareApiException {
     if (!resp.isSuccess()) {
-      String errors =
-          resp.getErrors().stream().map(Object::toString).collect(Collectors.joining(", "));
-      throw new CloudflareApiException("Error in response: " + errors);
+      List<ResponseMessage> errors = resp.getErrors() == null ? List.of() : resp.getErrors();
+      throw new CloudflareApiException(
+          "Error in response: "
+              + errors.stream().map(Object::toString).collect(Collectors.joining(", ")),
+          0,
+          errors);
+    }
+  }
+
+  /**
+   * Builds a {@link CfDnsClient}. Only the authentication is required. The defaults of the other
+   * settings are those of the constructors, except for:
+   *
+   * <ul>
+   *   <li>{@link #recordValidation(boolean)}: the builder validates the records, the constructors
+   *       don't.
+   *   <li>{@link #resilience(CfResilience)}: the builder uses {@link CfResilience#DEFAULT}, the
+   *       constructors {@link CfResilience#DISABLED}.
+   * </ul>
+   *
+   * <p>The builder isn't thread-safe, the built clients are.
+   */
+  public static final class Builder {
+    private String baseUrl = DEFAULT_BASEURL;
+    @Nullable private CfCredentials credentials;
+    private boolean emptyResultThrowsException = true;
+    private boolean recordValidation = true;
+    private final List<RecordListener> recordListeners = new ArrayList<>();
+    @Nullable private ObjectMapper objectMapper;
+    private CfProtocol protocol = CfProtocol.HTTP_1_1;
+    private CfTimeouts timeouts = CfTimeouts.DEFAULT;
+    private int maxConnections;
+    @Nullable private CfTransport transport;
+    private CfResilience resilience = CfResilience.DEFAULT;
+    @Nullable private CfHedging hedging;
+    @Nullable private CfConcurrencyLimit concurrencyLimit;
+    @Nullable private CfScheduling scheduling;
+    private int rateLimitCapacity;
+    private double rateLimitPerSecond;
+
+    private Builder() {}
+
+    /**
+     * Sets the base URL of the Cloudflare API, default is the public API.
+     *
+     * @param baseUrl the base URL
+     * @return this builder
+     */
+    public Builder baseUrl(String baseUrl) {
+      this.baseUrl = baseUrl;
+      return this;
+    }
+
+    /**
+     * Authenticates by an API token, which is the recommended way.
+     *
+     * @param authToken the API token
+     * @return this builder
+     */
+    public Builder tokenAuth(String authToken) {
+      this.credentials = new CfCredentials(null, null, authToken);
+      return this;
+    }
+
+    /**
+     * Authenticates by the global API key and the email address of the account.
+     *
+     * @param authEmail the email address of the account
+     * @param authKey the global API key
+     * @return this builder
+     */
+    public Builder keyAuth(String authEmail, String authKey) {
+      this.credentials = new CfCredentials(authEmail, authKey, null);
+      return this;
+    }
+
+    /**
+     * Authenticates by the given credentials, all of their non-null values are sent.
+     *
+     * @param credentials the credentials
+     * @return this builder
+     */
+    public Builder credentials(CfCredentials credentials) {
+      this.credentials = credentials;
+      return this;
+    }
+
+    /**
+     * Sets if an empty result of a single lookup throws a {@link CloudflareNotFoundException},
+     * default is {@code true}.
+     *
+     * @param emptyResultThrowsException {@code true} to throw, {@code false} to return {@code
+     *     null}
+     * @return this builder
+     */
+    public Builder emptyResultThrowsException(boolean emptyResultThrowsException) {
+      this.emptyResultThrowsException = emptyResultThrowsException;
+      return this;
+    }
+
+    /**
+     * Sets if records are checked by the {@link RecordValidator} before they are created or
+     * updated, default is {@code true}. The validator normalizes the name and content of the
+     * passed record in place, e.g. it quotes TXT content. Disable it for record types or contents
+     * the validator doesn't know yet, or to send the records exactly as given.
+     *
+     * @param recordValidation {@code true} to validate, {@code false} to send records unchecked
+     * @return this builder
+     */
+    public Builder recordValidation(boolean recordValidation) {
+      this.recordValidation = recordValidation;
+      return this;
+    }
+
+    /**
+     * Adds a listener, which receives the records created, updated or deleted by the client, e.g.
+     * to keep a {@link codes.thischwa.cf.index.RecordIndex} up to date.
+     *
+     * @param recordListener the listener
+     * @return this builder
+     */
+    public Builder recordListener(RecordListener recordListener) {
+      recordListeners.add(recordListener);
+      return this;
+    }
+
+    /**
+     * Sets the mapper used for the JSON processing, see {@link #createObjectMapper()}. Default is
+     * a mapper shared by all clients.
+     *
+     * @param objectMapper the mapper
+     * @return this builder
+     */
+    public Builder objectMapper(ObjectMapper objectMapper) {
+      this.objectMapper = objectMapper;
+      return this;
+    }
+
+    /**
+     * Sets the HTTP protocol, default is {@link CfProtocol#HTTP_1_1}.
+     *
+     * @param protocol the protocol
+     * @return this builder
+     */
+    public Builder protocol(CfProtocol protocol) {
+      this.protocol = protocol;
+      return this;
+    }
+
+    /**
+     * Sets the timeouts of the HTTP communication, default is {@link CfTimeouts#DEFAULT}.
+     *
+     * @param timeouts the timeouts
+     * @return this builder
+     */
+    public Builder timeouts(CfTimeouts timeouts) {
+      this.timeouts = timeouts;
+      return this;
     }
 
-    if (resp instanceof RecordMultipleResponse respMulti) {
-      if (singleResultExpected && respMulti.getResultInfo().getTotalCount() > 1) {
-        throw new CloudflareApiException(
-            "Unexpected result count: " + respMulti.getResultInfo().getTotalCount());
+    /**
+     * Sets the size of the connection pool. Default is the size needed by the bulkheads of the
+     * {@link CfResilience}.
+     *
+     * @param maxConnections the maximum number of connections
+     * @return this builder
+     * @throws IllegalArgumentException if the number isn't positive
+     */
+    public Builder maxConnections(int maxConnections) {
+      if (maxConnections < 1) {
+        throw new IllegalArgumentException("Max connections must be positive.");
       }
-      if (emptyResultThrowsException && respMulti.getResultInfo().getTotalCount() == 0) {
-        throw new CloudflareNotFoundException("No result found");
+      this.maxConnections = maxConnections;
+      return this;
+    }
+
+    /**
+     * Sets a transport to send the requests by, e.g. one shared by several clients. It isn't
+     * closed with the client, and the protocol, timeouts and pool size of this builder are
+     * ignored.
+     *
+     * @param transport the transport
+     * @return this builder
+     */
+    public Builder transport(CfTransport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * Sets the settings of the circuit breakers and bulkheads, default is {@link
+     * CfResilience#DEFAULT}.
+     *
+     * @param resilience the settings
+     * @return this builder
+     */
+    public Builder resilience(CfResilience resilience) {
+      this.resilience = resilience;
+      return this;
+    }
+
+    /**
+     * Sets the policy of hedged reads, default is no hedging.
+     *
+     * @param hedging the policy, or {@code null} to disable hedging
+     * @return this builder
+     */
+    public Builder hedging(@Nullable CfHedging hedging) {
+      this.hedging = hedging;
+      return this;
+    }
+
+    /**
+     * Sets the policy of the adaptive concurrency limit, default is no limit.
+     *
+     * @param concurrencyLimit the policy, or {@code null} to disable the limit
+     * @return this builder
+     */
+    public Builder concurrencyLimit(@Nullable CfConcurrencyLimit concurrencyLimit) {
+      this.concurrencyLimit = concurrencyLimit;
+      return this;
+    }
+
+    /**
+     * Sets the settings of the request scheduler, default is no scheduler.
+     *
+     * @param scheduling the settings, or {@code null} to disable the scheduler
+     * @return this builder
+     */
+    public Builder scheduling(@Nullable CfScheduling scheduling) {
+      this.scheduling = scheduling;
+      return this;
+    }
+
+    /**
+     * Limits the rate of the requests by a token bucket, default is no limit.
+     *
+     * @param capacity the maximum number of requests sent in a burst
+     * @param permitsPerSecond the sustained number of requests per second
+     * @return this builder
+     * @throws IllegalArgumentException if a value isn't positive
+     */
+    public Builder rateLimit(int capacity, double permitsPerSecond) {
+      if (capacity < 1 || permitsPerSecond <= 0) {
+        throw new IllegalArgumentException("Capacity and rate must be positive.");
+      }
+      this.rateLimitCapacity = capacity;
+      this.rateLimitPerSecond = permitsPerSecond;
+      return this;
+    }
+
+    /**
+     * Builds the client. The builder can be reused afterward.
+     *
+     * @return a new client
+     * @throws IllegalStateException if no authentication is set
+     */
+    public CfDnsClient build() {
+      if (credentials == null) {
+        throw new IllegalStateException("An authentication must be set.");
       }
+      return new CfDnsClient(this);
     }
   }
 }
@@ -0,0 +1,46 @@
+package codes.thischwa.cf;
+
+import java.time.Duration;
+
+/**
+ * Represents the policy of hedged reads. If a GET request hasn't been answered within the hedge
+ * delay, an identical second request is sent, and whichever response arrives first is used. This
+ * cuts the tail latency caused by an occasional slow response of the API.
+ *
+ * <p>The hedge delay is the given percentile of the recent latencies of the same {@link
+ * CfRequest}, bounded by the minimum and maximum delay. The maximum delay is used until enough
+ * latencies are known.
+ *
+ * <p>The budget limits the additional load: each request earns the given fraction of a hedge, and
+ * a hedge is only sent if a whole one was earned. So a budget of 0.05 increases the number of
+ * requests by 5 % at most. A hedge also needs a permit of the rate limiter of the client, it is
+ * skipped if none is available immediately.
+ *
+ * @param percentile the percentile of the latencies used as hedge delay, e.g. 0.95
+ * @param minDelay the lower bound of the hedge delay
+ * @param maxDelay the upper bound of the hedge delay
+ * @param budget the fraction of additional requests allowed for hedges
+ */
+public record CfHedging(double percentile, Duration minDelay, Duration maxDelay, double budget) {
+
+  /** The default policy: the 95th percentile, between 50 ms and 1 s, with a budget of 5 %. */
+  public static final CfHedging DEFAULT =
+      new CfHedging(0.95, Duration.ofMillis(50), Duration.ofSeconds(1), 0.05);
+
+  /**
+   * Constructs the policy and checks it.
+   *
+   * @throws IllegalArgumentException if a value is out of range
+   */
+  public CfHedging {
+    if (percentile <= 0 || percentile > 1) {
+      throw new IllegalArgumentException("Percentile must be within (0, 1].");
+    }
+    if (minDelay.isNegative() || maxDelay.compareTo(minDelay) < 0) {
+      throw new IllegalArgumentException("Delays must satisfy 0 <= minDelay <= maxDelay.");
+    }
+    if (budget <= 0 || budget > 1) {
+      throw new IllegalArgumentException("Budget must be within (0, 1].");
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package codes.thischwa.cf;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Enum CfPriority defines the priority classes of the requests, which are used by the request
+ * scheduler configured by {@link CfScheduling}. A waiting request of a higher class is sent before
+ * one of a lower class, unless the latter waits longer than the starvation threshold.
+ *
+ * <p>Without an explicit priority, writes are {@link #CRITICAL}, listings of whole zones or
+ * accounts are {@link #BULK} and all other reads are {@link #INTERACTIVE}. The priority of the
+ * calls made by an action can be set explicitly, e.g. for a nightly audit:
+ *
+ * <pre><code>
+ * List&lt;RecordEntity&gt; records = CfPriority.BULK.call(() -&gt; client.sldListAll(zone, "www"));
+ * </code></pre>
+ */
+public enum CfPriority {
+
+  /** Writes which someone is waiting for, e.g. the update of a dynamic DNS record. */
+  CRITICAL,
+
+  /** Reads which someone is waiting for, e.g. the lookup of a single record. */
+  INTERACTIVE,
+
+  /** Background work, e.g. audits, exports and bulk changes. */
+  BULK;
+
+  private static final ThreadLocal<CfPriority> CURRENT = new ThreadLocal<>();
+
+  /**
+   * An action calling the {@link CfDnsClient}.
+   *
+   * @param <T> the type of the result
+   */
+  @FunctionalInterface
+  public interface Action<T> {
+
+    /**
+     * Runs the action.
+     *
+     * @return the result
+     * @throws CloudflareApiException if a call to the API fails
+     */
+    T run() throws CloudflareApiException;
+  }
+
+  /**
+   * Runs an action whose requests, sent by the calling thread, have this priority.
+   *
+   * @param action the action
+   * @param <T> the type of the result
+   * @return the result of the action
+   * @throws CloudflareApiException if a call to the API fails
+   */
+  public <T> T call(Action<T> action) throws CloudflareApiException {
+    CfPriority previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return action.run();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  /** Returns the priority set by {@link #call} for the calling thread, if any. */
+  @Nullable
+  static CfPriority current() {
+    return CURRENT.get();
+  }
+}
@@ -0,0 +1,35 @@
+package codes.thischwa.cf;
+
+import codes.thischwa.cf.transport.ApacheAsyncTransport;
+import codes.thischwa.cf.transport.ApacheClassicTransport;
+import codes.thischwa.cf.transport.CfTransport;
+
+/**
+ * Enum CfProtocol defines the HTTP protocol versions which can be used to communicate with the
+ * Cloudflare API. The protocol is chosen when the client is constructed.
+ */
+public enum CfProtocol {
+
+  /**
+   * HTTP/1.1 over the classic, blocking transport. Concurrent requests each occupy their own
+   * connection of the connection pool.
+   */
+  HTTP_1_1,
+
+  /**
+   * HTTP/2 over the asynchronous transport. Concurrent requests are multiplexed as streams over one
+   * connection per host, which lowers the number of connections and TLS handshakes. For base URLs
+   * with the scheme 'http', h2c with prior knowledge is used.
+   */
+  HTTP_2;
+
+  /**
+   * Creates the default transport of the protocol: {@link ApacheClassicTransport} for HTTP/1.1,
+   * {@link ApacheAsyncTransport} for HTTP/2.
+   */
+  CfTransport createTransport(int maxConnections, CfTimeouts timeouts) {
+    return this == HTTP_2
+        ? new ApacheAsyncTransport(this, maxConnections, timeouts)
+        : new ApacheClassicTransport(maxConnections, timeouts);
+  }
+}
@@ -0,0 +1,26 @@
+package codes.thischwa.cf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event of a request waiting for a permit of the {@link RateLimiter}. It's
+ * only emitted if the request actually waited, the duration of the event is the wait.
+ */
+@Name(CfRateLimitEvent.NAME)
+@Label("Cloudflare Rate Limit Wait")
+@Category({"Cloudflare", "DNS Client"})
+@Description("A request waiting for a permit of the rate limiter.")
+@StackTrace(false)
+final class CfRateLimitEvent extends Event {
+
+  static final String NAME = "codes.thischwa.cf.RateLimitWait";
+
+  @Label("Request")
+  @Description("The kind of request, a constant of CfRequest.")
+  String request;
+}
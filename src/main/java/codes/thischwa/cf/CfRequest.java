@@ -26,6 +26,12 @@ public enum CfRequest {
    * be provided to construct the complete path.
    */
   RECORD_CREATE("/zones/%s/dns_records"),
+  /**
+   * Represents the API endpoint path for listing all DNS records within a specific DNS zone.
+   * The endpoint path includes a placeholder for the zone identifier, which needs to
+   * be provided to construct the complete path.
+   */
+  RECORD_LIST("/zones/%s/dns_records"),
   /**
    * Represents the API endpoint path for retrieving information about a DNS record within a specific
    * DNS zone by its name. The endpoint path includes placeholders for the zone identifier and
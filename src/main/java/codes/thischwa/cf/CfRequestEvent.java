@@ -0,0 +1,67 @@
+package codes.thischwa.cf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JDK Flight Recorder event of one call of the Cloudflare API, emitted by {@link
+ * CfBasicHttpClient}. The duration of the event is split into the time waiting to be admitted,
+ * the network round trip up to the response headers, and reading and mapping the body.
+ */
+@Name(CfRequestEvent.NAME)
+@Label("Cloudflare API Request")
+@Category({"Cloudflare", "DNS Client"})
+@Description("A call of the Cloudflare API.")
+@StackTrace(false)
+final class CfRequestEvent extends Event {
+
+  static final String NAME = "codes.thischwa.cf.ApiRequest";
+
+  @Label("Request")
+  @Description("The kind of request, a constant of CfRequest.")
+  String request;
+
+  @Label("Method")
+  String method;
+
+  @Label("Endpoint")
+  @Description("The path template of the endpoint, without ids.")
+  String endpoint;
+
+  @Label("Status")
+  @Description("The HTTP status code, 0 if no response was received.")
+  int status;
+
+  @Label("Success")
+  boolean success;
+
+  @Label("Bytes Out")
+  @DataAmount
+  long bytesOut;
+
+  @Label("Bytes In")
+  @DataAmount
+  long bytesIn;
+
+  @Label("Admission")
+  @Description(
+      "Waiting for the scheduler, the bulkhead, the concurrency limit and the rate limiter.")
+  @Timespan
+  long admissionDuration;
+
+  @Label("Network")
+  @Description("Sending the request until the response headers are received.")
+  @Timespan
+  long networkDuration;
+
+  @Label("Parse")
+  @Description("Reading the body and mapping the JSON.")
+  @Timespan
+  long parseDuration;
+}
@@ -0,0 +1,66 @@
+package codes.thischwa.cf;
+
+import java.time.Duration;
+
+/**
+ * Represents the settings which isolate the callers of a client from a degraded Cloudflare API.
+ *
+ * <p>Each {@link CfRequest} has its own circuit breaker. It opens after the given number of
+ * consecutive failures, i.e. transport errors, timeouts, status 429 or 5xx. While it is open, the
+ * requests of this kind fail immediately by a {@link CloudflareUnavailableException}. When the
+ * open duration has passed, a single probe request is let through (half-open): its success closes
+ * the circuit, its failure opens it again.
+ *
+ * <p>Reads (GET) and writes (all other methods) are separated by bulkheads, which limit the
+ * requests in flight of each kind. So slow reads can't occupy all connections needed by writes
+ * and vice versa. A request waiting longer than the given time for a free slot fails by a
+ * {@link CloudflareUnavailableException}.
+ *
+ * @param failureThreshold the number of consecutive failures opening a circuit, 0 disables the
+ *     circuit breakers
+ * @param openDuration the time a circuit stays open before a probe is let through
+ * @param maxConcurrentReads the maximum number of reads in flight, 0 for no limit
+ * @param maxConcurrentWrites the maximum number of writes in flight, 0 for no limit
+ * @param bulkheadWait the maximum time to wait for a free slot of a bulkhead
+ */
+public record CfResilience(
+    int failureThreshold,
+    Duration openDuration,
+    int maxConcurrentReads,
+    int maxConcurrentWrites,
+    Duration bulkheadWait) {
+
+  /**
+   * The default settings: a circuit opens after 5 consecutive failures for 30 seconds, 8 reads and
+   * 4 writes can be in flight, waiting up to 10 seconds for a free slot.
+   */
+  public static final CfResilience DEFAULT =
+      new CfResilience(5, Duration.ofSeconds(30), 8, 4, Duration.ofSeconds(10));
+
+  /** No circuit breakers and no bulkheads. */
+  public static final CfResilience DISABLED =
+      new CfResilience(0, Duration.ZERO, 0, 0, Duration.ZERO);
+
+  /**
+   * Constructs the settings and checks them.
+   *
+   * @throws IllegalArgumentException if a value is negative
+   */
+  public CfResilience {
+    if (failureThreshold < 0 || maxConcurrentReads < 0 || maxConcurrentWrites < 0
+        || openDuration.isNegative() || bulkheadWait.isNegative()) {
+      throw new IllegalArgumentException("Resilience settings must not be negative.");
+    }
+  }
+
+  /**
+   * Retrieves the number of connections needed by the bulkheads.
+   *
+   * @return the sum of the bulkhead sizes, or 0 if any of them is unlimited
+   */
+  int connectionsNeeded() {
+    return maxConcurrentReads == 0 || maxConcurrentWrites == 0
+        ? 0
+        : maxConcurrentReads + maxConcurrentWrites;
+  }
+}
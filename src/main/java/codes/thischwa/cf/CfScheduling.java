@@ -0,0 +1,49 @@
+package codes.thischwa.cf;
+
+import java.time.Duration;
+
+/**
+ * Represents the settings of the request scheduler, which decides which waiting request is sent
+ * next when the maximum number of concurrent requests is reached.
+ *
+ * <ul>
+ *   <li>The waiting requests are ordered by their {@link CfPriority}.
+ *   <li>Within a priority class, the zones (and the accounts of a {@link CfClientRegistry}) take
+ *       turns, so a bulk job on one zone can't starve the requests for other zones.
+ *   <li>A request waiting longer than the starvation threshold is sent next, regardless of its
+ *       class.
+ *   <li>A request waiting longer than the maximum wait fails with a {@link
+ *       CloudflareUnavailableException}.
+ * </ul>
+ *
+ * <p>The scheduler is the first stage of a request, so the limit should not exceed the bulkheads
+ * of {@link CfResilience}, otherwise the requests queue up there instead.
+ *
+ * @param maxConcurrentRequests the maximum number of requests sent at the same time
+ * @param starvationThreshold the wait after which a request is sent next regardless of its class
+ * @param maxWait the maximum time a request waits to be sent
+ */
+public record CfScheduling(
+    int maxConcurrentRequests, Duration starvationThreshold, Duration maxWait) {
+
+  /**
+   * The default settings: 8 concurrent requests, starvation after 2 seconds, waiting up to 30
+   * seconds.
+   */
+  public static final CfScheduling DEFAULT =
+      new CfScheduling(8, Duration.ofSeconds(2), Duration.ofSeconds(30));
+
+  /**
+   * Constructs the settings and checks them.
+   *
+   * @throws IllegalArgumentException if a value is out of range
+   */
+  public CfScheduling {
+    if (maxConcurrentRequests < 1) {
+      throw new IllegalArgumentException("Max concurrent requests must be positive.");
+    }
+    if (starvationThreshold.isNegative() || maxWait.isNegative()) {
+      throw new IllegalArgumentException("Durations must not be negative.");
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package codes.thischwa.cf;
+
+import java.time.Duration;
+
+/**
+ * Represents the timeouts of the HTTP communication with the Cloudflare API. Without them, a
+ * degraded API blocks the calling threads until the operating system gives up the connection.
+ *
+ * @param connect the maximum time to establish a connection
+ * @param response the maximum time to wait for the response after the request was sent
+ * @param socket the maximum time of inactivity while reading from or writing to a connection
+ */
+public record CfTimeouts(Duration connect, Duration response, Duration socket) {
+
+  /** The default timeouts: 10 seconds to connect, 30 seconds for the response and the socket. */
+  public static final CfTimeouts DEFAULT =
+      new CfTimeouts(Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(30));
+
+  /**
+   * Constructs the timeouts and checks them.
+   *
+   * @throws IllegalArgumentException if a timeout isn't positive
+   */
+  public CfTimeouts {
+    if (connect.isNegative() || connect.isZero()
+        || response.isNegative() || response.isZero()
+        || socket.isNegative() || socket.isZero()) {
+      throw new IllegalArgumentException("Timeouts must be positive.");
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package codes.thischwa.cf;
+
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The circuit breaker of one {@link CfRequest}. It opens after a number of consecutive failures
+ * and lets a single probe through after the open duration. A threshold of 0 disables it.
+ *
+ * <p>The breaker is guarded by its monitor, it's only held for the state change, never while a
+ * request is sent.
+ */
+@Slf4j
+final class CircuitBreaker {
+
+  /** The answer of {@link #tryAcquire}, passed back to {@link #onResult}. */
+  enum Permit {
+    /** The request must not be sent. */
+    DENIED,
+    /** The request may be sent. */
+    GRANTED,
+    /** The request may be sent as the probe of the half-open circuit. */
+    PROBE
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final long openNanos;
+  private final LongSupplier nanoClock;
+  private final CfClientMetrics metrics;
+
+  private CircuitState state = CircuitState.CLOSED;
+  private int failures;
+  private long openedAt;
+  private boolean probeInFlight;
+
+  CircuitBreaker(
+      String name,
+      int failureThreshold,
+      long openNanos,
+      LongSupplier nanoClock,
+      CfClientMetrics metrics) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openNanos;
+    this.nanoClock = nanoClock;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Checks if a request may be sent. A granted request must be finished by {@link #onResult}.
+   *
+   * @return {@link Permit#DENIED} if the request must not be sent, {@link Permit#PROBE} if it's
+   *     the probe of the half-open circuit, {@link Permit#GRANTED} otherwise
+   */
+  synchronized Permit tryAcquire() {
+    switch (state) {
+      case CLOSED:
+        return Permit.GRANTED;
+      case OPEN:
+        if (nanoClock.getAsLong() - openedAt < openNanos) {
+          return Permit.DENIED;
+        }
+        transition(CircuitState.HALF_OPEN);
+        probeInFlight = true;
+        return Permit.PROBE;
+      default:
+        if (probeInFlight) {
+          return Permit.DENIED;
+        }
+        probeInFlight = true;
+        return Permit.PROBE;
+    }
+  }
+
+  /**
+   * Finishes a granted request. Only the result of the probe decides about a half-open circuit, a
+   * request granted before the circuit opened doesn't.
+   *
+   * @param permit the permit of the request returned by {@link #tryAcquire}
+   * @param healthy {@code true} if the API answered properly, {@code false} if it failed, {@code
+   *     null} if the request was abandoned before it said anything about the API
+   */
+  synchronized void onResult(Permit permit, @Nullable Boolean healthy) {
+    boolean probe = permit == Permit.PROBE;
+    if (probe) {
+      probeInFlight = false;
+    }
+    if (healthy == null) {
+      return;
+    }
+    if (healthy) {
+      failures = 0;
+      if (probe) {
+        transition(CircuitState.CLOSED);
+      }
+    } else if (probe
+        || failureThreshold > 0
+            && state == CircuitState.CLOSED
+            && ++failures >= failureThreshold) {
+      openedAt = nanoClock.getAsLong();
+      transition(CircuitState.OPEN);
+    }
+  }
+
+  synchronized CircuitState getState() {
+    return state;
+  }
+
+  private void transition(CircuitState to) {
+    log.info("Circuit of {} changed from {} to {}.", name, state, to);
+    state = to;
+    failures = 0;
+    metrics.recordCircuitTransition(to);
+  }
+}
@@ -0,0 +1,14 @@
+package codes.thischwa.cf;
+
+/** Enum CircuitState defines the states of the circuit breaker of a {@link CfRequest}. */
+public enum CircuitState {
+
+  /** The requests are sent, failures are counted. */
+  CLOSED,
+
+  /** The requests fail immediately without being sent. */
+  OPEN,
+
+  /** A single probe request is sent to check if the API recovered. */
+  HALF_OPEN
+}
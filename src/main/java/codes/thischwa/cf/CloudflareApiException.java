@@ -1,21 +1,44 @@
 package codes.thischwa.cf;
 
+import codes.thischwa.cf.model.ResponseMessage;
 import java.io.Serial;
+import java.util.List;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Represents a custom exception for errors encountered while interacting with the Cloudflare API.
+ *
+ * <p>If the API answered, the exception carries the HTTP status code and the structured errors of
+ * the response, so callers can react on specific error codes without parsing the message.
  */
 public class CloudflareApiException extends Exception {
 
   @Serial private static final long serialVersionUID = 1L;
 
+  private final int statusCode;
+  private final List<ResponseMessage> errors;
+
   /**
    * Constructs a new CloudflareApiException with the specified detail message.
    *
    * @param message the detail message, which provides more information about the exception.
    */
   public CloudflareApiException(String message) {
+    this(message, 0, List.of());
+  }
+
+  /**
+   * Constructs a new CloudflareApiException with the specified detail message and the errors
+   * returned by the API.
+   *
+   * @param message the detail message, which provides more information about the exception.
+   * @param statusCode the HTTP status code of the response, 0 if unknown.
+   * @param errors the errors returned by the API.
+   */
+  public CloudflareApiException(String message, int statusCode, List<ResponseMessage> errors) {
     super(message);
+    this.statusCode = statusCode;
+    this.errors = List.copyOf(errors);
   }
 
   /**
@@ -26,6 +49,8 @@ public class CloudflareApiException extends Exception {
    */
   public CloudflareApiException(String message, Throwable cause) {
     super(message, cause);
+    this.statusCode = 0;
+    this.errors = List.of();
   }
 
   /**
@@ -36,5 +61,53 @@ public class CloudflareApiException extends Exception {
    */
   public CloudflareApiException(Throwable cause) {
     super(cause);
+    this.statusCode = 0;
+    this.errors = List.of();
+  }
+
+  /**
+   * Constructs a new CloudflareApiException without a stack trace. Used by the exceptions which
+   * signal expected conditions, so throwing them is cheap.
+   *
+   * @param message the detail message.
+   * @param cause the cause of this exception, if any.
+   */
+  protected CloudflareApiException(String message, @Nullable Throwable cause, boolean stackless) {
+    super(message, cause, true, !stackless);
+    this.statusCode = 0;
+    this.errors = List.of();
+  }
+
+  /**
+   * Retrieves the HTTP status code of the response.
+   *
+   * @return the HTTP status code, or 0 if the API didn't answer or the status is unknown
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * Retrieves the errors returned by the API.
+   *
+   * @return the errors, empty if there are none
+   */
+  public List<ResponseMessage> getErrors() {
+    return errors;
+  }
+
+  /**
+   * Checks if the API returned an error with the given code.
+   *
+   * @param code the code of the error
+   * @return {@code true} if one of the errors has the code
+   */
+  public boolean hasErrorCode(int code) {
+    for (ResponseMessage error : errors) {
+      if (error.code() == code) {
+        return true;
+      }
+    }
+    return false;
   }
 }
@@ -6,6 +6,9 @@ package codes.thischwa.cf;
  *
  * <p>It extends {@link CloudflareApiException} to provide specific errors related to situations
  * where Cloudflare responds with a "not found" operation.
+ *
+ * <p>A missing resource is an expected condition, therefore the exception is created without a
+ * stack trace.
  */
 public class CloudflareNotFoundException extends CloudflareApiException {
 
@@ -16,7 +19,7 @@ public class CloudflareNotFoundException extends CloudflareApiException {
    *                encountered during interaction with the Cloudflare API.
    */
   public CloudflareNotFoundException(String message) {
-    super(message);
+    super(message, null, true);
   }
 
   /**
@@ -27,7 +30,7 @@ public class CloudflareNotFoundException extends CloudflareApiException {
    * @param cause the cause of this exception, which is the underlying throwable that triggered this exception.
    */
   public CloudflareNotFoundException(String message, Throwable cause) {
-    super(message, cause);
+    super(message, cause, true);
   }
 
   /**
@@ -37,6 +40,6 @@ public class CloudflareNotFoundException extends CloudflareApiException {
    *              that triggered this exception.
    */
   public CloudflareNotFoundException(Throwable cause) {
-    super(cause);
+    super(cause.toString(), cause, true);
   }
 }
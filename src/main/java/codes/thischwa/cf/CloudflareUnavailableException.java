@@ -0,0 +1,20 @@
+package codes.thischwa.cf;
+
+/**
+ * This exception is thrown if a request isn't sent to the Cloudflare API, because its circuit
+ * breaker is open or its bulkhead is full. The request can be retried later.
+ *
+ * <p>It extends {@link CloudflareApiException}, so existing error handling stays valid. It is
+ * created without a stack trace, because it is thrown often while the API is degraded.
+ */
+public class CloudflareUnavailableException extends CloudflareApiException {
+
+  /**
+   * Constructs a new CloudflareUnavailableException with the specified detail message.
+   *
+   * @param message the detail message, which explains why the request wasn't sent.
+   */
+  public CloudflareUnavailableException(String message) {
+    super(message, null, true);
+  }
+}
@@ -0,0 +1,21 @@
+package codes.thischwa.cf;
+
+/**
+ * This exception is thrown if a record is rejected by the {@link RecordValidator} before it is
+ * sent to the Cloudflare API, e.g. an {@code A} record with a malformed IPv4 address.
+ *
+ * <p>It extends {@link CloudflareApiException}, so existing error handling stays valid. A rejected
+ * record is an expected condition in bulk jobs, therefore the exception is created without a stack
+ * trace.
+ */
+public class CloudflareValidationException extends CloudflareApiException {
+
+  /**
+   * Constructs a new CloudflareValidationException with the specified detail message.
+   *
+   * @param message the detail message, which names the record and the problem.
+   */
+  public CloudflareValidationException(String message) {
+    super(message, null, true);
+  }
+}
@@ -0,0 +1,212 @@
+package codes.thischwa.cf;
+
+import codes.thischwa.cf.transport.CfTransport;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sends the attempts of hedged reads according to a {@link CfHedging} policy. The attempts run on
+ * daemon threads of the hedger, the calling thread waits for the first response. An attempt which
+ * lost keeps running until its response arrives, which is closed then. The same applies to all
+ * attempts if the calling thread is interrupted while waiting.
+ */
+final class Hedger {
+
+  /** The maximum number of hedges which can be saved up, i.e. the size of a burst of hedges. */
+  private static final double MAX_CREDITS = 10;
+
+  private final CfHedging policy;
+  @Nullable private final RateLimiter rateLimiter;
+  private final CfClientMetrics metrics;
+  private final Map<CfRequest, LatencyTracker> latencies = new EnumMap<>(CfRequest.class);
+  private final ExecutorService executor;
+  private double credits;
+
+  Hedger(CfHedging policy, @Nullable RateLimiter rateLimiter, CfClientMetrics metrics) {
+    this.policy = policy;
+    this.rateLimiter = rateLimiter;
+    this.metrics = metrics;
+    for (CfRequest request : CfRequest.values()) {
+      latencies.put(request, new LatencyTracker());
+    }
+    this.executor =
+        Executors.newCachedThreadPool(
+            r -> {
+              Thread thread = new Thread(r, "cf-hedged-read");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Sends the attempt and, if it's slow, a hedge, and returns the first response. If one attempt
+   * fails, the other one is awaited.
+   */
+  CfTransport.Response execute(CfRequest request, Callable<CfTransport.Response> attempt)
+      throws Exception {
+    LatencyTracker tracker = latencies.get(request);
+    earn(policy.budget());
+    long start = System.nanoTime();
+    CompletableFuture<CfTransport.Response> primary = submit(attempt);
+    primary.thenRun(() -> tracker.record(System.nanoTime() - start));
+    try {
+      return primary.get(tracker.delayNanos(policy), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      // slow response, hedge it below
+    } catch (ExecutionException e) {
+      throw unwrap(e.getCause());
+    } catch (InterruptedException e) {
+      abandon(primary);
+      throw e;
+    }
+    if (!spend()) {
+      return await(primary);
+    }
+    metrics.recordHedge();
+    CompletableFuture<CfTransport.Response> hedge = submit(attempt);
+    CompletableFuture<CfTransport.Response> first = new CompletableFuture<>();
+    AtomicInteger failures = new AtomicInteger();
+    BiConsumer<CfTransport.Response, Throwable> race =
+        (response, error) -> {
+          if (error == null) {
+            if (!first.complete(response)) {
+              closeQuietly(response);
+            }
+          } else if (failures.incrementAndGet() == 2) {
+            first.completeExceptionally(error);
+          }
+        };
+    primary.whenComplete(race);
+    hedge.whenComplete(race);
+    CfTransport.Response response = await(first);
+    if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+      metrics.recordHedgeWin();
+    }
+    return response;
+  }
+
+  void close() {
+    executor.shutdownNow();
+  }
+
+  private CompletableFuture<CfTransport.Response> submit(
+      Callable<CfTransport.Response> attempt) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return attempt.call();
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  private synchronized void earn(double hedges) {
+    credits = Math.min(MAX_CREDITS, credits + hedges);
+  }
+
+  /** Takes a hedge from the budget and a permit from the rate limiter, if both are available. */
+  private boolean spend() {
+    synchronized (this) {
+      if (credits < 1) {
+        return false;
+      }
+      credits -= 1;
+    }
+    if (rateLimiter != null && !rateLimiter.tryAcquire()) {
+      earn(1);
+      return false;
+    }
+    return true;
+  }
+
+  private static void closeQuietly(CfTransport.Response response) {
+    try {
+      response.close();
+    } catch (IOException e) {
+      // the response was dropped anyway
+    }
+  }
+
+  /** Waits for a response. If the waiting thread is interrupted, the response is closed later. */
+  private static CfTransport.Response await(CompletableFuture<CfTransport.Response> future)
+      throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw unwrap(e.getCause());
+    } catch (InterruptedException e) {
+      abandon(future);
+      throw e;
+    }
+  }
+
+  /** Closes the response of an attempt nobody waits for anymore, when it arrives. */
+  private static void abandon(CompletableFuture<CfTransport.Response> future) {
+    future.whenComplete(
+        (response, error) -> {
+          if (response != null) {
+            closeQuietly(response);
+          }
+        });
+  }
+
+  private static Exception unwrap(Throwable cause) {
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause instanceof Exception ? (Exception) cause : new ExecutionException(cause);
+  }
+
+  /**
+   * The latencies of the most recent requests of one kind. The percentile is recomputed after a
+   * number of new samples only, so the sorting cost is spread over many requests.
+   */
+  static final class LatencyTracker {
+    private static final int SIZE = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final long[] samples = new long[SIZE];
+    private int count;
+    private int next;
+    private int sinceComputed = RECOMPUTE_INTERVAL;
+    private long percentileNanos;
+
+    synchronized void record(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % SIZE;
+      count = Math.min(SIZE, count + 1);
+      sinceComputed++;
+    }
+
+    synchronized long delayNanos(CfHedging policy) {
+      long max = policy.maxDelay().toNanos();
+      if (count < MIN_SAMPLES) {
+        return max;
+      }
+      if (sinceComputed >= RECOMPUTE_INTERVAL) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(policy.percentile() * count) - 1;
+        percentileNanos = sorted[Math.max(0, index)];
+        sinceComputed = 0;
+      }
+      return Math.max(policy.minDelay().toNanos(), Math.min(max, percentileNanos));
+    }
+  }
+}
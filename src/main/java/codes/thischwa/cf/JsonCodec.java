@@ -0,0 +1,97 @@
+package codes.thischwa.cf;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordMultipleResponse;
+import codes.thischwa.cf.model.RecordSingleResponse;
+import codes.thischwa.cf.model.RecordViewMultipleResponse;
+import codes.thischwa.cf.model.ZoneMultipleResponse;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handles the JSON (de)serialization of the request payloads and API responses.
+ *
+ * <p>The deserializers and serializers are resolved once per type and kept as {@link ObjectReader}
+ * and {@link ObjectWriter}, which are immutable and thread-safe. The readers of the known response
+ * types are resolved eagerly. By default, all clients share one instance backed by the {@link
+ * ObjectMapper} of {@link #createObjectMapper()}.
+ */
+final class JsonCodec {
+
+  private static final JsonCodec SHARED = new JsonCodec(createObjectMapper());
+
+  private final ObjectMapper objectMapper;
+  private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  JsonCodec(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+    for (Class<?> responseType :
+        new Class<?>[] {
+          ZoneMultipleResponse.class,
+          RecordMultipleResponse.class,
+          RecordSingleResponse.class,
+          RecordViewMultipleResponse.class
+        }) {
+      readerFor(responseType);
+    }
+    writerFor(RecordEntity.class);
+  }
+
+  /**
+   * Creates a new {@link ObjectMapper} configured for the Cloudflare API: snake case property
+   * names, support of the java time types, null values are omitted and unknown properties are
+   * ignored.
+   */
+  static ObjectMapper createObjectMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.registerModule(new JavaTimeModule());
+    mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+    return mapper;
+  }
+
+  /** Returns the instance shared by all clients which don't provide their own mapper. */
+  static JsonCodec shared() {
+    return SHARED;
+  }
+
+  ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+
+  ObjectReader readerFor(Class<?> type) {
+    return readers.computeIfAbsent(type, objectMapper::readerFor);
+  }
+
+  ObjectWriter writerFor(Class<?> type) {
+    return writers.computeIfAbsent(type, objectMapper::writerFor);
+  }
+
+  <T> T read(byte[] json, Class<T> type) throws IOException {
+    return readerFor(type).readValue(json);
+  }
+
+  <T> T read(InputStream json, Class<T> type) throws IOException {
+    return readerFor(type).readValue(json);
+  }
+
+  /**
+   * Serializes the value directly to UTF-8 encoded bytes. Jackson builds them in its recycled
+   * buffers, so no intermediate {@code String} is created.
+   */
+  byte[] write(Object value) throws JsonProcessingException {
+    return writerFor(value.getClass()).writeValueAsBytes(value);
+  }
+}
@@ -0,0 +1,87 @@
+package codes.thischwa.cf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket limiting the rate of the requests sent to the API. The bucket holds up to {@code
+ * capacity} permits and is refilled continuously at {@code permitsPerSecond}. A caller which finds
+ * the bucket empty reserves the next permit and waits until it is due, so concurrent callers are
+ * served in the order of their reservations.
+ */
+final class RateLimiter {
+
+  /**
+   * The global rate limit of the Cloudflare API: 1200 requests within 5 minutes per user.
+   */
+  static final int CLOUDFLARE_CAPACITY = 1200;
+
+  /** The refill rate matching {@link #CLOUDFLARE_CAPACITY}. */
+  static final double CLOUDFLARE_PERMITS_PER_SECOND = 1200 / 300.0;
+
+  private final double capacity;
+  private final double permitsPerNano;
+  private final LongSupplier nanoClock;
+  private double available;
+  private long lastRefill;
+
+  RateLimiter(int capacity, double permitsPerSecond) {
+    this(capacity, permitsPerSecond, System::nanoTime);
+  }
+
+  RateLimiter(int capacity, double permitsPerSecond, LongSupplier nanoClock) {
+    if (capacity < 1 || permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("Capacity and rate must be positive.");
+    }
+    this.capacity = capacity;
+    this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.nanoClock = nanoClock;
+    this.available = capacity;
+    this.lastRefill = nanoClock.getAsLong();
+  }
+
+  /**
+   * Takes a permit, waiting until it is available.
+   *
+   * @return the time waited in nanoseconds
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  long acquire() throws InterruptedException {
+    long waitNanos = reserve();
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+    return waitNanos;
+  }
+
+  /**
+   * Reserves a permit without waiting.
+   *
+   * @return the time in nanoseconds until the reserved permit is due
+   */
+  synchronized long reserve() {
+    refill();
+    available -= 1;
+    return available >= 0 ? 0 : (long) Math.ceil(-available / permitsPerNano);
+  }
+
+  /**
+   * Takes a permit if it is available immediately.
+   *
+   * @return {@code true} if the permit was taken
+   */
+  synchronized boolean tryAcquire() {
+    refill();
+    if (available < 1) {
+      return false;
+    }
+    available -= 1;
+    return true;
+  }
+
+  private void refill() {
+    long now = nanoClock.getAsLong();
+    available = Math.min(capacity, available + (now - lastRefill) * permitsPerNano);
+    lastRefill = now;
+  }
+}
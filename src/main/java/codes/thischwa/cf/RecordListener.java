@@ -0,0 +1,31 @@
+package codes.thischwa.cf;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.ZoneEntity;
+
+/**
+ * Receives the records written by a {@link CfDnsClient}, so caches of records can be kept up to
+ * date without listing the zones again. Listeners are registered by {@link
+ * CfDnsClient.Builder#recordListener(RecordListener)}.
+ *
+ * <p>The methods are called by the thread which sent the write, after the API confirmed it. They
+ * must be thread-safe and fast; an exception thrown by a listener is logged and ignored.
+ */
+public interface RecordListener {
+
+  /**
+   * Called after a record was created or updated.
+   *
+   * @param zone the zone of the record as passed to the client, it may only have its id
+   * @param rec the record as returned by the API
+   */
+  void recordChanged(ZoneEntity zone, RecordEntity rec);
+
+  /**
+   * Called after a record was deleted.
+   *
+   * @param zone the zone of the record as passed to the client, it may only have its id
+   * @param recordId the id of the deleted record
+   */
+  void recordDeleted(ZoneEntity zone, String recordId);
+}
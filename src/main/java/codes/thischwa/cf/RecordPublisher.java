@@ -0,0 +1,178 @@
+package codes.thischwa.cf;
+
+import codes.thischwa.cf.model.PagingRequest;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordMultipleResponse;
+import codes.thischwa.cf.model.ResultInfo;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link Flow.Publisher} of the records of a listing, which fetches the pages of the listing on
+ * demand. A page is requested from the API only when the subscriber has requested more records
+ * than are buffered, so at most one page is held per subscription.
+ *
+ * <p>The publisher is cold: each subscription starts with the first page. The pages are fetched
+ * and the records are emitted on daemon threads of the publisher, never on the thread calling
+ * {@link Flow.Subscription#request(long)}. An error of the API terminates the subscription by
+ * {@link Flow.Subscriber#onError(Throwable)}.
+ *
+ * <p>Instances are created by {@link CfDnsClient#recordPublisher} and {@link
+ * CfDnsClient#sldPublisher}.
+ */
+@Slf4j
+public final class RecordPublisher implements Flow.Publisher<RecordEntity> {
+
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread thread = new Thread(r, "cf-record-publisher");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Fetches one page of a listing. */
+  @FunctionalInterface
+  interface PageSource {
+    RecordMultipleResponse fetch(PagingRequest pagingRequest) throws CloudflareApiException;
+  }
+
+  private final PageSource source;
+  private final int perPage;
+
+  RecordPublisher(PageSource source, int perPage) {
+    if (perPage < 1) {
+      throw new IllegalArgumentException("The page size must be positive.");
+    }
+    this.source = source;
+    this.perPage = perPage;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super RecordEntity> subscriber) {
+    PageSubscription subscription = new PageSubscription(subscriber);
+    EXECUTOR.execute(subscription::start);
+  }
+
+  /**
+   * The state of one subscriber. The fields besides the atomics are only accessed by the drain
+   * loop, which runs on one thread at a time guarded by {@link #wip}.
+   */
+  private final class PageSubscription implements Flow.Subscription {
+    private final Flow.Subscriber<? super RecordEntity> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger(1);
+    private final Queue<RecordEntity> buffer = new ArrayDeque<>();
+    private volatile boolean cancelled;
+    @Nullable private volatile Throwable invalidRequest;
+    private int nextPage = 1;
+    private boolean lastPage;
+    private boolean terminated;
+
+    PageSubscription(Flow.Subscriber<? super RecordEntity> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("The demand must be positive, got " + n);
+      } else {
+        demand.accumulateAndGet(
+            n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+
+    /** Signals the subscription, the requests made meanwhile are served by the drain loop. */
+    private void start() {
+      subscriber.onSubscribe(this);
+      drain();
+    }
+
+    private void schedule() {
+      if (wip.getAndIncrement() == 0) {
+        EXECUTOR.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      int missed = 1;
+      do {
+        emit();
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void emit() {
+      while (!terminated) {
+        if (cancelled) {
+          buffer.clear();
+          return;
+        }
+        Throwable invalid = invalidRequest;
+        if (invalid != null) {
+          terminate(invalid);
+          return;
+        }
+        if (buffer.isEmpty()) {
+          if (lastPage) {
+            terminated = true;
+            subscriber.onComplete();
+            return;
+          }
+          if (demand.get() == 0) {
+            return;
+          }
+          try {
+            fetch();
+          } catch (CloudflareApiException | RuntimeException e) {
+            terminate(e);
+            return;
+          }
+          continue;
+        }
+        if (demand.get() == 0) {
+          return;
+        }
+        demand.decrementAndGet();
+        subscriber.onNext(buffer.poll());
+      }
+    }
+
+    private void fetch() throws CloudflareApiException {
+      RecordMultipleResponse response = source.fetch(PagingRequest.of(nextPage, perPage));
+      List<RecordEntity> records = response.getResult();
+      ResultInfo info = response.getResultInfo();
+      if (records != null) {
+        buffer.addAll(records);
+      }
+      log.trace("Fetched page {} with {} records.", nextPage, buffer.size());
+      lastPage =
+          records == null
+              || records.size() < perPage
+              || info == null
+              || nextPage >= info.getTotalPages();
+      nextPage++;
+    }
+
+    private void terminate(Throwable error) {
+      terminated = true;
+      buffer.clear();
+      subscriber.onError(error);
+    }
+  }
+}
@@ -0,0 +1,519 @@
+package codes.thischwa.cf;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import java.util.Arrays;
+import java.util.Locale;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Validates and normalizes a {@link RecordEntity} according to its {@link RecordType} before it is
+ * sent to the Cloudflare API, so a malformed record fails locally instead of wasting a request and
+ * its rate-limit budget. The {@link CfDnsClient} applies it to {@link CfDnsClient#recordCreate} and
+ * {@link CfDnsClient#recordUpdate}, unless disabled by {@link
+ * CfDnsClient.Builder#recordValidation(boolean)}.
+ *
+ * <p>The checks per type:
+ *
+ * <ul>
+ *   <li>{@code A}: a dotted-quad IPv4 address without leading zeros.
+ *   <li>{@code AAAA}: an IPv6 address, normalized to lowercase.
+ *   <li>{@code CNAME}, {@code NS}, {@code PTR}: a host name, normalized to lowercase without
+ *       trailing dot. A CNAME must not be at the apex of the zone.
+ *   <li>{@code MX}: a host name and a priority.
+ *   <li>{@code TXT}: quoted strings of up to 255 characters. Unquoted content is quoted, and split
+ *       into several strings if it's longer.
+ *   <li>{@code SRV}: {@code [priority] weight port target} and a name starting with {@code _}.
+ *   <li>{@code CAA}: {@code flags tag value}, an unquoted value is quoted.
+ *   <li>{@code TLSA}, {@code SMIMEA}, {@code SSHFP}, {@code DS}: numeric fields followed by hex
+ *       data, normalized to lowercase.
+ *   <li>All other types: content without control characters.
+ * </ul>
+ *
+ * <p>Besides, the name must be a host name, optionally with a wildcard label, and the TTL must be
+ * 1 (automatic) or between 30 and 86400 seconds. Records of unknown types are only checked for
+ * their name and TTL.
+ *
+ * <p>The validation doesn't use regular expressions and allocates only if the record is changed by
+ * the normalization.
+ */
+public final class RecordValidator {
+
+  private static final int MAX_NAME_LENGTH = 253;
+  private static final int MAX_LABEL_LENGTH = 63;
+  private static final int MAX_TXT_STRING_LENGTH = 255;
+  private static final int MAX_TXT_LENGTH = 2048;
+
+  private RecordValidator() {}
+
+  /**
+   * Validates a record and normalizes its name and content in place.
+   *
+   * @param zoneName the name of the zone of the record, or {@code null} if unknown, which skips the
+   *     checks needing it
+   * @param rec the record
+   * @throws CloudflareValidationException if the record is malformed
+   */
+  public static void validate(@Nullable String zoneName, RecordEntity rec)
+      throws CloudflareValidationException {
+    String name = rec.getName();
+    if (name == null || !(name.equals("@") || isHostname(name, 0, name.length(), true))) {
+      throw invalid(rec, "the name isn't a valid host name");
+    }
+    Integer ttl = rec.getTtl();
+    if (ttl != null && ttl != 1 && (ttl < 30 || ttl > 86400)) {
+      throw invalid(rec, "the TTL must be 1 (automatic) or between 30 and 86400");
+    }
+    String normalizedName = lowerName(name);
+    if (normalizedName != name) {
+      rec.setName(normalizedName);
+    }
+    RecordType type = rec.getRecordType();
+    if (type == null) {
+      return;
+    }
+    String content = rec.getContent();
+    if (content == null || content.isBlank()) {
+      throw invalid(rec, "the content is empty");
+    }
+    String normalized = normalizeContent(zoneName, rec, type, content.trim());
+    if (!normalized.equals(content)) {
+      rec.setContent(normalized);
+    }
+  }
+
+  /**
+   * Parses an IPv4 or IPv6 address literal without any name lookup. Only the forms valid as the
+   * content of an A or AAAA record are accepted, e.g. neither {@code 1.2.3} nor {@code 999.1.1.1}.
+   *
+   * @param content the literal
+   * @return the 4 or 16 bytes of the address, or {@code null} if the content isn't an address
+   *     literal
+   */
+  @Nullable
+  public static byte[] parseAddress(String content) {
+    int length = content.length();
+    if (isIpv4(content, 0, length)) {
+      byte[] address = new byte[4];
+      writeIpv4(content, 0, address, 0);
+      return address;
+    }
+    if (!isIpv6(content)) {
+      return null;
+    }
+    byte[] address = new byte[16];
+    int gap = -1;
+    int pos = 0;
+    int i = 0;
+    while (i < length) {
+      if (content.startsWith("::", i)) {
+        gap = pos;
+        i += 2;
+        continue;
+      }
+      if (content.charAt(i) == ':') {
+        i++;
+        continue;
+      }
+      int end = i;
+      while (end < length && isHex(content.charAt(end))) {
+        end++;
+      }
+      if (end < length && content.charAt(end) == '.') {
+        writeIpv4(content, i, address, pos);
+        pos += 4;
+        break;
+      }
+      int group = Integer.parseInt(content, i, end, 16);
+      address[pos++] = (byte) (group >> 8);
+      address[pos++] = (byte) group;
+      i = end;
+    }
+    if (gap >= 0) {
+      // move the groups after '::' to the end, the gap is filled with zeros
+      int tail = pos - gap;
+      System.arraycopy(address, gap, address, address.length - tail, tail);
+      Arrays.fill(address, gap, address.length - tail, (byte) 0);
+    }
+    return address;
+  }
+
+  private static String normalizeContent(
+      @Nullable String zoneName, RecordEntity rec, RecordType type, String content)
+      throws CloudflareValidationException {
+    switch (type) {
+      case A:
+        if (!isIpv4(content, 0, content.length())) {
+          throw invalid(rec, "the content isn't an IPv4 address");
+        }
+        return content;
+      case AAAA:
+        if (!isIpv6(content)) {
+          throw invalid(rec, "the content isn't an IPv6 address");
+        }
+        return content.toLowerCase(Locale.ROOT);
+      case CNAME:
+        if (zoneName != null
+            && (rec.getName().equals("@") || rec.getName().equals(lowerName(zoneName)))) {
+          throw invalid(rec, "a CNAME must not be at the apex of the zone");
+        }
+        return hostname(rec, content);
+      case NS:
+      case PTR:
+        return hostname(rec, content);
+      case MX:
+        checkPriority(rec, true);
+        return hostname(rec, content);
+      case TXT:
+        return txt(rec, content);
+      case SRV:
+        return srv(rec, content);
+      case CAA:
+        return caa(rec, content);
+      case TLSA:
+      case SMIMEA:
+        return hexRecord(rec, content, 3, 255);
+      case SSHFP:
+        return hexRecord(rec, content, 2, 255);
+      case DS:
+        return hexRecord(rec, content, 3, 65535);
+      default:
+        for (int i = 0; i < content.length(); i++) {
+          if (Character.isISOControl(content.charAt(i))) {
+            throw invalid(rec, "the content contains control characters");
+          }
+        }
+        return content;
+    }
+  }
+
+  private static void checkPriority(RecordEntity rec, boolean required)
+      throws CloudflareValidationException {
+    Integer priority = rec.getPriority();
+    if (priority == null ? required : priority < 0 || priority > 65535) {
+      throw invalid(rec, "the priority must be between 0 and 65535");
+    }
+  }
+
+  private static String hostname(RecordEntity rec, String content)
+      throws CloudflareValidationException {
+    if (!isHostname(content, 0, content.length(), false)) {
+      throw invalid(rec, "the content isn't a valid host name");
+    }
+    return lowerName(content);
+  }
+
+  private static String txt(RecordEntity rec, String content)
+      throws CloudflareValidationException {
+    String quoted = content;
+    if (content.charAt(0) != '"') {
+      quoted = quote(content);
+    } else {
+      int i = 0;
+      int length = content.length();
+      while (i < length) {
+        if (content.charAt(i) != '"') {
+          throw invalid(rec, "the content must consist of quoted strings");
+        }
+        int start = ++i;
+        while (i < length && content.charAt(i) != '"') {
+          i += content.charAt(i) == '\\' ? 2 : 1;
+        }
+        if (i >= length) {
+          throw invalid(rec, "a quoted string isn't terminated");
+        }
+        if (i - start > MAX_TXT_STRING_LENGTH) {
+          throw invalid(rec, "a quoted string is longer than 255 characters");
+        }
+        i = skipSpaces(content, i + 1);
+      }
+    }
+    if (quoted.length() > MAX_TXT_LENGTH) {
+      throw invalid(rec, "the content is longer than 2048 characters");
+    }
+    return quoted;
+  }
+
+  /** Quotes a text, split into strings of up to 255 characters. */
+  private static String quote(String text) {
+    StringBuilder sb = new StringBuilder(text.length() + 8);
+    for (int start = 0; start < text.length(); start += MAX_TXT_STRING_LENGTH) {
+      if (start > 0) {
+        sb.append(' ');
+      }
+      sb.append('"');
+      int end = Math.min(start + MAX_TXT_STRING_LENGTH, text.length());
+      for (int i = start; i < end; i++) {
+        char c = text.charAt(i);
+        if (c == '"' || c == '\\') {
+          sb.append('\\');
+        }
+        sb.append(c);
+      }
+      sb.append('"');
+    }
+    return sb.toString();
+  }
+
+  private static String srv(RecordEntity rec, String content)
+      throws CloudflareValidationException {
+    if (!rec.getName().startsWith("_")) {
+      throw invalid(rec, "the name must start with the service, e.g. _sip._tcp");
+    }
+    checkPriority(rec, false);
+    int numbers = 0;
+    int pos = 0;
+    while (true) {
+      int end = tokenEnd(content, pos);
+      if (end == content.length()) {
+        if (numbers < 2 || numbers > 3) {
+          throw invalid(rec, "the content must be [priority] weight port target");
+        }
+        if (!(end - pos == 1 && content.charAt(pos) == '.')
+            && !isHostname(content, pos, end, false)) {
+          throw invalid(rec, "the target isn't a valid host name");
+        }
+        String target = content.substring(pos);
+        String normalized = lowerName(target);
+        return normalized == target ? content : content.substring(0, pos) + normalized;
+      }
+      if (parseNumber(content, pos, end) > 65535) {
+        throw invalid(rec, "the content must be [priority] weight port target");
+      }
+      numbers++;
+      pos = skipSpaces(content, end);
+    }
+  }
+
+  private static String caa(RecordEntity rec, String content)
+      throws CloudflareValidationException {
+    int end = tokenEnd(content, 0);
+    if (parseNumber(content, 0, end) > 255) {
+      throw invalid(rec, "the flags must be between 0 and 255");
+    }
+    int tagStart = skipSpaces(content, end);
+    int tagEnd = tokenEnd(content, tagStart);
+    if (tagEnd == tagStart || tagEnd == content.length()) {
+      throw invalid(rec, "the content must be flags tag value");
+    }
+    for (int i = tagStart; i < tagEnd; i++) {
+      if (!isAsciiLetterOrDigit(content.charAt(i))) {
+        throw invalid(rec, "the tag must be alphanumeric");
+      }
+    }
+    int valueStart = skipSpaces(content, tagEnd);
+    if (content.charAt(valueStart) != '"') {
+      return content.substring(0, valueStart) + quote(content.substring(valueStart));
+    }
+    if (content.length() - valueStart < 2 || content.charAt(content.length() - 1) != '"') {
+      throw invalid(rec, "the value isn't terminated");
+    }
+    return content;
+  }
+
+  /** Validates numeric fields followed by hex data, and lowercases the hex data. */
+  private static String hexRecord(RecordEntity rec, String content, int numbers, int max)
+      throws CloudflareValidationException {
+    int pos = 0;
+    for (int i = 0; i < numbers; i++) {
+      int end = tokenEnd(content, pos);
+      if (end == content.length() || parseNumber(content, pos, end) > (i == 0 ? max : 255)) {
+        throw invalid(rec, "the content must be " + numbers + " numbers followed by hex data");
+      }
+      pos = skipSpaces(content, end);
+    }
+    int digits = 0;
+    for (int i = pos; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (isHex(c)) {
+        digits++;
+      } else if (c != ' ') {
+        throw invalid(rec, "the data isn't hex encoded");
+      }
+    }
+    if (digits == 0 || digits % 2 != 0) {
+      throw invalid(rec, "the data isn't hex encoded");
+    }
+    return content.toLowerCase(Locale.ROOT);
+  }
+
+  /** Parses an unsigned number, returns {@link Integer#MAX_VALUE} if it isn't one. */
+  private static int parseNumber(String s, int from, int to) {
+    if (from == to || to - from > 9) {
+      return Integer.MAX_VALUE;
+    }
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        return Integer.MAX_VALUE;
+      }
+      value = value * 10 + c - '0';
+    }
+    return value;
+  }
+
+  private static int tokenEnd(String s, int from) {
+    int i = from;
+    while (i < s.length() && s.charAt(i) != ' ' && s.charAt(i) != '\t') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipSpaces(String s, int from) {
+    int i = from;
+    while (i < s.length() && (s.charAt(i) == ' ' || s.charAt(i) == '\t')) {
+      i++;
+    }
+    return i;
+  }
+
+  static boolean isIpv4(String s, int from, int to) {
+    int dots = 0;
+    int value = 0;
+    int digits = 0;
+    for (int i = from; i < to; i++) {
+      char c = s.charAt(i);
+      if (c == '.') {
+        if (digits == 0 || ++dots > 3) {
+          return false;
+        }
+        value = 0;
+        digits = 0;
+      } else if (c >= '0' && c <= '9') {
+        if (digits > 0 && value == 0) {
+          return false;
+        }
+        value = value * 10 + c - '0';
+        if (++digits > 3 || value > 255) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+    }
+    return dots == 3 && digits > 0;
+  }
+
+  static boolean isIpv6(String s) {
+    int length = s.length();
+    if (length < 2 || length > 45) {
+      return false;
+    }
+    int groups = 0;
+    boolean compressed = false;
+    int i = 0;
+    if (s.startsWith("::")) {
+      compressed = true;
+      i = 2;
+    } else if (s.charAt(0) == ':') {
+      return false;
+    }
+    while (i < length) {
+      int start = i;
+      while (i < length && isHex(s.charAt(i))) {
+        i++;
+      }
+      if (i < length && s.charAt(i) == '.') {
+        if (!isIpv4(s, start, length)) {
+          return false;
+        }
+        groups += 2;
+        break;
+      }
+      if (i == start || i - start > 4) {
+        return false;
+      }
+      groups++;
+      if (i == length) {
+        break;
+      }
+      if (s.charAt(i) != ':' || ++i == length) {
+        return false;
+      }
+      if (s.charAt(i) == ':') {
+        if (compressed) {
+          return false;
+        }
+        compressed = true;
+        i++;
+      }
+    }
+    return compressed ? groups < 8 : groups == 8;
+  }
+
+  /** Writes the 4 bytes of a valid dotted-quad IPv4 address starting at {@code from}. */
+  private static void writeIpv4(String s, int from, byte[] address, int offset) {
+    int value = 0;
+    int pos = offset;
+    for (int i = from; i <= s.length(); i++) {
+      if (i == s.length() || s.charAt(i) == '.') {
+        address[pos++] = (byte) value;
+        value = 0;
+      } else {
+        value = value * 10 + s.charAt(i) - '0';
+      }
+    }
+  }
+
+  /**
+   * Checks a host name: labels of 1 to 63 letters, digits, hyphens and underscores, not starting
+   * or ending with a hyphen, up to 253 characters and an optional trailing dot.
+   */
+  static boolean isHostname(String s, int from, int to, boolean wildcard) {
+    int end = to > from && s.charAt(to - 1) == '.' ? to - 1 : to;
+    if (end == from || end - from > MAX_NAME_LENGTH) {
+      return false;
+    }
+    int labelStart = from;
+    for (int i = from; i <= end; i++) {
+      if (i == end || s.charAt(i) == '.') {
+        int length = i - labelStart;
+        if (length < 1
+            || length > MAX_LABEL_LENGTH
+            || s.charAt(labelStart) == '-'
+            || s.charAt(i - 1) == '-') {
+          return false;
+        }
+        labelStart = i + 1;
+      } else {
+        char c = s.charAt(i);
+        boolean wildcardLabel =
+            wildcard && c == '*' && i == from && (i + 1 == end || s.charAt(i + 1) == '.');
+        if (!wildcardLabel && !isAsciiLetterOrDigit(c) && c != '-' && c != '_') {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Lowercases a host name and removes its trailing dot, returns the instance if unchanged. */
+  private static String lowerName(String name) {
+    boolean trailingDot = name.length() > 1 && name.charAt(name.length() - 1) == '.';
+    boolean upper = false;
+    for (int i = 0; i < name.length() && !upper; i++) {
+      char c = name.charAt(i);
+      upper = c >= 'A' && c <= 'Z';
+    }
+    if (!trailingDot && !upper) {
+      return name;
+    }
+    String stripped = trailingDot ? name.substring(0, name.length() - 1) : name;
+    return upper ? stripped.toLowerCase(Locale.ROOT) : stripped;
+  }
+
+  private static boolean isAsciiLetterOrDigit(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+  }
+
+  private static boolean isHex(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  private static CloudflareValidationException invalid(RecordEntity rec, String problem) {
+    return new CloudflareValidationException(
+        "Invalid " + rec.getType() + " record " + rec.getName() + ": " + problem + ".");
+  }
+}
@@ -0,0 +1,172 @@
+package codes.thischwa.cf;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Schedules the requests according to {@link CfScheduling}: at most a number of requests are sent
+ * at the same time, the waiting ones are granted by priority class, round-robin between their
+ * flows within a class, and by age if one starves. A flow is e.g. a zone of an account.
+ *
+ * <p>A scheduler can be shared by the clients of a {@link CfClientRegistry}. Each waiting thread
+ * waits on its own condition, so a release wakes exactly the granted thread.
+ */
+final class RequestScheduler {
+
+  private final int capacity;
+  private final long starvationNanos;
+  private final long maxWaitNanos;
+  private final LongSupplier nanoClock;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<CfPriority, LinkedHashMap<Object, ArrayDeque<Waiter>>> queues =
+      new EnumMap<>(CfPriority.class);
+  private int inFlight;
+  private int waiting;
+
+  RequestScheduler(CfScheduling scheduling, LongSupplier nanoClock) {
+    this.capacity = scheduling.maxConcurrentRequests();
+    this.starvationNanos = scheduling.starvationThreshold().toNanos();
+    this.maxWaitNanos = scheduling.maxWait().toNanos();
+    this.nanoClock = nanoClock;
+    for (CfPriority priority : CfPriority.values()) {
+      queues.put(priority, new LinkedHashMap<>());
+    }
+  }
+
+  /**
+   * Waits until the request may be sent. A granted request must be finished by {@link #release()}.
+   *
+   * @param priority the priority class of the request
+   * @param flow the flow of the request, e.g. its account and zone
+   * @return {@code true} if the request may be sent, {@code false} if it waited too long
+   */
+  boolean acquire(CfPriority priority, Object flow) throws InterruptedException {
+    lock.lock();
+    try {
+      if (inFlight < capacity && waiting == 0) {
+        inFlight++;
+        return true;
+      }
+      Waiter waiter = new Waiter(priority, flow, nanoClock.getAsLong(), lock.newCondition());
+      queues.get(priority).computeIfAbsent(flow, f -> new ArrayDeque<>()).add(waiter);
+      waiting++;
+      long remaining = maxWaitNanos;
+      try {
+        while (!waiter.granted) {
+          if (remaining <= 0) {
+            remove(waiter);
+            return false;
+          }
+          remaining = waiter.condition.awaitNanos(remaining);
+        }
+      } catch (InterruptedException e) {
+        if (waiter.granted) {
+          release();
+        } else {
+          remove(waiter);
+        }
+        throw e;
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Finishes a granted request and grants the next waiting ones. */
+  void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      while (inFlight < capacity && waiting > 0) {
+        Waiter next = next();
+        next.granted = true;
+        inFlight++;
+        next.condition.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int getWaitingCount() {
+    lock.lock();
+    try {
+      return waiting;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Takes the next waiter, there must be one. */
+  private Waiter next() {
+    CfPriority chosen = null;
+    long now = nanoClock.getAsLong();
+    for (CfPriority priority : CfPriority.values()) {
+      Waiter oldest = oldest(queues.get(priority));
+      if (oldest != null && now - oldest.enqueuedAt >= starvationNanos) {
+        chosen = priority;
+        break;
+      }
+      if (oldest != null && chosen == null) {
+        chosen = priority;
+      }
+    }
+    LinkedHashMap<Object, ArrayDeque<Waiter>> flows = queues.get(chosen);
+    Iterator<Map.Entry<Object, ArrayDeque<Waiter>>> it = flows.entrySet().iterator();
+    Map.Entry<Object, ArrayDeque<Waiter>> first = it.next();
+    waiting--;
+    Waiter waiter = first.getValue().poll();
+    it.remove();
+    if (!first.getValue().isEmpty()) {
+      flows.put(first.getKey(), first.getValue());
+    }
+    return waiter;
+  }
+
+  /** Finds the oldest waiter of a class, which is the head of one of its flows. */
+  @Nullable
+  private static Waiter oldest(LinkedHashMap<Object, ArrayDeque<Waiter>> flows) {
+    Waiter oldest = null;
+    for (ArrayDeque<Waiter> flow : flows.values()) {
+      Waiter head = flow.peek();
+      if (oldest == null || head.enqueuedAt - oldest.enqueuedAt < 0) {
+        oldest = head;
+      }
+    }
+    return oldest;
+  }
+
+  private void remove(Waiter waiter) {
+    LinkedHashMap<Object, ArrayDeque<Waiter>> flows = queues.get(waiter.priority);
+    ArrayDeque<Waiter> flow = flows.get(waiter.flow);
+    flow.remove(waiter);
+    if (flow.isEmpty()) {
+      flows.remove(waiter.flow);
+    }
+    waiting--;
+  }
+
+  private static final class Waiter {
+    private final CfPriority priority;
+    private final Object flow;
+    private final long enqueuedAt;
+    private final Condition condition;
+    private boolean granted;
+
+    Waiter(CfPriority priority, Object flow, long enqueuedAt, Condition condition) {
+      this.priority = priority;
+      this.flow = flow;
+      this.enqueuedAt = enqueuedAt;
+      this.condition = condition;
+    }
+  }
+}
@@ -0,0 +1,327 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareValidationException;
+import codes.thischwa.cf.model.RecordEntity;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * CoalescingWriter holds {@link RecordMutation}s for a short window and sends only their net
+ * effect, so a burst of writes to the same record costs a single API call.
+ *
+ * <p>Mutations are keyed by zone id, record name and record type. A mutation to a key which is
+ * already held is merged with the held one:
+ *
+ * <ul>
+ *   <li>create, then update: create with the updated record
+ *   <li>create, then delete: nothing is sent
+ *   <li>update, then update: the last update
+ *   <li>update, then delete: delete
+ *   <li>delete, then create: update of the deleted record with the created one, keeping its id
+ *   <li>delete, then delete: delete
+ * </ul>
+ *
+ * <p>An update after a delete is rejected, as is a create of a record which is already created or
+ * updated with the same content in the window. Mutations of different records with the same name
+ * and type (e.g. several A records of a round-robin) aren't merged: updates and deletes are told
+ * apart by the record id, and a create is a new record unless it replaces a deleted one. The
+ * future of each submitted mutation is completed with the result of the net mutation it was merged
+ * into; a chain which cancelled out completes with the record of its last mutation without an API
+ * call.
+ *
+ * <p>The window starts with the first held mutation and is sent as one batch with bounded
+ * parallelism when it ends, when {@link #flush()} is called, or when the writer is closed. The net
+ * mutations of one key are sent one after the other, in the order they were first held and after
+ * those of the previous windows, like by the {@link OrderedMutationExecutor}, so a slow write of
+ * an earlier window can't overwrite a later one.
+ */
+@Slf4j
+public class CoalescingWriter implements Closeable {
+
+  private final CfDnsClient client;
+  private final Duration window;
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+
+  private final Object lock = new Object();
+  private Map<RecordKey, List<Held>> held = new LinkedHashMap<>();
+  @Nullable private ScheduledFuture<?> scheduledFlush;
+  private final ConcurrentHashMap<RecordKey, CompletableFuture<RecordEntity>> tails =
+      new ConcurrentHashMap<>();
+
+  private final AtomicLong submittedCount = new AtomicLong();
+  private final AtomicLong sentCount = new AtomicLong();
+
+  /**
+   * Constructs a CoalescingWriter.
+   *
+   * @param client the client used to send the mutations
+   * @param window the time a mutation is held for merging
+   * @param parallelism the maximum number of mutations sent at the same time
+   */
+  public CoalescingWriter(CfDnsClient client, Duration window, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    if (window.isNegative()) {
+      throw new IllegalArgumentException("Window must not be negative.");
+    }
+    this.client = client;
+    this.window = window;
+    this.executor = Executors.newFixedThreadPool(parallelism, CoalescingWriter::newThread);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(CoalescingWriter::newThread);
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "cf-coalescing-writer");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Holds a mutation for merging with later mutations to the same record.
+   *
+   * @param mutation the mutation
+   * @return a future completed with the result of the net mutation, or exceptionally if it failed,
+   *     the mutation can't be merged or its record is rejected by the validation
+   */
+  public CompletableFuture<RecordEntity> submit(RecordMutation mutation) {
+    CompletableFuture<RecordEntity> future = new CompletableFuture<>();
+    submittedCount.incrementAndGet();
+    try {
+      mutation.validateFor(client);
+    } catch (CloudflareValidationException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    synchronized (lock) {
+      List<Held> entries = held.computeIfAbsent(RecordKey.of(mutation), k -> new ArrayList<>(1));
+      try {
+        Held current = matching(entries, mutation);
+        if (current == null) {
+          entries.add(new Held(mutation, future));
+        } else {
+          current.merge(mutation, future);
+        }
+      } catch (IllegalStateException e) {
+        if (entries.isEmpty()) {
+          held.remove(RecordKey.of(mutation));
+        }
+        future.completeExceptionally(e);
+        return future;
+      }
+      if (scheduledFlush == null) {
+        scheduledFlush = scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Sends the held mutations immediately.
+   *
+   * @return a future completed when all sent mutations are done
+   */
+  public CompletableFuture<Void> flush() {
+    List<CompletableFuture<?>> sends = new ArrayList<>();
+    // the sends are chained under the lock, so a concurrent flush can't overtake this window
+    synchronized (lock) {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+      Map<RecordKey, List<Held>> batch = held;
+      held = new LinkedHashMap<>();
+      for (Map.Entry<RecordKey, List<Held>> entry : batch.entrySet()) {
+        for (Held h : entry.getValue()) {
+          sends.add(send(entry.getKey(), h));
+        }
+      }
+    }
+    if (!sends.isEmpty()) {
+      log.debug("Flushed {} coalesced mutations.", sends.size());
+    }
+    return CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new));
+  }
+
+  private CompletableFuture<?> send(RecordKey key, Held h) {
+    if (h.mutation == null) {
+      h.waiters.forEach(waiter -> waiter.complete(h.last));
+      return CompletableFuture.completedFuture(null);
+    }
+    RecordMutation mutation = h.mutation;
+    sentCount.incrementAndGet();
+    CompletableFuture<RecordEntity> result =
+        tails.compute(
+            key,
+            (k, tail) ->
+                tail == null
+                    ? CompletableFuture.supplyAsync(() -> apply(mutation), executor)
+                    : tail.handle((rec, e) -> null)
+                        .thenApplyAsync(ignored -> apply(mutation), executor));
+    result.whenComplete((rec, e) -> tails.remove(key, result));
+    return result.whenComplete(
+        (rec, e) -> {
+          for (CompletableFuture<RecordEntity> waiter : h.waiters) {
+            if (e == null) {
+              waiter.complete(rec);
+            } else {
+              waiter.completeExceptionally(e);
+            }
+          }
+        });
+  }
+
+  /**
+   * Retrieves the number of submitted mutations.
+   *
+   * @return the number of submitted mutations
+   */
+  public long getSubmittedCount() {
+    return submittedCount.get();
+  }
+
+  /**
+   * Retrieves the number of mutations sent to the API after merging.
+   *
+   * @return the number of sent mutations
+   */
+  public long getSentCount() {
+    return sentCount.get();
+  }
+
+  /** Sends the held mutations, waits for them and stops the writer. */
+  @Override
+  public void close() {
+    flush().exceptionally(e -> null).join();
+    CompletableFuture.allOf(tails.values().toArray(CompletableFuture[]::new))
+        .exceptionally(e -> null)
+        .join();
+    scheduler.shutdownNow();
+    executor.shutdown();
+  }
+
+  private RecordEntity apply(RecordMutation mutation) {
+    try {
+      return mutation.applyTo(client);
+    } catch (Exception e) {
+      throw new CompletionException(
+          new IllegalStateException(
+              mutation.operation() + " of " + mutation.record().getName() + " failed", e));
+    }
+  }
+
+  /**
+   * Finds the held entry of the same record a mutation is merged into, the latest one if several
+   * match.
+   *
+   * @return the entry, or {@code null} if the mutation refers to another record than the held ones
+   * @throws IllegalStateException if the mutation creates a record which is already held
+   */
+  @Nullable
+  private static Held matching(List<Held> entries, RecordMutation next) {
+    RecordEntity rec = next.record();
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      Held h = entries.get(i);
+      RecordMutation current = h.mutation;
+      if (next.operation() != RecordMutation.Operation.CREATE) {
+        String id = current == null ? null : current.record().getId();
+        if (rec.getId() == null || rec.getId().equals(id)) {
+          return h;
+        }
+      } else if (current == null || current.operation() == RecordMutation.Operation.DELETE) {
+        return h;
+      } else if (Objects.equals(rec.getContent(), current.record().getContent())) {
+        throw new IllegalStateException("The record is already created in this window.");
+      }
+    }
+    return null;
+  }
+
+  private static RecordEntity withId(RecordEntity rec, String id) {
+    RecordEntity copy = rec.copy();
+    copy.setId(id);
+    return copy;
+  }
+
+  /** The net mutation of a key, {@code null} if the held mutations cancelled out. */
+  private static final class Held {
+    @Nullable private RecordMutation mutation;
+    private RecordEntity last;
+    private final List<CompletableFuture<RecordEntity>> waiters = new ArrayList<>(2);
+
+    Held(RecordMutation mutation, CompletableFuture<RecordEntity> waiter) {
+      this.mutation = mutation;
+      this.last = mutation.record();
+      waiters.add(waiter);
+    }
+
+    void merge(RecordMutation next, CompletableFuture<RecordEntity> waiter) {
+      mutation = merged(mutation, next);
+      last = next.record();
+      waiters.add(waiter);
+    }
+
+    @Nullable
+    private static RecordMutation merged(@Nullable RecordMutation held, RecordMutation next) {
+      if (held == null) {
+        if (next.operation() != RecordMutation.Operation.CREATE) {
+          throw new IllegalStateException("The record was created and deleted in the same window.");
+        }
+        return next;
+      }
+      RecordEntity rec = next.record();
+      switch (held.operation()) {
+        case CREATE:
+          switch (next.operation()) {
+            case CREATE:
+              throw new IllegalStateException("The record is already created in this window.");
+            case UPDATE:
+              return new RecordMutation(
+                  RecordMutation.Operation.CREATE, held.zoneId(), held.zoneName(), rec);
+            default:
+              return null;
+          }
+        case UPDATE:
+          if (next.operation() == RecordMutation.Operation.CREATE) {
+            throw new IllegalStateException("The record is already updated in this window.");
+          }
+          return next.record().getId() != null
+              ? next
+              : new RecordMutation(
+                  next.operation(),
+                  held.zoneId(),
+                  held.zoneName(),
+                  withId(rec, held.record().getId()));
+        default:
+          switch (next.operation()) {
+            case CREATE:
+              RecordEntity replacement = withId(rec, held.record().getId());
+              return new RecordMutation(
+                  RecordMutation.Operation.UPDATE, held.zoneId(), held.zoneName(), replacement);
+            case UPDATE:
+              throw new IllegalStateException("The record is already deleted in this window.");
+            default:
+              return held;
+          }
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.CloudflareNotFoundException;
+import codes.thischwa.cf.CloudflareValidationException;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * DurableMutationQueue sends {@link RecordMutation}s concurrently and keeps track of them in a
+ * {@link MutationLog}, so no mutation is lost if the process dies in the middle of a large sync.
+ *
+ * <p>A mutation is durable in the log when {@link #submit} returns. It is marked as done as soon as
+ * the API accepted it. A mutation which failed stays pending and is sent again by {@link
+ * #replay()}, which is meant to be called after a restart. A crash between the acceptance by the
+ * API and the completion mark causes the mutation to be replayed, so replaying is idempotent: a
+ * deletion of a record which is already gone is done, and a creation is done without a request if
+ * a record with the same name, type and content exists. Updates are idempotent anyway. A mutation
+ * which can never succeed can be dropped by {@link MutationLog#markDone(long)}.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * try (MutationLog mutationLog = MutationLog.open(Path.of("dns-sync.wal"));
+ *     DurableMutationQueue queue = new DurableMutationQueue(client, mutationLog, 8)) {
+ *   queue.replay();
+ *   queue.submit(RecordMutation.update(zone, rec));
+ * }
+ * </code></pre>
+ */
+@Slf4j
+public class DurableMutationQueue implements Closeable {
+
+  private final CfDnsClient client;
+  private final MutationLog mutationLog;
+  private final ExecutorService executor;
+  private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Constructs a DurableMutationQueue.
+   *
+   * @param client the client used to send the mutations
+   * @param mutationLog the log keeping track of the mutations
+   * @param parallelism the maximum number of mutations sent at the same time
+   */
+  public DurableMutationQueue(CfDnsClient client, MutationLog mutationLog, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    this.client = client;
+    this.mutationLog = mutationLog;
+    this.executor = Executors.newFixedThreadPool(parallelism);
+  }
+
+  /**
+   * Logs a mutation and sends it asynchronously.
+   *
+   * @param mutation the mutation
+   * @return a future completed with the record as returned by the API
+   * @throws IOException if the mutation can't be logged, it isn't sent in this case
+   */
+  public CompletableFuture<RecordEntity> submit(RecordMutation mutation) throws IOException {
+    return submitAll(List.of(mutation)).get(0);
+  }
+
+  /**
+   * Logs multiple mutations with a single sync and sends them asynchronously.
+   *
+   * @param mutations the mutations
+   * @return the futures of the mutations, in the same order. Mutations whose record is rejected by
+   *     the validation aren't logged, their futures are failed.
+   * @throws IOException if the mutations can't be logged, they aren't sent in this case
+   */
+  public List<CompletableFuture<RecordEntity>> submitAll(List<RecordMutation> mutations)
+      throws IOException {
+    List<RecordMutation> valid = new ArrayList<>(mutations.size());
+    List<CompletableFuture<RecordEntity>> futures = new ArrayList<>(mutations.size());
+    for (RecordMutation mutation : mutations) {
+      try {
+        mutation.validateFor(client);
+        valid.add(mutation);
+        futures.add(null);
+      } catch (CloudflareValidationException e) {
+        futures.add(CompletableFuture.failedFuture(e));
+      }
+    }
+    List<Long> seqs = mutationLog.appendAll(valid);
+    int next = 0;
+    for (int i = 0; i < futures.size(); i++) {
+      if (futures.get(i) == null) {
+        futures.set(i, send(seqs.get(next), valid.get(next), false));
+        next++;
+      }
+    }
+    return futures;
+  }
+
+  /**
+   * Sends all pending mutations of the log again, which aren't in flight currently.
+   *
+   * @return the futures of the resent mutations, in the order they were logged
+   */
+  public List<CompletableFuture<RecordEntity>> replay() {
+    List<CompletableFuture<RecordEntity>> futures = new ArrayList<>();
+    for (Map.Entry<Long, RecordMutation> entry : mutationLog.pending().entrySet()) {
+      if (!inFlight.contains(entry.getKey())) {
+        futures.add(send(entry.getKey(), entry.getValue(), true));
+      }
+    }
+    if (!futures.isEmpty()) {
+      log.info("Replaying {} pending mutations.", futures.size());
+    }
+    return futures;
+  }
+
+  private CompletableFuture<RecordEntity> send(
+      long seq, RecordMutation mutation, boolean replayed) {
+    inFlight.add(seq);
+    return CompletableFuture.supplyAsync(() -> apply(seq, mutation, replayed), executor)
+        .whenComplete((rec, e) -> inFlight.remove(seq));
+  }
+
+  private RecordEntity apply(long seq, RecordMutation mutation, boolean replayed) {
+    RecordEntity result;
+    try {
+      result = replayed ? reapply(mutation) : mutation.applyTo(client);
+    } catch (Exception e) {
+      log.warn("Mutation {} ({} {}) failed, it stays pending: {}", seq, mutation.operation(),
+          mutation.record().getName(), e.getMessage());
+      throw new IllegalStateException("Mutation " + seq + " failed", e);
+    }
+    try {
+      mutationLog.markDone(seq);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return result;
+  }
+
+  /**
+   * Applies a replayed mutation, which may have been accepted by the API before the crash already.
+   */
+  private RecordEntity reapply(RecordMutation mutation) throws CloudflareApiException {
+    switch (mutation.operation()) {
+      case CREATE:
+        RecordEntity existing = findCreated(mutation);
+        if (existing != null) {
+          log.debug("Record {} was already created.", mutation.record().getName());
+          return existing;
+        }
+        return mutation.applyTo(client);
+      case DELETE:
+        try {
+          return mutation.applyTo(client);
+        } catch (CloudflareApiException e) {
+          if (e.getStatusCode() != 404) {
+            throw e;
+          }
+          log.debug("Record {} was already deleted.", mutation.record().getId());
+          return mutation.record();
+        }
+      default:
+        return mutation.applyTo(client);
+    }
+  }
+
+  /**
+   * Looks up a record with the name, type and content of a creation. The first label of the name
+   * is looked up as SLD of the rest, so the zone name isn't needed.
+   */
+  @Nullable
+  private RecordEntity findCreated(RecordMutation mutation) throws CloudflareApiException {
+    RecordEntity rec = mutation.record();
+    String name = rec.getName();
+    int dot = name == null ? -1 : name.indexOf('.');
+    if (dot < 0) {
+      return null;
+    }
+    ZoneEntity parent = new ZoneEntity();
+    parent.setId(mutation.zoneId());
+    parent.setName(name.substring(dot + 1));
+    List<RecordEntity> records;
+    try {
+      records = client.sldListAll(parent, name.substring(0, dot));
+    } catch (CloudflareNotFoundException e) {
+      return null;
+    }
+    for (RecordEntity candidate : records) {
+      if (rec.getType().equals(candidate.getType())
+          && rec.getContent() != null
+          && rec.getContent().equalsIgnoreCase(candidate.getContent())) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /** Waits for the mutations in flight and stops the sending. The log isn't closed. */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
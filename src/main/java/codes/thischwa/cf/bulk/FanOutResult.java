@@ -0,0 +1,53 @@
+package codes.thischwa.cf.bulk;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Represents the aggregated outcome of a {@link ZoneMutation} applied to multiple zones.
+ *
+ * @param outcomes the outcomes per zone, in the order of the requested zones
+ * @param elapsed the wall-clock time of the whole run
+ * @param <R> the type of the result of the mutation
+ */
+public record FanOutResult<R>(List<ZoneOutcome<R>> outcomes, Duration elapsed) {
+
+  /**
+   * Retrieves the outcomes of the zones for which the mutation succeeded.
+   *
+   * @return the successful outcomes
+   */
+  public List<ZoneOutcome<R>> succeeded() {
+    return outcomes.stream().filter(ZoneOutcome::isSuccess).toList();
+  }
+
+  /**
+   * Retrieves the outcomes of the zones for which the mutation failed.
+   *
+   * @return the failed outcomes
+   */
+  public List<ZoneOutcome<R>> failed() {
+    return outcomes.stream().filter(outcome -> !outcome.isSuccess()).toList();
+  }
+
+  /**
+   * Indicates whether the mutation succeeded for all zones.
+   *
+   * @return {@code true} if no zone failed
+   */
+  public boolean isComplete() {
+    return outcomes.stream().allMatch(ZoneOutcome::isSuccess);
+  }
+
+  /**
+   * Builds a one-line summary of the run.
+   *
+   * @return the summary
+   */
+  public String summary() {
+    long failures = outcomes.stream().filter(outcome -> !outcome.isSuccess()).count();
+    return String.format(
+        "%d zones, %d succeeded, %d failed in %d ms",
+        outcomes.size(), outcomes.size() - failures, failures, elapsed.toMillis());
+  }
+}
@@ -0,0 +1,253 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfDnsClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * MutationLog is an append-only write-ahead log of {@link RecordMutation}s.
+ *
+ * <p>A mutation is appended before it is sent and marked as done after the API accepted it. Both
+ * entries are durable when the respective method returns. Concurrent callers are synced in groups:
+ * one caller forces the file to disk and thereby covers all entries written up to that point, the
+ * callers waiting meanwhile return without an additional sync.
+ *
+ * <p>On opening, the log is read to restore the mutations which aren't done yet, see {@link
+ * #pending()}. A torn entry at the end of the file, left by a crash while writing, is ignored. The
+ * entries of done mutations are removed by {@link #compact()}.
+ *
+ * <p>The file consists of one JSON object per line: {@code {"seq":1,"mutation":{...}}} for an
+ * appended mutation and {@code {"seq":1}} for its completion.
+ */
+@Slf4j
+public final class MutationLog implements Closeable {
+
+  private static final byte NEW_LINE = '\n';
+
+  private final Path file;
+  private final ObjectMapper mapper = CfDnsClient.createObjectMapper();
+  private final Object writeLock = new Object();
+  private final Object syncLock = new Object();
+  private final Map<Long, RecordMutation> pending = new LinkedHashMap<>();
+
+  private FileChannel channel;
+  private long nextSeq = 1;
+  private long writtenPos;
+  private long syncedPos;
+
+  private MutationLog(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Opens the log stored in the given file, which is created if it doesn't exist.
+   *
+   * @param file the file of the log
+   * @return the opened log
+   * @throws IOException if the file can't be read or opened
+   */
+  public static MutationLog open(Path file) throws IOException {
+    MutationLog mutationLog = new MutationLog(file);
+    mutationLog.restore();
+    return mutationLog;
+  }
+
+  private void restore() throws IOException {
+    long validLength = 0;
+    if (Files.exists(file)) {
+      try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          Entry entry;
+          try {
+            entry = mapper.readValue(line, Entry.class);
+          } catch (IOException e) {
+            log.warn("Ignoring the torn end of the mutation log {}.", file);
+            break;
+          }
+          validLength += line.getBytes(StandardCharsets.UTF_8).length + 1;
+          apply(entry);
+        }
+      }
+    }
+    channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+    if (validLength > channel.size()) {
+      // the last entry is complete, but its line break is missing
+      channel.position(channel.size());
+      writeFully(channel, new byte[] {NEW_LINE});
+      channel.force(false);
+    } else {
+      channel.truncate(validLength);
+    }
+    channel.position(channel.size());
+    writtenPos = channel.size();
+    syncedPos = writtenPos;
+  }
+
+  private void apply(Entry entry) {
+    nextSeq = Math.max(nextSeq, entry.seq() + 1);
+    if (entry.mutation() == null) {
+      pending.remove(entry.seq());
+    } else {
+      pending.put(entry.seq(), entry.mutation());
+    }
+  }
+
+  /**
+   * Appends a mutation to the log.
+   *
+   * @param mutation the mutation
+   * @return the sequence number of the mutation, used to mark it as done
+   * @throws IOException if the entry can't be written
+   */
+  public long append(RecordMutation mutation) throws IOException {
+    return appendAll(List.of(mutation)).get(0);
+  }
+
+  /**
+   * Appends multiple mutations to the log with a single sync.
+   *
+   * @param mutations the mutations
+   * @return the sequence numbers of the mutations, in the same order
+   * @throws IOException if the entries can't be written
+   */
+  public List<Long> appendAll(List<RecordMutation> mutations) throws IOException {
+    List<Long> seqs = new ArrayList<>(mutations.size());
+    long position;
+    synchronized (writeLock) {
+      for (RecordMutation mutation : mutations) {
+        long seq = nextSeq++;
+        write(new Entry(seq, mutation));
+        pending.put(seq, mutation);
+        seqs.add(seq);
+      }
+      position = writtenPos;
+    }
+    sync(position);
+    return seqs;
+  }
+
+  /**
+   * Marks a mutation as done, so it won't be restored anymore.
+   *
+   * @param seq the sequence number of the mutation
+   * @throws IOException if the entry can't be written
+   */
+  public void markDone(long seq) throws IOException {
+    long position;
+    synchronized (writeLock) {
+      if (pending.remove(seq) == null) {
+        return;
+      }
+      write(new Entry(seq, null));
+      position = writtenPos;
+    }
+    sync(position);
+  }
+
+  /**
+   * Retrieves the mutations which aren't done yet, in the order they were appended.
+   *
+   * @return the pending mutations by their sequence number
+   */
+  public Map<Long, RecordMutation> pending() {
+    synchronized (writeLock) {
+      return new LinkedHashMap<>(pending);
+    }
+  }
+
+  /**
+   * Rewrites the log with the pending mutations only. The new file replaces the old one
+   * atomically.
+   *
+   * @throws IOException if the log can't be rewritten
+   */
+  public void compact() throws IOException {
+    synchronized (syncLock) {
+      synchronized (writeLock) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out =
+            FileChannel.open(
+                tmp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+          for (Map.Entry<Long, RecordMutation> entry : pending.entrySet()) {
+            writeFully(out, encode(new Entry(entry.getKey(), entry.getValue())));
+          }
+          out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        channel.position(channel.size());
+        writtenPos = channel.size();
+        syncedPos = writtenPos;
+      }
+    }
+  }
+
+  private void write(Entry entry) throws IOException {
+    byte[] bytes = encode(entry);
+    writeFully(channel, bytes);
+    writtenPos += bytes.length;
+  }
+
+  private byte[] encode(Entry entry) throws IOException {
+    byte[] json = mapper.writeValueAsBytes(entry);
+    byte[] line = new byte[json.length + 1];
+    System.arraycopy(json, 0, line, 0, json.length);
+    line[json.length] = NEW_LINE;
+    return line;
+  }
+
+  private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private void sync(long position) throws IOException {
+    synchronized (syncLock) {
+      if (syncedPos >= position) {
+        return;
+      }
+      long target;
+      synchronized (writeLock) {
+        target = writtenPos;
+      }
+      channel.force(false);
+      syncedPos = target;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      synchronized (writeLock) {
+        channel.force(false);
+        channel.close();
+      }
+    }
+  }
+
+  record Entry(long seq, @Nullable RecordMutation mutation) {}
+}
@@ -0,0 +1,24 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.model.RecordEntity;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents the result of one {@link RecordMutation} applied by a {@link MutationSubscriber}.
+ *
+ * @param mutation the applied mutation
+ * @param record the record as returned by the API, or {@code null} if the mutation failed
+ * @param error the error which caused the mutation to fail, or {@code null} if it succeeded
+ */
+public record MutationResult(
+    RecordMutation mutation, @Nullable RecordEntity record, @Nullable Exception error) {
+
+  /**
+   * Indicates whether the mutation succeeded.
+   *
+   * @return {@code true} if the mutation succeeded, {@code false} otherwise
+   */
+  public boolean isSuccess() {
+    return error == null;
+  }
+}
@@ -0,0 +1,188 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordEntity;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * MutationSubscriber is a {@link Flow.Subscriber} which applies the received {@link
+ * RecordMutation}s, so writes can be streamed to the API with backpressure.
+ *
+ * <ul>
+ *   <li>At most {@code concurrency} mutations are requested from the publisher and applied at the
+ *       same time. A new one is requested when one is done.
+ *   <li>The result of each mutation is passed to the result consumer as soon as it's done, a
+ *       failing mutation doesn't stop the others.
+ *   <li>{@link #getCompletion()} is completed when the publisher is done and all mutations are
+ *       applied, exceptionally if the publisher signaled an error.
+ * </ul>
+ *
+ * <p>Example, deleting all TXT records of a zone:
+ *
+ * <pre><code>
+ * MutationSubscriber sink = new MutationSubscriber(client, 4, result -&gt; log.info("{}", result));
+ * SubmissionPublisher&lt;RecordMutation&gt; publisher = new SubmissionPublisher&lt;&gt;();
+ * publisher.subscribe(sink);
+ * txtRecords.forEach(rec -&gt; publisher.submit(RecordMutation.delete(zone, rec)));
+ * publisher.close();
+ * sink.getCompletion().join();
+ * </code></pre>
+ *
+ * <p>A subscriber can only be subscribed once.
+ */
+@Slf4j
+public class MutationSubscriber implements Flow.Subscriber<RecordMutation> {
+
+  private final CfDnsClient client;
+  private final int concurrency;
+  private final Consumer<MutationResult> resultConsumer;
+  private final ExecutorService executor;
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong succeededCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  @Nullable private volatile Flow.Subscription subscription;
+  @Nullable private volatile Throwable upstreamError;
+  private volatile boolean upstreamDone;
+
+  /**
+   * Constructs a MutationSubscriber.
+   *
+   * @param client the client used to apply the mutations
+   * @param concurrency the maximum number of mutations applied at the same time
+   * @param resultConsumer receives the result of each mutation, it's called by multiple threads
+   */
+  public MutationSubscriber(
+      CfDnsClient client, int concurrency, Consumer<MutationResult> resultConsumer) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive.");
+    }
+    this.client = client;
+    this.concurrency = concurrency;
+    this.resultConsumer = resultConsumer;
+    this.executor =
+        Executors.newFixedThreadPool(
+            concurrency,
+            r -> {
+              Thread thread = new Thread(r, "cf-mutation-subscriber");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    subscription.request(concurrency);
+  }
+
+  @Override
+  public void onNext(RecordMutation mutation) {
+    inFlight.incrementAndGet();
+    executor.execute(() -> apply(mutation));
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    upstreamError = throwable;
+    upstreamDone();
+  }
+
+  @Override
+  public void onComplete() {
+    upstreamDone();
+  }
+
+  /** Cancels the subscription. The mutations which are already received are still applied. */
+  public void cancel() {
+    Flow.Subscription current = subscription;
+    if (current != null) {
+      current.cancel();
+    }
+    upstreamDone();
+  }
+
+  /**
+   * Retrieves the future which is completed when all mutations are applied.
+   *
+   * @return a future completed when the publisher is done and all received mutations are applied,
+   *     or exceptionally with the error of the publisher
+   */
+  public CompletableFuture<Void> getCompletion() {
+    return completion;
+  }
+
+  /**
+   * Retrieves the number of mutations which succeeded.
+   *
+   * @return the number of succeeded mutations
+   */
+  public long getSucceededCount() {
+    return succeededCount.get();
+  }
+
+  /**
+   * Retrieves the number of mutations which failed.
+   *
+   * @return the number of failed mutations
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  private void apply(RecordMutation mutation) {
+    MutationResult result;
+    try {
+      RecordEntity rec = mutation.applyTo(client);
+      result = new MutationResult(mutation, rec, null);
+      succeededCount.incrementAndGet();
+    } catch (Exception e) {
+      log.debug(
+          "{} of {} failed: {}", mutation.operation(), mutation.record().getName(), e.getMessage());
+      result = new MutationResult(mutation, null, e);
+      failedCount.incrementAndGet();
+    }
+    try {
+      resultConsumer.accept(result);
+    } catch (RuntimeException e) {
+      log.warn("The result consumer failed.", e);
+    }
+    Flow.Subscription current = subscription;
+    if (!upstreamDone && current != null) {
+      current.request(1);
+    }
+    if (inFlight.decrementAndGet() == 0 && upstreamDone) {
+      finish();
+    }
+  }
+
+  private void upstreamDone() {
+    upstreamDone = true;
+    if (inFlight.get() == 0) {
+      finish();
+    }
+  }
+
+  private void finish() {
+    executor.shutdown();
+    Throwable error = upstreamError;
+    if (error == null) {
+      completion.complete(null);
+    } else {
+      completion.completeExceptionally(error);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareValidationException;
+import codes.thischwa.cf.model.RecordEntity;
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * OrderedMutationExecutor applies {@link RecordMutation}s in parallel while keeping the order of
+ * the mutations to the same record.
+ *
+ * <ul>
+ *   <li>Mutations are keyed by zone id, record name and record type. The mutations of one key are
+ *       applied one after the other in the order they were submitted.
+ *   <li>Mutations of different keys are applied concurrently by up to {@code parallelism} threads.
+ *   <li>A failing mutation doesn't stop the following mutations of its key, its error is reported
+ *       by its future only.
+ * </ul>
+ *
+ * <p>There is no global lock: each key holds the future of its last mutation in a {@link
+ * ConcurrentHashMap}, and a new mutation is chained to it by an atomic {@code compute}, which only
+ * locks the bin of the key. A key is removed as soon as its last mutation is done, so idle keys
+ * don't take memory.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * try (OrderedMutationExecutor executor = new OrderedMutationExecutor(client, 8)) {
+ *   executor.submit(RecordMutation.create(zone, rec));
+ *   executor.submit(RecordMutation.update(zone, changed)).join();
+ * }
+ * </code></pre>
+ */
+@Slf4j
+public class OrderedMutationExecutor implements Closeable {
+
+  private final CfDnsClient client;
+  private final ExecutorService executor;
+  private final ConcurrentHashMap<RecordKey, CompletableFuture<RecordEntity>> tails =
+      new ConcurrentHashMap<>();
+  private final AtomicLong submittedCount = new AtomicLong();
+
+  /**
+   * Constructs an OrderedMutationExecutor.
+   *
+   * @param client the client used to apply the mutations
+   * @param parallelism the maximum number of mutations applied at the same time
+   */
+  public OrderedMutationExecutor(CfDnsClient client, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    this.client = client;
+    this.executor =
+        Executors.newFixedThreadPool(
+            parallelism,
+            r -> {
+              Thread thread = new Thread(r, "cf-ordered-executor");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Submits a mutation, which is applied after all previously submitted mutations to the same
+   * record.
+   *
+   * @param mutation the mutation
+   * @return a future completed with the record as returned by the API, or exceptionally if the
+   *     mutation failed or its record is rejected by the validation. Cancelling or completing it
+   *     doesn't affect the mutation or the order of the following mutations.
+   */
+  public CompletableFuture<RecordEntity> submit(RecordMutation mutation) {
+    RecordKey key = RecordKey.of(mutation);
+    submittedCount.incrementAndGet();
+    try {
+      mutation.validateFor(client);
+    } catch (CloudflareValidationException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    CompletableFuture<RecordEntity> result =
+        tails.compute(
+            key,
+            (k, tail) ->
+                tail == null
+                    ? CompletableFuture.supplyAsync(() -> apply(mutation), executor)
+                    : tail.handle((rec, e) -> null)
+                        .thenApplyAsync(ignored -> apply(mutation), executor));
+    result.whenComplete((rec, e) -> tails.remove(key, result));
+    return result.copy();
+  }
+
+  /**
+   * Retrieves the number of submitted mutations.
+   *
+   * @return the number of submitted mutations
+   */
+  public long getSubmittedCount() {
+    return submittedCount.get();
+  }
+
+  /**
+   * Retrieves the number of records with mutations which aren't done yet.
+   *
+   * @return the number of records with pending mutations
+   */
+  public int getPendingKeyCount() {
+    return tails.size();
+  }
+
+  /** Waits for the submitted mutations and stops the executor. */
+  @Override
+  public void close() {
+    CompletableFuture.allOf(tails.values().toArray(CompletableFuture[]::new))
+        .exceptionally(e -> null)
+        .join();
+    executor.shutdown();
+  }
+
+  private RecordEntity apply(RecordMutation mutation) {
+    try {
+      return mutation.applyTo(client);
+    } catch (Exception e) {
+      log.debug(
+          "{} of {} failed: {}", mutation.operation(), mutation.record().getName(), e.getMessage());
+      throw new CompletionException(e);
+    }
+  }
+}
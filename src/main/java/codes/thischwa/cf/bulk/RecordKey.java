@@ -0,0 +1,17 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.model.RecordEntity;
+import java.util.Objects;
+
+/**
+ * Identifies the record a {@link RecordMutation} refers to by zone id, record name and record type.
+ * The name is compared case-insensitively, as DNS names are.
+ */
+record RecordKey(String zoneId, String name, String type) {
+
+  static RecordKey of(RecordMutation mutation) {
+    RecordEntity rec = mutation.record();
+    return new RecordKey(
+        mutation.zoneId(), Objects.requireNonNull(rec.getName()).toLowerCase(), rec.getType());
+  }
+}
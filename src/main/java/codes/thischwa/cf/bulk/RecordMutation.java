@@ -0,0 +1,106 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.CloudflareValidationException;
+import codes.thischwa.cf.RecordValidator;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.ZoneEntity;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents a single write to a DNS record: its creation, update or deletion. A mutation refers
+ * to its zone by id and name, so it can be stored and applied later, e.g. after a restart.
+ *
+ * @param operation the kind of the write
+ * @param zoneId the id of the zone containing the record
+ * @param zoneName the name of the zone containing the record, {@code null} if unknown, e.g. for
+ *     mutations logged by an older version
+ * @param record the record to create, the updated record or the record to delete
+ */
+public record RecordMutation(
+    Operation operation, String zoneId, @Nullable String zoneName, RecordEntity record) {
+
+  /** The kinds of writes to a DNS record. */
+  public enum Operation {
+    /** Creates the record by {@link CfDnsClient#recordCreate}. */
+    CREATE,
+    /** Updates the record by {@link CfDnsClient#recordUpdate}. */
+    UPDATE,
+    /** Deletes the record by {@link CfDnsClient#recordDelete}. */
+    DELETE
+  }
+
+  /**
+   * Creates a mutation which creates a record.
+   *
+   * @param zone the zone to create the record in
+   * @param rec the record to create
+   * @return the mutation
+   */
+  public static RecordMutation create(ZoneEntity zone, RecordEntity rec) {
+    return new RecordMutation(Operation.CREATE, zone.getId(), zone.getName(), rec);
+  }
+
+  /**
+   * Creates a mutation which updates a record.
+   *
+   * @param zone the zone containing the record
+   * @param rec the updated record, including its id
+   * @return the mutation
+   */
+  public static RecordMutation update(ZoneEntity zone, RecordEntity rec) {
+    return new RecordMutation(Operation.UPDATE, zone.getId(), zone.getName(), rec);
+  }
+
+  /**
+   * Creates a mutation which deletes a record.
+   *
+   * @param zone the zone containing the record
+   * @param rec the record to delete, including its id
+   * @return the mutation
+   */
+  public static RecordMutation delete(ZoneEntity zone, RecordEntity rec) {
+    return new RecordMutation(Operation.DELETE, zone.getId(), zone.getName(), rec);
+  }
+
+  /**
+   * Validates the record of a creation or update by the {@link RecordValidator}, if the client
+   * validates records. It lets batches fail fast at submission instead of when the mutation is
+   * applied. Deletions aren't validated.
+   *
+   * @param client the client the mutation will be applied by
+   * @throws CloudflareValidationException if the record is rejected
+   */
+  public void validateFor(CfDnsClient client) throws CloudflareValidationException {
+    if (operation != Operation.DELETE && client.isRecordValidation()) {
+      RecordValidator.validate(null, record);
+    }
+  }
+
+  /**
+   * Applies the mutation by the given client.
+   *
+   * @param client the client to send the write with
+   * @return the record as returned by the API, or the deleted record
+   * @throws CloudflareApiException if an error occurs while interacting with the Cloudflare API
+   */
+  public RecordEntity applyTo(CfDnsClient client) throws CloudflareApiException {
+    ZoneEntity zone = new ZoneEntity();
+    zone.setId(zoneId);
+    zone.setName(zoneName);
+    switch (operation) {
+      case CREATE:
+        return client.recordCreate(zone, record);
+      case UPDATE:
+        return client.recordUpdate(zone, record);
+      case DELETE:
+        if (!client.recordDelete(zone, record.getId())) {
+          throw new CloudflareApiException("Record " + record.getId() + " wasn't deleted.");
+        }
+        return record;
+      default:
+        throw new IllegalStateException("Unknown operation: " + operation);
+    }
+  }
+}
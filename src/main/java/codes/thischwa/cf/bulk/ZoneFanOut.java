@@ -0,0 +1,180 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfClientRegistry;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * ZoneFanOut applies one {@link ZoneMutation} to many zones concurrently.
+ *
+ * <ul>
+ *   <li>At most {@code parallelism} zones are processed at the same time.
+ *   <li>Per zone, the zone is resolved by {@link CfDnsClient#zoneInfo(String)} and the steps of the
+ *       mutation run in order on one thread.
+ *   <li>A failing zone doesn't affect the others, its error is reported in its {@link
+ *       ZoneOutcome}.
+ *   <li>Each outcome can be observed as soon as its zone is done, the aggregated {@link
+ *       FanOutResult} is returned when all zones are done.
+ * </ul>
+ *
+ * <p>Example, rotating the SPF record of many zones:
+ *
+ * <pre><code>
+ * ZoneFanOut fanOut = new ZoneFanOut(client, 8);
+ * FanOutResult&lt;RecordEntity&gt; result = fanOut.apply(zoneNames,
+ *     ZoneMutation.upsert("spf", RecordType.TXT, 3600, "v=spf1 mx -all"));
+ * log.info(result.summary());
+ * </code></pre>
+ */
+@Slf4j
+public class ZoneFanOut {
+
+  private final ClientResolver clientResolver;
+  private final int parallelism;
+
+  /**
+   * Resolves the client responsible for a zone.
+   */
+  @FunctionalInterface
+  public interface ClientResolver {
+
+    /**
+     * Resolves the client responsible for a zone.
+     *
+     * @param zoneName the name of the zone
+     * @return the client responsible for the zone
+     * @throws CloudflareApiException if the client can't be resolved
+     */
+    CfDnsClient clientFor(String zoneName) throws CloudflareApiException;
+  }
+
+  /**
+   * Constructs a ZoneFanOut which applies the mutations by one client.
+   *
+   * @param client the client used for all zones
+   * @param parallelism the maximum number of zones processed at the same time
+   */
+  public ZoneFanOut(CfDnsClient client, int parallelism) {
+    this(zoneName -> client, parallelism);
+  }
+
+  /**
+   * Constructs a ZoneFanOut which applies the mutations by the client of the account owning the
+   * zone.
+   *
+   * @param registry the registry providing the clients of the accounts
+   * @param parallelism the maximum number of zones processed at the same time
+   */
+  public ZoneFanOut(CfClientRegistry registry, int parallelism) {
+    this(registry::clientForZone, parallelism);
+  }
+
+  /**
+   * Constructs a ZoneFanOut with a custom resolution of the clients.
+   *
+   * @param clientResolver resolves the client responsible for a zone
+   * @param parallelism the maximum number of zones processed at the same time
+   */
+  public ZoneFanOut(ClientResolver clientResolver, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    this.clientResolver = clientResolver;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Applies the mutation to all given zones and waits until all zones are done.
+   *
+   * @param zoneNames the names of the zones, duplicates are processed once
+   * @param mutation the mutation to apply
+   * @param <R> the type of the result of the mutation
+   * @return the aggregated outcome
+   * @throws InterruptedException if the calling thread is interrupted while waiting, the pending
+   *     zones are canceled
+   */
+  public <R> FanOutResult<R> apply(List<String> zoneNames, ZoneMutation<R> mutation)
+      throws InterruptedException {
+    return apply(zoneNames, mutation, outcome -> {});
+  }
+
+  /**
+   * Applies the mutation to all given zones and waits until all zones are done. The listener is
+   * called with the outcome of each zone as soon as the zone is done, possibly concurrently. A
+   * failing listener is logged and doesn't affect the outcomes.
+   *
+   * @param zoneNames the names of the zones, duplicates are processed once
+   * @param mutation the mutation to apply
+   * @param listener receives the outcome of each zone
+   * @param <R> the type of the result of the mutation
+   * @return the aggregated outcome
+   * @throws InterruptedException if the calling thread is interrupted while waiting, the pending
+   *     zones are canceled
+   */
+  public <R> FanOutResult<R> apply(
+      List<String> zoneNames, ZoneMutation<R> mutation, Consumer<ZoneOutcome<R>> listener)
+      throws InterruptedException {
+    long start = System.nanoTime();
+    List<String> zones = new ArrayList<>(new LinkedHashSet<>(zoneNames));
+    if (zones.isEmpty()) {
+      return new FanOutResult<>(List.of(), Duration.ZERO);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, zones.size()));
+    try {
+      List<Future<ZoneOutcome<R>>> futures = new ArrayList<>(zones.size());
+      for (String zoneName : zones) {
+        futures.add(executor.submit(() -> applyToZone(zoneName, mutation, listener)));
+      }
+      List<ZoneOutcome<R>> outcomes = new ArrayList<>(zones.size());
+      for (Future<ZoneOutcome<R>> future : futures) {
+        try {
+          outcomes.add(future.get());
+        } catch (ExecutionException e) {
+          // applyToZone catches all exceptions, this is an error
+          throw new IllegalStateException("Unexpected error in the fan-out", e.getCause());
+        }
+      }
+      FanOutResult<R> result = new FanOutResult<>(outcomes, elapsedSince(start));
+      log.debug("Fan-out done: {}", result.summary());
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private <R> ZoneOutcome<R> applyToZone(
+      String zoneName, ZoneMutation<R> mutation, Consumer<ZoneOutcome<R>> listener) {
+    long start = System.nanoTime();
+    ZoneOutcome<R> outcome;
+    try {
+      CfDnsClient client = clientResolver.clientFor(zoneName);
+      ZoneEntity zone = client.zoneInfo(zoneName);
+      R result = mutation.apply(client, zone);
+      outcome = new ZoneOutcome<>(zoneName, result, null, elapsedSince(start));
+    } catch (Exception e) {
+      log.warn("Mutation failed for zone {}: {}", zoneName, e.getMessage());
+      outcome = new ZoneOutcome<>(zoneName, null, e, elapsedSince(start));
+    }
+    try {
+      listener.accept(outcome);
+    } catch (RuntimeException e) {
+      log.warn("The outcome listener failed for zone {}.", zoneName, e);
+    }
+    return outcome;
+  }
+
+  private static Duration elapsedSince(long start) {
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+}
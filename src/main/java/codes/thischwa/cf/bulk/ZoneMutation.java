@@ -0,0 +1,90 @@
+package codes.thischwa.cf.bulk;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.CloudflareNotFoundException;
+import codes.thischwa.cf.CloudflareValidationException;
+import codes.thischwa.cf.RecordValidator;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.util.List;
+
+/**
+ * Represents a change applied to one zone, composed of calls of the {@link CfDnsClient}. The steps
+ * of a mutation are executed in order on one thread.
+ *
+ * @param <R> the type of the result of the mutation
+ */
+@FunctionalInterface
+public interface ZoneMutation<R> {
+
+  /**
+   * Applies the mutation to a zone.
+   *
+   * @param client the client responsible for the zone
+   * @param zone the zone to apply the mutation to
+   * @return the result of the mutation
+   * @throws CloudflareApiException if an error occurs while interacting with the Cloudflare API
+   */
+  R apply(CfDnsClient client, ZoneEntity zone) throws CloudflareApiException;
+
+  /**
+   * Creates a mutation which sets the content of the record of the given second-level domain (SLD)
+   * and type. The record is created if it doesn't exist and updated if its content or TTL differs.
+   * The content is compared as given and as normalized by the {@link RecordValidator}, so an
+   * unchanged record costs no write.
+   *
+   * @param sld the second-level domain of the record, e.g. "mail"
+   * @param type the type of the record
+   * @param ttl the time-to-live (TTL) of the record
+   * @param content the content of the record
+   * @return the mutation, resulting in the record as stored by the API
+   */
+  static ZoneMutation<RecordEntity> upsert(String sld, RecordType type, int ttl, String content) {
+    return (client, zone) -> {
+      List<RecordEntity> records;
+      try {
+        records = client.sldListAll(zone, sld);
+      } catch (CloudflareNotFoundException e) {
+        records = List.of();
+      }
+      List<RecordEntity> matching =
+          records.stream().filter(rec -> rec.getRecordType() == type).toList();
+      if (matching.size() > 1) {
+        throw new CloudflareApiException(
+            "Ambiguous records of type " + type + " for " + sld + "." + zone.getName());
+      }
+      if (matching.isEmpty()) {
+        return client.recordCreate(
+            zone, RecordEntity.build(sld + "." + zone.getName(), type, ttl, content));
+      }
+      RecordEntity rec = matching.get(0);
+      boolean sameContent =
+          content.equals(rec.getContent())
+              || normalized(zone, sld, type, content).equals(rec.getContent());
+      if (sameContent && rec.getTtl() != null && rec.getTtl() == ttl) {
+        return rec;
+      }
+      rec.setContent(content);
+      rec.setTtl(ttl);
+      return client.recordUpdate(zone, rec);
+    };
+  }
+
+  /**
+   * Normalizes content like the {@link RecordValidator} does before sending it, e.g. quotes TXT
+   * content, so it can be compared to the content stored by the API. Invalid content is returned
+   * unchanged.
+   */
+  private static String normalized(ZoneEntity zone, String sld, RecordType type, String content) {
+    RecordEntity rec = RecordEntity.build(sld + "." + zone.getName(), type, 1, content);
+    rec.setPriority(0);
+    try {
+      RecordValidator.validate(zone.getName(), rec);
+      return rec.getContent();
+    } catch (CloudflareValidationException e) {
+      return content;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package codes.thischwa.cf.bulk;
+
+import java.time.Duration;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents the outcome of a {@link ZoneMutation} for one zone.
+ *
+ * @param zoneName the name of the zone
+ * @param result the result of the mutation, or {@code null} if it failed
+ * @param error the error which caused the mutation to fail, or {@code null} if it succeeded
+ * @param duration the time spent on the zone
+ * @param <R> the type of the result of the mutation
+ */
+public record ZoneOutcome<R>(
+    String zoneName, @Nullable R result, @Nullable Exception error, Duration duration) {
+
+  /**
+   * Indicates whether the mutation succeeded.
+   *
+   * @return {@code true} if the mutation succeeded, {@code false} otherwise
+   */
+  public boolean isSuccess() {
+    return error == null;
+  }
+}
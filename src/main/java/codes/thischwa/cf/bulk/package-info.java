@@ -0,0 +1,2 @@
+/** Bulk operations of CloudflareDNS-java, built on top of the CfDnsClient. */
+package codes.thischwa.cf.bulk;
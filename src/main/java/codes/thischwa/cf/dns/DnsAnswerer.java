@@ -0,0 +1,163 @@
+package codes.thischwa.cf.dns;
+
+import codes.thischwa.cf.dns.ServedZone.Node;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Answers DNS queries from {@link ServedZone}s. The answer is written directly into the response
+ * buffer from the pre-encoded records. The only allocation is the decoded query name, and the
+ * candidate names of a wildcard lookup for names which don't exist. An instance isn't thread-safe,
+ * it's used by the selector thread of a {@link DnsResponder}.
+ */
+final class DnsAnswerer {
+
+  private static final int MAX_CNAME_CHAIN = 8;
+  private static final short QUESTION_POINTER = (short) 0xc00c;
+
+  private final Supplier<ServedZone[]> zones;
+  private final StringBuilder nameBuffer = new StringBuilder(64);
+
+  /**
+   * Constructs a DnsAnswerer.
+   *
+   * @param zones supplies the current zones, the array must not be changed
+   */
+  DnsAnswerer(Supplier<ServedZone[]> zones) {
+    this.zones = zones;
+  }
+
+  /**
+   * Answers a query.
+   *
+   * @param query the query, between position 0 and its limit
+   * @param response receives the response, flipped
+   * @param maxLength the maximum length of the response, a longer one is truncated
+   * @return {@code false} if the message isn't a query and must be dropped
+   */
+  boolean answer(ByteBuffer query, ByteBuffer response, int maxLength) {
+    if (query.limit() < DnsWire.HEADER_LENGTH) {
+      return false;
+    }
+    int flags = DnsWire.u16(query, 2);
+    if ((flags & DnsWire.FLAG_QR) != 0) {
+      return false;
+    }
+    response.clear();
+    response.limit(Math.min(maxLength, response.capacity()));
+    int id = DnsWire.u16(query, 0);
+    int requestFlags = flags & (DnsWire.OPCODE_MASK | DnsWire.FLAG_RD);
+    if ((flags & DnsWire.OPCODE_MASK) != 0) {
+      return header(response, id, requestFlags | DnsWire.RCODE_NOTIMP, 0, 0);
+    }
+    int questionEnd;
+    nameBuffer.setLength(0);
+    try {
+      questionEnd = DnsWire.readName(query, DnsWire.HEADER_LENGTH, nameBuffer) + 4;
+    } catch (RuntimeException e) {
+      questionEnd = -1;
+    }
+    if (DnsWire.u16(query, 4) != 1 || questionEnd < 0 || questionEnd > query.limit()) {
+      return header(response, id, requestFlags | DnsWire.RCODE_FORMERR, 0, 0);
+    }
+
+    response.position(DnsWire.HEADER_LENGTH);
+    int questionLength = questionEnd - DnsWire.HEADER_LENGTH;
+    if (questionLength > response.remaining()) {
+      return header(response, id, requestFlags | DnsWire.RCODE_FORMERR, 0, 0);
+    }
+    response.put(response.position(), query, DnsWire.HEADER_LENGTH, questionLength);
+    response.position(questionEnd);
+    int qclass = DnsWire.u16(query, questionEnd - 2);
+    String qname = nameBuffer.toString();
+    ServedZone zone = qclass == DnsWire.CLASS_IN ? zoneOf(qname) : null;
+    if (zone == null) {
+      return header(response, id, requestFlags | DnsWire.RCODE_REFUSED, 1, 0);
+    }
+
+    int rcode = DnsWire.RCODE_NOERROR;
+    Node node = zone.node(qname);
+    if (node == null && !zone.exists(qname)) {
+      node = zone.wildcard(qname);
+      if (node == null) {
+        rcode = DnsWire.RCODE_NXDOMAIN;
+      }
+    }
+    int qtype = DnsWire.u16(query, questionEnd - 4);
+    int answers = 0;
+    byte[] owner = null;
+    for (int hop = 0; node != null && hop < MAX_CNAME_CHAIN; hop++) {
+      int written = writeRecords(response, node, owner, qtype == DnsWire.TYPE_ANY ? -1 : qtype);
+      if (written == 0 && node.cnameTarget != null && qtype != DnsWire.TYPE_CNAME) {
+        written = writeRecords(response, node, owner, DnsWire.TYPE_CNAME);
+        ServedZone targetZone = zoneOf(node.cnameTarget);
+        node = targetZone == null ? null : targetZone.node(node.cnameTarget);
+        owner = node == null ? null : node.wireName;
+      } else {
+        node = null;
+      }
+      if (written < 0) {
+        response.position(questionEnd);
+        int truncated = requestFlags | DnsWire.FLAG_AA | DnsWire.FLAG_TC | rcode;
+        return header(response, id, truncated, 1, 0);
+      }
+      answers += written;
+    }
+    return header(response, id, requestFlags | DnsWire.FLAG_AA | rcode, 1, answers);
+  }
+
+  /**
+   * Writes the records of a type, or of all types if the type is -1.
+   *
+   * @param owner the encoded owner name, or {@code null} to point to the question
+   * @return the number of written records, or {@link Integer#MIN_VALUE} if they don't fit
+   */
+  private static int writeRecords(
+      ByteBuffer response, Node node, @Nullable byte[] owner, int type) {
+    int written = 0;
+    int start = type < 0 ? 0 : node.first(type);
+    if (start < 0) {
+      return 0;
+    }
+    for (int i = start; i < node.types.length && (type < 0 || node.types[i] == type); i++) {
+      int ownerLength = owner == null ? 2 : owner.length;
+      if (response.remaining() < ownerLength + 10 + node.rdata[i].length) {
+        return Integer.MIN_VALUE;
+      }
+      if (owner == null) {
+        response.putShort(QUESTION_POINTER);
+      } else {
+        response.put(owner);
+      }
+      response.putShort((short) node.types[i]).putShort((short) DnsWire.CLASS_IN);
+      response.putInt(node.ttls[i]).putShort((short) node.rdata[i].length).put(node.rdata[i]);
+      written++;
+    }
+    return written;
+  }
+
+  private static boolean header(
+      ByteBuffer response, int id, int flags, int questions, int answers) {
+    if (questions == 0) {
+      response.position(DnsWire.HEADER_LENGTH);
+    }
+    response.putShort(0, (short) id).putShort(2, (short) (DnsWire.FLAG_QR | flags));
+    response.putShort(4, (short) questions).putShort(6, (short) answers);
+    response.putShort(8, (short) 0).putShort(10, (short) 0);
+    response.flip();
+    return true;
+  }
+
+  /** Finds the zone with the longest name containing a name. */
+  @Nullable
+  private ServedZone zoneOf(String qname) {
+    ServedZone best = null;
+    for (ServedZone zone : zones.get()) {
+      if (zone.contains(qname) && (best == null || zone.name.length() > best.name.length())) {
+        best = zone;
+      }
+    }
+    return best;
+  }
+}
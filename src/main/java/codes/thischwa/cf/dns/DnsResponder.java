@@ -0,0 +1,354 @@
+package codes.thischwa.cf.dns;
+
+import codes.thischwa.cf.RecordListener;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A lightweight, read-only, authoritative DNS server, which answers queries from records already
+ * fetched by this library, e.g. for split-horizon tests or as a standby while the API is
+ * unreachable. It serves the types A, AAAA, CNAME, NS, PTR, MX, TXT, SRV and CAA over UDP and TCP
+ * on the same port, follows CNAME chains within the served zones and supports wildcard records.
+ *
+ * <p>The zones are loaded by {@link #load(ZoneEntity, Collection)}, e.g. from a {@link
+ * codes.thischwa.cf.index.RecordIndex}. Registered as {@link RecordListener} of the client, the
+ * responder picks up the records created, updated and deleted by the client. Records are compiled
+ * to wire format when they are loaded, so answering a query copies bytes into a reused buffer.
+ *
+ * <p>All sockets are served by one NIO selector thread. There is no EDNS: UDP responses are
+ * limited to 512 bytes and truncated beyond, so clients retry over TCP. There are no SOA records,
+ * so negative answers have no authority section, and proxied records are served with their origin
+ * content. Records with the automatic TTL are served with a TTL of {@value
+ * ServedZone#AUTOMATIC_TTL} seconds, MX and SRV records without priority with priority 0.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * DnsResponder responder = new DnsResponder(new InetSocketAddress("127.0.0.1", 5353));
+ * CfDnsClient client = CfDnsClient.builder().tokenAuth(token).recordListener(responder).build();
+ * ZoneEntity zone = client.zoneInfo("example.com");
+ * RecordIndex index = new RecordIndex();
+ * index.refresh(client, zone, 1000);
+ * responder.load(zone, index.find(RecordFilter.any().zone(zone.getId())));
+ * </code></pre>
+ */
+@Slf4j
+public class DnsResponder implements RecordListener, Closeable {
+
+  private static final int MAX_QUERY_LENGTH = 4096;
+  private static final int MAX_TCP_LENGTH = 65535;
+  private static final long TCP_IDLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final Map<String, ServedZone> zonesById = new ConcurrentHashMap<>();
+  private volatile ServedZone[] zones = new ServedZone[0];
+  private final LongAdder queries = new LongAdder();
+
+  private final Selector selector;
+  private final DatagramChannel udp;
+  private final ServerSocketChannel tcp;
+  private final Thread thread;
+  private volatile boolean closed;
+
+  // owned by the selector thread
+  private final DnsAnswerer answerer = new DnsAnswerer(() -> zones);
+  private final ByteBuffer udpQuery = ByteBuffer.allocateDirect(MAX_QUERY_LENGTH);
+  private final ByteBuffer udpResponse = ByteBuffer.allocateDirect(DnsWire.MAX_UDP_LENGTH);
+  private final ByteBuffer tcpQuery = ByteBuffer.allocateDirect(MAX_QUERY_LENGTH);
+  private final ByteBuffer tcpLength = ByteBuffer.allocateDirect(2);
+  private final ByteBuffer tcpResponse = ByteBuffer.allocateDirect(MAX_TCP_LENGTH);
+  private final ByteBuffer[] tcpFrame = {tcpLength, tcpResponse};
+  private long lastSweep = System.nanoTime();
+
+  /**
+   * Constructs a DnsResponder, binds its UDP and TCP sockets and starts its selector thread.
+   *
+   * @param address the address to listen on, with port 0 an ephemeral port is used for both
+   * @throws IOException if a socket can't be bound
+   */
+  public DnsResponder(InetSocketAddress address) throws IOException {
+    this.selector = Selector.open();
+    this.udp = DatagramChannel.open();
+    this.tcp = ServerSocketChannel.open();
+    try {
+      udp.configureBlocking(false);
+      udp.bind(address);
+      tcp.configureBlocking(false);
+      tcp.bind(udp.getLocalAddress());
+      udp.register(selector, SelectionKey.OP_READ);
+      tcp.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      udp.close();
+      tcp.close();
+      selector.close();
+      throw e;
+    }
+    this.thread = new Thread(this::run, "cf-dns-responder");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Retrieves the address the responder listens on, for UDP and TCP.
+   *
+   * @return the bound address
+   * @throws IOException if the address can't be retrieved
+   */
+  public InetSocketAddress getLocalAddress() throws IOException {
+    return (InetSocketAddress) udp.getLocalAddress();
+  }
+
+  /**
+   * Serves the records of a zone, replacing the records served for it so far.
+   *
+   * @param zone the zone, with its id and name
+   * @param records the records of the zone, records of other types than the served ones are
+   *     skipped
+   * @throws IllegalArgumentException if the zone has no id or name
+   */
+  public void load(ZoneEntity zone, Collection<RecordEntity> records) {
+    if (zone.getId() == null || zone.getName() == null) {
+      throw new IllegalArgumentException("The zone must have an id and a name.");
+    }
+    ServedZone served;
+    synchronized (zonesById) {
+      served = zonesById.computeIfAbsent(zone.getId(), id -> new ServedZone(id, zone.getName()));
+      zones = zonesById.values().toArray(new ServedZone[0]);
+    }
+    served.load(records);
+    log.info("Serving {} records of the zone {}.", served.size(), served.name);
+  }
+
+  /**
+   * Stops serving a zone.
+   *
+   * @param zoneId the id of the zone
+   * @return {@code true} if the zone was served
+   */
+  public boolean unload(String zoneId) {
+    synchronized (zonesById) {
+      boolean removed = zonesById.remove(zoneId) != null;
+      zones = zonesById.values().toArray(new ServedZone[0]);
+      return removed;
+    }
+  }
+
+  /**
+   * Retrieves the number of served records.
+   *
+   * @return the number of served records of all zones
+   */
+  public int getRecordCount() {
+    int count = 0;
+    for (ServedZone zone : zones) {
+      count += zone.size();
+    }
+    return count;
+  }
+
+  /**
+   * Retrieves the number of received queries, over UDP and TCP.
+   *
+   * @return the number of received queries
+   */
+  public long getQueryCount() {
+    return queries.sum();
+  }
+
+  /** Serves a record created or updated by the client, if its zone is served. */
+  @Override
+  public void recordChanged(ZoneEntity zone, RecordEntity rec) {
+    ServedZone served = zonesById.get(zone.getId());
+    if (served != null) {
+      served.put(rec);
+    }
+  }
+
+  /** Stops serving a record deleted by the client. */
+  @Override
+  public void recordDeleted(ZoneEntity zone, String recordId) {
+    ServedZone served = zonesById.get(zone.getId());
+    if (served != null) {
+      served.remove(recordId);
+    }
+  }
+
+  /** Stops the selector thread and closes all sockets. */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    selector.wakeup();
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (SelectionKey key : selector.keys()) {
+      key.channel().close();
+    }
+    selector.close();
+  }
+
+  private void run() {
+    while (!closed) {
+      try {
+        selector.select(this::handle, TimeUnit.SECONDS.toMillis(1));
+        long now = System.nanoTime();
+        if (now - lastSweep > TimeUnit.SECONDS.toNanos(1)) {
+          lastSweep = now;
+          closeIdleConnections(now);
+        }
+      } catch (IOException | RuntimeException e) {
+        if (!closed) {
+          log.error("The DNS responder failed to select.", e);
+        }
+      }
+    }
+  }
+
+  private void handle(SelectionKey key) {
+    try {
+      if (key.channel() == udp) {
+        receiveUdp();
+      } else if (key.isAcceptable()) {
+        accept();
+      } else {
+        TcpConnection connection = (TcpConnection) key.attachment();
+        if (key.isWritable()) {
+          flush(key, connection);
+        } else if (key.isReadable()) {
+          receiveTcp(key, connection);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      if (key.channel() == udp || key.channel() == tcp) {
+        log.warn("The DNS responder failed to serve a query: {}", e.getMessage());
+      } else {
+        log.debug("TCP connection failed: {}", e.getMessage());
+        closeConnection(key);
+      }
+    }
+  }
+
+  private void receiveUdp() throws IOException {
+    while (true) {
+      udpQuery.clear();
+      SocketAddress source = udp.receive(udpQuery);
+      if (source == null) {
+        return;
+      }
+      udpQuery.flip();
+      queries.increment();
+      if (answerer.answer(udpQuery, udpResponse, DnsWire.MAX_UDP_LENGTH)) {
+        udp.send(udpResponse, source);
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = tcp.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.register(selector, SelectionKey.OP_READ, new TcpConnection(System.nanoTime()));
+    }
+  }
+
+  private void receiveTcp(SelectionKey key, TcpConnection connection) throws IOException {
+    SocketChannel channel = (SocketChannel) key.channel();
+    if (channel.read(connection.in) < 0) {
+      closeConnection(key);
+      return;
+    }
+    connection.lastActive = System.nanoTime();
+    answerTcp(key, connection);
+  }
+
+  /** Answers the complete queries received on a connection, until a response is pending. */
+  private void answerTcp(SelectionKey key, TcpConnection connection) throws IOException {
+    ByteBuffer in = connection.in;
+    while (connection.pending == null && in.position() >= 2) {
+      int length = in.getShort(0) & 0xffff;
+      if (length > MAX_QUERY_LENGTH) {
+        closeConnection(key);
+        return;
+      }
+      if (in.position() < 2 + length) {
+        return;
+      }
+      tcpQuery.clear();
+      tcpQuery.put(0, in, 2, length).limit(length);
+      in.flip().position(2 + length);
+      in.compact();
+      queries.increment();
+      if (answerer.answer(tcpQuery, tcpResponse, MAX_TCP_LENGTH)) {
+        tcpLength.clear();
+        tcpLength.putShort(0, (short) tcpResponse.remaining());
+        ((SocketChannel) key.channel()).write(tcpFrame);
+        int remaining = tcpLength.remaining() + tcpResponse.remaining();
+        if (remaining > 0) {
+          connection.pending = ByteBuffer.allocate(remaining).put(tcpLength).put(tcpResponse);
+          connection.pending.flip();
+          key.interestOps(SelectionKey.OP_WRITE);
+        }
+      }
+    }
+  }
+
+  private void flush(SelectionKey key, TcpConnection connection) throws IOException {
+    ByteBuffer pending = connection.pending;
+    if (pending != null) {
+      ((SocketChannel) key.channel()).write(pending);
+      if (pending.hasRemaining()) {
+        return;
+      }
+      connection.pending = null;
+    }
+    connection.lastActive = System.nanoTime();
+    key.interestOps(SelectionKey.OP_READ);
+    answerTcp(key, connection);
+  }
+
+  private void closeIdleConnections(long now) {
+    for (SelectionKey key : selector.keys()) {
+      if (key.attachment() instanceof TcpConnection connection
+          && now - connection.lastActive > TCP_IDLE_NANOS) {
+        closeConnection(key);
+      }
+    }
+  }
+
+  private static void closeConnection(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      log.debug("Closing a TCP connection failed: {}", e.getMessage());
+    }
+  }
+
+  private static final class TcpConnection {
+    final ByteBuffer in = ByteBuffer.allocate(2 + MAX_QUERY_LENGTH);
+    @Nullable ByteBuffer pending;
+    long lastActive;
+
+    TcpConnection(long lastActive) {
+      this.lastActive = lastActive;
+    }
+  }
+}
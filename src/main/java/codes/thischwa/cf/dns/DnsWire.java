@@ -0,0 +1,285 @@
+package codes.thischwa.cf.dns;
+
+import codes.thischwa.cf.model.RecordType;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Encodes and decodes the DNS wire format of RFC 1035, as far as needed to query and answer the
+ * records managed by the Cloudflare API. Names are handled in their canonical form: lowercase
+ * ASCII without trailing dot. Malformed messages cause an {@link IllegalArgumentException} or an
+ * {@link IndexOutOfBoundsException}.
+ */
+final class DnsWire {
+
+  static final int HEADER_LENGTH = 12;
+  static final int MAX_UDP_LENGTH = 512;
+
+  static final int TYPE_A = 1;
+  static final int TYPE_NS = 2;
+  static final int TYPE_CNAME = 5;
+  static final int TYPE_PTR = 12;
+  static final int TYPE_MX = 15;
+  static final int TYPE_TXT = 16;
+  static final int TYPE_AAAA = 28;
+  static final int TYPE_SRV = 33;
+  static final int TYPE_ANY = 255;
+  static final int TYPE_CAA = 257;
+  static final int CLASS_IN = 1;
+
+  static final int FLAG_QR = 0x8000;
+  static final int FLAG_AA = 0x0400;
+  static final int FLAG_TC = 0x0200;
+  static final int FLAG_RD = 0x0100;
+  static final int OPCODE_MASK = 0x7800;
+
+  static final int RCODE_NOERROR = 0;
+  static final int RCODE_FORMERR = 1;
+  static final int RCODE_NXDOMAIN = 3;
+  static final int RCODE_NOTIMP = 4;
+  static final int RCODE_REFUSED = 5;
+  static final int RCODE_MASK = 0x000f;
+
+  private static final int MAX_LABEL_LENGTH = 63;
+  private static final int MAX_POINTERS = 32;
+
+  private DnsWire() {}
+
+  /**
+   * Retrieves the DNS type code of a record type.
+   *
+   * @param type the record type
+   * @return the type code, or -1 if the type isn't supported
+   */
+  static int typeCode(RecordType type) {
+    switch (type) {
+      case A:
+        return TYPE_A;
+      case NS:
+        return TYPE_NS;
+      case CNAME:
+        return TYPE_CNAME;
+      case PTR:
+        return TYPE_PTR;
+      case MX:
+        return TYPE_MX;
+      case TXT:
+        return TYPE_TXT;
+      case AAAA:
+        return TYPE_AAAA;
+      default:
+        return -1;
+    }
+  }
+
+  /** Lowercases a name and removes its trailing dot. */
+  static String canonicalName(String name) {
+    String lower = name.trim().toLowerCase(Locale.ROOT);
+    return lower.length() > 1 && lower.endsWith(".")
+        ? lower.substring(0, lower.length() - 1)
+        : lower;
+  }
+
+  static int u16(ByteBuffer msg, int pos) {
+    return msg.getShort(pos) & 0xffff;
+  }
+
+  /** Checks if the truncation flag of a message is set, its records are incomplete then. */
+  static boolean isTruncated(ByteBuffer msg) {
+    return (u16(msg, 2) & FLAG_TC) != 0;
+  }
+
+  /**
+   * Writes a query with a single question and the recursion desired flag, and flips the buffer.
+   */
+  static void writeQuery(ByteBuffer buf, int id, String name, int type) {
+    buf.clear();
+    buf.putShort((short) id).putShort((short) FLAG_RD);
+    buf.putShort((short) 1).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+    writeName(buf, name);
+    buf.putShort((short) type).putShort((short) CLASS_IN);
+    buf.flip();
+  }
+
+  /** Writes an uncompressed name in canonical form. */
+  static void writeName(ByteBuffer buf, String name) {
+    int length = name.endsWith(".") ? name.length() - 1 : name.length();
+    int start = 0;
+    while (start < length) {
+      int end = name.indexOf('.', start);
+      if (end < 0) {
+        end = length;
+      }
+      int labelLength = end - start;
+      if (labelLength == 0 || labelLength > MAX_LABEL_LENGTH) {
+        throw new IllegalArgumentException("Invalid name: " + name);
+      }
+      buf.put((byte) labelLength);
+      for (int i = start; i < end; i++) {
+        char c = name.charAt(i);
+        if (c > 0x7f) {
+          throw new IllegalArgumentException("Name isn't ASCII, use punycode: " + name);
+        }
+        buf.put((byte) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c));
+      }
+      start = end + 1;
+    }
+    buf.put((byte) 0);
+  }
+
+  /**
+   * Reads a possibly compressed name.
+   *
+   * @param msg the message
+   * @param pos the position of the name
+   * @param out receives the name in canonical form, or {@code null} to skip the name
+   * @return the position after the name
+   */
+  static int readName(ByteBuffer msg, int pos, @Nullable StringBuilder out) {
+    int end = -1;
+    int pointers = 0;
+    int start = out == null ? 0 : out.length();
+    while (true) {
+      int length = msg.get(pos) & 0xff;
+      if ((length & 0xc0) == 0xc0) {
+        if (++pointers > MAX_POINTERS) {
+          throw new IllegalArgumentException("Too many compression pointers.");
+        }
+        if (end < 0) {
+          end = pos + 2;
+        }
+        pos = ((length & 0x3f) << 8) | (msg.get(pos + 1) & 0xff);
+      } else if (length == 0) {
+        return end < 0 ? pos + 1 : end;
+      } else if (length > MAX_LABEL_LENGTH) {
+        throw new IllegalArgumentException("Invalid label length: " + length);
+      } else {
+        if (out != null) {
+          if (out.length() > start) {
+            out.append('.');
+          }
+          for (int i = pos + 1; i <= pos + length; i++) {
+            char c = (char) (msg.get(i) & 0xff);
+            out.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+          }
+        }
+        pos += length + 1;
+      }
+    }
+  }
+
+  /**
+   * Reads the records of a response which answer its question, in presentation form: the address
+   * of A and AAAA records, the canonical name of NS, CNAME and PTR records, {@code "preference
+   * name"} of MX records and the concatenated strings of TXT records.
+   *
+   * @param msg the response, between position 0 and its limit
+   * @param name the canonical name of the question
+   * @param type the type code of the question
+   * @return the answers, empty if the name doesn't exist or has no records of the type
+   * @throws IllegalArgumentException if the message isn't a response to the question or is
+   *     truncated, a truncated response has to be repeated over TCP
+   */
+  static List<String> answers(ByteBuffer msg, String name, int type) {
+    if ((u16(msg, 2) & FLAG_QR) == 0 || u16(msg, 4) != 1) {
+      throw new IllegalArgumentException("Not a response with a single question.");
+    }
+    if (isTruncated(msg)) {
+      throw new IllegalArgumentException("Truncated response.");
+    }
+    StringBuilder owner = new StringBuilder();
+    int pos = readName(msg, HEADER_LENGTH, owner);
+    if (!owner.toString().equals(name) || u16(msg, pos) != type) {
+      throw new IllegalArgumentException("Response to another question: " + owner);
+    }
+    pos += 4;
+    int count = u16(msg, 6);
+    List<String> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      owner.setLength(0);
+      pos = readName(msg, pos, owner);
+      int rrType = u16(msg, pos);
+      int rdLength = u16(msg, pos + 8);
+      int rdata = pos + 10;
+      if (rdata + rdLength > msg.limit()) {
+        throw new IllegalArgumentException("Truncated record.");
+      }
+      if (rrType == type && owner.toString().equals(name)) {
+        result.add(rdata(msg, type, rdata, rdLength));
+      }
+      pos = rdata + rdLength;
+    }
+    return result;
+  }
+
+  private static String rdata(ByteBuffer msg, int type, int pos, int length) {
+    switch (type) {
+      case TYPE_A:
+      case TYPE_AAAA:
+        byte[] address = new byte[length];
+        msg.get(pos, address);
+        try {
+          return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+          throw new IllegalArgumentException("Invalid address length: " + length, e);
+        }
+      case TYPE_NS:
+      case TYPE_CNAME:
+      case TYPE_PTR:
+        StringBuilder target = new StringBuilder();
+        readName(msg, pos, target);
+        return target.toString();
+      case TYPE_MX:
+        StringBuilder exchange = new StringBuilder().append(u16(msg, pos)).append(' ');
+        readName(msg, pos + 2, exchange);
+        return exchange.toString();
+      case TYPE_TXT:
+        byte[] text = new byte[length];
+        int textLength = 0;
+        for (int i = pos; i < pos + length; ) {
+          int stringLength = msg.get(i) & 0xff;
+          msg.get(i + 1, text, textLength, stringLength);
+          textLength += stringLength;
+          i += stringLength + 1;
+        }
+        return new String(text, 0, textLength, StandardCharsets.UTF_8);
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+
+  /**
+   * Converts the content of a TXT record, as used by the Cloudflare API, to its text: the quoted
+   * strings are unescaped and concatenated. Unquoted content is the text itself.
+   */
+  static String txtText(String content) {
+    if (!content.startsWith("\"")) {
+      return content;
+    }
+    StringBuilder text = new StringBuilder(content.length());
+    boolean quoted = false;
+    for (int i = 0; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (quoted && c == '\\' && i + 1 < content.length()) {
+        char next = content.charAt(++i);
+        if (next >= '0' && next <= '9' && i + 2 < content.length()) {
+          text.append((char) Integer.parseInt(content.substring(i, i + 3)));
+          i += 2;
+        } else {
+          text.append(next);
+        }
+      } else if (quoted) {
+        text.append(c);
+      }
+    }
+    return text.toString();
+  }
+}
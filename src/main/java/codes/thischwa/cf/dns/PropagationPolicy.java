@@ -0,0 +1,37 @@
+package codes.thischwa.cf.dns;
+
+import java.time.Duration;
+
+/**
+ * Represents the timing of the queries of a {@link PropagationVerifier}. A query which isn't
+ * answered within the query timeout is sent again. A resolver whose answer doesn't contain the
+ * expected content yet is asked again after a backoff, which starts with the initial backoff and
+ * doubles with each attempt up to the maximum backoff.
+ *
+ * @param queryTimeout the time to wait for an answer before a query is sent again
+ * @param initialBackoff the time before a resolver is asked again after its first stale answer
+ * @param maxBackoff the upper bound of the backoff
+ */
+public record PropagationPolicy(
+    Duration queryTimeout, Duration initialBackoff, Duration maxBackoff) {
+
+  /** The default policy: a query timeout of 2 s and a backoff between 1 s and 30 s. */
+  public static final PropagationPolicy DEFAULT =
+      new PropagationPolicy(Duration.ofSeconds(2), Duration.ofSeconds(1), Duration.ofSeconds(30));
+
+  /**
+   * Constructs the policy and checks it.
+   *
+   * @throws IllegalArgumentException if a value is out of range
+   */
+  public PropagationPolicy {
+    if (queryTimeout.isNegative() || queryTimeout.isZero()) {
+      throw new IllegalArgumentException("Query timeout must be positive.");
+    }
+    if (initialBackoff.isNegative()
+        || initialBackoff.isZero()
+        || maxBackoff.compareTo(initialBackoff) < 0) {
+      throw new IllegalArgumentException("Backoffs must satisfy 0 < initialBackoff <= maxBackoff.");
+    }
+  }
+}
@@ -0,0 +1,495 @@
+package codes.thischwa.cf.dns;
+
+import codes.thischwa.cf.RecordValidator;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Verifies that a record is served by DNS resolvers, e.g. after {@link
+ * codes.thischwa.cf.CfDnsClient#recordUpdate}. The resolvers are asked for the name and type of the
+ * record until the answers of all of them contain the content of the record.
+ *
+ * <p>All queries are sent over a single non-blocking {@link DatagramChannel} and multiplexed on
+ * one selector thread, so many verifications with many resolvers each cost a single thread. A
+ * query which isn't answered within the query timeout of the {@link PropagationPolicy} is sent
+ * again. A resolver with a stale answer is asked again after an exponential backoff, its cache
+ * expires according to the TTL of the old record. A truncated response is repeated over TCP, by a
+ * blocking query on a separate thread.
+ *
+ * <p>Supported are the types A, AAAA, CNAME, NS, PTR, MX and TXT. The content is compared in
+ * canonical form: addresses as parsed, names lowercase without trailing dot, TXT records by their
+ * unquoted text. The priority of an MX record is compared if it's set. The name of the record must
+ * be fully qualified, as returned by the API. Proxied A, AAAA and CNAME records can't be verified,
+ * resolvers answer them with the addresses of the Cloudflare proxy instead of the content.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * try (PropagationVerifier verifier = new PropagationVerifier(List.of(
+ *     new InetSocketAddress("1.1.1.1", 53), new InetSocketAddress("8.8.8.8", 53)))) {
+ *   RecordEntity updated = cfDnsClient.recordUpdate(zone, rec);
+ *   Duration took = verifier.verify(updated, Duration.ofMinutes(10)).get();
+ * }
+ * </code></pre>
+ */
+@Slf4j
+public class PropagationVerifier implements Closeable {
+
+  private final List<InetSocketAddress> resolvers;
+  private final long queryTimeoutNanos;
+  private final long initialBackoffNanos;
+  private final long maxBackoffNanos;
+
+  private final DatagramChannel channel;
+  private final Selector selector;
+  private final Thread thread;
+  private final Queue<Verification> submitted = new ConcurrentLinkedQueue<>();
+  private final Queue<TcpAnswer> tcpAnswers = new ConcurrentLinkedQueue<>();
+  private final ExecutorService tcpExecutor =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "cf-propagation-tcp");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private volatile boolean closed;
+
+  // owned by the selector thread
+  private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+  private final Map<Integer, Probe> inFlight = new HashMap<>();
+  private final Set<Verification> active = new HashSet<>();
+  private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(DnsWire.MAX_UDP_LENGTH);
+  private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(DnsWire.MAX_UDP_LENGTH);
+
+  /**
+   * Constructs a PropagationVerifier with the {@link PropagationPolicy#DEFAULT default policy}.
+   *
+   * @param resolvers the addresses of the resolvers to ask
+   * @throws IOException if the channel can't be opened
+   */
+  public PropagationVerifier(List<InetSocketAddress> resolvers) throws IOException {
+    this(resolvers, PropagationPolicy.DEFAULT);
+  }
+
+  /**
+   * Constructs a PropagationVerifier and starts its selector thread.
+   *
+   * @param resolvers the addresses of the resolvers to ask
+   * @param policy the timing of the queries
+   * @throws IOException if the channel can't be opened
+   * @throws IllegalArgumentException if there are no resolvers or one isn't resolved
+   */
+  public PropagationVerifier(List<InetSocketAddress> resolvers, PropagationPolicy policy)
+      throws IOException {
+    if (resolvers.isEmpty()) {
+      throw new IllegalArgumentException("At least one resolver is required.");
+    }
+    if (resolvers.stream().anyMatch(InetSocketAddress::isUnresolved)) {
+      throw new IllegalArgumentException("The addresses of the resolvers must be resolved.");
+    }
+    this.resolvers = List.copyOf(resolvers);
+    this.queryTimeoutNanos = policy.queryTimeout().toNanos();
+    this.initialBackoffNanos = policy.initialBackoff().toNanos();
+    this.maxBackoffNanos = policy.maxBackoff().toNanos();
+    this.selector = Selector.open();
+    this.channel = DatagramChannel.open();
+    channel.configureBlocking(false);
+    channel.bind(null);
+    channel.register(selector, SelectionKey.OP_READ);
+    this.thread = new Thread(this::run, "cf-propagation-verifier");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Starts the verification of a record.
+   *
+   * @param rec the record, with its fully qualified name, type and expected content
+   * @param timeout the time after which the verification fails
+   * @return a future completed with the time until all resolvers answered with the content, or
+   *     exceptionally with a {@link TimeoutException} naming the resolvers which didn't
+   * @throws IllegalArgumentException if the type of the record isn't supported, its name or
+   *     content is malformed, or it's a proxied A, AAAA or CNAME record
+   * @throws IllegalStateException if the verifier is closed
+   */
+  public CompletableFuture<Duration> verify(RecordEntity rec, Duration timeout) {
+    if (closed) {
+      throw new IllegalStateException("The verifier is closed.");
+    }
+    RecordType recordType = rec.getRecordType();
+    int type = recordType == null ? -1 : DnsWire.typeCode(recordType);
+    if (type < 0) {
+      throw new IllegalArgumentException("Unsupported record type: " + rec.getType());
+    }
+    if (Boolean.TRUE.equals(rec.getProxied())
+        && (type == DnsWire.TYPE_A || type == DnsWire.TYPE_AAAA || type == DnsWire.TYPE_CNAME)) {
+      throw new IllegalArgumentException(
+          "A proxied record is answered with the addresses of the proxy: " + rec.getName());
+    }
+    String name = DnsWire.canonicalName(rec.getName());
+    // fails fast on a malformed name
+    DnsWire.writeQuery(ByteBuffer.allocate(DnsWire.MAX_UDP_LENGTH), 0, name, type);
+    long now = System.nanoTime();
+    Verification verification =
+        new Verification(name, type, expected(rec, type), now, now + timeout.toNanos());
+    submitted.add(verification);
+    selector.wakeup();
+    return verification.future;
+  }
+
+  /** Stops the selector thread, pending verifications fail with a CancellationException. */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    selector.wakeup();
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    tcpExecutor.shutdownNow();
+    channel.close();
+    selector.close();
+  }
+
+  private static String expected(RecordEntity rec, int type) {
+    String content = rec.getContent() == null ? "" : rec.getContent().trim();
+    switch (type) {
+      case DnsWire.TYPE_A:
+      case DnsWire.TYPE_AAAA:
+        byte[] address = RecordValidator.parseAddress(content);
+        if (address == null || address.length != (type == DnsWire.TYPE_A ? 4 : 16)) {
+          throw new IllegalArgumentException("Not an address: " + content);
+        }
+        try {
+          return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+          throw new IllegalArgumentException("Not an address: " + content, e);
+        }
+      case DnsWire.TYPE_TXT:
+        return DnsWire.txtText(content);
+      case DnsWire.TYPE_MX:
+        String exchange = DnsWire.canonicalName(content);
+        return rec.getPriority() == null ? exchange : rec.getPriority() + " " + exchange;
+      default:
+        return DnsWire.canonicalName(content);
+    }
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        long now = System.nanoTime();
+        startSubmitted(now);
+        long wait = fireTimers(now);
+        selector.select(wait);
+        selector.selectedKeys().clear();
+        receive();
+        receiveTcp();
+      }
+    } catch (IOException | RuntimeException e) {
+      log.error("The propagation verifier stopped unexpectedly.", e);
+    } finally {
+      CancellationException cancelled = new CancellationException("The verifier is closed.");
+      for (Verification verification : active) {
+        verification.future.completeExceptionally(cancelled);
+      }
+      for (Verification verification : submitted) {
+        verification.future.completeExceptionally(cancelled);
+      }
+    }
+  }
+
+  private void startSubmitted(long now) {
+    Verification verification;
+    while ((verification = submitted.poll()) != null) {
+      active.add(verification);
+      timers.add(new Timer(verification.deadline, verification, null));
+      for (InetSocketAddress resolver : resolvers) {
+        Probe probe = new Probe(verification, resolver);
+        verification.probes.add(probe);
+        schedule(probe, now);
+      }
+    }
+  }
+
+  /** Fires the due timers and returns the milliseconds until the next one, 0 if there is none. */
+  private long fireTimers(long now) {
+    Timer timer;
+    while ((timer = timers.peek()) != null && timer.due - now <= 0) {
+      timers.poll();
+      Verification verification = timer.verification;
+      if (verification.future.isDone()) {
+        finish(verification);
+      } else if (timer.probe == null) {
+        List<SocketAddress> pending = new ArrayList<>();
+        for (Probe probe : verification.probes) {
+          if (!probe.agreed) {
+            pending.add(probe.resolver);
+          }
+        }
+        verification.future.completeExceptionally(
+            new TimeoutException(
+                verification.name + " isn't propagated to " + pending + " in time."));
+        finish(verification);
+      } else if (timer.probe.due == timer.due) {
+        send(timer.probe, now);
+      }
+    }
+    return timer == null ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(timer.due - now));
+  }
+
+  private void send(Probe probe, long now) {
+    if (probe.queryId >= 0) {
+      inFlight.remove(probe.queryId);
+      log.debug("Query for {} to {} timed out.", probe.verification.name, probe.resolver);
+    }
+    int id;
+    do {
+      id = ThreadLocalRandom.current().nextInt(0x10000);
+    } while (inFlight.containsKey(id));
+    DnsWire.writeQuery(sendBuffer, id, probe.verification.name, probe.verification.type);
+    try {
+      channel.send(sendBuffer, probe.resolver);
+    } catch (IOException e) {
+      log.debug(
+          "Query for {} to {} failed: {}",
+          probe.verification.name,
+          probe.resolver,
+          e.getMessage());
+    }
+    probe.queryId = id;
+    probe.attempts++;
+    inFlight.put(id, probe);
+    schedule(probe, now + queryTimeoutNanos);
+  }
+
+  private void receive() throws IOException {
+    SocketAddress source;
+    while (true) {
+      receiveBuffer.clear();
+      source = channel.receive(receiveBuffer);
+      if (source == null) {
+        return;
+      }
+      receiveBuffer.flip();
+      if (receiveBuffer.remaining() < DnsWire.HEADER_LENGTH) {
+        continue;
+      }
+      Probe probe = inFlight.get(DnsWire.u16(receiveBuffer, 0));
+      if (probe == null || !probe.resolver.equals(source)) {
+        continue;
+      }
+      Verification verification = probe.verification;
+      if (DnsWire.isTruncated(receiveBuffer)) {
+        inFlight.remove(probe.queryId);
+        probe.queryId = -1;
+        queryTcp(probe);
+        continue;
+      }
+      List<String> answers;
+      try {
+        answers = DnsWire.answers(receiveBuffer, verification.name, verification.type);
+      } catch (RuntimeException e) {
+        log.debug("Ignored malformed response of {}: {}", source, e.getMessage());
+        continue;
+      }
+      inFlight.remove(probe.queryId);
+      probe.queryId = -1;
+      evaluate(probe, answers, System.nanoTime());
+    }
+  }
+
+  /** Processes the answers received over TCP. */
+  private void receiveTcp() {
+    TcpAnswer tcpAnswer;
+    while ((tcpAnswer = tcpAnswers.poll()) != null) {
+      Probe probe = tcpAnswer.probe();
+      if (probe.agreed || probe.verification.future.isDone()) {
+        continue;
+      }
+      long now = System.nanoTime();
+      if (tcpAnswer.answers() == null) {
+        schedule(probe, now + backoff(probe.attempts));
+      } else {
+        evaluate(probe, tcpAnswer.answers(), now);
+      }
+    }
+  }
+
+  private void evaluate(Probe probe, List<String> answers, long now) {
+    Verification verification = probe.verification;
+    if (verification.agrees(answers)) {
+      probe.agreed = true;
+      probe.due = 0;
+      if (--verification.pending == 0) {
+        verification.future.complete(Duration.ofNanos(now - verification.start));
+        finish(verification);
+      }
+    } else {
+      log.debug(
+          "{} answered {} for {}, expected {}.",
+          probe.resolver,
+          answers,
+          verification.name,
+          verification.expected);
+      schedule(probe, now + backoff(probe.attempts));
+    }
+  }
+
+  /**
+   * Repeats the query of a probe over TCP on a separate thread. The probe isn't sent again by its
+   * timers meanwhile, the answers are queued for the selector thread.
+   */
+  private void queryTcp(Probe probe) {
+    probe.due = 0;
+    tcpExecutor.execute(
+        () -> {
+          List<String> answers = null;
+          try {
+            answers = queryTcp(probe.resolver, probe.verification.name, probe.verification.type);
+          } catch (IOException | RuntimeException e) {
+            log.debug(
+                "TCP query for {} to {} failed: {}",
+                probe.verification.name,
+                probe.resolver,
+                e.getMessage());
+          }
+          tcpAnswers.add(new TcpAnswer(probe, answers));
+          selector.wakeup();
+        });
+  }
+
+  private List<String> queryTcp(InetSocketAddress resolver, String name, int type)
+      throws IOException {
+    int timeout = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(queryTimeoutNanos));
+    int id = ThreadLocalRandom.current().nextInt(0x10000);
+    ByteBuffer query = ByteBuffer.allocate(DnsWire.MAX_UDP_LENGTH);
+    DnsWire.writeQuery(query, id, name, type);
+    try (Socket socket = new Socket()) {
+      socket.connect(resolver, timeout);
+      socket.setSoTimeout(timeout);
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.writeShort(query.remaining());
+      out.write(query.array(), 0, query.remaining());
+      out.flush();
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      byte[] response = new byte[in.readUnsignedShort()];
+      in.readFully(response);
+      ByteBuffer msg = ByteBuffer.wrap(response);
+      if (response.length < DnsWire.HEADER_LENGTH || DnsWire.u16(msg, 0) != id) {
+        throw new IOException("Unexpected response.");
+      }
+      return DnsWire.answers(msg, name, type);
+    }
+  }
+
+  private long backoff(int attempts) {
+    int shift = Math.min(attempts - 1, 30);
+    long backoff = initialBackoffNanos << shift;
+    return backoff < 0 || backoff > maxBackoffNanos ? maxBackoffNanos : backoff;
+  }
+
+  private void schedule(Probe probe, long due) {
+    probe.due = due;
+    timers.add(new Timer(due, probe.verification, probe));
+  }
+
+  private void finish(Verification verification) {
+    if (active.remove(verification)) {
+      for (Probe probe : verification.probes) {
+        if (probe.queryId >= 0) {
+          inFlight.remove(probe.queryId);
+          probe.queryId = -1;
+        }
+      }
+    }
+  }
+
+  private static final class Verification {
+    final String name;
+    final int type;
+    final String expected;
+    final long start;
+    final long deadline;
+    final List<Probe> probes = new ArrayList<>();
+    final CompletableFuture<Duration> future = new CompletableFuture<>();
+    int pending;
+
+    Verification(String name, int type, String expected, long start, long deadline) {
+      this.name = name;
+      this.type = type;
+      this.expected = expected;
+      this.start = start;
+      this.deadline = deadline;
+    }
+
+    boolean agrees(List<String> answers) {
+      boolean exchangeOnly = type == DnsWire.TYPE_MX && expected.indexOf(' ') < 0;
+      for (String answer : answers) {
+        String actual = exchangeOnly ? answer.substring(answer.indexOf(' ') + 1) : answer;
+        if (actual.equals(expected)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class Probe {
+    final Verification verification;
+    final InetSocketAddress resolver;
+    int queryId = -1;
+    int attempts;
+    boolean agreed;
+    long due;
+
+    Probe(Verification verification, InetSocketAddress resolver) {
+      this.verification = verification;
+      this.resolver = resolver;
+      verification.pending++;
+    }
+  }
+
+  private record TcpAnswer(Probe probe, @Nullable List<String> answers) {}
+
+  private record Timer(long due, Verification verification, @Nullable Probe probe)
+      implements Comparable<Timer> {
+    @Override
+    public int compareTo(Timer other) {
+      return Long.compare(due - other.due, 0);
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package codes.thischwa.cf.dns;
+
+import codes.thischwa.cf.RecordValidator;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The records of a zone served by a {@link DnsResponder}, compiled to wire format. Each name is a
+ * {@link Node} holding the encoded records of each type. Writes are serialized, lookups are
+ * lock-free and see each node completely or not at all.
+ */
+@Slf4j
+final class ServedZone {
+
+  /** The TTL served for records with the automatic TTL of Cloudflare. */
+  static final int AUTOMATIC_TTL = 300;
+
+  final String id;
+  final String name;
+
+  private final Map<String, Rr> records = new HashMap<>();
+  private final Map<String, Map<String, Rr>> recordsByName = new HashMap<>();
+  private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+  private final Map<String, Integer> descendants = new ConcurrentHashMap<>();
+
+  ServedZone(String id, String name) {
+    this.id = id;
+    this.name = DnsWire.canonicalName(name);
+  }
+
+  /** An encoded record. */
+  private record Rr(String name, int type, int ttl, byte[] rdata, @Nullable String target) {}
+
+  /**
+   * The records of a name. The records of a type are adjacent, the owner name is encoded
+   * uncompressed for answers to other names, e.g. the targets of CNAME records.
+   */
+  static final class Node {
+    final byte[] wireName;
+    final int[] types;
+    final int[] ttls;
+    final byte[][] rdata;
+    @Nullable final String cnameTarget;
+
+    private Node(String name, List<Rr> rrs) {
+      ByteBuffer buf = ByteBuffer.allocate(name.length() + 2);
+      DnsWire.writeName(buf, name);
+      this.wireName = Arrays.copyOf(buf.array(), buf.position());
+      rrs.sort((a, b) -> Integer.compare(a.type, b.type));
+      this.types = new int[rrs.size()];
+      this.ttls = new int[rrs.size()];
+      this.rdata = new byte[rrs.size()][];
+      String target = null;
+      for (int i = 0; i < rrs.size(); i++) {
+        Rr rr = rrs.get(i);
+        types[i] = rr.type;
+        ttls[i] = rr.ttl;
+        rdata[i] = rr.rdata;
+        if (rr.type == DnsWire.TYPE_CNAME) {
+          target = rr.target;
+        }
+      }
+      this.cnameTarget = target;
+    }
+
+    /** Retrieves the index of the first record of a type, or -1. */
+    int first(int type) {
+      for (int i = 0; i < types.length; i++) {
+        if (types[i] == type) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Looks up the node of a name.
+   *
+   * @param qname the canonical name
+   * @return the node, or {@code null} if the name has no records
+   */
+  @Nullable
+  Node node(String qname) {
+    return nodes.get(qname);
+  }
+
+  /** Checks if a name exists: the apex, a name with records, or an ancestor of one. */
+  boolean exists(String qname) {
+    return qname.equals(name) || nodes.containsKey(qname) || descendants.containsKey(qname);
+  }
+
+  /**
+   * Looks up the wildcard node matching a name which doesn't exist, the wildcard of its closest
+   * encloser according to RFC 4592.
+   */
+  @Nullable
+  Node wildcard(String qname) {
+    for (int dot = qname.indexOf('.'); dot >= 0; dot = qname.indexOf('.', dot + 1)) {
+      String parent = qname.substring(dot + 1);
+      if (parent.length() < name.length()) {
+        return null;
+      }
+      if (exists(parent)) {
+        return nodes.get("*." + parent);
+      }
+    }
+    return null;
+  }
+
+  /** Checks if a name is the apex of the zone or below it. */
+  boolean contains(String qname) {
+    int offset = qname.length() - name.length();
+    return offset == 0
+        ? qname.equals(name)
+        : offset > 0 && qname.charAt(offset - 1) == '.' && qname.startsWith(name, offset);
+  }
+
+  /** Replaces all records of the zone. */
+  synchronized void load(Iterable<RecordEntity> recs) {
+    records.clear();
+    List<String> names = new ArrayList<>(recordsByName.keySet());
+    recordsByName.clear();
+    for (RecordEntity rec : recs) {
+      Rr rr = compile(rec);
+      if (rr != null) {
+        records.put(rec.getId(), rr);
+        recordsByName.computeIfAbsent(rr.name, n -> new LinkedHashMap<>()).put(rec.getId(), rr);
+      }
+    }
+    names.addAll(recordsByName.keySet());
+    names.forEach(this::rebuild);
+  }
+
+  /** Adds or replaces a record. */
+  synchronized void put(RecordEntity rec) {
+    Rr rr = compile(rec);
+    Rr old = rr == null ? records.remove(rec.getId()) : records.put(rec.getId(), rr);
+    if (old != null) {
+      recordsByName.get(old.name).remove(rec.getId());
+      rebuild(old.name);
+    }
+    if (rr != null) {
+      recordsByName.computeIfAbsent(rr.name, n -> new LinkedHashMap<>()).put(rec.getId(), rr);
+      rebuild(rr.name);
+    }
+  }
+
+  /** Removes a record, returns {@code true} if it was served. */
+  synchronized boolean remove(String recordId) {
+    Rr old = records.remove(recordId);
+    if (old == null) {
+      return false;
+    }
+    recordsByName.get(old.name).remove(recordId);
+    rebuild(old.name);
+    return true;
+  }
+
+  synchronized int size() {
+    return records.size();
+  }
+
+  private void rebuild(String owner) {
+    Map<String, Rr> rrs = recordsByName.get(owner);
+    if (rrs == null || rrs.isEmpty()) {
+      recordsByName.remove(owner);
+      if (nodes.remove(owner) != null) {
+        countDescendant(owner, -1);
+      }
+    } else if (nodes.put(owner, new Node(owner, new ArrayList<>(rrs.values()))) == null) {
+      countDescendant(owner, 1);
+    }
+  }
+
+  private void countDescendant(String owner, int delta) {
+    for (int dot = owner.indexOf('.'); dot >= 0; dot = owner.indexOf('.', dot + 1)) {
+      String parent = owner.substring(dot + 1);
+      if (parent.length() <= name.length()) {
+        return;
+      }
+      descendants.merge(parent, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+  }
+
+  /** Encodes a record, returns {@code null} if its type isn't served or it's malformed. */
+  @Nullable
+  private Rr compile(RecordEntity rec) {
+    RecordType type = rec.getRecordType();
+    if (rec.getId() == null || rec.getName() == null || rec.getContent() == null || type == null) {
+      return null;
+    }
+    String owner = DnsWire.canonicalName(rec.getName());
+    if (!contains(owner)) {
+      log.debug("Record {} isn't in the zone {}, skipped.", owner, name);
+      return null;
+    }
+    int ttl = rec.getTtl() == null || rec.getTtl() == 1 ? AUTOMATIC_TTL : rec.getTtl();
+    int priority = rec.getPriority() == null ? 0 : rec.getPriority();
+    String content = rec.getContent().trim();
+    ByteBuffer buf = ByteBuffer.allocate(Math.max(512, 4 * content.length() + 16));
+    String target = null;
+    try {
+      switch (type) {
+        case A:
+        case AAAA:
+          buf.put(address(content, type == RecordType.A ? 4 : 16));
+          break;
+        case CNAME:
+        case NS:
+        case PTR:
+          target = DnsWire.canonicalName(content);
+          DnsWire.writeName(buf, target);
+          break;
+        case MX:
+          buf.putShort((short) priority);
+          DnsWire.writeName(buf, DnsWire.canonicalName(content));
+          break;
+        case TXT:
+          writeStrings(buf, content);
+          break;
+        case SRV:
+          String[] srv = content.split("\\s+");
+          int offset = srv.length == 4 ? 1 : 0;
+          if (srv.length != 3 + offset) {
+            throw new IllegalArgumentException("Expected [priority] weight port target.");
+          }
+          buf.putShort((short) (offset == 1 ? Integer.parseInt(srv[0]) : priority));
+          buf.putShort((short) Integer.parseInt(srv[offset]));
+          buf.putShort((short) Integer.parseInt(srv[offset + 1]));
+          DnsWire.writeName(buf, DnsWire.canonicalName(srv[offset + 2]));
+          break;
+        case CAA:
+          String[] caa = content.split("\\s+", 3);
+          if (caa.length != 3) {
+            throw new IllegalArgumentException("Expected flags tag value.");
+          }
+          byte[] tag = caa[1].getBytes(StandardCharsets.US_ASCII);
+          buf.put((byte) Integer.parseInt(caa[0])).put((byte) tag.length).put(tag);
+          buf.put(DnsWire.txtText(caa[2]).getBytes(StandardCharsets.UTF_8));
+          break;
+        default:
+          log.debug("Record {} of type {} isn't served.", owner, type);
+          return null;
+      }
+    } catch (RuntimeException e) {
+      log.warn("Record {} of type {} is malformed, skipped: {}", owner, type, e.getMessage());
+      return null;
+    }
+    return new Rr(
+        owner, typeCode(type), ttl, Arrays.copyOf(buf.array(), buf.position()), target);
+  }
+
+  private static int typeCode(RecordType type) {
+    switch (type) {
+      case SRV:
+        return DnsWire.TYPE_SRV;
+      case CAA:
+        return DnsWire.TYPE_CAA;
+      default:
+        return DnsWire.typeCode(type);
+    }
+  }
+
+  private static byte[] address(String content, int length) {
+    byte[] address = RecordValidator.parseAddress(content);
+    if (address == null) {
+      throw new IllegalArgumentException("Not an address: " + content);
+    }
+    if (address.length != length) {
+      throw new IllegalArgumentException("Wrong address family: " + content);
+    }
+    return address;
+  }
+
+  /** Writes the character strings of TXT content, quoted strings or unquoted text. */
+  private static void writeStrings(ByteBuffer buf, String content) {
+    if (!content.startsWith("\"")) {
+      writeChunks(buf, content.getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    int start = 0;
+    while (start < content.length()) {
+      if (content.charAt(start) != '"') {
+        start++;
+        continue;
+      }
+      int end = start + 1;
+      while (end < content.length() && content.charAt(end) != '"') {
+        end += content.charAt(end) == '\\' ? 2 : 1;
+      }
+      String text = DnsWire.txtText(content.substring(start, Math.min(end + 1, content.length())));
+      writeChunks(buf, text.getBytes(StandardCharsets.UTF_8));
+      start = end + 1;
+    }
+  }
+
+  private static void writeChunks(ByteBuffer buf, byte[] text) {
+    int start = 0;
+    do {
+      int length = Math.min(255, text.length - start);
+      buf.put((byte) length).put(text, start, length);
+      start += length;
+    } while (start < text.length);
+  }
+}
@@ -0,0 +1,2 @@
+/** Access to DNS servers over the DNS wire protocol, e.g. to verify the propagation of records. */
+package codes.thischwa.cf.dns;
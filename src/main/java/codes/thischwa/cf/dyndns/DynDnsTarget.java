@@ -0,0 +1,36 @@
+package codes.thischwa.cf.dyndns;
+
+import codes.thischwa.cf.model.RecordType;
+
+/**
+ * Represents a DNS record kept up to date by the {@link DynDnsUpdater}.
+ *
+ * @param zone the name of the zone, e.g. "example.com"
+ * @param sld the second-level domain of the record, e.g. "home"
+ * @param type {@link RecordType#A} or {@link RecordType#AAAA}
+ */
+public record DynDnsTarget(String zone, String sld, RecordType type) {
+
+  /**
+   * Constructs a DynDnsTarget.
+   *
+   * @param zone the name of the zone, e.g. "example.com"
+   * @param sld the second-level domain of the record, e.g. "home"
+   * @param type {@link RecordType#A} or {@link RecordType#AAAA}
+   * @throws IllegalArgumentException if the type is neither A nor AAAA
+   */
+  public DynDnsTarget {
+    if (type != RecordType.A && type != RecordType.AAAA) {
+      throw new IllegalArgumentException("Only A and AAAA records are supported: " + type);
+    }
+  }
+
+  /**
+   * Builds the fully qualified domain name of the record.
+   *
+   * @return the fully qualified domain name
+   */
+  public String fqdn() {
+    return sld + "." + zone;
+  }
+}
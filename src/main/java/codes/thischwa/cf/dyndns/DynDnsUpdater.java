@@ -0,0 +1,310 @@
+package codes.thischwa.cf.dyndns;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.RecordValidator;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * DynDnsUpdater keeps the A and AAAA records of many names in sync with the public IP addresses of
+ * the host.
+ *
+ * <p>Each cycle resolves the current addresses by an {@link IpResolver}. A changed address is
+ * pushed only after it stayed the same for the debounce period, so a flapping address doesn't
+ * cause a burst of updates. The updater remembers the address last pushed per {@link
+ * DynDnsTarget}, so unchanged names cost no API call at all. Changed names are pushed concurrently,
+ * each by {@link CfDnsClient#sldFind} followed by {@link CfDnsClient#recordUpdate}, or {@link
+ * CfDnsClient#recordCreate} if the record doesn't exist yet. A failed push is retried in the next
+ * cycle.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * DynDnsUpdater updater = new DynDnsUpdater(client,
+ *     new HttpIpResolver(URI.create("https://api.ipify.org"), URI.create("https://api6.ipify.org")),
+ *     List.of(new DynDnsTarget("example.com", "home", RecordType.A),
+ *             new DynDnsTarget("example.com", "home", RecordType.AAAA)),
+ *     Duration.ofMinutes(2), 60, 4);
+ * updater.start(Duration.ofSeconds(30));
+ * </code></pre>
+ */
+@Slf4j
+public class DynDnsUpdater implements Closeable {
+
+  private final CfDnsClient client;
+  private final IpResolver resolver;
+  private final List<DynDnsTarget> targets;
+  private final long debounceNanos;
+  private final int ttl;
+  private final int parallelism;
+  private final LongSupplier nanoClock;
+
+  private final Map<DynDnsTarget, InetAddress> pushed = new ConcurrentHashMap<>();
+  private final Map<String, ZoneEntity> zones = new ConcurrentHashMap<>();
+  private final Map<RecordType, Candidate> candidates = new EnumMap<>(RecordType.class);
+  private final Object cycleLock = new Object();
+
+  @Nullable private ScheduledExecutorService scheduler;
+  @Nullable private ExecutorService pushExecutor;
+  @Nullable private Thread cycleThread;
+
+  /**
+   * Constructs a DynDnsUpdater.
+   *
+   * @param client the client used to update the records
+   * @param resolver resolves the current public addresses
+   * @param targets the records to keep up to date
+   * @param debounce the time a changed address must be stable before it is pushed
+   * @param ttl the TTL of records which have to be created
+   * @param parallelism the maximum number of records pushed at the same time
+   */
+  public DynDnsUpdater(
+      CfDnsClient client,
+      IpResolver resolver,
+      List<DynDnsTarget> targets,
+      Duration debounce,
+      int ttl,
+      int parallelism) {
+    this(client, resolver, targets, debounce, ttl, parallelism, System::nanoTime);
+  }
+
+  DynDnsUpdater(
+      CfDnsClient client,
+      IpResolver resolver,
+      List<DynDnsTarget> targets,
+      Duration debounce,
+      int ttl,
+      int parallelism,
+      LongSupplier nanoClock) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
+    this.client = client;
+    this.resolver = resolver;
+    this.targets = List.copyOf(targets);
+    this.debounceNanos = debounce.toNanos();
+    this.ttl = ttl;
+    this.parallelism = parallelism;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Starts the periodic update cycles in the background.
+   *
+   * @param interval the time between the starts of two cycles
+   * @throws IllegalStateException if the updater is already started
+   */
+  public synchronized void start(Duration interval) {
+    if (scheduler != null) {
+      throw new IllegalStateException("The updater is already started.");
+    }
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "dyndns-updater");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::pollSafely, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the periodic update cycles. A running cycle is interrupted, also if it was started by
+   * {@link #poll()}.
+   */
+  @Override
+  public synchronized void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+    if (pushExecutor != null) {
+      pushExecutor.shutdownNow();
+      pushExecutor = null;
+    }
+    if (cycleThread != null) {
+      cycleThread.interrupt();
+    }
+  }
+
+  private void pollSafely() {
+    try {
+      poll();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      log.error("Unexpected error in the update cycle.", e);
+    }
+  }
+
+  /**
+   * Runs one update cycle: resolves the current addresses and pushes the stable changes. Cycles
+   * don't overlap, a cycle waits for the running one.
+   *
+   * @return the number of records written to the API
+   * @throws InterruptedException if the thread is interrupted while pushing, e.g. by {@link
+   *     #close()}
+   */
+  public int poll() throws InterruptedException {
+    synchronized (cycleLock) {
+      synchronized (this) {
+        cycleThread = Thread.currentThread();
+      }
+      try {
+        return runCycle();
+      } finally {
+        synchronized (this) {
+          cycleThread = null;
+        }
+      }
+    }
+  }
+
+  private int runCycle() throws InterruptedException {
+    List<Push> pushes = new ArrayList<>();
+    for (RecordType type : List.of(RecordType.A, RecordType.AAAA)) {
+      if (targets.stream().noneMatch(target -> target.type() == type)) {
+        continue;
+      }
+      InetAddress address;
+      try {
+        address = resolver.resolve(type);
+      } catch (IOException e) {
+        log.warn("Couldn't resolve the current address of type {}: {}", type, e.getMessage());
+        continue;
+      }
+      if (address == null || !isStable(type, address)) {
+        continue;
+      }
+      for (DynDnsTarget target : targets) {
+        if (target.type() == type && !address.equals(pushed.get(target))) {
+          pushes.add(new Push(target, address));
+        }
+      }
+    }
+    return pushes.isEmpty() ? 0 : pushAll(pushes);
+  }
+
+  private boolean isStable(RecordType type, InetAddress address) {
+    long now = nanoClock.getAsLong();
+    Candidate candidate = candidates.get(type);
+    if (candidate == null || !candidate.address().equals(address)) {
+      candidate = new Candidate(address, now);
+      candidates.put(type, candidate);
+    }
+    return now - candidate.since() >= debounceNanos;
+  }
+
+  private int pushAll(List<Push> pushes) throws InterruptedException {
+    ExecutorService executor = pushExecutor();
+    List<Future<Boolean>> futures = new ArrayList<>(pushes.size());
+    try {
+      for (Push push : pushes) {
+        futures.add(executor.submit(() -> push(push.target(), push.address())));
+      }
+    } catch (RejectedExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      throw new InterruptedException("The updater is closed.");
+    }
+    int written = 0;
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        if (futures.get(i).get()) {
+          written++;
+        }
+      } catch (ExecutionException e) {
+        log.error("Couldn't push {}, retrying in the next cycle.", pushes.get(i).target(),
+            e.getCause());
+      }
+    }
+    return written;
+  }
+
+  private synchronized ExecutorService pushExecutor() {
+    if (pushExecutor == null) {
+      pushExecutor =
+          Executors.newFixedThreadPool(
+              parallelism,
+              runnable -> {
+                Thread thread = new Thread(runnable, "dyndns-push");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return pushExecutor;
+  }
+
+  private boolean push(DynDnsTarget target, InetAddress address) throws CloudflareApiException {
+    ZoneEntity zone = zone(target.zone());
+    RecordEntity rec = client.sldFind(zone, target.sld(), target.type()).orElse(null);
+    boolean written = true;
+    if (rec == null) {
+      client.recordCreate(
+          zone, RecordEntity.build(target.fqdn(), target.type(), ttl, address.getHostAddress()));
+      log.info("Created {} {} with {}.", target.type(), target.fqdn(), address.getHostAddress());
+    } else if (!address.equals(parseAddress(rec.getContent()))) {
+      rec.setContent(address.getHostAddress());
+      client.recordUpdate(zone, rec);
+      log.info("Updated {} {} to {}.", target.type(), target.fqdn(), address.getHostAddress());
+    } else {
+      written = false;
+    }
+    pushed.put(target, address);
+    return written;
+  }
+
+  private ZoneEntity zone(String name) throws CloudflareApiException {
+    ZoneEntity zone = zones.get(name);
+    if (zone == null) {
+      zone = client.zoneInfo(name);
+      zones.put(name, zone);
+    }
+    return zone;
+  }
+
+  /**
+   * Parses the textual representation of an IP address without any name lookup.
+   *
+   * @param content the textual representation, e.g. the content of a record
+   * @return the address, or {@code null} if the content isn't an IP address literal
+   */
+  @Nullable
+  static InetAddress parseAddress(@Nullable String content) {
+    byte[] address = content == null ? null : RecordValidator.parseAddress(content);
+    if (address == null) {
+      return null;
+    }
+    try {
+      return InetAddress.getByAddress(address);
+    } catch (UnknownHostException e) {
+      return null;
+    }
+  }
+
+  private record Candidate(InetAddress address, long since) {}
+
+  private record Push(DynDnsTarget target, InetAddress address) {}
+}
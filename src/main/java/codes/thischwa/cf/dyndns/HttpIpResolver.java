@@ -0,0 +1,68 @@
+package codes.thischwa.cf.dyndns;
+
+import codes.thischwa.cf.model.RecordType;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An {@link IpResolver} asking a web service, which answers with the address of the caller as
+ * plain text, e.g. 'https://api.ipify.org' for IPv4 and 'https://api6.ipify.org' for IPv6.
+ */
+public class HttpIpResolver implements IpResolver {
+
+  private final HttpClient httpClient =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+  @Nullable private final URI ipv4Service;
+  @Nullable private final URI ipv6Service;
+
+  /**
+   * Constructs an HttpIpResolver.
+   *
+   * @param ipv4Service the URL of the service answering the IPv4 address, or {@code null} if IPv4
+   *     isn't used
+   * @param ipv6Service the URL of the service answering the IPv6 address, or {@code null} if IPv6
+   *     isn't used
+   */
+  public HttpIpResolver(@Nullable URI ipv4Service, @Nullable URI ipv6Service) {
+    this.ipv4Service = ipv4Service;
+    this.ipv6Service = ipv6Service;
+  }
+
+  @Override
+  @Nullable
+  public InetAddress resolve(RecordType type) throws IOException {
+    URI service = type == RecordType.AAAA ? ipv6Service : ipv4Service;
+    if (service == null) {
+      return null;
+    }
+    HttpRequest request = HttpRequest.newBuilder(service).timeout(Duration.ofSeconds(10)).build();
+    HttpResponse<String> response;
+    try {
+      response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while resolving the address by " + service, e);
+    }
+    if (response.statusCode() != 200) {
+      throw new IOException(service + " responded with status code " + response.statusCode());
+    }
+    InetAddress address = DynDnsUpdater.parseAddress(response.body().trim());
+    if (address == null) {
+      throw new IOException(service + " didn't respond with an IP address.");
+    }
+    boolean expectedFamily =
+        type == RecordType.AAAA ? address instanceof Inet6Address : address instanceof Inet4Address;
+    if (!expectedFamily) {
+      throw new IOException(service + " responded with an address of the wrong family: " + address);
+    }
+    return address;
+  }
+}
@@ -0,0 +1,25 @@
+package codes.thischwa.cf.dyndns;
+
+import codes.thischwa.cf.model.RecordType;
+import java.io.IOException;
+import java.net.InetAddress;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Resolves the current public IP address of the host, which is to be published by the {@link
+ * DynDnsUpdater}.
+ */
+@FunctionalInterface
+public interface IpResolver {
+
+  /**
+   * Resolves the current public IP address for the given record type.
+   *
+   * @param type {@link RecordType#A} for the IPv4 address, {@link RecordType#AAAA} for the IPv6
+   *     address
+   * @return the current address, or {@code null} if the host has no address of this family
+   * @throws IOException if the address can't be determined
+   */
+  @Nullable
+  InetAddress resolve(RecordType type) throws IOException;
+}
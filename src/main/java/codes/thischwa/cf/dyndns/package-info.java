@@ -0,0 +1,2 @@
+/** The dynamic DNS updater of CloudflareDNS-java. */
+package codes.thischwa.cf.dyndns;
@@ -0,0 +1,93 @@
+package codes.thischwa.cf.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of non-negative ints, used as the posting list of a secondary index. It's an
+ * open-addressing hash table, so adding and removing a row is constant time even for the rows of
+ * a whole zone. It isn't thread-safe.
+ */
+final class IntSet {
+
+  private static final int FREE = -1;
+  private static final int REMOVED = -2;
+
+  private int[] table = new int[4];
+  private int size;
+  private int used;
+
+  IntSet() {
+    Arrays.fill(table, FREE);
+  }
+
+  boolean add(int value) {
+    int mask = table.length - 1;
+    int slot = StringPool.mix(value) & mask;
+    int removed = -1;
+    while (table[slot] != FREE) {
+      if (table[slot] == value) {
+        return false;
+      }
+      if (table[slot] == REMOVED && removed < 0) {
+        removed = slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (removed >= 0) {
+      table[removed] = value;
+    } else {
+      table[slot] = value;
+      used++;
+    }
+    size++;
+    if (used * 4 > table.length * 3) {
+      rehash(size * 4 > table.length ? table.length * 2 : table.length);
+    }
+    return true;
+  }
+
+  boolean remove(int value) {
+    int mask = table.length - 1;
+    int slot = StringPool.mix(value) & mask;
+    while (table[slot] != FREE) {
+      if (table[slot] == value) {
+        table[slot] = REMOVED;
+        size--;
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void forEach(IntConsumer action) {
+    for (int value : table) {
+      if (value >= 0) {
+        action.accept(value);
+      }
+    }
+  }
+
+  private void rehash(int capacity) {
+    used = 0;
+    int[] old = table;
+    table = new int[capacity];
+    Arrays.fill(table, FREE);
+    int mask = capacity - 1;
+    for (int value : old) {
+      if (value >= 0) {
+        int slot = StringPool.mix(value) & mask;
+        while (table[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        used++;
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package codes.thischwa.cf.index;
+
+import codes.thischwa.cf.model.RecordType;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents the criteria of a query of a {@link RecordIndex}. A record matches if it matches all
+ * criteria which are set. Filters are built from {@link #any()}, e.g. every CNAME pointing at a
+ * decommissioned host:
+ *
+ * <pre><code>
+ * RecordFilter.any().type(RecordType.CNAME).content("old-host.example.net")
+ * </code></pre>
+ *
+ * @param zoneId the id of the zone of the records, or {@code null} for any zone
+ * @param type the type of the records, or {@code null} for any type
+ * @param content the exact content of the records, or {@code null} for any content
+ * @param nameSuffix the domain the names of the records are equal to or a subdomain of, or {@code
+ *     null} for any name
+ */
+public record RecordFilter(
+    @Nullable String zoneId,
+    @Nullable RecordType type,
+    @Nullable String content,
+    @Nullable String nameSuffix) {
+
+  private static final RecordFilter ANY = new RecordFilter(null, null, null, null);
+
+  /**
+   * Retrieves the filter matching all records.
+   *
+   * @return the filter without criteria
+   */
+  public static RecordFilter any() {
+    return ANY;
+  }
+
+  /**
+   * Creates a filter which additionally requires the zone.
+   *
+   * @param zoneId the id of the zone
+   * @return the new filter
+   */
+  public RecordFilter zone(String zoneId) {
+    return new RecordFilter(zoneId, type, content, nameSuffix);
+  }
+
+  /**
+   * Creates a filter which additionally requires the type.
+   *
+   * @param type the type
+   * @return the new filter
+   */
+  public RecordFilter type(RecordType type) {
+    return new RecordFilter(zoneId, type, content, nameSuffix);
+  }
+
+  /**
+   * Creates a filter which additionally requires the content.
+   *
+   * @param content the exact content, e.g. an IP address or the target of a CNAME
+   * @return the new filter
+   */
+  public RecordFilter content(String content) {
+    return new RecordFilter(zoneId, type, content, nameSuffix);
+  }
+
+  /**
+   * Creates a filter which additionally requires the name to be equal to or a subdomain of the
+   * given domain, e.g. {@code example.com} matches {@code example.com} and {@code
+   * www.example.com}, but not {@code myexample.com}.
+   *
+   * @param nameSuffix the domain
+   * @return the new filter
+   */
+  public RecordFilter nameSuffix(String nameSuffix) {
+    return new RecordFilter(zoneId, type, content, nameSuffix);
+  }
+}
@@ -0,0 +1,608 @@
+package codes.thischwa.cf.index;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.CloudflareNotFoundException;
+import codes.thischwa.cf.RecordListener;
+import codes.thischwa.cf.model.PagingRequest;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordView;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An in-memory index of the DNS records of many zones, which answers queries like "all records in
+ * any zone pointing at 203.0.113.7" without calling the API. Besides the lookup by record id, it
+ * has secondary indexes by zone, type, content and name suffix, see {@link RecordFilter}.
+ *
+ * <p>The index is built for millions of records: the strings are interned into int ids, the
+ * records are stored in primitive columns, and the secondary indexes are hash sets of row numbers.
+ * Hence a record costs a few dozen bytes besides its distinct strings.
+ *
+ * <p>The memory is bounded by the peak number of records indexed at once: the rows, strings and
+ * record ids of removed records are released and reused. A record removed by the application is
+ * only remembered as long as a refresh is running which started before the removal.
+ *
+ * <p>The index is filled and kept fresh by {@link #refresh(CfDnsClient, int)}, which lists the
+ * records of all zones page by page and only reindexes the records whose {@code modifiedOn}
+ * changed. Writes of the application can be applied in between by {@link #put} and {@link
+ * #remove}, or automatically if the index is registered as {@link RecordListener} of the client.
+ * A refresh never undoes such a write which happened while it was listing the records.
+ * The index is thread-safe, queries run concurrently and see each refresh of a zone completely or
+ * not at all.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * RecordIndex index = new RecordIndex();
+ * index.refresh(cfDnsClient, 1000);
+ * List&lt;RecordEntity&gt; records = index.find(RecordFilter.any().content("203.0.113.7"));
+ * </code></pre>
+ */
+@Slf4j
+public final class RecordIndex implements RecordListener {
+
+  private static final long UNKNOWN = Long.MIN_VALUE;
+  private static final int NO_TTL = -1;
+  private static final int NO_PRIORITY = -1;
+  private static final long NOT_LISTED = -1;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final StringPool strings = new StringPool();
+  private final StringPool recordIds = new StringPool();
+  private int[] rowOfRecord = unassigned(new int[16], 0);
+  private long[] removedAt = new long[16];
+  private final IntSet removedRecords = new IntSet();
+  private final PriorityQueue<Long> listings = new PriorityQueue<>();
+  private long writes;
+
+  private int[] recordCol = new int[16];
+  private int[] zoneCol = new int[16];
+  private int[] nameCol = new int[16];
+  private int[] typeCol = new int[16];
+  private int[] contentCol = new int[16];
+  private int[] ttlCol = new int[16];
+  private int[] priorityCol = new int[16];
+  private boolean[] proxiedCol = new boolean[16];
+  private long[] modifiedCol = new long[16];
+  private long[] writtenCol = new long[16];
+  private int rows;
+  private int[] freeRows = new int[16];
+  private int freeCount;
+
+  private IntSet[] byZone = new IntSet[16];
+  private IntSet[] byType = new IntSet[16];
+  private IntSet[] byContent = new IntSet[16];
+  private IntSet[] bySuffix = new IntSet[16];
+
+  /**
+   * Lists the records of all zones of the account and brings the index up to date. Zones which no
+   * longer exist are removed from the index.
+   *
+   * @param client the client to list the zones and records with
+   * @param perPage the number of records fetched per page
+   * @return the number of records which were added, changed or removed
+   * @throws CloudflareApiException if a listing fails, the index keeps the zones refreshed so far
+   */
+  public int refresh(CfDnsClient client, int perPage) throws CloudflareApiException {
+    long listedSince = startListing();
+    try {
+      List<ZoneEntity> zones;
+      try {
+        zones = client.zoneListAll();
+      } catch (CloudflareNotFoundException e) {
+        zones = List.of();
+      }
+      int changed = 0;
+      for (ZoneEntity zone : zones) {
+        changed += refresh(client, zone, perPage);
+      }
+      lock.writeLock().lock();
+      try {
+        IntSet listed = new IntSet();
+        for (ZoneEntity zone : zones) {
+          int zoneId = strings.find(zone.getId());
+          if (zoneId >= 0) {
+            listed.add(zoneId);
+          }
+        }
+        for (int zone = 0; zone < byZone.length; zone++) {
+          if (byZone[zone] != null && byZone[zone].size() > 0 && !listed.remove(zone)) {
+            changed += removeRows(byZone[zone], null, listedSince);
+          }
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+      return changed;
+    } finally {
+      finishListing(listedSince);
+    }
+  }
+
+  /**
+   * Lists the records of a zone and brings the index up to date: new records are added, records
+   * with a newer {@code modifiedOn} are reindexed and records which no longer exist are removed.
+   * Records put or removed by the application while the listing runs are left as they are.
+   *
+   * @param client the client to list the records with
+   * @param zone the zone
+   * @param perPage the number of records fetched per page
+   * @return the number of records which were added, changed or removed
+   * @throws CloudflareApiException if the listing fails, the index is unchanged then
+   */
+  public int refresh(CfDnsClient client, ZoneEntity zone, int perPage)
+      throws CloudflareApiException {
+    long listedSince = startListing();
+    try {
+      List<RecordView> records = listZone(client, zone, perPage);
+      lock.writeLock().lock();
+      try {
+        int changed = 0;
+        IntSet seen = new IntSet();
+        for (RecordView view : records) {
+          LocalDateTime modifiedOn = view.modifiedOnDateTime();
+          if (upsert(
+              view.id(),
+              zone.getId(),
+              view.name(),
+              view.type(),
+              view.content(),
+              view.ttl(),
+              view.priority() == null ? NO_PRIORITY : view.priority(),
+              view.proxied(),
+              modifiedOn == null ? UNKNOWN : toLong(modifiedOn),
+              listedSince)) {
+            changed++;
+          }
+          seen.add(recordIds.find(view.id()));
+        }
+        int zoneId = strings.find(zone.getId());
+        if (zoneId >= 0 && zoneId < byZone.length && byZone[zoneId] != null) {
+          changed += removeRows(byZone[zoneId], seen, listedSince);
+        }
+        log.debug(
+            "Refreshed zone {}: {} records, {} changes", zone.getName(), records.size(), changed);
+        return changed;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } finally {
+      finishListing(listedSince);
+    }
+  }
+
+  /** Lists the records of a zone page by page, an empty zone has no records. */
+  static List<RecordView> listZone(CfDnsClient client, ZoneEntity zone, int perPage)
+      throws CloudflareApiException {
+    if (perPage < 1) {
+      throw new IllegalArgumentException("The page size must be positive.");
+    }
+    List<RecordView> records = new ArrayList<>();
+    for (int page = 1; ; page++) {
+      List<RecordView> views;
+      try {
+        views = client.recordViewListAll(zone, PagingRequest.of(page, perPage));
+      } catch (CloudflareNotFoundException e) {
+        views = null;
+      }
+      if (views != null) {
+        records.addAll(views);
+      }
+      if (views == null || views.size() < perPage) {
+        return records;
+      }
+    }
+  }
+
+  /**
+   * Adds or replaces a record, e.g. after it was created or updated by the application.
+   *
+   * @param zoneId the id of the zone of the record
+   * @param rec the record, including its id
+   */
+  public void put(String zoneId, RecordEntity rec) {
+    lock.writeLock().lock();
+    try {
+      upsert(
+          rec.getId(),
+          zoneId,
+          rec.getName(),
+          rec.getType(),
+          rec.getContent(),
+          rec.getTtl() == null ? NO_TTL : rec.getTtl(),
+          rec.getPriority() == null ? NO_PRIORITY : rec.getPriority(),
+          Boolean.TRUE.equals(rec.getProxied()),
+          rec.getModifiedOn() == null ? UNKNOWN : toLong(rec.getModifiedOn()),
+          NOT_LISTED);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a record, e.g. after it was deleted by the application.
+   *
+   * @param recordId the id of the record
+   * @return {@code true} if the record was indexed
+   */
+  public boolean remove(String recordId) {
+    lock.writeLock().lock();
+    try {
+      int id = recordIds.find(recordId);
+      if (id < 0 || rowOfRecord[id] < 0) {
+        return false;
+      }
+      writes++;
+      if (!listings.isEmpty()) {
+        // a running listing mustn't bring the record back, hence its id is kept until then
+        if (removedRecords.add(id)) {
+          recordIds.intern(recordId);
+        }
+        removedAt[id] = writes;
+      }
+      removeRow(rowOfRecord[id]);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Puts a record created or updated by the client, see {@link #put}. */
+  @Override
+  public void recordChanged(ZoneEntity zone, RecordEntity rec) {
+    put(zone.getId(), rec);
+  }
+
+  /** Removes a record deleted by the client, see {@link #remove}. */
+  @Override
+  public void recordDeleted(ZoneEntity zone, String recordId) {
+    remove(recordId);
+  }
+
+  /**
+   * Looks up a record by its id.
+   *
+   * @param recordId the id of the record
+   * @return a copy of the record, or an empty {@code Optional} if it isn't indexed
+   */
+  public Optional<RecordEntity> get(String recordId) {
+    lock.readLock().lock();
+    try {
+      int id = recordIds.find(recordId);
+      return id < 0 || rowOfRecord[id] < 0
+          ? Optional.empty()
+          : Optional.of(toEntity(rowOfRecord[id]));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the records matching a filter. The most selective secondary index of the filter is
+   * scanned, the other criteria are checked per record.
+   *
+   * @param filter the filter
+   * @return copies of the matching records, in no particular order
+   */
+  public List<RecordEntity> find(RecordFilter filter) {
+    lock.readLock().lock();
+    try {
+      int zone = idOf(filter.zoneId());
+      int type = idOf(filter.type() == null ? null : filter.type().getType());
+      int content = idOf(filter.content());
+      String suffix = filter.nameSuffix() == null ? null : normalizeName(filter.nameSuffix());
+      int suffixId = idOf(suffix);
+      if (zone == -1 || type == -1 || content == -1 || suffixId == -1) {
+        return List.of();
+      }
+      IntSet candidates = null;
+      candidates = smaller(candidates, byZone, zone);
+      candidates = smaller(candidates, byType, type);
+      candidates = smaller(candidates, byContent, content);
+      candidates = smaller(candidates, bySuffix, suffixId);
+      List<RecordEntity> result = new ArrayList<>();
+      if (candidates == null) {
+        for (int row = 0; row < rows; row++) {
+          if (recordCol[row] >= 0) {
+            result.add(toEntity(row));
+          }
+        }
+      } else {
+        candidates.forEach(
+            row -> {
+              if ((zone < 0 || zoneCol[row] == zone)
+                  && (type < 0 || typeCol[row] == type)
+                  && (content < 0 || contentCol[row] == content)
+                  && (suffix == null || hasSuffix(strings.get(nameCol[row]), suffix))) {
+                result.add(toEntity(row));
+              }
+            });
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Retrieves the number of indexed records.
+   *
+   * @return the number of records
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return rows - freeCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Registers a listing and retrieves the number of writes of the application so far. */
+  private long startListing() {
+    lock.writeLock().lock();
+    try {
+      listings.add(writes);
+      return writes;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Unregisters a listing and forgets the removed records which no running listing can bring back.
+   */
+  private void finishListing(long listedSince) {
+    lock.writeLock().lock();
+    try {
+      listings.remove(listedSince);
+      long oldest = listings.isEmpty() ? writes : listings.peek();
+      IntSet forgotten = new IntSet();
+      removedRecords.forEach(
+          id -> {
+            if (removedAt[id] <= oldest) {
+              forgotten.add(id);
+            }
+          });
+      forgotten.forEach(
+          id -> {
+            removedRecords.remove(id);
+            removedAt[id] = 0;
+            recordIds.release(id);
+          });
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Looks up the id of a criterion: {@code -2} if the criterion isn't set, {@code -1} if no record
+   * can match it.
+   */
+  private int idOf(@Nullable String value) {
+    return value == null ? -2 : strings.find(value);
+  }
+
+  @Nullable
+  private static IntSet smaller(@Nullable IntSet current, IntSet[] index, int id) {
+    if (id < 0) {
+      return current;
+    }
+    IntSet set = id < index.length && index[id] != null ? index[id] : new IntSet();
+    return current == null || set.size() < current.size() ? set : current;
+  }
+
+  /**
+   * Adds or replaces a record, returns {@code false} if it's indexed with the same version. A
+   * record listed since a write count is skipped if the application wrote it after that count, or
+   * if the indexed version isn't older.
+   */
+  private boolean upsert(
+      String recordId,
+      String zoneId,
+      String name,
+      String type,
+      @Nullable String content,
+      int ttl,
+      int priority,
+      boolean proxied,
+      long modifiedOn,
+      long listedSince) {
+    int id = recordIds.find(recordId);
+    int row = id < 0 ? -1 : rowOfRecord[id];
+    if (listedSince != NOT_LISTED) {
+      if (id >= 0 && removedAt[id] > listedSince) {
+        return false;
+      }
+      if (row >= 0
+          && (writtenCol[row] > listedSince
+              || (modifiedOn != UNKNOWN
+                  && modifiedCol[row] != UNKNOWN
+                  && modifiedOn <= modifiedCol[row]))) {
+        return false;
+      }
+    }
+    if (row >= 0) {
+      if (modifiedOn != UNKNOWN && modifiedCol[row] == modifiedOn) {
+        return false;
+      }
+      unindex(row);
+    } else {
+      id = recordIds.intern(recordId);
+      if (id >= rowOfRecord.length) {
+        rowOfRecord =
+            unassigned(Arrays.copyOf(rowOfRecord, rowOfRecord.length * 2), rowOfRecord.length);
+        removedAt = Arrays.copyOf(removedAt, rowOfRecord.length);
+      }
+      row = allocateRow();
+      rowOfRecord[id] = row;
+    }
+    recordCol[row] = id;
+    zoneCol[row] = strings.intern(zoneId);
+    nameCol[row] = strings.intern(normalizeName(name));
+    typeCol[row] = strings.intern(type);
+    contentCol[row] = strings.intern(content == null ? "" : content);
+    ttlCol[row] = ttl;
+    priorityCol[row] = priority;
+    proxiedCol[row] = proxied;
+    modifiedCol[row] = modifiedOn;
+    writtenCol[row] = listedSince == NOT_LISTED ? ++writes : writes;
+    index(row);
+    return true;
+  }
+
+  private static int[] unassigned(int[] rowRefs, int from) {
+    Arrays.fill(rowRefs, from, rowRefs.length, -1);
+    return rowRefs;
+  }
+
+  /**
+   * Removes the rows of a set which aren't seen, except the rows written by the application after
+   * the listing started. Returns the number of removed rows.
+   */
+  private int removeRows(IntSet rowSet, @Nullable IntSet seen, long listedSince) {
+    IntSet stale = new IntSet();
+    rowSet.forEach(
+        row -> {
+          if ((seen == null || !seen.remove(recordCol[row])) && writtenCol[row] <= listedSince) {
+            stale.add(row);
+          }
+        });
+    stale.forEach(this::removeRow);
+    return stale.size();
+  }
+
+  private void removeRow(int row) {
+    unindex(row);
+    rowOfRecord[recordCol[row]] = -1;
+    recordIds.release(recordCol[row]);
+    recordCol[row] = -1;
+    if (freeCount == freeRows.length) {
+      freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+    }
+    freeRows[freeCount++] = row;
+  }
+
+  private int allocateRow() {
+    if (freeCount > 0) {
+      return freeRows[--freeCount];
+    }
+    if (rows == recordCol.length) {
+      int length = rows * 2;
+      recordCol = Arrays.copyOf(recordCol, length);
+      zoneCol = Arrays.copyOf(zoneCol, length);
+      nameCol = Arrays.copyOf(nameCol, length);
+      typeCol = Arrays.copyOf(typeCol, length);
+      contentCol = Arrays.copyOf(contentCol, length);
+      ttlCol = Arrays.copyOf(ttlCol, length);
+      priorityCol = Arrays.copyOf(priorityCol, length);
+      proxiedCol = Arrays.copyOf(proxiedCol, length);
+      modifiedCol = Arrays.copyOf(modifiedCol, length);
+      writtenCol = Arrays.copyOf(writtenCol, length);
+    }
+    return rows++;
+  }
+
+  private void index(int row) {
+    byZone = add(byZone, zoneCol[row], row);
+    byType = add(byType, typeCol[row], row);
+    byContent = add(byContent, contentCol[row], row);
+    String name = strings.get(nameCol[row]);
+    for (int start = 0; start >= 0; start = nextLabel(name, start)) {
+      bySuffix = add(bySuffix, strings.intern(name.substring(start)), row);
+    }
+  }
+
+  /** Removes a row from the secondary indexes and releases its strings. */
+  private void unindex(int row) {
+    byZone[zoneCol[row]].remove(row);
+    byType[typeCol[row]].remove(row);
+    byContent[contentCol[row]].remove(row);
+    String name = strings.get(nameCol[row]);
+    for (int start = 0; start >= 0; start = nextLabel(name, start)) {
+      int suffix = strings.find(name.substring(start));
+      bySuffix[suffix].remove(row);
+      release(suffix);
+    }
+    release(zoneCol[row]);
+    release(nameCol[row]);
+    release(typeCol[row]);
+    release(contentCol[row]);
+  }
+
+  /** Releases a string, the posting lists of a removed string are dropped with it. */
+  private void release(int id) {
+    if (strings.release(id)) {
+      for (IntSet[] index : List.of(byZone, byType, byContent, bySuffix)) {
+        if (id < index.length) {
+          index[id] = null;
+        }
+      }
+    }
+  }
+
+  private IntSet[] add(IntSet[] index, int id, int row) {
+    if (id >= index.length) {
+      index = Arrays.copyOf(index, Math.max(index.length * 2, strings.size()));
+    }
+    if (index[id] == null) {
+      index[id] = new IntSet();
+    }
+    index[id].add(row);
+    return index;
+  }
+
+  private static int nextLabel(String name, int start) {
+    int dot = name.indexOf('.', start);
+    return dot < 0 ? -1 : dot + 1;
+  }
+
+  private static boolean hasSuffix(String name, String suffix) {
+    return name.endsWith(suffix)
+        && (name.length() == suffix.length()
+            || name.charAt(name.length() - suffix.length() - 1) == '.');
+  }
+
+  static String normalizeName(String name) {
+    String lower = name.toLowerCase(Locale.ROOT);
+    return lower.endsWith(".") ? lower.substring(0, lower.length() - 1) : lower;
+  }
+
+  private RecordEntity toEntity(int row) {
+    RecordEntity rec = new RecordEntity();
+    rec.setId(recordIds.get(recordCol[row]));
+    rec.setZoneId(strings.get(zoneCol[row]));
+    rec.setName(strings.get(nameCol[row]));
+    rec.setType(strings.get(typeCol[row]));
+    rec.setContent(strings.get(contentCol[row]));
+    rec.setTtl(ttlCol[row] == NO_TTL ? null : ttlCol[row]);
+    rec.setPriority(priorityCol[row] == NO_PRIORITY ? null : priorityCol[row]);
+    rec.setProxied(proxiedCol[row]);
+    rec.setModifiedOn(modifiedCol[row] == UNKNOWN ? null : toDateTime(modifiedCol[row]));
+    return rec;
+  }
+
+  private static long toLong(LocalDateTime dateTime) {
+    return TimeUnit.SECONDS.toNanos(dateTime.toEpochSecond(ZoneOffset.UTC)) + dateTime.getNano();
+  }
+
+  private static LocalDateTime toDateTime(long nanos) {
+    long nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+    return LocalDateTime.ofEpochSecond(
+        Math.floorDiv(nanos, nanosPerSecond),
+        (int) Math.floorMod(nanos, nanosPerSecond),
+        ZoneOffset.UTC);
+  }
+}
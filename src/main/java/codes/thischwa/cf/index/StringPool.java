@@ -0,0 +1,138 @@
+package codes.thischwa.cf.index;
+
+import java.util.Arrays;
+
+/**
+ * Interns strings to dense int ids, so a column of strings can be stored as an {@code int[]}. The
+ * interned strings are reference-counted: each {@link #intern} takes a reference, each {@link
+ * #release} drops one, and a string without references is removed. Its id is reused by the next
+ * new string, hence the ids stay below the peak number of strings interned at once.
+ *
+ * <p>The pool is an open-addressing hash table of ids, so it holds no entry objects and no boxed
+ * integers. It isn't thread-safe.
+ */
+final class StringPool {
+
+  private static final int FREE = -1;
+
+  private String[] values = new String[16];
+  private int[] refs = new int[16];
+  private int[] table = new int[32];
+  private int size;
+  private int[] freeIds = new int[16];
+  private int freeCount;
+
+  StringPool() {
+    Arrays.fill(table, FREE);
+  }
+
+  /**
+   * Interns a string and takes a reference to it.
+   *
+   * @param value the string
+   * @return the id of the string
+   */
+  int intern(String value) {
+    int slot = slot(value);
+    if (table[slot] != FREE) {
+      refs[table[slot]]++;
+      return table[slot];
+    }
+    int id;
+    if (freeCount > 0) {
+      id = freeIds[--freeCount];
+    } else {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+        refs = Arrays.copyOf(refs, size * 2);
+      }
+      id = size++;
+    }
+    values[id] = value;
+    refs[id] = 1;
+    table[slot] = id;
+    if ((size - freeCount) * 2 > table.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  /**
+   * Drops a reference to a string, the last one removes the string from the pool.
+   *
+   * @param id the id of the string
+   * @return {@code true} if the string was removed and its id is free
+   */
+  boolean release(int id) {
+    if (--refs[id] > 0) {
+      return false;
+    }
+    int mask = table.length - 1;
+    int slot = slot(values[id]);
+    // backward-shift deletion, so the probe sequences of the following ids stay unbroken
+    for (int next = (slot + 1) & mask; table[next] != FREE; next = (next + 1) & mask) {
+      int home = mix(values[table[next]].hashCode()) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        table[slot] = table[next];
+        slot = next;
+      }
+    }
+    table[slot] = FREE;
+    values[id] = null;
+    if (freeCount == freeIds.length) {
+      freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+    }
+    freeIds[freeCount++] = id;
+    return true;
+  }
+
+  /**
+   * Looks up the id of a string without interning it.
+   *
+   * @param value the string
+   * @return the id of the string, or {@code -1} if it isn't interned
+   */
+  int find(String value) {
+    return table[slot(value)];
+  }
+
+  String get(int id) {
+    return values[id];
+  }
+
+  /** Retrieves the upper bound of the ids, including the free ones. */
+  int size() {
+    return size;
+  }
+
+  /** Finds the slot of the string, or the free slot where it belongs. */
+  private int slot(String value) {
+    int mask = table.length - 1;
+    int slot = mix(value.hashCode()) & mask;
+    while (table[slot] != FREE && !values[table[slot]].equals(value)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash() {
+    table = new int[table.length * 2];
+    Arrays.fill(table, FREE);
+    int mask = table.length - 1;
+    for (int id = 0; id < size; id++) {
+      if (values[id] == null) {
+        continue;
+      }
+      int slot = mix(values[id].hashCode()) & mask;
+      while (table[slot] != FREE) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = id;
+    }
+  }
+
+  static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,337 @@
+package codes.thischwa.cf.index;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.RecordView;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The fingerprint of the records of a zone, which detects the drift between two states of a zone,
+ * e.g. the source of truth and the live API data, without comparing all records.
+ *
+ * <p>The fingerprint is a Merkle tree with three levels:
+ *
+ * <ol>
+ *   <li>Each name has the SHA-256 hash of its canonical records: name, type, content, TTL,
+ *       priority and the proxied flag, sorted. Ids, timestamps and the order of the listing don't
+ *       change it. A missing TTL counts as 1 (automatic) and a missing priority of MX, SRV and
+ *       URI records as 0, as the API reports them.
+ *   <li>The names are spread over {@value #BUCKETS} buckets by the hash of the name. Each bucket
+ *       has the hash of its names and their hashes.
+ *   <li>The root is the hash of the bucket hashes.
+ * </ol>
+ *
+ * <p>If the roots of two states differ, the bucket hashes are exchanged and only the names of the
+ * differing buckets need to be fetched and compared. The names and contents are canonicalized:
+ * names are lowercase without trailing dot, as are the targets of CNAME, NS, PTR and MX records.
+ *
+ * <p>Example:
+ *
+ * <pre><code>
+ * ZoneFingerprint expected = ZoneFingerprint.of(sourceOfTruth);
+ * ZoneFingerprint live = ZoneFingerprint.of(cfDnsClient, zone, 1000);
+ * if (!expected.matches(live)) {
+ *   Set&lt;String&gt; names = expected.differingNames(live);
+ * }
+ * </code></pre>
+ *
+ * <p>A fingerprint is immutable and thread-safe. Records of a {@link RecordIndex} are
+ * fingerprinted by {@code ZoneFingerprint.of(index.find(RecordFilter.any().zone(zoneId)))}.
+ */
+public final class ZoneFingerprint {
+
+  /** The number of name buckets. */
+  public static final int BUCKETS = 256;
+
+  private static final HexFormat HEX = HexFormat.of();
+  private static final int AUTOMATIC_TTL = 1;
+  private static final Set<String> PRIORITY_TYPES =
+      Set.of(RecordType.MX.getType(), RecordType.SRV.getType(), RecordType.URI.getType());
+
+  private final SortedMap<String, byte[]> names;
+  private final List<List<String>> bucketNames;
+  private final byte[][] buckets;
+  private final byte[] root;
+
+  private ZoneFingerprint(SortedMap<String, byte[]> names) {
+    this.names = names;
+    this.buckets = new byte[BUCKETS][];
+    this.bucketNames = new ArrayList<>(BUCKETS);
+    for (int i = 0; i < BUCKETS; i++) {
+      bucketNames.add(new ArrayList<>());
+    }
+    names.keySet().forEach(name -> bucketNames.get(bucketOf(name)).add(name));
+    MessageDigest digest = sha256();
+    for (int i = 0; i < BUCKETS; i++) {
+      for (String name : bucketNames.get(i)) {
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(names.get(name));
+      }
+      buckets[i] = digest.digest();
+    }
+    for (byte[] bucket : buckets) {
+      digest.update(bucket);
+    }
+    this.root = digest.digest();
+  }
+
+  /**
+   * Computes the fingerprint of records, e.g. of the source of truth or of a {@link RecordIndex}.
+   *
+   * @param records the records of one zone
+   * @return the fingerprint
+   */
+  public static ZoneFingerprint of(Collection<RecordEntity> records) {
+    Map<String, List<String>> lines = new HashMap<>();
+    for (RecordEntity rec : records) {
+      add(
+          lines,
+          rec.getName(),
+          rec.getType(),
+          rec.getContent(),
+          rec.getTtl(),
+          rec.getPriority(),
+          Boolean.TRUE.equals(rec.getProxied()));
+    }
+    return new ZoneFingerprint(hashNames(lines));
+  }
+
+  /**
+   * Computes the fingerprint of the live records of a zone, which are listed page by page.
+   *
+   * @param client the client to list the records with
+   * @param zone the zone
+   * @param perPage the number of records fetched per page
+   * @return the fingerprint
+   * @throws CloudflareApiException if the listing fails
+   */
+  public static ZoneFingerprint of(CfDnsClient client, ZoneEntity zone, int perPage)
+      throws CloudflareApiException {
+    return ofViews(RecordIndex.listZone(client, zone, perPage));
+  }
+
+  /**
+   * Computes the fingerprint of records listed as {@link RecordView}s.
+   *
+   * @param records the records of one zone
+   * @return the fingerprint
+   */
+  public static ZoneFingerprint ofViews(Collection<RecordView> records) {
+    Map<String, List<String>> lines = new HashMap<>();
+    for (RecordView view : records) {
+      add(
+          lines,
+          view.name(),
+          view.type(),
+          view.content(),
+          view.ttl(),
+          view.priority(),
+          view.proxied());
+    }
+    return new ZoneFingerprint(hashNames(lines));
+  }
+
+  /**
+   * Retrieves the bucket of a name.
+   *
+   * @param name the name of records
+   * @return the bucket, between 0 and {@value #BUCKETS} - 1
+   */
+  public static int bucketOf(String name) {
+    byte[] hash = sha256().digest(canonicalName(name).getBytes(StandardCharsets.UTF_8));
+    return hash[0] & (BUCKETS - 1);
+  }
+
+  /**
+   * Retrieves the root hash of the zone.
+   *
+   * @return the hex-encoded root hash
+   */
+  public String root() {
+    return HEX.formatHex(root);
+  }
+
+  /**
+   * Retrieves the hashes of all buckets, to be compared with {@link #differingBuckets(List)}.
+   *
+   * @return the hex-encoded bucket hashes, ordered by bucket
+   */
+  public List<String> bucketHashes() {
+    List<String> hashes = new ArrayList<>(BUCKETS);
+    for (byte[] bucket : buckets) {
+      hashes.add(HEX.formatHex(bucket));
+    }
+    return hashes;
+  }
+
+  /**
+   * Retrieves the hash of the records of a name.
+   *
+   * @param name the name of records
+   * @return the hex-encoded hash, or {@code null} if there are no records with the name
+   */
+  @Nullable
+  public String nameHash(String name) {
+    byte[] hash = names.get(canonicalName(name));
+    return hash == null ? null : HEX.formatHex(hash);
+  }
+
+  /**
+   * Retrieves the names of a bucket.
+   *
+   * @param bucket the bucket
+   * @return the canonical names of the bucket, sorted
+   */
+  public Set<String> namesOf(int bucket) {
+    return new TreeSet<>(bucketNames.get(bucket));
+  }
+
+  /**
+   * Checks if another state of the zone has the same records.
+   *
+   * @param other the fingerprint of the other state
+   * @return {@code true} if the root hashes are equal
+   */
+  public boolean matches(ZoneFingerprint other) {
+    return MessageDigest.isEqual(root, other.root);
+  }
+
+  /**
+   * Compares the bucket hashes with those of another state, e.g. received from a remote party.
+   *
+   * @param otherBucketHashes the hex-encoded bucket hashes of the other state
+   * @return the buckets whose names differ, sorted
+   * @throws IllegalArgumentException if the number of hashes isn't {@value #BUCKETS}
+   */
+  public Set<Integer> differingBuckets(List<String> otherBucketHashes) {
+    if (otherBucketHashes.size() != BUCKETS) {
+      throw new IllegalArgumentException("Expected " + BUCKETS + " bucket hashes.");
+    }
+    Set<Integer> result = new TreeSet<>();
+    for (int i = 0; i < BUCKETS; i++) {
+      if (!Arrays.equals(buckets[i], HEX.parseHex(otherBucketHashes.get(i)))) {
+        result.add(i);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Determines the names whose records differ from another state. Only the names of the differing
+   * buckets are compared.
+   *
+   * @param other the fingerprint of the other state
+   * @return the canonical names which are missing in one of the states or have different records,
+   *     sorted
+   */
+  public Set<String> differingNames(ZoneFingerprint other) {
+    if (matches(other)) {
+      return Collections.emptySet();
+    }
+    Set<String> result = new TreeSet<>();
+    for (int bucket : differingBuckets(other.bucketHashes())) {
+      Set<String> candidates = namesOf(bucket);
+      candidates.addAll(other.namesOf(bucket));
+      for (String name : candidates) {
+        byte[] hash = names.get(name);
+        byte[] otherHash = other.names.get(name);
+        if (hash == null || otherHash == null || !Arrays.equals(hash, otherHash)) {
+          result.add(name);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void add(
+      Map<String, List<String>> lines,
+      String name,
+      String type,
+      @Nullable String content,
+      @Nullable Integer ttl,
+      @Nullable Integer priority,
+      boolean proxied) {
+    String canonicalName = canonicalName(name);
+    lines
+        .computeIfAbsent(canonicalName, n -> new ArrayList<>())
+        .add(
+            type
+                + '\t'
+                + canonicalContent(type, content)
+                + '\t'
+                + (ttl == null ? AUTOMATIC_TTL : ttl)
+                + '\t'
+                + canonicalPriority(type, priority)
+                + '\t'
+                + proxied);
+  }
+
+  /** A missing priority of a type with a priority is stored as 0 by the API. */
+  private static String canonicalPriority(String type, @Nullable Integer priority) {
+    if (priority != null) {
+      return priority.toString();
+    }
+    return PRIORITY_TYPES.contains(type) ? "0" : "";
+  }
+
+  private static SortedMap<String, byte[]> hashNames(Map<String, List<String>> lines) {
+    MessageDigest digest = sha256();
+    SortedMap<String, byte[]> names = new TreeMap<>();
+    lines.forEach(
+        (name, records) -> {
+          Collections.sort(records);
+          for (String line : records) {
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+          }
+          names.put(name, digest.digest());
+        });
+    return Collections.unmodifiableSortedMap(names);
+  }
+
+  private static String canonicalName(String name) {
+    return RecordIndex.normalizeName(name);
+  }
+
+  private static String canonicalContent(String type, @Nullable String content) {
+    if (content == null) {
+      return "";
+    }
+    String trimmed = content.trim();
+    RecordType recordType = RecordType.of(type);
+    if (recordType == RecordType.CNAME
+        || recordType == RecordType.NS
+        || recordType == RecordType.PTR
+        || recordType == RecordType.MX) {
+      return RecordIndex.normalizeName(trimmed);
+    }
+    return trimmed;
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 isn't available.", e);
+    }
+  }
+}
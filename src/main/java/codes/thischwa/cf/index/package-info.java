@@ -0,0 +1,2 @@
+/** In-memory indexes of the DNS records of many zones, built from the listings of the API. */
+package codes.thischwa.cf.index;
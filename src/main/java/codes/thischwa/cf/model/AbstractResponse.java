@@ -13,7 +13,8 @@ import lombok.Data;
  *
  * <ol>
  *   <li><b>success</b>: Indicates whether the API request was successful.
- *   <li><b>errors</b>: A list of error messages, if any, returned by the API.
+ *   <li><b>errors</b>: A list of errors, if any, returned by the API, each with its code and
+ *       message.
  *   <li><b>messages</b>: A list of informational or status messages accompanying the response.
  * </ol>
  *
@@ -23,6 +24,6 @@ import lombok.Data;
 @Data
 public abstract class AbstractResponse {
   private boolean success;
-  private List<String> errors;
-  private List<String> messages;
+  private List<ResponseMessage> errors;
+  private List<ResponseMessage> messages;
 }
@@ -0,0 +1,12 @@
+package codes.thischwa.cf.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Represents a response without a result, e.g. the body of a request which failed with an HTTP
+ * error status. Only the common attributes, in particular the errors, are mapped.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class ErrorResponse extends AbstractResponse {}
@@ -1,5 +1,6 @@
 package codes.thischwa.cf.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.time.LocalDateTime;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -16,6 +17,7 @@ import org.jetbrains.annotations.Nullable;
  *   <li>Content of the DNS record, such as an IP address.
  *   <li>Flags indicating whether the record is proxiable or proxied.
  *   <li>TTL (Time-To-Live) for the DNS record.
+ *   <li>The priority of MX, SRV and URI records.
  *   <li>A locked status to indicate immutability of the record.
  *   <li>Zone-specific metadata including zone ID and name.
  *   <li>Timestamps for creation and modification.
@@ -23,6 +25,9 @@ import org.jetbrains.annotations.Nullable;
  *
  * <p>Provides a static factory method {@code build} for creating a DNS record with specific
  * attributes.
+ *
+ * <p>The type is mapped to the {@link RecordType} enum while parsing: known types share the string
+ * instance of the matching constant, unknown types are kept as they are.
  */
 @EqualsAndHashCode(callSuper = true)
 @Data
@@ -33,6 +38,7 @@ public class RecordEntity extends AbstractEntity {
   private Boolean proxiable;
   private Boolean proxied;
   private Integer ttl;
+  @Nullable private Integer priority;
   private Boolean locked;
   @Nullable private String zoneId;
   @Nullable private String zoneName;
@@ -49,6 +55,50 @@ public class RecordEntity extends AbstractEntity {
     super();
   }
 
+  /**
+   * Sets the DNS record type. A known type is replaced by the string of the matching {@link
+   * RecordType} constant, so records of the same type don't hold redundant strings.
+   *
+   * @param type the DNS record type such as "A" or "CNAME"
+   */
+  public void setType(String type) {
+    this.type = RecordType.canonical(type);
+  }
+
+  /**
+   * Retrieves the {@link RecordType} of the DNS record.
+   *
+   * @return the {@code RecordType}, or {@code null} if the type is unknown
+   */
+  @JsonIgnore
+  @Nullable
+  public RecordType getRecordType() {
+    return RecordType.of(type);
+  }
+
+  /**
+   * Creates a copy of this record with all its attributes.
+   *
+   * @return a new {@link RecordEntity} equal to this one
+   */
+  public RecordEntity copy() {
+    RecordEntity copy = new RecordEntity();
+    copy.setId(getId());
+    copy.setType(type);
+    copy.setName(name);
+    copy.setContent(content);
+    copy.setProxiable(proxiable);
+    copy.setProxied(proxied);
+    copy.setTtl(ttl);
+    copy.setPriority(priority);
+    copy.setLocked(locked);
+    copy.setZoneId(zoneId);
+    copy.setZoneName(zoneName);
+    copy.setModifiedOn(modifiedOn);
+    copy.setCreatedOn(createdOn);
+    return copy;
+  }
+
   /**
    * Builds and returns a {@link RecordEntity} instance with the specified attributes.
    *
@@ -1,6 +1,15 @@
 package codes.thischwa.cf.model;
 
-/** Represents the API response of the Cloudflare API containing multiple DNS record entities. */
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents the API response of the Cloudflare API containing multiple DNS record entities.
+ *
+ * <p>All records of a response usually belong to the same zone. To avoid carrying the same zone id
+ * and zone name string for each record, equal values are replaced by one shared instance while the
+ * result is set.
+ */
 public class RecordMultipleResponse extends AbstractMultipleResponse<RecordEntity> {
 
   /**
@@ -13,4 +22,29 @@ public class RecordMultipleResponse extends AbstractMultipleResponse<RecordEntit
   public RecordMultipleResponse() {
     super();
   }
+
+  @Override
+  public void setResult(List<RecordEntity> result) {
+    if (result != null) {
+      shareZoneAttributes(result);
+    }
+    super.setResult(result);
+  }
+
+  private static void shareZoneAttributes(List<RecordEntity> result) {
+    String zoneId = null;
+    String zoneName = null;
+    for (RecordEntity rec : result) {
+      if (Objects.equals(rec.getZoneId(), zoneId)) {
+        rec.setZoneId(zoneId);
+      } else {
+        zoneId = rec.getZoneId();
+      }
+      if (Objects.equals(rec.getZoneName(), zoneName)) {
+        rec.setZoneName(zoneName);
+      } else {
+        zoneName = rec.getZoneName();
+      }
+    }
+  }
 }
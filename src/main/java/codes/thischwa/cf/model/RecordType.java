@@ -1,6 +1,9 @@
 package codes.thischwa.cf.model;
 
+import java.util.HashMap;
+import java.util.Map;
 import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Enum representing various DNS record types.
@@ -190,12 +193,45 @@ public enum RecordType {
    */
   URI("URI");
 
+  private static final Map<String, RecordType> BY_TYPE = new HashMap<>();
+
+  static {
+    for (RecordType recordType : values()) {
+      BY_TYPE.put(recordType.type, recordType);
+    }
+  }
+
   private final String type;
 
   RecordType(String type) {
     this.type = type;
   }
 
+  /**
+   * Looks up the {@code RecordType} for the given string representation.
+   *
+   * @param type the string representation of the record type, e.g. "A" or "CNAME"
+   * @return the matching {@code RecordType}, or {@code null} if the type is unknown
+   */
+  @Nullable
+  public static RecordType of(@Nullable String type) {
+    return type == null ? null : BY_TYPE.get(type);
+  }
+
+  /**
+   * Returns the canonical string instance for the given record type. If the type is known, the
+   * string held by the matching {@code RecordType} constant is returned, so that equal type
+   * strings share one instance. Unknown types are returned unchanged.
+   *
+   * @param type the string representation of the record type
+   * @return the canonical string representation of the record type
+   */
+  @Nullable
+  public static String canonical(@Nullable String type) {
+    RecordType recordType = of(type);
+    return recordType == null ? type : recordType.type;
+  }
+
   @Override
   public String toString() {
     return getType();
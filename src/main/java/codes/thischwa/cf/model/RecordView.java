@@ -0,0 +1,82 @@
+package codes.thischwa.cf.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents a lightweight, read-only view of a DNS record, intended for large listings.
+ *
+ * <p>Only the attributes which are usually required for listings are kept: id, name, type, content,
+ * TTL, priority and the proxied flag. All other attributes of the API response are skipped while
+ * deserializing. Compared to {@link RecordEntity} the view:
+ *
+ * <ul>
+ *   <li>holds the TTL as a primitive value,
+ *   <li>shares the type string with the matching {@link RecordType} constant,
+ *   <li>keeps the modification timestamp as raw string and parses it on demand only.
+ * </ul>
+ *
+ * @param id the unique identifier of the DNS record
+ * @param name the name of the DNS record
+ * @param type the DNS record type such as "A" or "CNAME"
+ * @param content the content of the DNS record, such as an IP address
+ * @param ttl the time-to-live (TTL) of the DNS record
+ * @param priority the priority of MX, SRV and URI records, {@code null} for other types
+ * @param proxied whether the record is proxied by Cloudflare
+ * @param modifiedOn the raw timestamp of the last modification, as returned by the API
+ */
+public record RecordView(
+    String id,
+    String name,
+    String type,
+    String content,
+    int ttl,
+    @Nullable Integer priority,
+    boolean proxied,
+    @Nullable String modifiedOn)
+    implements ResponseEntity {
+
+  /**
+   * Constructs a new {@code RecordView} and canonicalizes the type string.
+   *
+   * @param id the unique identifier of the DNS record
+   * @param name the name of the DNS record
+   * @param type the DNS record type such as "A" or "CNAME"
+   * @param content the content of the DNS record, such as an IP address
+   * @param ttl the time-to-live (TTL) of the DNS record
+   * @param priority the priority of MX, SRV and URI records, {@code null} for other types
+   * @param proxied whether the record is proxied by Cloudflare
+   * @param modifiedOn the raw timestamp of the last modification, as returned by the API
+   */
+  public RecordView {
+    type = RecordType.canonical(type);
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Retrieves the {@link RecordType} of the DNS record.
+   *
+   * @return the {@code RecordType}, or {@code null} if the type is unknown
+   */
+  @Nullable
+  public RecordType recordType() {
+    return RecordType.of(type);
+  }
+
+  /**
+   * Parses the raw timestamp of the last modification.
+   *
+   * @return the timestamp of the last modification, or {@code null} if it isn't set
+   */
+  @Nullable
+  public LocalDateTime modifiedOnDateTime() {
+    return modifiedOn == null
+        ? null
+        : LocalDateTime.parse(modifiedOn, DateTimeFormatter.ISO_DATE_TIME);
+  }
+}
@@ -0,0 +1,19 @@
+package codes.thischwa.cf.model;
+
+/**
+ * Represents the API response of the Cloudflare API containing multiple DNS records as lightweight
+ * {@link RecordView} instances.
+ */
+public class RecordViewMultipleResponse extends AbstractMultipleResponse<RecordView> {
+
+  /**
+   * Constructs an instance of RecordViewMultipleResponse.
+   *
+   * <p>This class represents a response containing multiple DNS records from the Cloudflare API,
+   * mapped to {@link RecordView} instead of {@link RecordEntity} to reduce the memory footprint of
+   * large listings.
+   */
+  public RecordViewMultipleResponse() {
+    super();
+  }
+}
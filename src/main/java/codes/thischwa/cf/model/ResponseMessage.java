@@ -0,0 +1,39 @@
+package codes.thischwa.cf.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents an error or an informational message of an API response, e.g. {@code {"code": 1003,
+ * "message": "Invalid or missing zone id."}}. Messages which the API sends as plain strings are
+ * mapped with the code 0.
+ *
+ * @param code the numeric code of the message, see the Cloudflare API documentation
+ * @param message the text of the message
+ * @param errorChain the underlying errors, if any
+ */
+public record ResponseMessage(
+    int code, String message, @Nullable List<ResponseMessage> errorChain)
+    implements Serializable {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a message without a code from a plain string.
+   *
+   * @param message the text of the message
+   * @return the message
+   */
+  @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+  public static ResponseMessage of(String message) {
+    return new ResponseMessage(0, message, null);
+  }
+
+  @Override
+  public String toString() {
+    return code == 0 ? message : code + ": " + message;
+  }
+}
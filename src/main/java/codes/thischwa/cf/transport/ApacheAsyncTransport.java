@@ -0,0 +1,100 @@
+package codes.thischwa.cf.transport;
+
+import codes.thischwa.cf.CfProtocol;
+import codes.thischwa.cf.CfTimeouts;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * A {@link CfTransport} based on the asynchronous Apache HttpClient 5, whose I/O is handled by a
+ * few reactor threads. With {@link CfProtocol#HTTP_2} all requests are multiplexed as streams over
+ * one connection per host, for base URLs with the scheme 'http' h2c with prior knowledge is used.
+ * With {@link CfProtocol#HTTP_1_1} the requests use a connection pool.
+ *
+ * <p>The body of a response is buffered in memory. The transport doesn't decompress and therefore
+ * doesn't ask for compressed responses.
+ */
+public final class ApacheAsyncTransport implements CfTransport {
+
+  private final CloseableHttpAsyncClient httpClient;
+
+  /**
+   * Constructs and starts a transport.
+   *
+   * @param protocol the HTTP protocol
+   * @param maxConnections the maximum number of connections of HTTP/1.1, 0 keeps the default of
+   *     the HTTP client
+   * @param timeouts the timeouts
+   */
+  public ApacheAsyncTransport(CfProtocol protocol, int maxConnections, CfTimeouts timeouts) {
+    IOReactorConfig ioReactorConfig =
+        IOReactorConfig.custom().setSoTimeout(Timeout.of(timeouts.socket())).build();
+    if (protocol == CfProtocol.HTTP_2) {
+      httpClient =
+          HttpAsyncClients.customHttp2()
+              .setDefaultConnectionConfig(ApacheClassicTransport.connectionConfig(timeouts))
+              .setDefaultRequestConfig(ApacheClassicTransport.requestConfig(timeouts))
+              .setIOReactorConfig(ioReactorConfig)
+              .build();
+    } else {
+      PoolingAsyncClientConnectionManagerBuilder pool =
+          PoolingAsyncClientConnectionManagerBuilder.create()
+              .setDefaultConnectionConfig(ApacheClassicTransport.connectionConfig(timeouts));
+      if (maxConnections > 0) {
+        pool.setMaxConnTotal(maxConnections).setMaxConnPerRoute(maxConnections);
+      }
+      httpClient =
+          HttpAsyncClients.custom()
+              .setConnectionManager(pool.build())
+              .setDefaultRequestConfig(ApacheClassicTransport.requestConfig(timeouts))
+              .setIOReactorConfig(ioReactorConfig)
+              .build();
+    }
+    httpClient.start();
+  }
+
+  @Override
+  public Response send(Request request) throws IOException, InterruptedException {
+    SimpleHttpRequest httpRequest =
+        SimpleHttpRequest.create(request.method(), URI.create(request.url()));
+    request.headers().forEach(httpRequest::addHeader);
+    if (request.body() != null) {
+      httpRequest.setBody(request.body(), ContentType.APPLICATION_JSON);
+    }
+    Future<SimpleHttpResponse> exchange = httpClient.execute(httpRequest, null);
+    SimpleHttpResponse response;
+    try {
+      response = exchange.get();
+    } catch (InterruptedException e) {
+      // abort the exchange, otherwise it keeps its stream or connection until it's done
+      exchange.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException
+          ? (IOException) e.getCause()
+          : new IOException(e.getCause());
+    }
+    byte[] body = response.getBodyBytes();
+    return Response.of(
+        response.getCode(),
+        ApacheClassicTransport.headers(response.getHeaders()),
+        body == null ? new byte[0] : body);
+  }
+
+  /** Releases the HTTP client and its connections after the requests in flight are done. */
+  @Override
+  public void close() {
+    httpClient.close(CloseMode.GRACEFUL);
+  }
+}
@@ -0,0 +1,105 @@
+package codes.thischwa.cf.transport;
+
+import codes.thischwa.cf.CfTimeouts;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * A {@link CfTransport} based on the classic, blocking Apache HttpClient 5. Concurrent requests
+ * each occupy a connection of the pool. The body of a response is streamed from the connection,
+ * which is released when the body is closed. Compressed responses are negotiated and decompressed
+ * transparently. A blocking socket read can't be interrupted, an interrupted request keeps its
+ * connection until it's answered or times out.
+ */
+public final class ApacheClassicTransport implements CfTransport {
+
+  private final CloseableHttpClient httpClient;
+
+  /**
+   * Constructs a transport with the given size of the connection pool and timeouts.
+   *
+   * @param maxConnections the maximum number of connections, 0 keeps the default of the HTTP
+   *     client
+   * @param timeouts the timeouts
+   */
+  public ApacheClassicTransport(int maxConnections, CfTimeouts timeouts) {
+    PoolingHttpClientConnectionManagerBuilder pool =
+        PoolingHttpClientConnectionManagerBuilder.create()
+            .setDefaultConnectionConfig(connectionConfig(timeouts));
+    if (maxConnections > 0) {
+      pool.setMaxConnTotal(maxConnections).setMaxConnPerRoute(maxConnections);
+    }
+    this.httpClient =
+        HttpClients.custom()
+            .setConnectionManager(pool.build())
+            .setDefaultRequestConfig(requestConfig(timeouts))
+            .build();
+  }
+
+  @Override
+  public Response send(Request request) throws IOException {
+    BasicClassicHttpRequest httpRequest =
+        new BasicClassicHttpRequest(request.method(), URI.create(request.url()));
+    request.headers().forEach(httpRequest::addHeader);
+    if (request.body() != null) {
+      httpRequest.setEntity(new ByteArrayEntity(request.body(), ContentType.APPLICATION_JSON));
+    }
+    ClassicHttpResponse response = httpClient.executeOpen(null, httpRequest, null);
+    HttpEntity entity = response.getEntity();
+    InputStream body =
+        entity == null
+            ? InputStream.nullInputStream()
+            : new FilterInputStream(entity.getContent()) {
+                @Override
+                public void close() throws IOException {
+                  EntityUtils.consumeQuietly(entity);
+                  response.close();
+                }
+              };
+    return new Response(response.getCode(), headers(response.getHeaders()), body);
+  }
+
+  /** Releases the HTTP client and its connections. */
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+
+  static ConnectionConfig connectionConfig(CfTimeouts timeouts) {
+    return ConnectionConfig.custom()
+        .setConnectTimeout(Timeout.of(timeouts.connect()))
+        .setSocketTimeout(Timeout.of(timeouts.socket()))
+        .build();
+  }
+
+  static RequestConfig requestConfig(CfTimeouts timeouts) {
+    return RequestConfig.custom().setResponseTimeout(Timeout.of(timeouts.response())).build();
+  }
+
+  static Map<String, List<String>> headers(Header[] headers) {
+    Map<String, List<String>> map = new LinkedHashMap<>();
+    for (Header header : headers) {
+      map.computeIfAbsent(header.getName(), name -> new ArrayList<>(1)).add(header.getValue());
+    }
+    return map;
+  }
+}
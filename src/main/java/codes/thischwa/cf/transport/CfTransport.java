@@ -0,0 +1,97 @@
+package codes.thischwa.cf.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The SPI of the HTTP engine sending the requests of a {@code CfDnsClient}. A transport knows
+ * nothing about the Cloudflare API: the client passes the complete request including all headers
+ * and maps the response itself. Therefore, a transport is free of credentials and can be shared by
+ * multiple clients.
+ *
+ * <p>Implementations must be thread-safe. A response with any status code is returned as such,
+ * only the failure to exchange the request and response, including timeouts, is signaled by an
+ * {@link IOException}. The body of the response must be closed by the caller, which releases the
+ * connection.
+ *
+ * <p>Available implementations:
+ *
+ * <ul>
+ *   <li>{@link ApacheClassicTransport}: the blocking Apache HttpClient 5 with a connection pool
+ *   <li>{@link ApacheAsyncTransport}: the asynchronous Apache HttpClient 5, also for HTTP/2
+ *   <li>{@link JdkHttpTransport}: the {@code java.net.http.HttpClient} of the JDK
+ *   <li>{@link LoopbackTransport}: an in-memory transport for tests and benchmarks
+ * </ul>
+ */
+public interface CfTransport extends Closeable {
+
+  /**
+   * Sends a request and returns the response.
+   *
+   * @param request the request
+   * @return the response, its body must be closed by the caller
+   * @throws IOException if the request couldn't be sent or the response couldn't be received
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  Response send(Request request) throws IOException, InterruptedException;
+
+  /**
+   * Represents an HTTP request.
+   *
+   * @param method the HTTP method, e.g. "GET"
+   * @param url the absolute URL
+   * @param headers the headers
+   * @param body the body, {@code null} for requests without a body
+   */
+  record Request(String method, String url, Map<String, String> headers, byte @Nullable [] body) {}
+
+  /**
+   * Represents an HTTP response.
+   *
+   * @param statusCode the status code
+   * @param headers the headers, the names may be in any case
+   * @param body the stream of the body, empty if there is none
+   */
+  record Response(int statusCode, Map<String, List<String>> headers, InputStream body)
+      implements Closeable {
+
+    /**
+     * Creates a response with a body held in memory.
+     *
+     * @param statusCode the status code
+     * @param headers the headers
+     * @param body the body
+     * @return the response
+     */
+    public static Response of(int statusCode, Map<String, List<String>> headers, byte[] body) {
+      return new Response(statusCode, headers, new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Retrieves the first value of a header, ignoring the case of the name.
+     *
+     * @param name the name of the header
+     * @return the first value, or {@code null} if the header is missing
+     */
+    @Nullable
+    public String header(String name) {
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+        if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+          return header.getValue().get(0);
+        }
+      }
+      return null;
+    }
+
+    /** Closes the body and releases the connection. */
+    @Override
+    public void close() throws IOException {
+      body.close();
+    }
+  }
+}
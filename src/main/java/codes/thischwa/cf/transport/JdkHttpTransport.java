@@ -0,0 +1,60 @@
+package codes.thischwa.cf.transport;
+
+import codes.thischwa.cf.CfProtocol;
+import codes.thischwa.cf.CfTimeouts;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * A {@link CfTransport} based on the {@link HttpClient} of the JDK, which needs no further
+ * dependencies. With {@link CfProtocol#HTTP_2} the client negotiates HTTP/2 and falls back to
+ * HTTP/1.1 if the server doesn't support it. The body of a response is streamed.
+ *
+ * <p>The connection pool of the JDK client isn't configurable per instance, the socket timeout
+ * isn't supported. The transport doesn't decompress and therefore doesn't ask for compressed
+ * responses.
+ */
+public final class JdkHttpTransport implements CfTransport {
+
+  private final HttpClient httpClient;
+  private final Duration responseTimeout;
+
+  /**
+   * Constructs a transport.
+   *
+   * @param protocol the preferred HTTP protocol
+   * @param timeouts the timeouts, the socket timeout is ignored
+   */
+  public JdkHttpTransport(CfProtocol protocol, CfTimeouts timeouts) {
+    HttpClient.Version version =
+        protocol == CfProtocol.HTTP_2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+    this.httpClient =
+        HttpClient.newBuilder().version(version).connectTimeout(timeouts.connect()).build();
+    this.responseTimeout = timeouts.response();
+  }
+
+  @Override
+  public Response send(Request request) throws IOException, InterruptedException {
+    HttpRequest.Builder builder =
+        HttpRequest.newBuilder(URI.create(request.url()))
+            .timeout(responseTimeout)
+            .method(
+                request.method(),
+                request.body() == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(request.body()));
+    request.headers().forEach(builder::header);
+    HttpResponse<InputStream> response =
+        httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+    return new Response(response.statusCode(), response.headers().map(), response.body());
+  }
+
+  /** Does nothing, the JDK client releases its resources when it is no longer referenced. */
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,54 @@
+package codes.thischwa.cf.transport;
+
+import java.io.IOException;
+
+/**
+ * An in-memory {@link CfTransport}, which passes the requests to a handler instead of sending them
+ * over the network. It serves tests and benchmarks of the client without an HTTP server, e.g.:
+ *
+ * <pre><code>
+ * CfTransport transport = new LoopbackTransport(request -&gt;
+ *     CfTransport.Response.of(200, Map.of(), zonesJson));
+ * CfDnsClient client = CfDnsClient.builder()
+ *     .baseUrl("http://loopback")
+ *     .tokenAuth(token)
+ *     .transport(transport)
+ *     .build();
+ * </code></pre>
+ */
+public final class LoopbackTransport implements CfTransport {
+
+  /** Answers the requests of a {@link LoopbackTransport}. */
+  @FunctionalInterface
+  public interface Handler {
+
+    /**
+     * Answers a request.
+     *
+     * @param request the request
+     * @return the response
+     * @throws IOException to simulate a failure of the transport
+     */
+    Response handle(Request request) throws IOException;
+  }
+
+  private final Handler handler;
+
+  /**
+   * Constructs a transport.
+   *
+   * @param handler the handler answering the requests, it must be thread-safe
+   */
+  public LoopbackTransport(Handler handler) {
+    this.handler = handler;
+  }
+
+  @Override
+  public Response send(Request request) throws IOException {
+    return handler.handle(request);
+  }
+
+  /** Does nothing. */
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,2 @@
+/** The HTTP transports of CloudflareDNS-java, which send the requests of the CfDnsClient. */
+package codes.thischwa.cf.transport;
@@ -0,0 +1,131 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveLimiterTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final CfClientMetrics metrics = new CfClientMetrics();
+  private final AdaptiveLimiter limiter =
+      new AdaptiveLimiter(
+          new CfConcurrencyLimit(4, 2, 6, 0.5, 2.0, Duration.ofMillis(50)), clock::get, metrics);
+
+  /** Sends {@code count} requests at the same time, each answered after {@code rtt}. */
+  private void round(int count, long rtt, @Nullable Boolean healthy) throws InterruptedException {
+    long sentAt = clock.get();
+    for (int i = 0; i < count; i++) {
+      assertTrue(limiter.acquire());
+    }
+    clock.addAndGet(rtt);
+    for (int i = 0; i < count; i++) {
+      limiter.release(CfRequest.RECORD_LIST, sentAt, healthy);
+    }
+  }
+
+  @Test
+  void testGrowsWhileInUseAndFlat() throws Exception {
+    assertEquals(4, metrics.getConcurrencyLimit());
+    round(1, 100, true);
+    assertEquals(4, limiter.getLimit());
+    round(4, 100, true);
+    assertEquals(4, limiter.getLimit(), "less than one per round trip");
+    for (int i = 0; i < 4; i++) {
+      round(limiter.getLimit(), 100, true);
+    }
+    assertEquals(6, limiter.getLimit());
+    assertEquals(6, metrics.getConcurrencyLimit());
+  }
+
+  @Test
+  void testShrinksOncePerRoundTripOnOverload() throws Exception {
+    round(4, 100, false);
+    assertEquals(2, limiter.getLimit());
+    assertEquals(2, metrics.getConcurrencyLimit());
+    round(2, 100, false);
+    assertEquals(2, limiter.getLimit());
+  }
+
+  @Test
+  void testShrinksOnRisingRoundTripTime() throws Exception {
+    round(2, 100, true);
+    round(2, 150, true);
+    assertEquals(4, limiter.getLimit());
+    round(1, 250, true);
+    assertEquals(2, limiter.getLimit());
+  }
+
+  @Test
+  void testRoundTripTimePerRequestKind() throws Exception {
+    round(2, 100, true);
+    long sentAt = clock.get();
+    assertTrue(limiter.acquire());
+    clock.addAndGet(1_000);
+    limiter.release(CfRequest.ZONE_LIST, sentAt, true);
+    assertEquals(4, limiter.getLimit());
+  }
+
+  @Test
+  void testAbandonedRequestIsIgnored() throws Exception {
+    round(4, 100, null);
+    assertEquals(4, limiter.getLimit());
+  }
+
+  @Test
+  void testWaitsForSlot() throws Exception {
+    for (int i = 0; i < 4; i++) {
+      assertTrue(limiter.acquire());
+    }
+    long start = System.nanoTime();
+    assertFalse(limiter.acquire());
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(40).toNanos());
+
+    Thread releaser =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(10);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              limiter.release(CfRequest.RECORD_LIST, 0, null);
+            });
+    releaser.start();
+    assertTrue(limiter.acquire());
+    releaser.join();
+  }
+
+  @Test
+  void testClientShrinksOnTooManyRequests() throws Exception {
+    try (ApiStub stub = new ApiStub(request -> new ApiStub.Reply(429, "{\"success\":false}"));
+        CfDnsClient client =
+            CfDnsClient.builder()
+                .baseUrl(stub.baseUrl())
+                .credentials(new CfCredentials("e", "k", "t"))
+                .resilience(CfResilience.DISABLED)
+                .concurrencyLimit(CfConcurrencyLimit.DEFAULT)
+                .build()) {
+      assertEquals(10, client.getMetrics().getConcurrencyLimit());
+      CloudflareApiException e = assertThrows(CloudflareApiException.class, client::zoneListAll);
+      assertEquals(429, e.getStatusCode());
+      assertEquals(7, client.getMetrics().getConcurrencyLimit());
+    }
+  }
+
+  @Test
+  void testInvalidPolicy() {
+    Duration wait = Duration.ofSeconds(1);
+    assertThrows(
+        IllegalArgumentException.class, () -> new CfConcurrencyLimit(0, 0, 1, 0.5, 2, wait));
+    assertThrows(
+        IllegalArgumentException.class, () -> new CfConcurrencyLimit(5, 1, 4, 0.5, 2, wait));
+    assertThrows(
+        IllegalArgumentException.class, () -> new CfConcurrencyLimit(2, 1, 4, 1.0, 2, wait));
+    assertThrows(
+        IllegalArgumentException.class, () -> new CfConcurrencyLimit(2, 1, 4, 0.5, 1, wait));
+  }
+}
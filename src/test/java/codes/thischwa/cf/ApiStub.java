@@ -0,0 +1,97 @@
+package codes.thischwa.cf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A local HTTP/1.1 stub of the Cloudflare API, answering requests by a handler. */
+public final class ApiStub implements AutoCloseable {
+
+  /** A request received by the stub. */
+  public record Request(String method, String uri, String token, String body) {}
+
+  /** The reply of the stub. */
+  public record Reply(int status, String body) {
+    public static Reply ok(String body) {
+      return new Reply(200, body);
+    }
+  }
+
+  /** Answers a request. */
+  public interface Handler {
+    Reply handle(Request request) throws Exception;
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final List<Request> requests = new CopyOnWriteArrayList<>();
+  private volatile Handler handler;
+
+  public ApiStub(Handler handler) throws IOException {
+    this.handler = handler;
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  public String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  public List<Request> requests() {
+    return requests;
+  }
+
+  public void setHandler(Handler handler) {
+    this.handler = handler;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    Request request =
+        new Request(
+            exchange.getRequestMethod(),
+            exchange.getRequestURI().toString(),
+            exchange.getRequestHeaders().getFirst("X-Auth-Token"),
+            new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    requests.add(request);
+    Reply reply;
+    try {
+      reply = handler.handle(request);
+    } catch (Exception e) {
+      reply = new Reply(500, e.toString());
+    }
+    byte[] body = reply.body().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(reply.status(), body.length == 0 ? -1 : body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  public static String zones(String... idNamePairs) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < idNamePairs.length; i += 2) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"id\":\"").append(idNamePairs[i]).append("\",\"name\":\"")
+          .append(idNamePairs[i + 1]).append("\"}");
+    }
+    return "{\"success\":true,\"result_info\":{\"total_count\":" + idNamePairs.length / 2
+        + "},\"result\":[" + sb + "]}";
+  }
+}
@@ -0,0 +1,76 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CfClientRegistryTest {
+
+  private ApiStub stub;
+  private CfClientRegistry registry;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub =
+        new ApiStub(
+            request ->
+                ApiStub.Reply.ok(
+                    "t1".equals(request.token())
+                        ? ApiStub.zones("z1", "a.com", "z2", "b.com")
+                        : ApiStub.zones("z3", "c.com")));
+    registry = new CfClientRegistry(stub.baseUrl(), CfProtocol.HTTP_1_1);
+    registry.register("acct1", new CfCredentials("a@example.com", "k1", "t1"));
+    registry.register("acct2", new CfCredentials("b@example.com", "k2", "t2"));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    registry.close();
+    stub.close();
+  }
+
+  @Test
+  void testRegister() {
+    CfDnsClient client = registry.client("acct1");
+    assertSame(client, registry.register("acct1", new CfCredentials("a@example.com", "k1", "t1")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> registry.register("acct1", new CfCredentials("a@example.com", "k1", "other")));
+    assertThrows(IllegalArgumentException.class, () -> registry.client("unknown"));
+    assertEquals(2, registry.accounts().size());
+  }
+
+  @Test
+  void testClientForZone() throws Exception {
+    assertSame(registry.client("acct2"), registry.clientForZone("c.com"));
+    assertEquals(2, stub.requests().size());
+    assertSame(registry.client("acct1"), registry.clientForZone("b.com"));
+    assertEquals("acct1", registry.accountForZone("a.com"));
+    assertEquals(2, stub.requests().size());
+
+    assertThrows(CloudflareNotFoundException.class, () -> registry.clientForZone("d.com"));
+    assertEquals(2, stub.requests().size(), "refreshed within the minimum interval");
+
+    registry.register("acct3", new CfCredentials("c@example.com", "k3", "t3"));
+    assertThrows(CloudflareNotFoundException.class, () -> registry.clientForZone("d.com"));
+    assertEquals(5, stub.requests().size(), "a new account makes the index stale");
+  }
+
+  @Test
+  void testSeparateMetrics() throws Exception {
+    registry.client("acct1").zoneListAll();
+    registry.client("acct1").zoneListAll();
+    registry.client("acct2").zoneListAll();
+    assertEquals(2, registry.client("acct1").getMetrics().getRequestCount());
+    assertEquals(1, registry.client("acct2").getMetrics().getRequestCount());
+    assertEquals(0, registry.client("acct2").getMetrics().getFailureCount());
+  }
+
+  @Test
+  void testSharedTransportSurvivesClientClose() throws Exception {
+    registry.client("acct1").close();
+    assertEquals(2, registry.client("acct1").zoneListAll().size());
+  }
+}
@@ -36,10 +36,14 @@ public class CfClientTest {
     assertThrows(
         CloudflareNotFoundException.class, () -> client.sldListAll(zList.get(0), "notexisting"));
 
-    client.setEmptyResultThrowsException(false);
-    rList = client.sldListAll(zList.get(0), "notexisting");
-    assertTrue(rList.isEmpty());
-    client.setEmptyResultThrowsException(true);
+    try (CfDnsClient lenient =
+        CfDnsClient.builder()
+            .credentials(new CfCredentials(email, apiKey, apiToken))
+            .emptyResultThrowsException(false)
+            .build()) {
+      rList = lenient.sldListAll(zList.get(0), "notexisting");
+      assertTrue(rList.isEmpty());
+    }
   }
 
   @Test
@@ -0,0 +1,133 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import codes.thischwa.cf.transport.CfTransport;
+import codes.thischwa.cf.transport.LoopbackTransport;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+public class CfDnsClientBuilderTest {
+
+  private static final Pattern NAME = Pattern.compile("name=([^&]+)");
+  private static final int THREADS = 32;
+  private static final int CALLS = 25;
+
+  private final ZoneEntity zone = new ZoneEntity();
+
+  {
+    zone.setId("z1");
+    zone.setName("example.com");
+  }
+
+  private static Map<String, String> headersOf(CfDnsClient.Builder builder) throws Exception {
+    AtomicReference<Map<String, String>> headers = new AtomicReference<>();
+    CfTransport transport =
+        new LoopbackTransport(
+            request -> {
+              headers.set(request.headers());
+              return CfTransport.Response.of(
+                  200,
+                  Map.of(),
+                  "{\"success\":true,\"result\":{\"id\":\"r1\"}}"
+                      .getBytes(StandardCharsets.UTF_8));
+            });
+    try (CfDnsClient client = builder.baseUrl("http://loopback").transport(transport).build()) {
+      client.recordDelete(new ZoneEntity(), "r1");
+    }
+    return headers.get();
+  }
+
+  @Test
+  void testTokenAuth() throws Exception {
+    Map<String, String> headers = headersOf(CfDnsClient.builder().tokenAuth("t0k3n"));
+    assertEquals("t0k3n", headers.get("X-Auth-Token"));
+    assertFalse(headers.containsKey("X-Auth-Email"));
+    assertFalse(headers.containsKey("X-Auth-Key"));
+    assertEquals("application/json", headers.get("Accept"));
+  }
+
+  @Test
+  void testKeyAuth() throws Exception {
+    Map<String, String> headers = headersOf(CfDnsClient.builder().keyAuth("e@example.com", "k"));
+    assertEquals("e@example.com", headers.get("X-Auth-Email"));
+    assertEquals("k", headers.get("X-Auth-Key"));
+    assertFalse(headers.containsKey("X-Auth-Token"));
+  }
+
+  @Test
+  void testInvalidSettings() {
+    assertThrows(IllegalStateException.class, () -> CfDnsClient.builder().build());
+    assertThrows(IllegalArgumentException.class, () -> CfDnsClient.builder().maxConnections(0));
+    assertThrows(IllegalArgumentException.class, () -> CfDnsClient.builder().rateLimit(1, 0));
+  }
+
+  @Test
+  void testSharedByManyThreads() throws Exception {
+    try (ApiStub stub =
+            new ApiStub(
+                request -> {
+                  if (request.method().equals("PATCH")) {
+                    return ApiStub.Reply.ok(
+                        "{\"success\":true,\"result\":" + request.body() + "}");
+                  }
+                  Matcher m = NAME.matcher(request.uri());
+                  assertTrue(m.find());
+                  return ApiStub.Reply.ok(
+                      "{\"success\":true,\"result_info\":{\"total_count\":1},"
+                          + "\"result\":[{\"id\":\"r1\",\"name\":\""
+                          + m.group(1)
+                          + "\"}]}");
+                });
+        CfDnsClient client =
+            CfDnsClient.builder()
+                .baseUrl(stub.baseUrl())
+                .tokenAuth("t")
+                .maxConnections(THREADS)
+                .resilience(CfResilience.DISABLED)
+                .build()) {
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        String sld = "host" + t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int i = 0; i < CALLS; i++) {
+                    RecordEntity found = client.sldFind(zone, sld, RecordType.A).orElseThrow();
+                    assertEquals(sld + ".example.com", found.getName());
+                    RecordEntity rec =
+                        RecordEntity.build(found.getName(), RecordType.A, 60, "192.0.2." + i);
+                    rec.setId(found.getId());
+                    assertEquals("192.0.2." + i, client.recordUpdate(zone, rec).getContent());
+                  }
+                  return null;
+                }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      executor.shutdown();
+      assertEquals(THREADS * CALLS * 2, client.getMetrics().getRequestCount());
+      assertEquals(0, client.getMetrics().getFailureCount());
+      assertEquals(THREADS * CALLS * 2, stub.requests().size());
+    }
+  }
+}
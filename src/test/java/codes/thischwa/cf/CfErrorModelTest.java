@@ -0,0 +1,117 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ResponseMessage;
+import codes.thischwa.cf.model.ZoneEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CfErrorModelTest {
+
+  private static final String EMPTY =
+      "{\"success\":true,\"result_info\":{\"total_count\":0},\"result\":[]}";
+
+  private ApiStub stub;
+  private CfDnsClient client;
+  private final ZoneEntity zone = new ZoneEntity();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub = new ApiStub(request -> ApiStub.Reply.ok(EMPTY));
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    zone.setId("z1");
+    zone.setName("example.com");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+  }
+
+  @Test
+  void testStructuredErrors() {
+    stub.setHandler(
+        request ->
+            ApiStub.Reply.ok(
+                "{\"success\":false,\"errors\":[{\"code\":1003,\"message\":\"Invalid zone\","
+                    + "\"error_chain\":[{\"code\":7003,\"message\":\"No route\"}]}]}"));
+    CloudflareApiException e =
+        assertThrows(CloudflareApiException.class, () -> client.zoneListAll());
+    assertTrue(e.hasErrorCode(1003));
+    assertFalse(e.hasErrorCode(7003));
+    ResponseMessage error = e.getErrors().get(0);
+    assertEquals("Invalid zone", error.message());
+    assertEquals(7003, error.errorChain().get(0).code());
+    assertEquals("Error in response: 1003: Invalid zone", e.getMessage());
+  }
+
+  @Test
+  void testPlainStringErrors() {
+    stub.setHandler(request -> ApiStub.Reply.ok("{\"success\":false,\"errors\":[\"boom\"]}"));
+    CloudflareApiException e =
+        assertThrows(CloudflareApiException.class, () -> client.zoneListAll());
+    assertEquals(new ResponseMessage(0, "boom", null), e.getErrors().get(0));
+  }
+
+  @Test
+  void testErrorsOfFailedRequest() {
+    stub.setHandler(
+        request ->
+            new ApiStub.Reply(
+                400,
+                "{\"success\":false,\"errors\":[{\"code\":9005,\"message\":\"Bad content\"}]}"));
+    CloudflareApiException e =
+        assertThrows(CloudflareApiException.class, () -> client.zoneListAll());
+    assertEquals(400, e.getStatusCode());
+    assertTrue(e.hasErrorCode(9005));
+
+    stub.setHandler(request -> new ApiStub.Reply(502, "<html>Bad gateway</html>"));
+    e = assertThrows(CloudflareApiException.class, () -> client.zoneListAll());
+    assertEquals(502, e.getStatusCode());
+    assertTrue(e.getErrors().isEmpty());
+  }
+
+  @Test
+  void testFindWithoutException() throws Exception {
+    assertTrue(client.sldFind(zone, "www", RecordType.A).isEmpty());
+    assertTrue(client.zoneFind("example.org").isEmpty());
+
+    CloudflareNotFoundException e =
+        assertThrows(
+            CloudflareNotFoundException.class, () -> client.sldInfo(zone, "www", RecordType.A));
+    assertEquals(0, e.getStackTrace().length);
+    assertThrows(CloudflareNotFoundException.class, () -> client.zoneInfo("example.org"));
+
+    try (CfDnsClient lenient =
+        CfDnsClient.builder()
+            .baseUrl(stub.baseUrl())
+            .tokenAuth("t")
+            .emptyResultThrowsException(false)
+            .build()) {
+      assertFalse(lenient.isEmptyResultThrowsException());
+      assertNull(lenient.sldInfo(zone, "www", RecordType.A));
+    }
+  }
+
+  @Test
+  void testFindRecord() throws Exception {
+    stub.setHandler(
+        request ->
+            ApiStub.Reply.ok(
+                "{\"success\":true,\"result_info\":{\"total_count\":1},"
+                    + "\"result\":[{\"id\":\"r1\",\"type\":\"A\",\"content\":\"192.0.2.1\"}]}"));
+    assertEquals("r1", client.sldFind(zone, "www", RecordType.A).orElseThrow().getId());
+    assertTrue(stub.requests().get(0).uri().contains("name=www.example.com&type=A"));
+  }
+
+  @Test
+  void testDeleteIfExistsWithoutRecord() throws Exception {
+    client.recordDeleteTypeIfExists(zone, "www", RecordType.A);
+    assertEquals(1, stub.requests().size());
+    assertEquals("GET", stub.requests().get(0).method());
+  }
+}
@@ -0,0 +1,137 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.transport.CfTransport;
+import codes.thischwa.cf.transport.LoopbackTransport;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+public class CfFlightRecorderTest {
+
+  private static final String ZONES =
+      "{\"success\":true,\"result\":[{\"id\":\"z1\",\"name\":\"example.com\"}]}";
+
+  private static List<RecordedEvent> record(Map<String, String> settings, RecordedAction action)
+      throws Exception {
+    Path file = Files.createTempFile("cf", ".jfr");
+    try (Recording recording = new Recording(settings)) {
+      recording.start();
+      action.run();
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(event -> event.getEventType().getName().startsWith("codes.thischwa.cf."))
+          .collect(Collectors.toList());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static Map<String, String> settings() throws Exception {
+    try (Reader reader =
+        new InputStreamReader(
+            CfFlightRecorderTest.class.getResourceAsStream("/cloudflare-dns.jfc"),
+            StandardCharsets.UTF_8)) {
+      return Configuration.create(reader).getSettings();
+    }
+  }
+
+  private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+    return events.stream()
+        .filter(event -> event.getEventType().getName().equals(name))
+        .collect(Collectors.toList());
+  }
+
+  private interface RecordedAction {
+    void run() throws Exception;
+  }
+
+  @Test
+  void testRequestEvents() throws Exception {
+    CfTransport transport =
+        new LoopbackTransport(
+            request ->
+                request.url().contains("name=")
+                    ? CfTransport.Response.of(500, Map.of(), new byte[0])
+                    : CfTransport.Response.of(
+                        200, Map.of(), ZONES.getBytes(StandardCharsets.UTF_8)));
+    try (CfDnsClient client =
+        CfDnsClient.builder()
+            .tokenAuth("t")
+            .baseUrl("http://loopback")
+            .transport(transport)
+            .rateLimit(1, 2)
+            .build()) {
+      List<RecordedEvent> events =
+          record(
+              settings(),
+              () -> {
+                client.zoneListAll();
+                assertThrows(CloudflareApiException.class, () -> client.zoneInfo("example.com"));
+              });
+
+      List<RecordedEvent> requests = ofType(events, CfRequestEvent.NAME);
+      assertEquals(2, requests.size());
+      RecordedEvent list = requests.get(0);
+      assertEquals("ZONE_LIST", list.getString("request"));
+      assertEquals("GET", list.getString("method"));
+      assertEquals("/zones", list.getString("endpoint"));
+      assertEquals(200, list.getInt("status"));
+      assertTrue(list.getBoolean("success"));
+      assertEquals(ZONES.length(), list.getLong("bytesIn"));
+      assertEquals(0, list.getLong("bytesOut"));
+      assertTrue(list.getDuration("networkDuration").toNanos() > 0);
+      assertTrue(list.getDuration("parseDuration").toNanos() > 0);
+
+      RecordedEvent info = requests.get(1);
+      assertEquals("/zones?name=%s", info.getString("endpoint"));
+      assertEquals(500, info.getInt("status"));
+      assertFalse(info.getBoolean("success"));
+      assertTrue(info.getDuration("admissionDuration").toMillis() >= 20, "waited for a permit");
+
+      List<RecordedEvent> waits = ofType(events, CfRateLimitEvent.NAME);
+      assertEquals(1, waits.size());
+      assertEquals("ZONE_INFO", waits.get(0).getString("request"));
+      assertTrue(waits.get(0).getDuration().toMillis() >= 20);
+    }
+  }
+
+  @Test
+  void testCacheEvents() throws Exception {
+    try (ApiStub stub = new ApiStub(request -> ApiStub.Reply.ok(ApiStub.zones("z1", "a.com")));
+        CfClientRegistry registry = new CfClientRegistry(stub.baseUrl(), CfProtocol.HTTP_1_1)) {
+      registry.register("acct1", new CfCredentials("a@example.com", "k1", "t1"));
+      List<RecordedEvent> events =
+          record(
+              settings(),
+              () -> {
+                registry.accountForZone("a.com");
+                registry.accountForZone("a.com");
+                assertThrows(
+                    CloudflareNotFoundException.class, () -> registry.accountForZone("b.com"));
+              });
+
+      List<RecordedEvent> lookups = ofType(events, CfCacheEvent.NAME);
+      assertEquals(
+          List.of("a.com:false", "a.com:true", "b.com:false"),
+          lookups.stream()
+              .map(event -> event.getString("key") + ":" + event.getBoolean("hit"))
+              .collect(Collectors.toList()));
+      assertEquals("zoneIndex", lookups.get(0).getString("cache"));
+      assertEquals(
+          1, ofType(events, CfRequestEvent.NAME).size(), "one refresh per refresh interval");
+    }
+  }
+}
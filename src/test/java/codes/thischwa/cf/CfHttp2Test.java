@@ -0,0 +1,167 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Verifies the HTTP/2 transport against a local h2c stub of the API. */
+public class CfHttp2Test {
+
+  private static final String ZONES =
+      "{\"success\":true,\"result_info\":{\"total_count\":1},"
+          + "\"result\":[{\"id\":\"z1\",\"name\":\"example.com\",\"status\":\"active\"}]}";
+  private static final String RECORD =
+      "{\"success\":true,\"result\":{\"id\":\"r1\",\"name\":\"www.example.com\",\"type\":\"A\","
+          + "\"content\":\"198.51.100.4\",\"ttl\":60}}";
+
+  private final AtomicInteger connections = new AtomicInteger();
+  private final List<String> received = new ArrayList<>();
+  private HttpAsyncServer server;
+  private CfDnsClient client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server =
+        H2ServerBootstrap.bootstrap()
+            .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+            .setIOSessionListener(new ConnectionCounter())
+            .register("*", new StubHandler())
+            .create();
+    server.start();
+    ListenerEndpoint endpoint =
+        server.listen(new InetSocketAddress("localhost", 0), URIScheme.HTTP).get();
+    int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+    client =
+        CfDnsClient.builder()
+            .baseUrl("http://localhost:" + port)
+            .credentials(new CfCredentials("e", "k", "t"))
+            .protocol(CfProtocol.HTTP_2)
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    server.close(CloseMode.IMMEDIATE);
+  }
+
+  @Test
+  void testRequests() throws Exception {
+    ZoneEntity zone = client.zoneListAll().get(0);
+    assertEquals("example.com", zone.getName());
+
+    RecordEntity created =
+        client.recordCreate(
+            zone, RecordEntity.build("www.example.com", RecordType.A, 60, "198.51.100.4"));
+    assertEquals("r1", created.getId());
+    synchronized (received) {
+      assertEquals("POST HTTP/2.0 /zones/z1/dns_records t", received.get(1));
+    }
+  }
+
+  @Test
+  void testMultiplexing() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<List<ZoneEntity>>> futures = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        futures.add(executor.submit(() -> client.zoneListAll()));
+      }
+      for (Future<List<ZoneEntity>> future : futures) {
+        assertEquals("z1", future.get().get(0).getId());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, connections.get());
+  }
+
+  private class StubHandler implements AsyncServerRequestHandler<Message<HttpRequest, String>> {
+
+    @Override
+    public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(
+        HttpRequest request, EntityDetails entityDetails, HttpContext context) {
+      return new BasicRequestConsumer<>(
+          entityDetails == null ? null : new StringAsyncEntityConsumer());
+    }
+
+    @Override
+    public void handle(
+        Message<HttpRequest, String> message, ResponseTrigger trigger, HttpContext context)
+        throws HttpException, IOException {
+      HttpRequest request = message.getHead();
+      synchronized (received) {
+        received.add(
+            request.getMethod()
+                + " "
+                + (HttpVersion.HTTP_2.equals(context.getProtocolVersion()) ? "HTTP/2.0" : "?")
+                + " "
+                + request.getPath()
+                + " "
+                + request.getFirstHeader("X-Auth-Token").getValue());
+      }
+      String body = request.getPath().startsWith("/zones?") ? ZONES : RECORD;
+      trigger.submitResponse(
+          AsyncResponseBuilder.create(200).setEntity(body, ContentType.APPLICATION_JSON).build(),
+          context);
+    }
+  }
+
+  private class ConnectionCounter implements IOSessionListener {
+    @Override
+    public void connected(IOSession session) {
+      connections.incrementAndGet();
+    }
+
+    @Override
+    public void startTls(IOSession session) {}
+
+    @Override
+    public void inputReady(IOSession session) {}
+
+    @Override
+    public void outputReady(IOSession session) {}
+
+    @Override
+    public void timeout(IOSession session) {}
+
+    @Override
+    public void exception(IOSession session, Exception ex) {}
+
+    @Override
+    public void disconnected(IOSession session) {}
+  }
+}
@@ -32,6 +32,12 @@ public class CfRequestTest {
         assertEquals("/zones/zone123/dns_records?name=sub.domain.com", result);
     }
 
+    @Test
+    public void testBuildRecordList() {
+        String result = CfRequest.RECORD_LIST.buildPath("zone123");
+        assertEquals("/zones/zone123/dns_records", result);
+    }
+
     @Test
     public void testBuildRecordDelete() {
         String result = CfRequest.RECORD_DELETE.buildPath("zone123", "record789");
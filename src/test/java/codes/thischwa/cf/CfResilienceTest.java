@@ -0,0 +1,177 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CfResilienceTest {
+
+  private static final String RECORD = "{\"success\":true,\"result\":{\"id\":\"r1\"}}";
+
+  private ApiStub stub;
+  private CfDnsClient client;
+  private final ZoneEntity zone = new ZoneEntity();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub = new ApiStub(request -> ApiStub.Reply.ok(ApiStub.zones("z1", "example.com")));
+    zone.setId("z1");
+    zone.setName("example.com");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+  }
+
+  private CfDnsClient client(CfTimeouts timeouts, CfResilience resilience) {
+    return CfDnsClient.builder()
+        .baseUrl(stub.baseUrl())
+        .credentials(new CfCredentials("e", "k", "t"))
+        .timeouts(timeouts)
+        .resilience(resilience)
+        .build();
+  }
+
+  @Test
+  void testCircuitBreaker() throws Exception {
+    CfResilience resilience = new CfResilience(2, Duration.ofMillis(200), 0, 0, Duration.ZERO);
+    client = client(CfTimeouts.DEFAULT, resilience);
+    stub.setHandler(
+        request ->
+            request.uri().contains("dns_records")
+                ? new ApiStub.Reply(503, "")
+                : ApiStub.Reply.ok(ApiStub.zones("z1", "example.com")));
+
+    for (int i = 0; i < 2; i++) {
+      assertThrows(CloudflareApiException.class, () -> client.sldInfo(zone, "www", RecordType.A));
+    }
+    assertEquals(CircuitState.OPEN, client.getCircuitState(CfRequest.RECORD_INFO_NAME_TYPE));
+    assertThrows(
+        CloudflareUnavailableException.class, () -> client.sldInfo(zone, "www", RecordType.A));
+    assertEquals(2, stub.requests().size());
+
+    assertEquals("z1", client.zoneInfo("example.com").getId());
+    assertEquals(CircuitState.CLOSED, client.getCircuitState(CfRequest.ZONE_INFO));
+
+    stub.setHandler(request -> ApiStub.Reply.ok(ApiStub.zones("z1", "example.com")));
+    Thread.sleep(250);
+    client.sldInfo(zone, "www", RecordType.A);
+    assertEquals(CircuitState.CLOSED, client.getCircuitState(CfRequest.RECORD_INFO_NAME_TYPE));
+    assertEquals(1, client.getMetrics().getCircuitTransitionCount(CircuitState.OPEN));
+    assertEquals(1, client.getMetrics().getCircuitTransitionCount(CircuitState.CLOSED));
+  }
+
+  @Test
+  void testClientErrorsKeepCircuitClosed() {
+    client =
+        client(CfTimeouts.DEFAULT, new CfResilience(1, Duration.ofMinutes(1), 0, 0, Duration.ZERO));
+    stub.setHandler(request -> new ApiStub.Reply(404, ""));
+    assertThrows(CloudflareApiException.class, () -> client.zoneInfo("example.com"));
+    assertThrows(CloudflareApiException.class, () -> client.zoneInfo("example.com"));
+    assertEquals(CircuitState.CLOSED, client.getCircuitState(CfRequest.ZONE_INFO));
+  }
+
+  @Test
+  void testConstructorWithoutResilience() throws Exception {
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    stub.setHandler(
+        request -> {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          Thread.sleep(100);
+          inFlight.decrementAndGet();
+          return ApiStub.Reply.ok(RECORD);
+        });
+    ExecutorService callers = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<RecordEntity>> writes = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        RecordEntity rec = RecordEntity.build("www.example.com", RecordType.A, 60, "192.0.2." + i);
+        writes.add(callers.submit(() -> client.recordCreate(zone, rec)));
+      }
+      for (Future<RecordEntity> write : writes) {
+        assertEquals("r1", write.get(10, TimeUnit.SECONDS).getId());
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+    assertTrue(maxInFlight.get() > 4, "no bulkhead of 4 writes");
+    assertEquals(0, client.getMetrics().getBulkheadRejectionCount());
+
+    stub.setHandler(request -> new ApiStub.Reply(503, ""));
+    for (int i = 0; i < 8; i++) {
+      CloudflareApiException e =
+          assertThrows(CloudflareApiException.class, () -> client.zoneInfo("example.com"));
+      assertFalse(e instanceof CloudflareUnavailableException);
+    }
+    assertEquals(CircuitState.CLOSED, client.getCircuitState(CfRequest.ZONE_INFO));
+  }
+
+  @Test
+  void testBulkheadSeparatesReadsFromWrites() throws Exception {
+    client =
+        client(CfTimeouts.DEFAULT, new CfResilience(0, Duration.ZERO, 1, 1, Duration.ofMillis(50)));
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    stub.setHandler(
+        request -> {
+          if (request.method().equals("GET")) {
+            blocked.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return ApiStub.Reply.ok(ApiStub.zones("z1", "example.com"));
+          }
+          return ApiStub.Reply.ok(RECORD);
+        });
+    CompletableFuture<ZoneEntity> slowRead =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return client.zoneInfo("example.com");
+              } catch (CloudflareApiException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+    assertThrows(CloudflareUnavailableException.class, () -> client.zoneListAll());
+    assertEquals(1, client.getMetrics().getBulkheadRejectionCount());
+    RecordEntity rec = RecordEntity.build("www.example.com", RecordType.A, 60, "192.0.2.1");
+    assertEquals("r1", client.recordCreate(zone, rec).getId());
+
+    release.countDown();
+    assertEquals("z1", slowRead.get(10, TimeUnit.SECONDS).getId());
+  }
+
+  @Test
+  void testResponseTimeout() {
+    CfTimeouts timeouts =
+        new CfTimeouts(Duration.ofSeconds(1), Duration.ofMillis(200), Duration.ofMillis(200));
+    client = client(timeouts, CfResilience.DISABLED);
+    stub.setHandler(
+        request -> {
+          Thread.sleep(2000);
+          return ApiStub.Reply.ok(ApiStub.zones("z1", "example.com"));
+        });
+    long start = System.nanoTime();
+    assertThrows(CloudflareApiException.class, () -> client.zoneInfo("example.com"));
+    assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+  }
+}
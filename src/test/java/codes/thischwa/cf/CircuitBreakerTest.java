@@ -0,0 +1,87 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.CircuitBreaker.Permit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final CfClientMetrics metrics = new CfClientMetrics();
+  private final CircuitBreaker breaker = new CircuitBreaker("test", 3, 1000, clock::get, metrics);
+
+  private void fail(int times) {
+    for (int i = 0; i < times; i++) {
+      Permit permit = breaker.tryAcquire();
+      assertEquals(Permit.GRANTED, permit);
+      breaker.onResult(permit, false);
+    }
+  }
+
+  @Test
+  void testOpensAfterConsecutiveFailures() {
+    fail(2);
+    assertEquals(Permit.GRANTED, breaker.tryAcquire());
+    breaker.onResult(Permit.GRANTED, true);
+    fail(2);
+    assertEquals(CircuitState.CLOSED, breaker.getState());
+    fail(1);
+    assertEquals(CircuitState.OPEN, breaker.getState());
+    assertEquals(Permit.DENIED, breaker.tryAcquire());
+    assertEquals(1, metrics.getCircuitTransitionCount(CircuitState.OPEN));
+  }
+
+  @Test
+  void testHalfOpenProbe() {
+    fail(3);
+    clock.set(999);
+    assertEquals(Permit.DENIED, breaker.tryAcquire());
+    clock.set(1000);
+    assertEquals(Permit.PROBE, breaker.tryAcquire());
+    assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+    assertEquals(Permit.DENIED, breaker.tryAcquire());
+
+    breaker.onResult(Permit.PROBE, false);
+    assertEquals(CircuitState.OPEN, breaker.getState());
+    clock.set(2000);
+    assertEquals(Permit.PROBE, breaker.tryAcquire());
+    breaker.onResult(Permit.PROBE, null);
+    assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+    assertEquals(Permit.PROBE, breaker.tryAcquire());
+    breaker.onResult(Permit.PROBE, true);
+    assertEquals(CircuitState.CLOSED, breaker.getState());
+
+    assertEquals(2, metrics.getCircuitTransitionCount(CircuitState.OPEN));
+    assertEquals(2, metrics.getCircuitTransitionCount(CircuitState.HALF_OPEN));
+    assertEquals(1, metrics.getCircuitTransitionCount(CircuitState.CLOSED));
+  }
+
+  @Test
+  void testLateResultIsNotTheProbe() {
+    Permit late = breaker.tryAcquire();
+    fail(3);
+    clock.set(1000);
+    assertEquals(Permit.PROBE, breaker.tryAcquire());
+
+    breaker.onResult(late, true);
+    assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+    assertEquals(Permit.DENIED, breaker.tryAcquire(), "the probe is still in flight");
+    breaker.onResult(late, false);
+    assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+
+    breaker.onResult(Permit.PROBE, true);
+    assertEquals(CircuitState.CLOSED, breaker.getState());
+  }
+
+  @Test
+  void testDisabled() {
+    CircuitBreaker disabled = new CircuitBreaker("test", 0, 1000, clock::get, metrics);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Permit.GRANTED, disabled.tryAcquire());
+      disabled.onResult(Permit.GRANTED, false);
+    }
+    assertEquals(CircuitState.CLOSED, disabled.getState());
+  }
+}
@@ -0,0 +1,147 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.transport.CfTransport;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class HedgerTest {
+
+  private final CfClientMetrics metrics = new CfClientMetrics();
+  private Hedger hedger;
+
+  @AfterEach
+  void tearDown() {
+    if (hedger != null) {
+      hedger.close();
+    }
+  }
+
+  /** The first call answers slowly with status 201, all further calls answer at once with 200. */
+  private static Callable<CfTransport.Response> slowFirst(AtomicInteger calls) {
+    return () -> {
+      if (calls.incrementAndGet() == 1) {
+        Thread.sleep(2000);
+        return CfTransport.Response.of(201, Map.of(), new byte[0]);
+      }
+      return CfTransport.Response.of(200, Map.of(), new byte[0]);
+    };
+  }
+
+  private static CfHedging policy(double budget) {
+    return new CfHedging(0.95, Duration.ofMillis(10), Duration.ofMillis(50), budget);
+  }
+
+  @Test
+  void testHedgeWins() throws Exception {
+    hedger = new Hedger(policy(1), null, metrics);
+    AtomicInteger calls = new AtomicInteger();
+    long start = System.nanoTime();
+    assertEquals(200, hedger.execute(CfRequest.ZONE_INFO, slowFirst(calls)).statusCode());
+    assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+    assertEquals(2, calls.get());
+    assertEquals(1, metrics.getHedgeCount());
+    assertEquals(1, metrics.getHedgeWinCount());
+  }
+
+  @Test
+  void testFastResponseIsNotHedged() throws Exception {
+    hedger = new Hedger(policy(1), null, metrics);
+    AtomicInteger calls = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      hedger.execute(
+          CfRequest.ZONE_INFO,
+          () -> {
+            calls.incrementAndGet();
+            return CfTransport.Response.of(200, Map.of(), new byte[0]);
+          });
+    }
+    assertEquals(10, calls.get());
+    assertEquals(0, metrics.getHedgeCount());
+  }
+
+  @Test
+  void testBudget() throws Exception {
+    hedger = new Hedger(policy(0.5), null, metrics);
+    AtomicInteger calls = new AtomicInteger();
+    assertEquals(201, hedger.execute(CfRequest.ZONE_INFO, slowFirst(calls)).statusCode());
+    assertEquals(1, calls.get());
+    assertEquals(0, metrics.getHedgeCount());
+
+    calls.set(0);
+    assertEquals(200, hedger.execute(CfRequest.ZONE_INFO, slowFirst(calls)).statusCode());
+    assertEquals(1, metrics.getHedgeCount());
+  }
+
+  @Test
+  void testRateLimiter() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(1, 0.001);
+    rateLimiter.reserve();
+    hedger = new Hedger(policy(1), rateLimiter, metrics);
+    AtomicInteger calls = new AtomicInteger();
+    assertEquals(201, hedger.execute(CfRequest.ZONE_INFO, slowFirst(calls)).statusCode());
+    assertEquals(0, metrics.getHedgeCount());
+  }
+
+  @Test
+  void testFailedAttemptWaitsForTheOther() throws Exception {
+    hedger = new Hedger(policy(1), null, metrics);
+    AtomicInteger calls = new AtomicInteger();
+    CfTransport.Response response =
+        hedger.execute(
+            CfRequest.ZONE_INFO,
+            () -> {
+              if (calls.incrementAndGet() == 1) {
+                Thread.sleep(200);
+                return CfTransport.Response.of(200, Map.of(), new byte[0]);
+              }
+              throw new IOException("reset");
+            });
+    assertEquals(200, response.statusCode());
+  }
+
+  @Test
+  void testInterruptClosesResponse() throws Exception {
+    hedger = new Hedger(policy(0.05), null, metrics);
+    CountDownLatch closed = new CountDownLatch(1);
+    Thread.currentThread().interrupt();
+    assertThrows(
+        InterruptedException.class,
+        () ->
+            hedger.execute(
+                CfRequest.ZONE_LIST,
+                () -> {
+                  Thread.sleep(100);
+                  return new CfTransport.Response(
+                      200,
+                      Map.of(),
+                      new ByteArrayInputStream(new byte[0]) {
+                        @Override
+                        public void close() {
+                          closed.countDown();
+                        }
+                      });
+                }));
+    assertTrue(closed.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testLatencyPercentile() {
+    Hedger.LatencyTracker tracker = new Hedger.LatencyTracker();
+    CfHedging policy = new CfHedging(0.9, Duration.ofNanos(5), Duration.ofNanos(1000), 0.1);
+    assertEquals(1000, tracker.delayNanos(policy));
+    for (int i = 1; i <= 100; i++) {
+      tracker.record(i);
+    }
+    assertEquals(90, tracker.delayNanos(policy));
+  }
+}
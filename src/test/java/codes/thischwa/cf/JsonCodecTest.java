@@ -0,0 +1,54 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordMultipleResponse;
+import codes.thischwa.cf.model.RecordType;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class JsonCodecTest {
+
+    @Test
+    public void testSharedInstance() {
+        assertSame(JsonCodec.shared(), JsonCodec.shared());
+        assertSame(
+                JsonCodec.shared().readerFor(RecordMultipleResponse.class),
+                JsonCodec.shared().readerFor(RecordMultipleResponse.class));
+        assertSame(
+                JsonCodec.shared().writerFor(RecordEntity.class),
+                JsonCodec.shared().writerFor(RecordEntity.class));
+    }
+
+    @Test
+    public void testReadBytes() throws Exception {
+        byte[] json =
+                ("{\"success\":true,\"result_info\":{\"total_count\":1},\"result\":[{\"id\":\"r1\","
+                        + "\"name\":\"www.example.com\",\"type\":\"A\",\"content\":\"198.51.100.4\","
+                        + "\"created_on\":\"2025-01-20T10:15:30.123456Z\",\"unknown\":1}]}")
+                        .getBytes(StandardCharsets.UTF_8);
+        RecordMultipleResponse resp = JsonCodec.shared().read(json, RecordMultipleResponse.class);
+        assertEquals(1, resp.getResultInfo().getTotalCount());
+        RecordEntity rec = resp.getResult().get(0);
+        assertEquals("198.51.100.4", rec.getContent());
+        assertEquals(RecordType.A, rec.getRecordType());
+        assertEquals(2025, rec.getCreatedOn().getYear());
+    }
+
+    @Test
+    public void testWriteBytes() throws Exception {
+        RecordEntity rec = RecordEntity.build("www.example.com", RecordType.AAAA, 60, "2001:db8::1");
+        String json = new String(JsonCodec.shared().write(rec), StandardCharsets.UTF_8);
+        assertEquals(
+                "{\"type\":\"AAAA\",\"name\":\"www.example.com\",\"content\":\"2001:db8::1\",\"ttl\":60}",
+                json);
+    }
+
+    @Test
+    public void testCustomMapper() {
+        JsonCodec codec = new JsonCodec(CfDnsClient.createObjectMapper());
+        assertNotSame(JsonCodec.shared().getObjectMapper(), codec.getObjectMapper());
+        assertNotNull(codec.readerFor(RecordMultipleResponse.class));
+    }
+}
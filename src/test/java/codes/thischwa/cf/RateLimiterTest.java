@@ -0,0 +1,42 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final RateLimiter limiter = new RateLimiter(2, 4, now::get);
+
+  @Test
+  void testBurstAndRefill() {
+    assertEquals(0, limiter.reserve());
+    assertEquals(0, limiter.reserve());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(250), limiter.reserve());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(500), limiter.reserve());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertEquals(0, limiter.reserve());
+    assertEquals(0, limiter.reserve());
+    assertTrue(limiter.reserve() > 0);
+  }
+
+  @Test
+  void testTryAcquire() {
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+  }
+
+  @Test
+  void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 0));
+  }
+}
@@ -0,0 +1,178 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RecordPublisherTest {
+
+  private static final Pattern PAGE = Pattern.compile("page=(\\d+)&perPage=(\\d+)");
+  private static final int TOTAL = 5;
+
+  private ApiStub stub;
+  private CfDnsClient client;
+  private final ZoneEntity zone = new ZoneEntity();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub = new ApiStub(request -> ApiStub.Reply.ok(page(request.uri(), TOTAL)));
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    zone.setId("z1");
+    zone.setName("example.com");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+  }
+
+  private static String page(String uri, int total) {
+    Matcher matcher = PAGE.matcher(uri);
+    assertTrue(matcher.find(), uri);
+    int page = Integer.parseInt(matcher.group(1));
+    int perPage = Integer.parseInt(matcher.group(2));
+    StringBuilder records = new StringBuilder();
+    for (int i = (page - 1) * perPage; i < Math.min(total, page * perPage); i++) {
+      records.append(records.length() == 0 ? "" : ",");
+      records.append("{\"id\":\"r").append(i).append("\",\"name\":\"www.example.com\"}");
+    }
+    int totalPages = (total + perPage - 1) / perPage;
+    return "{\"success\":true,\"result\":[" + records + "],\"result_info\":{\"page\":" + page
+        + ",\"per_page\":" + perPage + ",\"total_pages\":" + totalPages + ",\"total_count\":"
+        + total + "}}";
+  }
+
+  @Test
+  void testDemandDrivenPaging() throws Exception {
+    StepSubscriber subscriber = new StepSubscriber();
+    client.recordPublisher(zone, 2).subscribe(subscriber);
+    Flow.Subscription subscription = subscriber.subscribed.get(5, TimeUnit.SECONDS);
+    assertTrue(stub.requests().isEmpty());
+
+    subscription.request(1);
+    waitFor(subscriber.received, 1);
+    assertEquals(1, stub.requests().size());
+
+    subscription.request(1);
+    waitFor(subscriber.received, 2);
+    assertEquals(1, stub.requests().size());
+
+    subscription.request(1);
+    waitFor(subscriber.received, 3);
+    assertEquals(2, stub.requests().size());
+
+    subscription.request(Long.MAX_VALUE);
+    subscriber.completed.get(5, TimeUnit.SECONDS);
+    assertEquals(List.of("r0", "r1", "r2", "r3", "r4"), ids(subscriber.received));
+    assertEquals(3, stub.requests().size());
+    assertTrue(stub.requests().get(0).uri().startsWith("/zones/z1/dns_records?page=1&perPage=2"));
+  }
+
+  @Test
+  void testSldPublisher() throws Exception {
+    StepSubscriber subscriber = new StepSubscriber();
+    client.sldPublisher(zone, "www", 10).subscribe(subscriber);
+    subscriber.subscribed.get(5, TimeUnit.SECONDS).request(100);
+    subscriber.completed.get(5, TimeUnit.SECONDS);
+    assertEquals(TOTAL, subscriber.received.size());
+    assertEquals(1, stub.requests().size());
+    assertTrue(stub.requests().get(0).uri().contains("name=www.example.com"));
+  }
+
+  @Test
+  void testEmptyListing() throws Exception {
+    stub.setHandler(request -> ApiStub.Reply.ok(page(request.uri(), 0)));
+    StepSubscriber subscriber = new StepSubscriber();
+    client.recordPublisher(zone, 10).subscribe(subscriber);
+    subscriber.subscribed.get(5, TimeUnit.SECONDS).request(1);
+    subscriber.completed.get(5, TimeUnit.SECONDS);
+    assertTrue(subscriber.received.isEmpty());
+  }
+
+  @Test
+  void testError() throws Exception {
+    stub.setHandler(request -> new ApiStub.Reply(403, "{\"success\":false}"));
+    StepSubscriber subscriber = new StepSubscriber();
+    client.recordPublisher(zone, 10).subscribe(subscriber);
+    subscriber.subscribed.get(5, TimeUnit.SECONDS).request(1);
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> subscriber.completed.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(CloudflareApiException.class, e.getCause());
+  }
+
+  @Test
+  void testInvalidDemand() throws Exception {
+    StepSubscriber subscriber = new StepSubscriber();
+    client.recordPublisher(zone, 10).subscribe(subscriber);
+    subscriber.subscribed.get(5, TimeUnit.SECONDS).request(0);
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> subscriber.completed.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalArgumentException.class, e.getCause());
+  }
+
+  @Test
+  void testCancel() throws Exception {
+    StepSubscriber subscriber = new StepSubscriber();
+    client.recordPublisher(zone, 2).subscribe(subscriber);
+    Flow.Subscription subscription = subscriber.subscribed.get(5, TimeUnit.SECONDS);
+    subscription.request(1);
+    waitFor(subscriber.received, 1);
+    subscription.cancel();
+    subscription.request(10);
+    Thread.sleep(100);
+    assertEquals(1, subscriber.received.size());
+    assertEquals(1, stub.requests().size());
+    assertFalse(subscriber.completed.isDone());
+  }
+
+  private static void waitFor(List<RecordEntity> received, int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (received.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(count, received.size());
+  }
+
+  private static List<String> ids(List<RecordEntity> records) {
+    return records.stream().map(RecordEntity::getId).toList();
+  }
+
+  private static final class StepSubscriber implements Flow.Subscriber<RecordEntity> {
+    final CompletableFuture<Flow.Subscription> subscribed = new CompletableFuture<>();
+    final List<RecordEntity> received = new CopyOnWriteArrayList<>();
+    final CompletableFuture<Void> completed = new CompletableFuture<>();
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      subscribed.complete(subscription);
+    }
+
+    @Override
+    public void onNext(RecordEntity item) {
+      received.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      completed.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      completed.complete(null);
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.bulk.OrderedMutationExecutor;
+import codes.thischwa.cf.bulk.RecordMutation;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import codes.thischwa.cf.transport.CfTransport;
+import codes.thischwa.cf.transport.LoopbackTransport;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class RecordValidatorTest {
+
+  private static RecordEntity rec(String name, RecordType type, String content) {
+    return RecordEntity.build(name, type, 300, content);
+  }
+
+  private static void assertValid(RecordType type, String content) {
+    try {
+      RecordValidator.validate("example.com", rec("_x._tcp.example.com", type, content));
+    } catch (CloudflareValidationException e) {
+      fail(type + " " + content + ": " + e.getMessage());
+    }
+  }
+
+  private static void assertInvalid(RecordType type, String content) {
+    assertThrows(
+        CloudflareValidationException.class,
+        () -> RecordValidator.validate("example.com", rec("_x._tcp.example.com", type, content)),
+        type + " " + content);
+  }
+
+  private static String normalized(String name, RecordType type, String content)
+      throws CloudflareValidationException {
+    RecordEntity rec = rec(name, type, content);
+    RecordValidator.validate("example.com", rec);
+    return rec.getContent();
+  }
+
+  @Test
+  void testAddresses() {
+    assertValid(RecordType.A, "192.0.2.1");
+    assertValid(RecordType.A, "0.0.0.0");
+    assertInvalid(RecordType.A, "192.0.2");
+    assertInvalid(RecordType.A, "192.0.2.256");
+    assertInvalid(RecordType.A, "192.0.02.1");
+    assertInvalid(RecordType.A, "192.0.2.1.");
+    assertInvalid(RecordType.A, "2001:db8::1");
+    assertValid(RecordType.AAAA, "2001:db8::1");
+    assertValid(RecordType.AAAA, "::1");
+    assertValid(RecordType.AAAA, "::");
+    assertValid(RecordType.AAAA, "2001:db8:0:0:0:0:0:1");
+    assertValid(RecordType.AAAA, "::ffff:192.0.2.1");
+    assertInvalid(RecordType.AAAA, "2001:db8::1::2");
+    assertInvalid(RecordType.AAAA, "2001:db8:0:0:0:0:1");
+    assertInvalid(RecordType.AAAA, "2001:db8::g");
+    assertInvalid(RecordType.AAAA, "2001:db8:");
+    assertInvalid(RecordType.AAAA, "192.0.2.1");
+  }
+
+  @Test
+  void testParseAddress() throws Exception {
+    assertArrayEquals(new byte[] {(byte) 192, 0, 2, 1}, RecordValidator.parseAddress("192.0.2.1"));
+    assertEquals(
+        InetAddress.getByName("2001:db8::1"),
+        InetAddress.getByAddress(RecordValidator.parseAddress("2001:db8::1")));
+    assertEquals(
+        InetAddress.getByName("1:2:3:4:5:6:7:8"),
+        InetAddress.getByAddress(RecordValidator.parseAddress("1:2:3:4:5:6:7:8")));
+    assertEquals(
+        InetAddress.getByName("2001:db8::"),
+        InetAddress.getByAddress(RecordValidator.parseAddress("2001:db8::")));
+    assertArrayEquals(new byte[16], RecordValidator.parseAddress("::"));
+    byte[] mapped = RecordValidator.parseAddress("::ffff:192.0.2.1");
+    assertEquals(16, mapped.length);
+    assertEquals((byte) 0xff, mapped[10]);
+    assertEquals((byte) 192, mapped[12]);
+    assertEquals(1, mapped[15]);
+    assertNull(RecordValidator.parseAddress("1.2.3"));
+    assertNull(RecordValidator.parseAddress("999.1.1.1"));
+    assertNull(RecordValidator.parseAddress("localhost"));
+    assertNull(RecordValidator.parseAddress("fe80::1%eth0"));
+  }
+
+  @Test
+  void testHostnames() throws Exception {
+    assertEquals(
+        "target.example.com",
+        normalized("www.example.com", RecordType.CNAME, "Target.Example.COM."));
+    assertValid(RecordType.NS, "ns1.example.net");
+    assertInvalid(RecordType.NS, "ns1..example.net");
+    assertInvalid(RecordType.PTR, "-host.example.net");
+    assertInvalid(RecordType.CNAME, "a b.example.net");
+    assertThrows(
+        CloudflareValidationException.class,
+        () ->
+            RecordValidator.validate("example.com", rec("example.com", RecordType.CNAME, "x.net")));
+    assertThrows(
+        CloudflareValidationException.class,
+        () -> RecordValidator.validate("example.com", rec("@", RecordType.CNAME, "x.net")));
+
+    RecordEntity mx = rec("example.com", RecordType.MX, "mail.example.com");
+    assertThrows(CloudflareValidationException.class, () -> RecordValidator.validate(null, mx));
+    mx.setPriority(10);
+    RecordValidator.validate(null, mx);
+    mx.setPriority(70000);
+    assertThrows(CloudflareValidationException.class, () -> RecordValidator.validate(null, mx));
+  }
+
+  @Test
+  void testNameAndTtl() throws Exception {
+    RecordEntity rec = rec("*.Sub.Example.com.", RecordType.A, " 192.0.2.1 ");
+    RecordValidator.validate(null, rec);
+    assertEquals("*.sub.example.com", rec.getName());
+    assertEquals("192.0.2.1", rec.getContent());
+
+    RecordEntity unchanged = rec("host.example.com", RecordType.A, "192.0.2.1");
+    String name = unchanged.getName();
+    String content = unchanged.getContent();
+    RecordValidator.validate(null, unchanged);
+    assertSame(name, unchanged.getName());
+    assertSame(content, unchanged.getContent());
+
+    assertThrows(
+        CloudflareValidationException.class,
+        () -> RecordValidator.validate(null, rec("a.*.example.com", RecordType.A, "192.0.2.1")));
+    RecordEntity longLabel = rec("x".repeat(64) + ".com", RecordType.A, "192.0.2.1");
+    assertThrows(
+        CloudflareValidationException.class, () -> RecordValidator.validate(null, longLabel));
+    RecordEntity shortTtl = RecordEntity.build("h.com", RecordType.A, 10, "1.1.1.1");
+    assertThrows(
+        CloudflareValidationException.class, () -> RecordValidator.validate(null, shortTtl));
+    RecordValidator.validate(null, RecordEntity.build("h.com", RecordType.A, 1, "1.1.1.1"));
+    assertThrows(
+        CloudflareValidationException.class,
+        () -> RecordValidator.validate(null, rec("h.com", RecordType.A, " ")));
+
+    RecordEntity unknown = rec("h.com", RecordType.A, "anything");
+    unknown.setType("FUTURE");
+    RecordValidator.validate(null, unknown);
+  }
+
+  @Test
+  void testTxt() throws Exception {
+    assertEquals("\"v=spf1 -all\"", normalized("example.com", RecordType.TXT, "v=spf1 -all"));
+    assertEquals(
+        "\"say \\\"hi\\\"\"", normalized("example.com", RecordType.TXT, "say \"hi\""));
+    String longText = "k".repeat(300);
+    assertEquals(
+        "\"" + "k".repeat(255) + "\" \"" + "k".repeat(45) + "\"",
+        normalized("example.com", RecordType.TXT, longText));
+    assertValid(RecordType.TXT, "\"a\" \"b\\\"c\"");
+    assertInvalid(RecordType.TXT, "\"unterminated");
+    assertInvalid(RecordType.TXT, "\"a\" b");
+    assertInvalid(RecordType.TXT, "\"" + "k".repeat(256) + "\"");
+    assertInvalid(RecordType.TXT, "k".repeat(2100));
+  }
+
+  @Test
+  void testStructuredTypes() throws Exception {
+    assertValid(RecordType.SRV, "10 5 5060 sip.example.com");
+    assertValid(RecordType.SRV, "5 5060 sip.example.com");
+    assertValid(RecordType.SRV, "0 0 .");
+    assertInvalid(RecordType.SRV, "5 70000 sip.example.com");
+    assertInvalid(RecordType.SRV, "sip.example.com");
+    assertThrows(
+        CloudflareValidationException.class,
+        () -> RecordValidator.validate(null, rec("sip.example.com", RecordType.SRV, "0 1 x.com")));
+
+    assertEquals(
+        "0 issue \"letsencrypt.org\"",
+        normalized("example.com", RecordType.CAA, "0 issue letsencrypt.org"));
+    assertValid(RecordType.CAA, "128 iodef \"mailto:x@example.com\"");
+    assertInvalid(RecordType.CAA, "256 issue \"ca.org\"");
+    assertInvalid(RecordType.CAA, "0 is-sue \"ca.org\"");
+    assertInvalid(RecordType.CAA, "0 issue");
+
+    assertEquals("3 1 1 abcdef", normalized("_443._tcp.x.com", RecordType.TLSA, "3 1 1 ABCDEF"));
+    assertInvalid(RecordType.TLSA, "3 1 1 abcdeg");
+    assertInvalid(RecordType.TLSA, "3 1 1 abc");
+    assertInvalid(RecordType.TLSA, "3 1 abcdef");
+    assertValid(RecordType.SSHFP, "4 2 0123456789abcdef");
+    assertValid(RecordType.DS, "60485 8 2 0123456789ABCDEF");
+    assertInvalid(RecordType.DS, "70000 8 2 0123456789ABCDEF");
+    assertValid(RecordType.URI, "10 1 \"https://example.com\"");
+    assertInvalid(RecordType.URI, "bad\u0000content");
+  }
+
+  @Test
+  void testNoRequestForInvalidRecords() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    CfTransport transport =
+        new LoopbackTransport(
+            request -> {
+              requests.incrementAndGet();
+              return CfTransport.Response.of(
+                  200,
+                  Map.of(),
+                  "{\"success\":true,\"result\":{\"id\":\"r1\",\"name\":\"h.example.com\"}}"
+                      .getBytes(StandardCharsets.UTF_8));
+            });
+    ZoneEntity zone = new ZoneEntity();
+    zone.setId("z1");
+    zone.setName("example.com");
+    RecordEntity invalid = rec("h.example.com", RecordType.A, "192.0.2.300");
+    CfDnsClient.Builder builder =
+        CfDnsClient.builder().tokenAuth("t").baseUrl("http://loopback").transport(transport);
+    try (CfDnsClient client = builder.build()) {
+      assertThrows(CloudflareValidationException.class, () -> client.recordCreate(zone, invalid));
+      invalid.setId("r1");
+      assertThrows(CloudflareValidationException.class, () -> client.recordUpdate(zone, invalid));
+      assertEquals(0, requests.get());
+
+      try (OrderedMutationExecutor executor = new OrderedMutationExecutor(client, 2)) {
+        ExecutionException e =
+            assertThrows(
+                ExecutionException.class,
+                () -> executor.submit(RecordMutation.create(zone, invalid)).get());
+        assertInstanceOf(CloudflareValidationException.class, e.getCause());
+        assertNotNull(executor.submit(RecordMutation.delete(zone, invalid)).get());
+      }
+      assertEquals(1, requests.get());
+
+      client.recordCreate(zone, rec("h.example.com", RecordType.A, "192.0.2.30"));
+      assertEquals(2, requests.get());
+    }
+
+    try (CfDnsClient client = builder.recordValidation(false).build()) {
+      assertFalse(client.isRecordValidation());
+      client.recordCreate(zone, invalid);
+      assertEquals(3, requests.get());
+    }
+  }
+}
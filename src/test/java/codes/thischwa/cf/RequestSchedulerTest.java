@@ -0,0 +1,144 @@
+package codes.thischwa.cf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.ZoneEntity;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hc.core5.http.Method;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class RequestSchedulerTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final List<String> granted = new CopyOnWriteArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
+  private RequestScheduler scheduler =
+      new RequestScheduler(
+          new CfScheduling(1, Duration.ofSeconds(10), Duration.ofSeconds(10)), clock::get);
+
+  @AfterEach
+  void tearDown() {
+    threads.forEach(Thread::interrupt);
+  }
+
+  /** Starts a thread waiting for the scheduler, which records its grant and releases. */
+  private void await(String name, CfPriority priority, Object flow) throws InterruptedException {
+    int waiting = scheduler.getWaitingCount();
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                if (scheduler.acquire(priority, flow)) {
+                  granted.add(name);
+                  scheduler.release();
+                }
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    threads.add(thread);
+    thread.start();
+    while (scheduler.getWaitingCount() == waiting) {
+      Thread.sleep(1);
+    }
+  }
+
+  private void releaseAndJoin() throws InterruptedException {
+    scheduler.release();
+    for (Thread thread : threads) {
+      thread.join(5_000);
+    }
+  }
+
+  @Test
+  void testPriorityOrder() throws Exception {
+    assertTrue(scheduler.acquire(CfPriority.BULK, "z"));
+    await("bulk", CfPriority.BULK, "z");
+    await("interactive", CfPriority.INTERACTIVE, "z");
+    await("critical", CfPriority.CRITICAL, "z");
+    releaseAndJoin();
+    assertEquals(List.of("critical", "interactive", "bulk"), granted);
+  }
+
+  @Test
+  void testFlowsTakeTurns() throws Exception {
+    assertTrue(scheduler.acquire(CfPriority.BULK, "a"));
+    await("a1", CfPriority.BULK, "a");
+    await("a2", CfPriority.BULK, "a");
+    await("a3", CfPriority.BULK, "a");
+    await("b1", CfPriority.BULK, "b");
+    await("c1", CfPriority.BULK, "c");
+    releaseAndJoin();
+    assertEquals(List.of("a1", "b1", "c1", "a2", "a3"), granted);
+  }
+
+  @Test
+  void testStarvationProtection() throws Exception {
+    scheduler =
+        new RequestScheduler(
+            new CfScheduling(1, Duration.ofNanos(100), Duration.ofSeconds(10)), clock::get);
+    assertTrue(scheduler.acquire(CfPriority.CRITICAL, "z"));
+    await("bulk", CfPriority.BULK, "z");
+    clock.set(200);
+    await("critical", CfPriority.CRITICAL, "z");
+    releaseAndJoin();
+    assertEquals(List.of("bulk", "critical"), granted);
+  }
+
+  @Test
+  void testMaxWait() throws Exception {
+    scheduler =
+        new RequestScheduler(
+            new CfScheduling(1, Duration.ofSeconds(10), Duration.ofMillis(50)), clock::get);
+    assertTrue(scheduler.acquire(CfPriority.CRITICAL, "z"));
+    long start = System.nanoTime();
+    assertFalse(scheduler.acquire(CfPriority.CRITICAL, "z"));
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(40).toNanos());
+    assertEquals(0, scheduler.getWaitingCount());
+    scheduler.release();
+    assertTrue(scheduler.acquire(CfPriority.BULK, "z"));
+  }
+
+  @Test
+  void testDefaultPriorities() throws Exception {
+    assertEquals(
+        CfPriority.CRITICAL, CfBasicHttpClient.priorityOf(CfRequest.RECORD_UPDATE, Method.PATCH));
+    assertEquals(CfPriority.BULK, CfBasicHttpClient.priorityOf(CfRequest.RECORD_LIST, Method.GET));
+    assertEquals(
+        CfPriority.INTERACTIVE,
+        CfBasicHttpClient.priorityOf(CfRequest.RECORD_INFO_NAME_TYPE, Method.GET));
+    CfPriority inAction =
+        CfPriority.BULK.call(
+            () -> CfBasicHttpClient.priorityOf(CfRequest.RECORD_UPDATE, Method.PATCH));
+    assertEquals(CfPriority.BULK, inAction);
+    assertNull(CfPriority.current());
+  }
+
+  @Test
+  void testZoneOf() {
+    assertEquals("z1", CfBasicHttpClient.zoneOf("/zones/z1/dns_records?name=www.example.com"));
+    assertEquals("z1", CfBasicHttpClient.zoneOf("/zones/z1?x=1"));
+    assertEquals("", CfBasicHttpClient.zoneOf("/zones?name=example.com"));
+  }
+
+  @Test
+  void testClientWithScheduler() throws Exception {
+    try (ApiStub stub =
+            new ApiStub(
+                request -> ApiStub.Reply.ok("{\"success\":true,\"result\":{\"id\":\"r1\"}}"));
+        CfDnsClient client =
+            CfDnsClient.builder()
+                .baseUrl(stub.baseUrl())
+                .credentials(new CfCredentials("e", "k", "t"))
+                .scheduling(CfScheduling.DEFAULT)
+                .build()) {
+      assertTrue(client.recordDelete(new ZoneEntity(), "r1"));
+      assertEquals(0, client.getMetrics().getSchedulingRejectionCount());
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package codes.thischwa.cf.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CoalescingWriterTest {
+
+  private ApiStub stub;
+  private CfDnsClient client;
+  private final ZoneEntity zone = new ZoneEntity();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub =
+        new ApiStub(request -> ApiStub.Reply.ok("{\"success\":true,\"result\":{\"id\":\"r1\"}}"));
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    zone.setId("z1");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+  }
+
+  private static RecordEntity rec(@Nullable String id, String ip) {
+    RecordEntity rec = RecordEntity.build("www.example.com", RecordType.A, 60, ip);
+    rec.setId(id);
+    return rec;
+  }
+
+  private RecordMutation create(String ip) {
+    return RecordMutation.create(zone, rec(null, ip));
+  }
+
+  private RecordMutation update(@Nullable String id, String ip) {
+    return RecordMutation.update(zone, rec(id, ip));
+  }
+
+  private RecordMutation delete(@Nullable String id, String ip) {
+    return RecordMutation.delete(zone, rec(id, ip));
+  }
+
+  @Test
+  void testUpdateBurst() throws Exception {
+    try (CoalescingWriter writer = new CoalescingWriter(client, Duration.ofHours(1), 2)) {
+      CompletableFuture<RecordEntity> first = writer.submit(update("r1", "192.0.2.1"));
+      writer.submit(update("r1", "192.0.2.2"));
+      CompletableFuture<RecordEntity> last = writer.submit(update("r1", "192.0.2.3"));
+      writer.flush().get();
+      assertEquals("r1", first.get().getId());
+      assertSame(first.get(), last.get());
+      assertEquals(3, writer.getSubmittedCount());
+      assertEquals(1, writer.getSentCount());
+    }
+    assertEquals(1, stub.requests().size());
+    assertEquals("PATCH", stub.requests().get(0).method());
+    assertTrue(stub.requests().get(0).body().contains("192.0.2.3"));
+  }
+
+  @Test
+  void testChains() throws Exception {
+    try (CoalescingWriter writer = new CoalescingWriter(client, Duration.ofHours(1), 2)) {
+      writer.submit(create("192.0.2.1"));
+      writer.submit(update(null, "192.0.2.2"));
+      writer.flush().get();
+      assertEquals("POST", stub.requests().get(0).method());
+      assertTrue(stub.requests().get(0).body().contains("192.0.2.2"));
+
+      writer.submit(create("192.0.2.1"));
+      CompletableFuture<RecordEntity> deleted = writer.submit(delete(null, "192.0.2.1"));
+      writer.flush().get();
+      assertEquals("192.0.2.1", deleted.get().getContent());
+      assertEquals(1, stub.requests().size());
+
+      writer.submit(delete("r1", "192.0.2.1"));
+      writer.submit(create("192.0.2.9"));
+      CompletableFuture<RecordEntity> rejected = writer.submit(create("192.0.2.9"));
+      assertThrows(ExecutionException.class, rejected::get);
+      writer.flush().get();
+      assertEquals(2, stub.requests().size());
+      assertEquals("PATCH", stub.requests().get(1).method());
+      assertTrue(stub.requests().get(1).uri().endsWith("/dns_records/r1"));
+      assertTrue(stub.requests().get(1).body().contains("192.0.2.9"));
+    }
+  }
+
+  @Test
+  void testReplacementKeepsAllFields() throws Exception {
+    try (CoalescingWriter writer = new CoalescingWriter(client, Duration.ofHours(1), 2)) {
+      RecordEntity old = RecordEntity.build("example.com", RecordType.MX, 60, "mx.example.com");
+      old.setId("r1");
+      old.setPriority(5);
+      RecordEntity mx = RecordEntity.build("example.com", RecordType.MX, 60, "mail.example.com");
+      mx.setPriority(10);
+      writer.submit(RecordMutation.delete(zone, old));
+      writer.submit(RecordMutation.create(zone, mx));
+      writer.flush().get();
+    }
+    assertEquals(1, stub.requests().size());
+    assertEquals("PATCH", stub.requests().get(0).method());
+    assertTrue(stub.requests().get(0).body().contains("\"priority\":10"));
+  }
+
+  @Test
+  void testDifferentRecords() throws Exception {
+    try (CoalescingWriter writer = new CoalescingWriter(client, Duration.ofHours(1), 2)) {
+      writer.submit(update("r1", "192.0.2.1"));
+      writer.submit(update("r2", "192.0.2.2"));
+      writer.flush().get();
+      assertEquals(2, writer.getSentCount());
+    }
+    assertEquals(2, stub.requests().size());
+  }
+
+  @Test
+  void testSeveralRecordsOfOneName() throws Exception {
+    try (CoalescingWriter writer = new CoalescingWriter(client, Duration.ofHours(1), 2)) {
+      writer.submit(update("r1", "192.0.2.1"));
+      writer.submit(update("r2", "192.0.2.2"));
+      writer.submit(update("r1", "192.0.2.3"));
+      CompletableFuture<RecordEntity> first = writer.submit(create("192.0.2.4"));
+      CompletableFuture<RecordEntity> second = writer.submit(create("192.0.2.5"));
+      writer.flush().get();
+      assertNotNull(first.get());
+      assertNotNull(second.get());
+      assertEquals(4, writer.getSentCount());
+    }
+    List<ApiStub.Request> requests = stub.requests();
+    assertEquals(4, requests.size());
+    assertEquals(
+        1, requests.stream().filter(request -> request.uri().endsWith("/dns_records/r1")).count());
+    assertTrue(
+        requests.stream()
+            .filter(request -> request.uri().endsWith("/dns_records/r1"))
+            .allMatch(request -> request.body().contains("192.0.2.3")));
+    assertEquals(2, requests.stream().filter(request -> request.method().equals("POST")).count());
+  }
+
+  @Test
+  void testLastWindowWins() throws Exception {
+    AtomicReference<String> applied = new AtomicReference<>();
+    stub.setHandler(
+        request -> {
+          if (request.body().contains("192.0.2.1")) {
+            Thread.sleep(300);
+          }
+          applied.set(request.body());
+          return ApiStub.Reply.ok("{\"success\":true,\"result\":{\"id\":\"r1\"}}");
+        });
+    try (CoalescingWriter writer = new CoalescingWriter(client, Duration.ofHours(1), 4)) {
+      writer.submit(update("r1", "192.0.2.1"));
+      CompletableFuture<Void> slow = writer.flush();
+      writer.submit(update("r1", "192.0.2.2"));
+      writer.flush().get(5, TimeUnit.SECONDS);
+      assertTrue(slow.isDone());
+    }
+    assertEquals(2, stub.requests().size());
+    assertTrue(applied.get().contains("192.0.2.2"), "the later window is applied last");
+  }
+
+  @Test
+  void testWindow() throws Exception {
+    try (CoalescingWriter writer = new CoalescingWriter(client, Duration.ofMillis(50), 2)) {
+      CompletableFuture<RecordEntity> future = writer.submit(update("r1", "192.0.2.1"));
+      assertEquals("r1", future.get(5, TimeUnit.SECONDS).getId());
+    }
+    assertEquals(1, stub.requests().size());
+  }
+}
@@ -0,0 +1,119 @@
+package codes.thischwa.cf.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DurableMutationQueueTest {
+
+  private static final String NONE =
+      "{\"success\":true,\"result_info\":{\"total_count\":0},\"result\":[]}";
+  private static final ApiStub.Handler OK =
+      request ->
+          ApiStub.Reply.ok(
+              request.method().equals("GET")
+                  ? NONE
+                  : "{\"success\":true,\"result\":{\"id\":\"r1\"}}");
+
+  private Path file;
+  private ApiStub stub;
+  private CfDnsClient client;
+  private final ZoneEntity zone = new ZoneEntity();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    file = Files.createTempFile("mutation", ".wal");
+    stub = new ApiStub(OK);
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    zone.setId("z1");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  void testSubmitAndReplay() throws Exception {
+    RecordEntity rec = RecordEntity.build("a.example.com", RecordType.A, 60, "192.0.2.1");
+    try (MutationLog log = MutationLog.open(file);
+        DurableMutationQueue queue = new DurableMutationQueue(client, log, 4)) {
+      assertEquals("r1", queue.submit(RecordMutation.create(zone, rec)).get().getId());
+      assertTrue(log.pending().isEmpty());
+
+      stub.setHandler(request -> new ApiStub.Reply(503, ""));
+      List<CompletableFuture<RecordEntity>> futures =
+          queue.submitAll(
+              List.of(RecordMutation.create(zone, rec), RecordMutation.update(zone, rec)));
+      for (CompletableFuture<RecordEntity> future : futures) {
+        assertThrows(ExecutionException.class, future::get);
+      }
+      assertEquals(2, log.pending().size());
+    }
+
+    stub.setHandler(OK);
+    try (MutationLog log = MutationLog.open(file);
+        DurableMutationQueue queue = new DurableMutationQueue(client, log, 4)) {
+      List<CompletableFuture<RecordEntity>> futures = queue.replay();
+      assertEquals(2, futures.size());
+      for (CompletableFuture<RecordEntity> future : futures) {
+        future.get();
+      }
+      assertTrue(log.pending().isEmpty());
+    }
+    assertEquals(6, stub.requests().size(), "the replayed creation is looked up first");
+    assertEquals(
+        1, stub.requests().stream().skip(3).filter(r -> r.method().equals("PATCH")).count());
+    assertEquals(
+        1, stub.requests().stream().skip(3).filter(r -> r.method().equals("POST")).count());
+  }
+
+  @Test
+  void testReplayAfterAcceptedMutations() throws Exception {
+    RecordEntity created = RecordEntity.build("a.example.com", RecordType.A, 60, "192.0.2.1");
+    RecordEntity deleted = RecordEntity.build("b.example.com", RecordType.A, 60, "192.0.2.2");
+    deleted.setId("r2");
+    try (MutationLog log = MutationLog.open(file)) {
+      // accepted by the API, but the process died before they were marked as done
+      log.appendAll(
+          List.of(RecordMutation.create(zone, created), RecordMutation.delete(zone, deleted)));
+    }
+
+    stub.setHandler(
+        request -> {
+          if (request.method().equals("GET")) {
+            return ApiStub.Reply.ok(
+                "{\"success\":true,\"result_info\":{\"total_count\":1},\"result\":[{"
+                    + "\"id\":\"r1\",\"name\":\"a.example.com\",\"type\":\"A\","
+                    + "\"content\":\"192.0.2.1\"}]}");
+          }
+          return request.method().equals("DELETE")
+              ? new ApiStub.Reply(404, "{\"success\":false,\"errors\":[{\"code\":81044}]}")
+              : new ApiStub.Reply(400, "{\"success\":false,\"errors\":[{\"code\":81058}]}");
+        });
+    try (MutationLog log = MutationLog.open(file);
+        DurableMutationQueue queue = new DurableMutationQueue(client, log, 4)) {
+      List<CompletableFuture<RecordEntity>> futures = queue.replay();
+      assertEquals("r1", futures.get(0).get().getId());
+      assertEquals("r2", futures.get(1).get().getId());
+      assertTrue(log.pending().isEmpty());
+      assertTrue(queue.replay().isEmpty());
+    }
+    assertTrue(stub.requests().stream().noneMatch(r -> r.method().equals("POST")));
+    assertTrue(stub.requests().stream().anyMatch(r -> r.uri().contains("name=a.example.com")));
+  }
+}
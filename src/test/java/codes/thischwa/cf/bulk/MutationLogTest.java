@@ -0,0 +1,136 @@
+package codes.thischwa.cf.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MutationLogTest {
+
+  private Path file;
+  private final ZoneEntity zone = new ZoneEntity();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    file = Files.createTempFile("mutation", ".wal");
+    zone.setId("z1");
+    zone.setName("example.com");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    Files.deleteIfExists(file);
+  }
+
+  private RecordMutation mutation(String name) {
+    return RecordMutation.create(zone, RecordEntity.build(name, RecordType.A, 60, "192.0.2.1"));
+  }
+
+  @Test
+  void testRestore() throws Exception {
+    try (MutationLog log = MutationLog.open(file)) {
+      long first = log.append(mutation("a.example.com"));
+      long second = log.append(mutation("b.example.com"));
+      log.appendAll(List.of(mutation("c.example.com"), mutation("d.example.com")));
+      log.markDone(first);
+      log.markDone(second + 1);
+    }
+    try (MutationLog log = MutationLog.open(file)) {
+      Map<Long, RecordMutation> pending = log.pending();
+      assertEquals(List.of(2L, 4L), new ArrayList<>(pending.keySet()));
+      RecordMutation restored = pending.get(2L);
+      assertEquals(RecordMutation.Operation.CREATE, restored.operation());
+      assertEquals("z1", restored.zoneId());
+      assertEquals("example.com", restored.zoneName());
+      assertEquals("b.example.com", restored.record().getName());
+      assertEquals(RecordType.A, restored.record().getRecordType());
+      assertEquals(5L, log.append(mutation("e.example.com")));
+    }
+  }
+
+  @Test
+  void testTornEnd() throws Exception {
+    try (MutationLog log = MutationLog.open(file)) {
+      log.append(mutation("a.example.com"));
+    }
+    byte[] torn = "{\"seq\":2,\"mutat".getBytes(StandardCharsets.UTF_8);
+    Files.write(file, torn, StandardOpenOption.APPEND);
+    try (MutationLog log = MutationLog.open(file)) {
+      assertEquals(1, log.pending().size());
+      log.append(mutation("b.example.com"));
+    }
+    try (MutationLog log = MutationLog.open(file)) {
+      assertEquals(2, log.pending().size());
+    }
+  }
+
+  @Test
+  void testMissingLineBreak() throws Exception {
+    try (MutationLog log = MutationLog.open(file)) {
+      log.append(mutation("a.example.com"));
+    }
+    byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length - 1));
+    try (MutationLog log = MutationLog.open(file)) {
+      assertEquals(1, log.pending().size());
+      log.append(mutation("b.example.com"));
+    }
+    try (MutationLog log = MutationLog.open(file)) {
+      assertEquals(List.of(1L, 2L), new ArrayList<>(log.pending().keySet()));
+    }
+  }
+
+  @Test
+  void testCompact() throws Exception {
+    try (MutationLog log = MutationLog.open(file)) {
+      for (int i = 0; i < 100; i++) {
+        long seq = log.append(mutation("n" + i + ".example.com"));
+        if (i != 42) {
+          log.markDone(seq);
+        }
+      }
+      long before = Files.size(file);
+      log.compact();
+      assertTrue(Files.size(file) < before / 50);
+      log.append(mutation("x.example.com"));
+    }
+    try (MutationLog log = MutationLog.open(file)) {
+      assertEquals(List.of(43L, 101L), new ArrayList<>(log.pending().keySet()));
+    }
+  }
+
+  @Test
+  void testConcurrentAppends() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (MutationLog log = MutationLog.open(file)) {
+      List<Future<Long>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String name = "n" + i + ".example.com";
+        futures.add(executor.submit(() -> log.append(mutation(name))));
+      }
+      for (Future<Long> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    try (MutationLog log = MutationLog.open(file)) {
+      assertEquals(200, log.pending().size());
+    }
+  }
+}
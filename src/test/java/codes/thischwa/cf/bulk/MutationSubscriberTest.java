@@ -0,0 +1,108 @@
+package codes.thischwa.cf.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MutationSubscriberTest {
+
+  private static final String RECORD = "{\"success\":true,\"result\":{\"id\":\"r1\"}}";
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private ApiStub stub;
+  private CfDnsClient client;
+  private final ZoneEntity zone = new ZoneEntity();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub =
+        new ApiStub(
+            request -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              try {
+                Thread.sleep(20);
+              } finally {
+                inFlight.decrementAndGet();
+              }
+              return request.body().contains("192.0.2.13")
+                  ? new ApiStub.Reply(400, "{\"success\":false}")
+                  : ApiStub.Reply.ok(RECORD);
+            });
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    zone.setId("z1");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+  }
+
+  private RecordMutation create(int i) {
+    return RecordMutation.create(
+        zone, RecordEntity.build("www.example.com", RecordType.A, 60, "192.0.2." + i));
+  }
+
+  @Test
+  void testBoundedConcurrencyAndResults() throws Exception {
+    List<MutationResult> results = new CopyOnWriteArrayList<>();
+    MutationSubscriber sink = new MutationSubscriber(client, 3, results::add);
+    try (SubmissionPublisher<RecordMutation> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(sink);
+      for (int i = 1; i <= 20; i++) {
+        publisher.submit(create(i));
+      }
+    }
+    sink.getCompletion().get(10, TimeUnit.SECONDS);
+
+    assertEquals(20, results.size());
+    assertEquals(20, stub.requests().size());
+    assertTrue(maxInFlight.get() <= 3, "max in flight: " + maxInFlight.get());
+    assertEquals(19, sink.getSucceededCount());
+    assertEquals(1, sink.getFailedCount());
+    MutationResult failed =
+        results.stream().filter(result -> !result.isSuccess()).findFirst().orElseThrow();
+    assertEquals("192.0.2.13", failed.mutation().record().getContent());
+    assertNull(failed.record());
+    assertNotNull(failed.error());
+    MutationResult succeeded = results.stream().filter(MutationResult::isSuccess).findFirst().get();
+    assertEquals("r1", succeeded.record().getId());
+  }
+
+  @Test
+  void testPublisherError() throws Exception {
+    MutationSubscriber sink = new MutationSubscriber(client, 2, result -> {});
+    SubmissionPublisher<RecordMutation> publisher = new SubmissionPublisher<>();
+    publisher.subscribe(sink);
+    publisher.submit(create(1));
+    publisher.closeExceptionally(new IllegalStateException("source failed"));
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> sink.getCompletion().get(5, TimeUnit.SECONDS));
+    assertEquals("source failed", e.getCause().getMessage());
+  }
+
+  @Test
+  void testEmptyPublisher() throws Exception {
+    MutationSubscriber sink = new MutationSubscriber(client, 2, result -> {});
+    try (SubmissionPublisher<RecordMutation> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(sink);
+    }
+    sink.getCompletion().get(5, TimeUnit.SECONDS);
+    assertEquals(0, sink.getSucceededCount());
+    assertTrue(stub.requests().isEmpty());
+  }
+}
@@ -0,0 +1,135 @@
+package codes.thischwa.cf.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OrderedMutationExecutorTest {
+
+  private static final Pattern NAME_CONTENT =
+      Pattern.compile("\"name\":\"([^\"]+)\".*\"content\":\"([^\"]+)\"");
+
+  private final Map<String, List<String>> applied = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final ZoneEntity zone = new ZoneEntity();
+  private ApiStub stub;
+  private CfDnsClient client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub =
+        new ApiStub(
+            request -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+                Matcher m = NAME_CONTENT.matcher(request.body());
+                if (m.find()) {
+                  applied
+                      .computeIfAbsent(m.group(1), n -> new CopyOnWriteArrayList<>())
+                      .add(m.group(2));
+                }
+                if (request.body().contains("192.0.2.99")) {
+                  return new ApiStub.Reply(
+                      400, "{\"success\":false,\"errors\":[{\"code\":9005,\"message\":\"bad\"}]}");
+                }
+                return ApiStub.Reply.ok("{\"success\":true,\"result\":{\"id\":\"r1\"}}");
+              } finally {
+                inFlight.decrementAndGet();
+              }
+            });
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    zone.setId("z1");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+  }
+
+  private RecordMutation update(String name, String ip) {
+    RecordEntity rec = RecordEntity.build(name, RecordType.A, 60, ip);
+    rec.setId("r-" + name);
+    return RecordMutation.update(zone, rec);
+  }
+
+  @Test
+  void testOrderPerRecord() throws Exception {
+    List<String> expected = new ArrayList<>();
+    List<CompletableFuture<RecordEntity>> futures = new ArrayList<>();
+    try (OrderedMutationExecutor executor = new OrderedMutationExecutor(client, 4)) {
+      for (int i = 1; i <= 10; i++) {
+        expected.add("192.0.2." + i);
+        for (int n = 0; n < 4; n++) {
+          futures.add(executor.submit(update("host" + n + ".example.com", "192.0.2." + i)));
+        }
+      }
+      assertEquals(40, executor.getSubmittedCount());
+    }
+    for (CompletableFuture<RecordEntity> future : futures) {
+      assertEquals("r1", future.get().getId());
+    }
+    assertEquals(4, applied.size());
+    applied.values().forEach(ips -> assertEquals(expected, ips));
+    assertTrue(maxInFlight.get() > 1, "records should be updated in parallel");
+  }
+
+  @Test
+  void testFailureDoesNotBlockRecord() throws Exception {
+    try (OrderedMutationExecutor executor = new OrderedMutationExecutor(client, 2)) {
+      CompletableFuture<RecordEntity> failed =
+          executor.submit(update("www.example.com", "192.0.2.99"));
+      CompletableFuture<RecordEntity> next =
+          executor.submit(update("www.example.com", "192.0.2.2"));
+      assertEquals("r1", next.get().getId());
+      ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+      assertNotNull(e.getCause());
+      assertEquals(List.of("192.0.2.99", "192.0.2.2"), applied.get("www.example.com"));
+    }
+  }
+
+  @Test
+  void testCancelDoesNotBreakOrder() throws Exception {
+    try (OrderedMutationExecutor executor = new OrderedMutationExecutor(client, 2)) {
+      assertTrue(executor.submit(update("www.example.com", "192.0.2.1")).cancel(true));
+      executor.submit(update("www.example.com", "192.0.2.2")).get();
+      assertEquals(List.of("192.0.2.1", "192.0.2.2"), applied.get("www.example.com"));
+    }
+  }
+
+  @Test
+  void testIdleKeysAreRemoved() throws Exception {
+    try (OrderedMutationExecutor executor = new OrderedMutationExecutor(client, 2)) {
+      executor.submit(update("www.example.com", "192.0.2.1")).get();
+      for (int i = 0; i < 100 && executor.getPendingKeyCount() > 0; i++) {
+        Thread.sleep(10);
+      }
+      assertEquals(0, executor.getPendingKeyCount());
+    }
+  }
+
+  @Test
+  void testInvalidParallelism() {
+    assertThrows(IllegalArgumentException.class, () -> new OrderedMutationExecutor(client, 0));
+  }
+}
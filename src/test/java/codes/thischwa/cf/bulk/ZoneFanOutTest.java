@@ -0,0 +1,144 @@
+package codes.thischwa.cf.bulk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ZoneFanOutTest {
+
+  private static final String RECORD =
+      "{\"id\":\"r1\",\"name\":\"mail.a.com\",\"type\":\"A\",\"content\":\"%s\",\"ttl\":60}";
+
+  private ApiStub stub;
+  private CfDnsClient client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub =
+        new ApiStub(
+            request -> {
+              String uri = request.uri();
+              if (uri.startsWith("/zones?name=")) {
+                String name = uri.substring("/zones?name=".length());
+                return ApiStub.Reply.ok(ApiStub.zones("id-" + name, name));
+              }
+              if (request.method().equals("GET")) {
+                String content = uri.contains("id-a.com") ? "198.51.100.1" : "198.51.100.9";
+                return ApiStub.Reply.ok(
+                    "{\"success\":true,\"result_info\":{\"total_count\":1},\"result\":["
+                        + String.format(RECORD, content)
+                        + "]}");
+              }
+              return ApiStub.Reply.ok(
+                  "{\"success\":true,\"result\":" + String.format(RECORD, "198.51.100.9") + "}");
+            });
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    client.close();
+    stub.close();
+  }
+
+  @Test
+  void testFailureIsolationAndOrder() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<String> reported = new CopyOnWriteArrayList<>();
+    ZoneFanOut fanOut = new ZoneFanOut(client, 3);
+
+    FanOutResult<String> result =
+        fanOut.apply(
+            List.of("a.com", "b.com", "bad.com", "c.com", "d.com", "e.com", "a.com"),
+            (c, zone) -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              try {
+                Thread.sleep(20);
+                if (zone.getName().equals("bad.com")) {
+                  throw new CloudflareApiException("boom");
+                }
+                return zone.getId();
+              } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+              } finally {
+                running.decrementAndGet();
+              }
+            },
+            outcome -> reported.add(outcome.zoneName()));
+
+    assertEquals(6, result.outcomes().size());
+    assertEquals("a.com", result.outcomes().get(0).zoneName());
+    assertEquals("id-a.com", result.outcomes().get(0).result());
+    assertEquals(5, result.succeeded().size());
+    assertEquals(1, result.failed().size());
+    assertEquals("bad.com", result.failed().get(0).zoneName());
+    assertEquals("boom", result.failed().get(0).error().getMessage());
+    assertFalse(result.isComplete());
+    assertTrue(result.summary().startsWith("6 zones, 5 succeeded, 1 failed"));
+    assertEquals(6, reported.size());
+    assertTrue(maxRunning.get() <= 3);
+  }
+
+  @Test
+  void testUpsert() throws Exception {
+    FanOutResult<RecordEntity> result =
+        new ZoneFanOut(client, 2)
+            .apply(
+                List.of("a.com", "b.com"),
+                ZoneMutation.upsert("mail", RecordType.A, 60, "198.51.100.9"));
+    assertTrue(result.isComplete());
+    long patches = stub.requests().stream().filter(r -> r.method().equals("PATCH")).count();
+    assertEquals(1, patches);
+  }
+
+  @Test
+  void testUpsertComparesNormalizedContent() throws Exception {
+    stub.setHandler(
+        request -> {
+          if (request.uri().startsWith("/zones?name=")) {
+            return ApiStub.Reply.ok(ApiStub.zones("id-a.com", "a.com"));
+          }
+          return ApiStub.Reply.ok(
+              "{\"success\":true,\"result_info\":{\"total_count\":1},\"result\":["
+                  + "{\"id\":\"r1\",\"name\":\"spf.a.com\",\"type\":\"TXT\","
+                  + "\"content\":\"\\\"v=spf1 mx -all\\\"\",\"ttl\":3600}]}");
+        });
+    FanOutResult<RecordEntity> result =
+        new ZoneFanOut(client, 1)
+            .apply(
+                List.of("a.com"),
+                ZoneMutation.upsert("spf", RecordType.TXT, 3600, "v=spf1 mx -all"));
+    assertTrue(result.isComplete());
+    assertTrue(stub.requests().stream().allMatch(r -> r.method().equals("GET")));
+  }
+
+  @Test
+  void testFailingListener() throws Exception {
+    FanOutResult<String> result =
+        new ZoneFanOut(client, 2)
+            .apply(
+                List.of("a.com", "b.com"),
+                (c, zone) -> zone.getName(),
+                outcome -> {
+                  throw new IllegalStateException("listener");
+                });
+    assertEquals(2, result.outcomes().size());
+    assertTrue(result.isComplete());
+  }
+
+  @Test
+  void testInvalidParallelism() {
+    assertThrows(IllegalArgumentException.class, () -> new ZoneFanOut(client, 0));
+  }
+}
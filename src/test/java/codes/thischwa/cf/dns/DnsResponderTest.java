@@ -0,0 +1,254 @@
+package codes.thischwa.cf.dns;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.index.RecordIndex;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import codes.thischwa.cf.transport.CfTransport;
+import codes.thischwa.cf.transport.LoopbackTransport;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class DnsResponderTest {
+
+  private static final String LONG_TEXT = "v=DKIM1; k=rsa; p=" + "A".repeat(400);
+
+  private final ZoneEntity zone = new ZoneEntity();
+
+  {
+    zone.setId("z1");
+    zone.setName("example.com");
+  }
+
+  private static RecordEntity rec(String id, String name, RecordType type, String content) {
+    RecordEntity rec = RecordEntity.build(name, type, 60, content);
+    rec.setId(id);
+    return rec;
+  }
+
+  private static List<RecordEntity> records() {
+    List<RecordEntity> records = new ArrayList<>();
+    records.add(rec("r1", "host.example.com", RecordType.A, "192.0.2.1"));
+    records.add(rec("r2", "host.example.com", RecordType.A, "192.0.2.2"));
+    records.add(rec("r3", "host.example.com", RecordType.AAAA, "2001:db8::1"));
+    records.add(rec("r4", "www.example.com", RecordType.CNAME, "Host.example.com."));
+    RecordEntity mx = rec("r5", "example.com", RecordType.MX, "mail.example.com");
+    mx.setPriority(10);
+    records.add(mx);
+    records.add(rec("r6", "example.com", RecordType.TXT, LONG_TEXT));
+    records.add(rec("r7", "*.dyn.example.com", RecordType.A, "192.0.2.7"));
+    records.add(rec("r8", "a.b.example.com", RecordType.A, "192.0.2.8"));
+    records.add(rec("r9", "_sip._tcp.example.com", RecordType.SRV, "10 5 5060 sip.example.com"));
+    records.add(rec("r10", "example.com", RecordType.CAA, "0 issue \"letsencrypt.org\""));
+    records.add(rec("r11", "example.com", RecordType.HTTPS, "1 . alpn=h2"));
+    return records;
+  }
+
+  private static ByteBuffer query(DatagramChannel channel, String name, int type) throws Exception {
+    ByteBuffer buf = ByteBuffer.allocate(512);
+    DnsWire.writeQuery(buf, 4711, name, type);
+    channel.write(buf);
+    buf.clear();
+    channel.read(buf);
+    buf.flip();
+    assertEquals(4711, DnsWire.u16(buf, 0));
+    return buf;
+  }
+
+  private static int rcode(ByteBuffer msg) {
+    return DnsWire.u16(msg, 2) & DnsWire.RCODE_MASK;
+  }
+
+  private static int answerCount(ByteBuffer msg) {
+    return DnsWire.u16(msg, 6);
+  }
+
+  @Test
+  void testAnswers() throws Exception {
+    try (DnsResponder responder = new DnsResponder(new InetSocketAddress("127.0.0.1", 0));
+        DatagramChannel channel = DatagramChannel.open()) {
+      responder.load(zone, records());
+      assertEquals(10, responder.getRecordCount());
+      channel.connect(responder.getLocalAddress());
+
+      ByteBuffer host = query(channel, "HOST.example.com", DnsWire.TYPE_A);
+      assertEquals(DnsWire.RCODE_NOERROR, rcode(host));
+      assertNotEquals(0, DnsWire.u16(host, 2) & DnsWire.FLAG_AA);
+      assertEquals(
+          List.of("192.0.2.1", "192.0.2.2"),
+          DnsWire.answers(host, "host.example.com", DnsWire.TYPE_A));
+      assertEquals(
+          List.of("2001:db8:0:0:0:0:0:1"),
+          DnsWire.answers(
+              query(channel, "host.example.com", DnsWire.TYPE_AAAA),
+              "host.example.com",
+              DnsWire.TYPE_AAAA));
+
+      ByteBuffer www = query(channel, "www.example.com", DnsWire.TYPE_A);
+      assertEquals(3, answerCount(www), "CNAME and the A records of its target");
+      assertTrue(DnsWire.answers(www, "www.example.com", DnsWire.TYPE_A).isEmpty());
+      assertEquals(
+          List.of("host.example.com"),
+          DnsWire.answers(
+              query(channel, "www.example.com", DnsWire.TYPE_CNAME),
+              "www.example.com",
+              DnsWire.TYPE_CNAME));
+
+      assertEquals(
+          List.of("10 mail.example.com"),
+          DnsWire.answers(
+              query(channel, "example.com", DnsWire.TYPE_MX), "example.com", DnsWire.TYPE_MX));
+      assertEquals(
+          List.of(LONG_TEXT),
+          DnsWire.answers(
+              query(channel, "example.com", DnsWire.TYPE_TXT), "example.com", DnsWire.TYPE_TXT));
+      assertEquals(1, answerCount(query(channel, "_sip._tcp.example.com", DnsWire.TYPE_SRV)));
+      assertEquals(1, answerCount(query(channel, "example.com", DnsWire.TYPE_CAA)));
+      assertEquals(3, answerCount(query(channel, "host.example.com", DnsWire.TYPE_ANY)));
+      assertEquals(
+          List.of("192.0.2.7"),
+          DnsWire.answers(
+              query(channel, "x.dyn.example.com", DnsWire.TYPE_A),
+              "x.dyn.example.com",
+              DnsWire.TYPE_A));
+
+      ByteBuffer emptyNonTerminal = query(channel, "b.example.com", DnsWire.TYPE_A);
+      assertEquals(DnsWire.RCODE_NOERROR, rcode(emptyNonTerminal));
+      assertEquals(0, answerCount(emptyNonTerminal));
+      assertEquals(
+          DnsWire.RCODE_NXDOMAIN, rcode(query(channel, "nope.example.com", DnsWire.TYPE_A)));
+      assertEquals(DnsWire.RCODE_REFUSED, rcode(query(channel, "example.org", DnsWire.TYPE_A)));
+      assertTrue(responder.getQueryCount() >= 12);
+    }
+  }
+
+  @Test
+  void testTruncationAndTcp() throws Exception {
+    List<RecordEntity> records = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      records.add(rec("r" + i, "many.example.com", RecordType.A, "192.0.2." + i));
+    }
+    try (DnsResponder responder = new DnsResponder(new InetSocketAddress("127.0.0.1", 0));
+        DatagramChannel channel = DatagramChannel.open()) {
+      responder.load(zone, records);
+      channel.connect(responder.getLocalAddress());
+      ByteBuffer udp = query(channel, "many.example.com", DnsWire.TYPE_A);
+      assertNotEquals(0, DnsWire.u16(udp, 2) & DnsWire.FLAG_TC);
+      assertEquals(0, answerCount(udp));
+
+      try (Socket socket = new Socket()) {
+        socket.connect(responder.getLocalAddress(), 5000);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        ByteBuffer query = ByteBuffer.allocate(512);
+        for (int round = 0; round < 2; round++) {
+          DnsWire.writeQuery(query, round, "many.example.com", DnsWire.TYPE_A);
+          out.writeShort(query.remaining());
+          out.write(query.array(), 0, query.remaining());
+        }
+        out.flush();
+        for (int round = 0; round < 2; round++) {
+          byte[] response = new byte[in.readUnsignedShort()];
+          in.readFully(response);
+          ByteBuffer msg = ByteBuffer.wrap(response);
+          assertEquals(round, DnsWire.u16(msg, 0));
+          assertEquals(40, DnsWire.answers(msg, "many.example.com", DnsWire.TYPE_A).size());
+        }
+      }
+    }
+  }
+
+  @Test
+  void testPicksUpClientWrites() throws Exception {
+    CfTransport transport =
+        new LoopbackTransport(
+            request -> {
+              String result =
+                  request.method().equals("DELETE")
+                      ? "{\"id\":\"r1\"}"
+                      : "{\"id\":\"r1\",\"name\":\"new.example.com\",\"type\":\"A\","
+                          + "\"content\":\"192.0.2.99\",\"ttl\":60}";
+              return CfTransport.Response.of(
+                  200,
+                  Map.of(),
+                  ("{\"success\":true,\"result\":" + result + "}")
+                      .getBytes(StandardCharsets.UTF_8));
+            });
+    RecordIndex index = new RecordIndex();
+    try (DnsResponder responder = new DnsResponder(new InetSocketAddress("127.0.0.1", 0));
+        DatagramChannel channel = DatagramChannel.open();
+        CfDnsClient client =
+            CfDnsClient.builder()
+                .tokenAuth("t")
+                .baseUrl("http://loopback")
+                .transport(transport)
+                .recordListener(responder)
+                .recordListener(index)
+                .build();
+        PropagationVerifier verifier =
+            new PropagationVerifier(
+                List.of(responder.getLocalAddress()),
+                new PropagationPolicy(
+                    Duration.ofMillis(100), Duration.ofMillis(20), Duration.ofMillis(50)))) {
+      responder.load(zone, List.of());
+      channel.connect(responder.getLocalAddress());
+      assertEquals(
+          DnsWire.RCODE_NXDOMAIN, rcode(query(channel, "new.example.com", DnsWire.TYPE_A)));
+
+      RecordEntity created =
+          client.recordCreate(
+              zone, RecordEntity.build("new.example.com", RecordType.A, 60, "192.0.2.99"));
+      verifier.verify(created, Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS);
+      assertTrue(index.get("r1").isPresent());
+
+      ZoneEntity idOnly = new ZoneEntity();
+      idOnly.setId("z1");
+      assertTrue(client.recordDelete(idOnly, "r1"));
+      assertEquals(
+          DnsWire.RCODE_NXDOMAIN, rcode(query(channel, "new.example.com", DnsWire.TYPE_A)));
+      assertFalse(index.get("r1").isPresent());
+    }
+  }
+
+  @Test
+  void testManyQueries() throws Exception {
+    int total = 20_000;
+    int window = 64;
+    try (DnsResponder responder = new DnsResponder(new InetSocketAddress("127.0.0.1", 0));
+        DatagramChannel channel = DatagramChannel.open()) {
+      responder.load(zone, records());
+      channel.connect(responder.getLocalAddress());
+      ByteBuffer buf = ByteBuffer.allocateDirect(512);
+      channel.socket().setSoTimeout(1000);
+      int sent = 0;
+      int received = 0;
+      while (received < total) {
+        while (sent < total && sent - received < window) {
+          DnsWire.writeQuery(buf, sent & 0xffff, "host.example.com", DnsWire.TYPE_A);
+          channel.write(buf);
+          sent++;
+        }
+        buf.clear();
+        channel.read(buf);
+        buf.flip();
+        assertEquals(2, answerCount(buf));
+        received++;
+      }
+      assertEquals(total, responder.getQueryCount());
+    }
+  }
+}
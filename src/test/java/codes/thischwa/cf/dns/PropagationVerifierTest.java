@@ -0,0 +1,116 @@
+package codes.thischwa.cf.dns;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+public class PropagationVerifierTest {
+
+  private static final PropagationPolicy FAST =
+      new PropagationPolicy(Duration.ofMillis(100), Duration.ofMillis(20), Duration.ofMillis(80));
+
+  @Test
+  void testAllResolversAgree() throws Exception {
+    try (StubDnsResponder first = new StubDnsResponder();
+        StubDnsResponder second = new StubDnsResponder();
+        PropagationVerifier verifier =
+            new PropagationVerifier(List.of(first.address(), second.address()), FAST)) {
+      first.set("www.example.com", DnsWire.TYPE_A, "192.0.2.2", "192.0.2.9");
+      second.set("www.example.com", DnsWire.TYPE_A, "192.0.2.1");
+      RecordEntity rec = RecordEntity.build("WWW.example.com.", RecordType.A, 60, "192.0.2.2");
+
+      CompletableFuture<Duration> future = verifier.verify(rec, Duration.ofSeconds(10));
+      Thread.sleep(300);
+      assertFalse(future.isDone());
+      assertTrue(second.queries() > 2, "stale resolver is asked again");
+
+      second.set("www.example.com", DnsWire.TYPE_A, "192.0.2.2");
+      Duration took = future.get(5, TimeUnit.SECONDS);
+      assertTrue(took.toMillis() >= 300);
+      int firstQueries = first.queries();
+      Thread.sleep(200);
+      assertEquals(firstQueries, first.queries(), "agreed resolver isn't asked again");
+    }
+  }
+
+  @Test
+  void testLossAndCanonicalContent() throws Exception {
+    try (StubDnsResponder resolver = new StubDnsResponder();
+        PropagationVerifier verifier = new PropagationVerifier(List.of(resolver.address()), FAST)) {
+      resolver.set("v6.example.com", DnsWire.TYPE_AAAA, "2001:db8:0:0:0:0:0:1");
+      resolver.set("example.com", DnsWire.TYPE_TXT, "v=spf1 -all");
+      resolver.dropNext(2);
+
+      RecordEntity aaaa = RecordEntity.build("v6.example.com", RecordType.AAAA, 60, "2001:DB8::1");
+      RecordEntity txt = RecordEntity.build("example.com", RecordType.TXT, 60, "\"v=spf1 -all\"");
+      CompletableFuture<Duration> v6 = verifier.verify(aaaa, Duration.ofSeconds(10));
+      CompletableFuture<Duration> spf = verifier.verify(txt, Duration.ofSeconds(10));
+      CompletableFuture.allOf(v6, spf).get(5, TimeUnit.SECONDS);
+      assertTrue(resolver.queries() >= 4);
+    }
+  }
+
+  @Test
+  void testTruncatedResponse() throws Exception {
+    try (StubDnsResponder resolver = new StubDnsResponder();
+        PropagationVerifier verifier = new PropagationVerifier(List.of(resolver.address()), FAST)) {
+      resolver.set("example.com", DnsWire.TYPE_TXT, "v=spf1 -all");
+      resolver.truncate(true);
+      RecordEntity txt = RecordEntity.build("example.com", RecordType.TXT, 60, "v=spf1 -all");
+      verifier.verify(txt, Duration.ofSeconds(10)).get(5, TimeUnit.SECONDS);
+      assertEquals(1, resolver.tcpQueries());
+    }
+  }
+
+  @Test
+  void testTimeout() throws Exception {
+    try (StubDnsResponder answering = new StubDnsResponder();
+        StubDnsResponder silent = new StubDnsResponder();
+        PropagationVerifier verifier =
+            new PropagationVerifier(List.of(answering.address(), silent.address()), FAST)) {
+      answering.set("www.example.com", DnsWire.TYPE_A, "192.0.2.1");
+      silent.dropNext(Integer.MAX_VALUE);
+      RecordEntity rec = RecordEntity.build("www.example.com", RecordType.A, 60, "192.0.2.1");
+      ExecutionException e =
+          assertThrows(
+              ExecutionException.class,
+              () -> verifier.verify(rec, Duration.ofMillis(400)).get(5, TimeUnit.SECONDS));
+      assertInstanceOf(TimeoutException.class, e.getCause());
+      assertTrue(e.getCause().getMessage().contains(String.valueOf(silent.address().getPort())));
+      assertFalse(e.getCause().getMessage().contains(answering.address().toString()));
+    }
+  }
+
+  @Test
+  void testInvalidUsage() throws Exception {
+    InetSocketAddress resolver = new InetSocketAddress("127.0.0.1", 53);
+    assertThrows(IllegalArgumentException.class, () -> new PropagationVerifier(List.of()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new PropagationVerifier(List.of(InetSocketAddress.createUnresolved("dns", 53))));
+    PropagationVerifier verifier = new PropagationVerifier(List.of(resolver), FAST);
+    RecordEntity srv = RecordEntity.build("_sip._tcp.example.com", RecordType.SRV, 60, "0 1 x.");
+    assertThrows(IllegalArgumentException.class, () -> verifier.verify(srv, Duration.ZERO));
+    RecordEntity host = RecordEntity.build("www.example.com", RecordType.A, 60, "localhost");
+    assertThrows(IllegalArgumentException.class, () -> verifier.verify(host, Duration.ZERO));
+    RecordEntity proxied = RecordEntity.build("www.example.com", RecordType.A, 60, "192.0.2.1");
+    proxied.setProxied(true);
+    assertThrows(IllegalArgumentException.class, () -> verifier.verify(proxied, Duration.ZERO));
+
+    RecordEntity rec = RecordEntity.build("www.example.com", RecordType.A, 60, "192.0.2.1");
+    CompletableFuture<Duration> pending = verifier.verify(rec, Duration.ofMinutes(1));
+    verifier.close();
+    assertThrows(CancellationException.class, () -> pending.get(5, TimeUnit.SECONDS));
+    assertThrows(IllegalStateException.class, () -> verifier.verify(rec, Duration.ZERO));
+  }
+}
@@ -0,0 +1,149 @@
+package codes.thischwa.cf.dns;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A DNS responder on localhost for tests, which answers A, AAAA and TXT queries from a map. It can
+ * drop queries to simulate packet loss, and truncate the UDP responses to force a query over TCP on
+ * the same port.
+ */
+class StubDnsResponder implements AutoCloseable {
+
+  private final DatagramSocket socket;
+  private final ServerSocket serverSocket;
+  private final Thread thread;
+  private final Thread tcpThread;
+  private final Map<String, List<String>> records = new ConcurrentHashMap<>();
+  private final AtomicInteger queries = new AtomicInteger();
+  private final AtomicInteger drops = new AtomicInteger();
+  private final AtomicInteger tcpQueries = new AtomicInteger();
+  private volatile boolean truncate;
+
+  StubDnsResponder() throws IOException {
+    socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    serverSocket = new ServerSocket();
+    serverSocket.bind(address());
+    thread = new Thread(this::run, "stub-dns");
+    thread.setDaemon(true);
+    thread.start();
+    tcpThread = new Thread(this::runTcp, "stub-dns-tcp");
+    tcpThread.setDaemon(true);
+    tcpThread.start();
+  }
+
+  InetSocketAddress address() {
+    return (InetSocketAddress) socket.getLocalSocketAddress();
+  }
+
+  /** Sets the contents of a name and type, e.g. {@code set("www.example.com", 1, "192.0.2.1")}. */
+  void set(String name, int type, String... contents) {
+    records.put(name + "/" + type, List.of(contents));
+  }
+
+  void dropNext(int count) {
+    drops.set(count);
+  }
+
+  void truncate(boolean truncate) {
+    this.truncate = truncate;
+  }
+
+  int queries() {
+    return queries.get();
+  }
+
+  int tcpQueries() {
+    return tcpQueries.get();
+  }
+
+  private void run() {
+    byte[] data = new byte[512];
+    while (!socket.isClosed()) {
+      DatagramPacket packet = new DatagramPacket(data, data.length);
+      try {
+        socket.receive(packet);
+        queries.incrementAndGet();
+        if (drops.getAndUpdate(d -> Math.max(0, d - 1)) > 0) {
+          continue;
+        }
+        byte[] reply = answer(ByteBuffer.wrap(data, 0, packet.getLength()), truncate);
+        socket.send(new DatagramPacket(reply, reply.length, packet.getSocketAddress()));
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void runTcp() {
+    while (!serverSocket.isClosed()) {
+      try (Socket connection = serverSocket.accept()) {
+        tcpQueries.incrementAndGet();
+        DataInputStream in = new DataInputStream(connection.getInputStream());
+        byte[] query = new byte[in.readUnsignedShort()];
+        in.readFully(query);
+        byte[] reply = answer(ByteBuffer.wrap(query), false);
+        DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+        out.writeShort(reply.length);
+        out.write(reply);
+        out.flush();
+      } catch (IOException e) {
+        if (serverSocket.isClosed()) {
+          return;
+        }
+      }
+    }
+  }
+
+  private byte[] answer(ByteBuffer query, boolean truncated) throws IOException {
+    StringBuilder name = new StringBuilder();
+    int end = DnsWire.readName(query, DnsWire.HEADER_LENGTH, name);
+    int type = DnsWire.u16(query, end);
+    List<String> contents =
+        truncated ? List.of() : records.getOrDefault(name + "/" + type, List.of());
+    int flags = DnsWire.FLAG_QR | DnsWire.FLAG_RD | 0x80 | (truncated ? DnsWire.FLAG_TC : 0);
+    ByteBuffer reply = ByteBuffer.allocate(512);
+    reply.putShort(query.getShort(0)).putShort((short) flags);
+    reply.putShort((short) 1).putShort((short) contents.size());
+    reply.putShort((short) 0).putShort((short) 0);
+    reply.put(query.array(), DnsWire.HEADER_LENGTH, end + 4 - DnsWire.HEADER_LENGTH);
+    for (String content : contents) {
+      reply.putShort((short) 0xc00c).putShort((short) type).putShort((short) DnsWire.CLASS_IN);
+      reply.putInt(60);
+      byte[] rdata;
+      if (type == DnsWire.TYPE_TXT) {
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        rdata = new byte[text.length + 1];
+        rdata[0] = (byte) text.length;
+        System.arraycopy(text, 0, rdata, 1, text.length);
+      } else {
+        rdata = InetAddress.getByName(content).getAddress();
+      }
+      reply.putShort((short) rdata.length).put(rdata);
+    }
+    byte[] result = new byte[reply.position()];
+    reply.flip().get(result);
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException, InterruptedException {
+    socket.close();
+    serverSocket.close();
+    thread.join();
+    tcpThread.join();
+  }
+}
@@ -0,0 +1,175 @@
+package codes.thischwa.cf.dyndns;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordType;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DynDnsUpdaterTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private volatile InetAddress ipv4;
+  private volatile InetAddress ipv6;
+  private ApiStub stub;
+  private CfDnsClient client;
+  private DynDnsUpdater updater;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub =
+        new ApiStub(
+            request -> {
+              if (request.uri().startsWith("/zones?name=")) {
+                return ApiStub.Reply.ok(ApiStub.zones("z1", "example.com"));
+              }
+              if (request.method().equals("GET")) {
+                if (request.uri().contains("name=new.example.com")) {
+                  return ApiStub.Reply.ok(
+                      "{\"success\":true,\"result_info\":{\"total_count\":0},\"result\":[]}");
+                }
+                String content = request.uri().endsWith("type=AAAA") ? "2001:db8::1" : "192.0.2.1";
+                return ApiStub.Reply.ok(
+                    "{\"success\":true,\"result_info\":{\"total_count\":1},\"result\":[{\"id\":\"r1\","
+                        + "\"name\":\"home.example.com\",\"type\":\"A\",\"content\":\""
+                        + content
+                        + "\"}]}");
+              }
+              return ApiStub.Reply.ok("{\"success\":true,\"result\":{\"id\":\"r1\"}}");
+            });
+    client = new CfDnsClient(stub.baseUrl(), "e", "k", "t");
+    ipv4 = InetAddress.getByName("192.0.2.1");
+    ipv6 = InetAddress.getByName("2001:db8:0:0:0:0:0:1");
+    updater =
+        new DynDnsUpdater(
+            client,
+            type -> type == RecordType.A ? ipv4 : ipv6,
+            List.of(
+                new DynDnsTarget("example.com", "home", RecordType.A),
+                new DynDnsTarget("example.com", "home", RecordType.AAAA),
+                new DynDnsTarget("example.com", "new", RecordType.A)),
+            Duration.ofSeconds(10),
+            60,
+            4,
+            now::get);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    updater.close();
+    client.close();
+    stub.close();
+  }
+
+  private long count(String method) {
+    return stub.requests().stream().filter(r -> r.method().equals(method)).count();
+  }
+
+  private void advance(long seconds) {
+    now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+
+  @Test
+  void testUnchangedCostsNothing() throws Exception {
+    assertEquals(0, updater.poll());
+    advance(10);
+    assertEquals(1, updater.poll());
+    assertEquals(1, count("POST"));
+    assertEquals(0, count("PATCH"));
+
+    int requests = stub.requests().size();
+    advance(60);
+    assertEquals(0, updater.poll());
+    assertEquals(requests, stub.requests().size());
+  }
+
+  @Test
+  void testDebounce() throws Exception {
+    updater.poll();
+    advance(10);
+    assertEquals(1, updater.poll());
+    int requests = stub.requests().size();
+
+    ipv4 = InetAddress.getByName("192.0.2.2");
+    assertEquals(0, updater.poll());
+    advance(5);
+    ipv4 = InetAddress.getByName("192.0.2.3");
+    assertEquals(0, updater.poll());
+    advance(5);
+    ipv4 = InetAddress.getByName("192.0.2.1");
+    assertEquals(0, updater.poll());
+    advance(10);
+    assertEquals(0, updater.poll());
+    assertEquals(requests, stub.requests().size());
+
+    ipv4 = InetAddress.getByName("192.0.2.4");
+    updater.poll();
+    advance(10);
+    assertEquals(2, updater.poll());
+    assertEquals(1, count("PATCH"));
+    assertEquals(2, count("POST"));
+  }
+
+  @Test
+  void testCloseInterruptsCycle() throws Exception {
+    CountDownLatch pushing = new CountDownLatch(1);
+    try (ApiStub slowStub =
+            new ApiStub(
+                request -> {
+                  pushing.countDown();
+                  Thread.sleep(5000);
+                  return ApiStub.Reply.ok(ApiStub.zones("z1", "example.com"));
+                });
+        CfDnsClient slowClient = new CfDnsClient(slowStub.baseUrl(), "e", "k", "t")) {
+      DynDnsUpdater slowUpdater =
+          new DynDnsUpdater(
+              slowClient,
+              type -> ipv4,
+              List.of(new DynDnsTarget("example.com", "home", RecordType.A)),
+              Duration.ZERO,
+              60,
+              1);
+      AtomicBoolean interrupted = new AtomicBoolean();
+      Thread cycle =
+          new Thread(
+              () -> {
+                try {
+                  slowUpdater.poll();
+                } catch (InterruptedException e) {
+                  interrupted.set(true);
+                }
+              });
+      cycle.start();
+      assertTrue(pushing.await(5, TimeUnit.SECONDS));
+      slowUpdater.close();
+      cycle.join(2000);
+      assertTrue(interrupted.get(), "the running cycle should be interrupted");
+    }
+  }
+
+  @Test
+  void testParseAddress() {
+    assertNotNull(DynDnsUpdater.parseAddress("2001:db8::1"));
+    assertNull(DynDnsUpdater.parseAddress("abc.de"));
+    assertNull(DynDnsUpdater.parseAddress("1.2.3"));
+    assertNull(DynDnsUpdater.parseAddress("999.1.1.1"));
+    assertNull(DynDnsUpdater.parseAddress(null));
+  }
+
+  @Test
+  void testInvalidTarget() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new DynDnsTarget("example.com", "home", RecordType.CNAME));
+  }
+}
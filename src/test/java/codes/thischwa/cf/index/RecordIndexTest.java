@@ -0,0 +1,226 @@
+package codes.thischwa.cf.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class RecordIndexTest {
+
+  private static final Pattern RECORDS = Pattern.compile("/zones/(\\w+)/dns_records\\?page=(\\d+)");
+
+  private final RecordIndex index = new RecordIndex();
+
+  private static RecordEntity rec(String id, String name, RecordType type, String content) {
+    RecordEntity rec = RecordEntity.build(name, type, 60, content);
+    rec.setId(id);
+    return rec;
+  }
+
+  private static List<String> ids(List<RecordEntity> records) {
+    return records.stream().map(RecordEntity::getId).sorted().collect(Collectors.toList());
+  }
+
+  private static String view(String id, String name, String content, String modifiedOn) {
+    return "{\"id\":\""
+        + id
+        + "\",\"name\":\""
+        + name
+        + "\",\"type\":\"A\",\"content\":\""
+        + content
+        + "\",\"ttl\":60,\"modified_on\":\""
+        + modifiedOn
+        + "\"}";
+  }
+
+  private static String page(List<String> views) {
+    return "{\"success\":true,\"result_info\":{\"total_count\":"
+        + views.size()
+        + "},\"result\":["
+        + String.join(",", views)
+        + "]}";
+  }
+
+  @Test
+  void testSecondaryIndexes() {
+    index.put("z1", rec("r1", "www.example.com", RecordType.A, "203.0.113.7"));
+    index.put("z1", rec("r2", "mail.example.com", RecordType.A, "203.0.113.8"));
+    index.put("z1", rec("r3", "old.example.com", RecordType.CNAME, "legacy.example.net"));
+    index.put("z2", rec("r4", "example.org", RecordType.A, "203.0.113.7"));
+    index.put("z2", rec("r5", "myexample.com.example.org", RecordType.CNAME, "legacy.example.net"));
+
+    assertEquals(5, index.size());
+    assertEquals(List.of("r1", "r4"), ids(index.find(RecordFilter.any().content("203.0.113.7"))));
+    assertEquals(List.of("r3", "r5"), ids(index.find(RecordFilter.any().type(RecordType.CNAME))));
+    assertEquals(
+        List.of("r1", "r2", "r3"), ids(index.find(RecordFilter.any().nameSuffix("example.com"))));
+    assertEquals(
+        List.of("r4", "r5"), ids(index.find(RecordFilter.any().nameSuffix("EXAMPLE.org."))));
+    assertEquals(List.of("r4", "r5"), ids(index.find(RecordFilter.any().zone("z2"))));
+    assertEquals(
+        List.of("r5"),
+        ids(
+            index.find(
+                RecordFilter.any()
+                    .type(RecordType.CNAME)
+                    .content("legacy.example.net")
+                    .nameSuffix("example.org"))));
+    assertTrue(index.find(RecordFilter.any().content("192.0.2.1")).isEmpty());
+    assertTrue(index.find(RecordFilter.any().type(RecordType.MX)).isEmpty());
+    assertEquals(5, index.find(RecordFilter.any()).size());
+
+    RecordEntity www = index.get("r1").orElseThrow();
+    assertEquals("z1", www.getZoneId());
+    assertEquals("A", www.getType());
+    assertEquals(Integer.valueOf(60), www.getTtl());
+  }
+
+  @Test
+  void testPutAndRemove() {
+    index.put("z1", rec("r1", "www.example.com", RecordType.A, "203.0.113.7"));
+    index.put("z1", rec("r1", "www.example.com", RecordType.A, "203.0.113.9"));
+    assertEquals(1, index.size());
+    assertTrue(index.find(RecordFilter.any().content("203.0.113.7")).isEmpty());
+    assertEquals(List.of("r1"), ids(index.find(RecordFilter.any().content("203.0.113.9"))));
+    RecordEntity mx = rec("r2", "example.com", RecordType.MX, "mail.example.com");
+    mx.setPriority(10);
+    index.put("z1", mx);
+    assertEquals(10, index.get("r2").orElseThrow().getPriority());
+    assertTrue(index.remove("r2"));
+
+    assertTrue(index.remove("r1"));
+    assertFalse(index.remove("r1"));
+    assertEquals(0, index.size());
+    assertTrue(index.get("r1").isEmpty());
+    assertTrue(index.find(RecordFilter.any().nameSuffix("example.com")).isEmpty());
+  }
+
+  @Test
+  void testManyRecords() {
+    for (int i = 0; i < 100_000; i++) {
+      String name = "host" + i + ".example" + i % 10 + ".com";
+      index.put("z" + i % 10, rec("r" + i, name, RecordType.A, "10.0.0." + i % 250));
+    }
+    assertEquals(100_000, index.size());
+    assertEquals(400, index.find(RecordFilter.any().content("10.0.0.7")).size());
+    assertEquals(
+        400, index.find(RecordFilter.any().content("10.0.0.7").nameSuffix("example7.com")).size());
+    assertTrue(index.find(RecordFilter.any().content("10.0.0.7").zone("z3")).isEmpty());
+    for (int i = 0; i < 100_000; i += 2) {
+      index.remove("r" + i);
+    }
+    assertEquals(50_000, index.size());
+    assertEquals(
+        List.of("r1"), ids(index.find(RecordFilter.any().nameSuffix("host1.example1.com"))));
+  }
+
+  @Test
+  void testChurn() {
+    index.put("z1", rec("keep", "www.example.com", RecordType.A, "203.0.113.7"));
+    for (int i = 0; i < 100_000; i++) {
+      String name = "host" + i + ".zone" + i + ".example";
+      index.put("z" + i, rec("r" + i, name, RecordType.A, "10." + i));
+      assertTrue(index.remove("r" + i));
+    }
+    index.put("z2", rec("new", "new.example.org", RecordType.CNAME, "www.example.com"));
+
+    assertEquals(2, index.size());
+    assertEquals(List.of("keep"), ids(index.find(RecordFilter.any().nameSuffix("example.com"))));
+    assertEquals(List.of("new"), ids(index.find(RecordFilter.any().zone("z2"))));
+    assertTrue(index.find(RecordFilter.any().nameSuffix("zone7.example")).isEmpty());
+    assertTrue(index.find(RecordFilter.any().content("10.7")).isEmpty());
+    assertTrue(index.get("r7").isEmpty());
+  }
+
+  @Test
+  void testRefresh() throws Exception {
+    Map<String, List<String>> zones = new ConcurrentHashMap<>();
+    zones.put(
+        "z1",
+        List.of(
+            view("r1", "www.example.com", "203.0.113.7", "2025-01-01T00:00:00Z"),
+            view("r2", "mail.example.com", "203.0.113.8", "2025-01-01T00:00:00Z"),
+            view("r3", "ftp.example.com", "203.0.113.9", "2025-01-01T00:00:00Z")));
+    zones.put("z2", List.of(view("r4", "example.org", "203.0.113.7", "2025-01-01T00:00:00Z")));
+    try (ApiStub stub =
+            new ApiStub(
+                request -> {
+                  Matcher m = RECORDS.matcher(request.uri());
+                  if (!m.find()) {
+                    return ApiStub.Reply.ok(
+                        ApiStub.zones("z1", "example.com", "z2", "example.org"));
+                  }
+                  List<String> views = zones.get(m.group(1));
+                  int from = Math.min((Integer.parseInt(m.group(2)) - 1) * 2, views.size());
+                  return ApiStub.Reply.ok(
+                      page(views.subList(from, Math.min(from + 2, views.size()))));
+                });
+        CfDnsClient client = new CfDnsClient(stub.baseUrl(), "e", "k", "t")) {
+      assertEquals(4, index.refresh(client, 2));
+      assertEquals(4, index.size());
+      assertEquals(List.of("r1", "r4"), ids(index.find(RecordFilter.any().content("203.0.113.7"))));
+      assertEquals(
+          LocalDateTime.of(2025, 1, 1, 0, 0), index.get("r1").orElseThrow().getModifiedOn());
+
+      assertEquals(0, index.refresh(client, 2));
+
+      zones.put(
+          "z1",
+          List.of(
+              view("r1", "www.example.com", "203.0.113.1", "2025-01-02T00:00:00.25Z"),
+              view("r2", "mail.example.com", "203.0.113.8", "2025-01-01T00:00:00Z")));
+      assertEquals(2, index.refresh(client, 2));
+      assertEquals(List.of("r4"), ids(index.find(RecordFilter.any().content("203.0.113.7"))));
+      assertTrue(index.get("r3").isEmpty());
+      assertEquals(
+          LocalDateTime.of(2025, 1, 2, 0, 0, 0, 250_000_000),
+          index.get("r1").orElseThrow().getModifiedOn());
+    }
+  }
+
+  @Test
+  void testRefreshKeepsConcurrentWrites() throws Exception {
+    index.put("z1", rec("r3", "ftp.example.com", RecordType.A, "203.0.113.9"));
+    RecordEntity newer = rec("r4", "new.example.com", RecordType.A, "203.0.113.4");
+    newer.setModifiedOn(LocalDateTime.of(2025, 1, 3, 0, 0));
+    index.put("z1", newer);
+    List<String> views =
+        List.of(
+            view("r1", "www.example.com", "203.0.113.7", "2025-01-01T00:00:00Z"),
+            view("r3", "ftp.example.com", "203.0.113.9", "2025-01-01T00:00:00Z"),
+            view("r4", "new.example.com", "203.0.113.1", "2025-01-02T00:00:00Z"));
+    try (ApiStub stub =
+            new ApiStub(
+                request -> {
+                  // the application writes while the records are listed
+                  index.put("z1", rec("r1", "www.example.com", RecordType.A, "203.0.113.1"));
+                  index.put("z1", rec("r2", "mail.example.com", RecordType.A, "203.0.113.8"));
+                  index.remove("r3");
+                  return ApiStub.Reply.ok(page(views));
+                });
+        CfDnsClient client = new CfDnsClient(stub.baseUrl(), "e", "k", "t")) {
+      ZoneEntity zone = new ZoneEntity();
+      zone.setId("z1");
+      zone.setName("example.com");
+      assertEquals(0, index.refresh(client, zone, 10));
+      assertEquals(List.of("r1", "r2", "r4"), ids(index.find(RecordFilter.any())));
+      assertEquals("203.0.113.1", index.get("r1").orElseThrow().getContent());
+      assertEquals("203.0.113.4", index.get("r4").orElseThrow().getContent());
+
+      // the removal is forgotten once the listing is done
+      index.put("z1", rec("r3", "ftp.example.com", RecordType.A, "203.0.113.9"));
+      assertEquals(List.of("r3"), ids(index.find(RecordFilter.any().content("203.0.113.9"))));
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package codes.thischwa.cf.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class StringPoolTest {
+
+  private final StringPool pool = new StringPool();
+
+  @Test
+  void testReferences() {
+    int id = pool.intern("example.com");
+    assertEquals(id, pool.intern("example.com"));
+    assertFalse(pool.release(id));
+    assertEquals(id, pool.find("example.com"));
+    assertTrue(pool.release(id));
+    assertEquals(-1, pool.find("example.com"));
+
+    assertEquals(id, pool.intern("example.org"));
+    assertEquals("example.org", pool.get(id));
+  }
+
+  @Test
+  void testReusedIds() {
+    for (int round = 0; round < 100; round++) {
+      int[] ids = new int[1000];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = pool.intern(round + "-" + i);
+      }
+      for (int i = 0; i < ids.length; i += 2) {
+        assertTrue(pool.release(ids[i]));
+      }
+      for (int i = 1; i < ids.length; i += 2) {
+        assertEquals(ids[i], pool.find(round + "-" + i));
+        assertTrue(pool.release(ids[i]));
+      }
+    }
+    assertEquals(1000, pool.size());
+  }
+}
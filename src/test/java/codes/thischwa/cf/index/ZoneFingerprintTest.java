@@ -0,0 +1,157 @@
+package codes.thischwa.cf.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.ApiStub;
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.RecordView;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class ZoneFingerprintTest {
+
+  private static RecordEntity rec(String name, RecordType type, String content) {
+    RecordEntity rec = RecordEntity.build(name, type, 300, content);
+    rec.setId(Integer.toHexString((name + content).hashCode()));
+    return rec;
+  }
+
+  private static List<RecordEntity> zone() {
+    List<RecordEntity> records = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      String ip = "10.0." + i / 250 + "." + i % 250;
+      records.add(rec("host" + i + ".example.com", RecordType.A, ip));
+    }
+    records.add(rec("www.example.com", RecordType.CNAME, "host1.example.com"));
+    records.add(rec("example.com", RecordType.MX, "mail.example.com"));
+    records.get(records.size() - 1).setPriority(10);
+    records.get(0).setProxied(true);
+    records.add(rec("example.com", RecordType.TXT, "\"v=spf1 -all\""));
+    return records;
+  }
+
+  @Test
+  void testStableAndCanonical() {
+    List<RecordEntity> records = zone();
+    ZoneFingerprint fingerprint = ZoneFingerprint.of(records);
+
+    List<RecordEntity> shuffled = zone();
+    Collections.shuffle(shuffled);
+    shuffled.forEach(rec -> rec.setId(null));
+    shuffled.get(0).setName(shuffled.get(0).getName().toUpperCase() + ".");
+    assertTrue(fingerprint.matches(ZoneFingerprint.of(shuffled)));
+    assertEquals(fingerprint.root(), ZoneFingerprint.of(shuffled).root());
+
+    List<RecordView> views = new ArrayList<>();
+    for (RecordEntity rec : records) {
+      views.add(
+          new RecordView(
+              rec.getId(),
+              rec.getName(),
+              rec.getType(),
+              rec.getContent(),
+              300,
+              rec.getPriority(),
+              Boolean.TRUE.equals(rec.getProxied()),
+              null));
+    }
+    assertEquals(fingerprint.root(), ZoneFingerprint.ofViews(views).root());
+    assertEquals(ZoneFingerprint.BUCKETS, fingerprint.bucketHashes().size());
+    assertNotNull(fingerprint.nameHash("WWW.example.com."));
+    assertNull(fingerprint.nameHash("nothing.example.com"));
+  }
+
+  @Test
+  void testDrift() {
+    ZoneFingerprint expected = ZoneFingerprint.of(zone());
+    List<RecordEntity> live = zone();
+    live.get(7).setContent("192.0.2.7");
+    live.remove(live.size() - 1);
+    live.add(rec("new.example.com", RecordType.AAAA, "2001:db8::1"));
+    ZoneFingerprint actual = ZoneFingerprint.of(live);
+
+    assertFalse(expected.matches(actual));
+    Set<Integer> buckets = expected.differingBuckets(actual.bucketHashes());
+    assertTrue(buckets.size() <= 3);
+    assertTrue(buckets.contains(ZoneFingerprint.bucketOf("host7.example.com")));
+    assertEquals(
+        Set.of("host7.example.com", "example.com", "new.example.com"),
+        expected.differingNames(actual));
+    assertEquals(expected.differingNames(actual), actual.differingNames(expected));
+    assertTrue(expected.differingNames(ZoneFingerprint.of(zone())).isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> expected.differingBuckets(List.of()));
+  }
+
+  @Test
+  void testPriorityAndProxied() {
+    ZoneFingerprint expected = ZoneFingerprint.of(zone());
+    List<RecordEntity> live = zone();
+    live.get(0).setProxied(false);
+    live.get(live.size() - 2).setPriority(20);
+
+    assertEquals(
+        Set.of("host0.example.com", "example.com"),
+        expected.differingNames(ZoneFingerprint.of(live)));
+  }
+
+  @Test
+  void testDefaultsOfTheApi() {
+    RecordEntity host = rec("host.example.com", RecordType.A, "192.0.2.1");
+    host.setTtl(null);
+    RecordEntity mx = rec("example.com", RecordType.MX, "mail.example.com");
+    mx.setTtl(null);
+    List<RecordView> live =
+        List.of(
+            new RecordView("r1", "host.example.com", "A", "192.0.2.1", 1, null, false, null),
+            new RecordView("r2", "example.com", "MX", "mail.example.com", 1, 0, false, null));
+
+    assertTrue(ZoneFingerprint.of(List.of(host, mx)).matches(ZoneFingerprint.ofViews(live)));
+  }
+
+  @Test
+  void testLiveZone() throws Exception {
+    List<String> views = new ArrayList<>();
+    for (RecordEntity rec : zone()) {
+      views.add(
+          "{\"id\":\""
+              + rec.getId()
+              + "\",\"name\":\""
+              + rec.getName()
+              + "\",\"type\":\""
+              + rec.getType()
+              + "\",\"content\":\""
+              + rec.getContent().replace("\"", "\\\"")
+              + "\",\"ttl\":300"
+              + (rec.getPriority() == null ? "" : ",\"priority\":" + rec.getPriority())
+              + ",\"proxied\":"
+              + Boolean.TRUE.equals(rec.getProxied())
+              + "}");
+    }
+    try (ApiStub stub =
+            new ApiStub(
+                request -> {
+                  int page = Integer.parseInt(request.uri().replaceAll(".*page=(\\d+).*", "$1"));
+                  int from = Math.min((page - 1) * 400, views.size());
+                  List<String> slice = views.subList(from, Math.min(from + 400, views.size()));
+                  return ApiStub.Reply.ok(
+                      "{\"success\":true,\"result_info\":{\"total_count\":"
+                          + slice.size()
+                          + "},\"result\":["
+                          + String.join(",", slice)
+                          + "]}");
+                });
+        CfDnsClient client = new CfDnsClient(stub.baseUrl(), "e", "k", "t")) {
+      ZoneEntity zone = new ZoneEntity();
+      zone.setId("z1");
+      ZoneFingerprint live = ZoneFingerprint.of(client, zone, 400);
+      assertTrue(live.matches(ZoneFingerprint.of(zone())));
+      assertEquals(3, stub.requests().size());
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package codes.thischwa.cf.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class RecordMultipleResponseTest {
+
+    private final ObjectMapper mapper =
+            new ObjectMapper()
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                    .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                    .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+
+    private static String json(int count) {
+        StringBuilder sb = new StringBuilder("{\"success\":true,\"result\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":\"r").append(i)
+                    .append("\",\"zone_id\":\"z1\",\"zone_name\":\"example.com\",\"name\":\"n")
+                    .append(i).append(".example.com\",\"type\":\"")
+                    .append(i % 2 == 0 ? "AAAA" : "SPF").append("\",\"content\":\"c\",\"ttl\":60}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    @Test
+    public void testSharedStrings() throws Exception {
+        List<RecordEntity> result = mapper.readValue(json(100), RecordMultipleResponse.class).getResult();
+        assertEquals(100, result.size());
+        RecordEntity first = result.get(0);
+        for (RecordEntity rec : result) {
+            assertSame(first.getZoneId(), rec.getZoneId());
+            assertSame(first.getZoneName(), rec.getZoneName());
+        }
+        assertSame(RecordType.AAAA.getType(), first.getType());
+        assertEquals(RecordType.AAAA, first.getRecordType());
+    }
+
+    @Test
+    public void testUnknownType() throws Exception {
+        RecordEntity rec = mapper.readValue(json(2), RecordMultipleResponse.class).getResult().get(1);
+        assertEquals("SPF", rec.getType());
+        assertNull(rec.getRecordType());
+    }
+
+    @Test
+    public void testRecordTypeNotSerialized() throws Exception {
+        RecordEntity rec = RecordEntity.build("www.example.com", RecordType.A, 60, "198.51.100.4");
+        String json = mapper.writeValueAsString(rec);
+        assertTrue(json.contains("\"type\":\"A\""));
+        assertFalse(json.contains("record_type"));
+    }
+}
@@ -0,0 +1,53 @@
+package codes.thischwa.cf.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+public class RecordViewTest {
+
+    private static final String JSON =
+            "{\"success\":true,\"errors\":[],\"messages\":[],"
+                    + "\"result_info\":{\"page\":1,\"per_page\":100,\"count\":2,\"total_count\":2},"
+                    + "\"result\":["
+                    + "{\"id\":\"r1\",\"zone_id\":\"z1\",\"zone_name\":\"example.com\",\"name\":\"www.example.com\","
+                    + "\"type\":\"A\",\"content\":\"198.51.100.4\",\"proxiable\":true,\"proxied\":false,"
+                    + "\"ttl\":3600,\"locked\":false,\"meta\":{\"auto_added\":false},"
+                    + "\"created_on\":\"2025-01-20T10:15:30.123456Z\",\"modified_on\":\"2025-01-21T08:00:00.5Z\"},"
+                    + "{\"id\":\"r2\",\"name\":\"x.example.com\",\"type\":\"FOO\",\"content\":\"bar\"}"
+                    + "]}";
+
+    private final ObjectMapper mapper =
+            new ObjectMapper()
+                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                    .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+
+    @Test
+    public void testDeserialize() throws Exception {
+        RecordViewMultipleResponse resp = mapper.readValue(JSON, RecordViewMultipleResponse.class);
+        assertTrue(resp.isSuccess());
+        assertEquals(2, resp.getResultInfo().getTotalCount());
+
+        RecordView view = resp.getResult().get(0);
+        assertEquals("r1", view.getId());
+        assertEquals("www.example.com", view.name());
+        assertEquals("198.51.100.4", view.content());
+        assertEquals(3600, view.ttl());
+        assertSame(RecordType.A.getType(), view.type());
+        assertEquals(RecordType.A, view.recordType());
+        assertEquals(LocalDateTime.of(2025, 1, 21, 8, 0, 0, 500_000_000), view.modifiedOnDateTime());
+    }
+
+    @Test
+    public void testUnknownTypeAndMissingValues() throws Exception {
+        RecordView view = mapper.readValue(JSON, RecordViewMultipleResponse.class).getResult().get(1);
+        assertEquals("FOO", view.type());
+        assertNull(view.recordType());
+        assertEquals(0, view.ttl());
+        assertNull(view.modifiedOnDateTime());
+    }
+}
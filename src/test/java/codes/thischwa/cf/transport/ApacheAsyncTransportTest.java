@@ -0,0 +1,12 @@
+package codes.thischwa.cf.transport;
+
+import codes.thischwa.cf.CfProtocol;
+import codes.thischwa.cf.CfTimeouts;
+
+public class ApacheAsyncTransportTest extends CfTransportConformanceTest {
+
+  @Override
+  protected CfTransport createTransport(CfTimeouts timeouts) {
+    return new ApacheAsyncTransport(CfProtocol.HTTP_1_1, 4, timeouts);
+  }
+}
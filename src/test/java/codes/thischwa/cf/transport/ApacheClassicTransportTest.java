@@ -0,0 +1,16 @@
+package codes.thischwa.cf.transport;
+
+import codes.thischwa.cf.CfTimeouts;
+
+public class ApacheClassicTransportTest extends CfTransportConformanceTest {
+
+  @Override
+  protected CfTransport createTransport(CfTimeouts timeouts) {
+    return new ApacheClassicTransport(4, timeouts);
+  }
+
+  @Override
+  protected boolean abortsInterruptedSend() {
+    return false;
+  }
+}
@@ -0,0 +1,262 @@
+package codes.thischwa.cf.transport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.CfTimeouts;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The behavior every network {@link CfTransport} must show, checked against a local HTTP server.
+ * The implementations are tested by subclasses.
+ */
+public abstract class CfTransportConformanceTest {
+
+  private static final CfTimeouts TIMEOUTS =
+      new CfTimeouts(Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(5));
+  private static final CfTimeouts SHORT_TIMEOUTS =
+      new CfTimeouts(Duration.ofSeconds(2), Duration.ofMillis(300), Duration.ofMillis(300));
+
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private CfTransport transport;
+  private final AtomicInteger slowRequests = new AtomicInteger();
+
+  /** Creates the transport under test, with at most 4 connections per host if it has a pool. */
+  protected abstract CfTransport createTransport(CfTimeouts timeouts);
+
+  /**
+   * Checks if an interrupted send aborts its exchange. Blocking socket reads aren't interruptible,
+   * such a transport is only bounded by the timeouts.
+   */
+  protected boolean abortsInterruptedSend() {
+    return true;
+  }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    serverExecutor = Executors.newCachedThreadPool();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/echo", this::echo);
+    server.createContext("/missing", exchange -> reply(exchange, 404, "{\"success\":false}"));
+    server.createContext("/empty", exchange -> reply(exchange, 200, ""));
+    server.createContext(
+        "/slow",
+        exchange -> {
+          slowRequests.incrementAndGet();
+          try {
+            Thread.sleep(2_000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          reply(exchange, 200, "late");
+        });
+    server.setExecutor(serverExecutor);
+    server.start();
+    transport = createTransport(TIMEOUTS);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    transport.close();
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  @Test
+  void testGet() throws Exception {
+    try (CfTransport.Response response =
+        transport.send(get("/echo?name=www.example.com", Map.of("X-Auth-Token", "t0k3n")))) {
+      assertEquals(200, response.statusCode());
+      assertEquals("GET|name=www.example.com|t0k3n|null|", body(response));
+    }
+  }
+
+  @Test
+  void testBodies() throws Exception {
+    for (String method : List.of("POST", "PUT", "PATCH", "DELETE")) {
+      byte[] payload = ("{\"method\":\"" + method + "\"}").getBytes(StandardCharsets.UTF_8);
+      CfTransport.Request request =
+          new CfTransport.Request(
+              method, url("/echo"), Map.of("Content-Type", "application/json"), payload);
+      try (CfTransport.Response response = transport.send(request)) {
+        assertEquals(200, response.statusCode());
+        assertEquals(
+            method + "|null|null|application/json|{\"method\":\"" + method + "\"}",
+            body(response));
+      }
+    }
+  }
+
+  @Test
+  void testErrorStatusIsReturned() throws Exception {
+    try (CfTransport.Response response = transport.send(get("/missing", Map.of()))) {
+      assertEquals(404, response.statusCode());
+      assertEquals("{\"success\":false}", body(response));
+    }
+  }
+
+  @Test
+  void testEmptyBody() throws Exception {
+    try (CfTransport.Response response = transport.send(get("/empty", Map.of()))) {
+      assertEquals(200, response.statusCode());
+      assertEquals("", body(response));
+    }
+  }
+
+  @Test
+  void testResponseHeaders() throws Exception {
+    try (CfTransport.Response response = transport.send(get("/echo", Map.of()))) {
+      assertEquals("application/json", response.header("content-type"));
+      assertEquals("application/json", response.header("CONTENT-TYPE"));
+      assertNull(response.header("X-Missing"));
+      body(response);
+    }
+  }
+
+  @Test
+  void testUtf8() throws Exception {
+    byte[] payload = "{\"comment\":\"Grüße ☁\"}".getBytes(StandardCharsets.UTF_8);
+    CfTransport.Request request = new CfTransport.Request("POST", url("/echo"), Map.of(), payload);
+    try (CfTransport.Response response = transport.send(request)) {
+      assertTrue(body(response).endsWith("|{\"comment\":\"Grüße ☁\"}"));
+    }
+  }
+
+  @Test
+  void testConnectionRefused() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    CfTransport.Request request =
+        new CfTransport.Request("GET", "http://localhost:" + port + "/echo", Map.of(), null);
+    assertThrows(IOException.class, () -> transport.send(request).close());
+  }
+
+  @Test
+  void testResponseTimeout() throws Exception {
+    try (CfTransport shortTransport = createTransport(SHORT_TIMEOUTS)) {
+      long start = System.nanoTime();
+      assertThrows(IOException.class, () -> shortTransport.send(get("/slow", Map.of())).close());
+      assertTrue(System.nanoTime() - start < Duration.ofMillis(1_800).toNanos());
+    }
+  }
+
+  @Test
+  void testConcurrentRequests() throws Exception {
+    ExecutorService callers = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        String query = "i=" + i;
+        results.add(
+            callers.submit(
+                () -> {
+                  try (CfTransport.Response response =
+                      transport.send(get("/echo?" + query, Map.of()))) {
+                    return body(response);
+                  }
+                }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals("GET|i=" + i + "|null|null|", results.get(i).get());
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  void testInterruptedSendReleasesConnection() throws Exception {
+    if (!abortsInterruptedSend()) {
+      return;
+    }
+    ExecutorService callers = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> sends = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        sends.add(
+            callers.submit(
+                () -> {
+                  transport.send(get("/slow", Map.of())).close();
+                  return null;
+                }));
+      }
+      long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+      while (slowRequests.get() < 4 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(4, slowRequests.get());
+      sends.forEach(send -> send.cancel(true));
+
+      long start = System.nanoTime();
+      try (CfTransport.Response response = transport.send(get("/echo", Map.of()))) {
+        assertEquals(200, response.statusCode());
+        body(response);
+      }
+      assertTrue(
+          System.nanoTime() - start < Duration.ofMillis(1_000).toNanos(),
+          "the interrupted sends released their connections");
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  private CfTransport.Request get(String path, Map<String, String> headers) {
+    return new CfTransport.Request("GET", url(path), headers, null);
+  }
+
+  private String url(String path) {
+    return "http://localhost:" + server.getAddress().getPort() + path;
+  }
+
+  private static String body(CfTransport.Response response) throws IOException {
+    return new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+  }
+
+  private void echo(HttpExchange exchange) throws IOException {
+    String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    reply(
+        exchange,
+        200,
+        String.join(
+            "|",
+            exchange.getRequestMethod(),
+            String.valueOf(exchange.getRequestURI().getQuery()),
+            String.valueOf(header(exchange, "X-Auth-Token")),
+            String.valueOf(header(exchange, "Content-Type")),
+            body));
+  }
+
+  @Nullable
+  private static String header(HttpExchange exchange, String name) {
+    return exchange.getRequestHeaders().getFirst(name);
+  }
+
+  private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package codes.thischwa.cf.transport;
+
+import codes.thischwa.cf.CfProtocol;
+import codes.thischwa.cf.CfTimeouts;
+
+public class JdkHttpTransportTest extends CfTransportConformanceTest {
+
+  @Override
+  protected CfTransport createTransport(CfTimeouts timeouts) {
+    return new JdkHttpTransport(CfProtocol.HTTP_1_1, timeouts);
+  }
+}
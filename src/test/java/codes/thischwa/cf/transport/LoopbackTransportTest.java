@@ -0,0 +1,83 @@
+package codes.thischwa.cf.transport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import codes.thischwa.cf.CfDnsClient;
+import codes.thischwa.cf.CloudflareApiException;
+import codes.thischwa.cf.model.RecordEntity;
+import codes.thischwa.cf.model.RecordType;
+import codes.thischwa.cf.model.ZoneEntity;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+public class LoopbackTransportTest {
+
+  private static final String ZONES =
+      "{\"success\":true,\"result_info\":{\"total_count\":1},"
+          + "\"result\":[{\"id\":\"z1\",\"name\":\"example.com\",\"status\":\"active\"}]}";
+  private static final String RECORD =
+      "{\"success\":true,\"result\":{\"id\":\"r1\",\"name\":\"www.example.com\",\"type\":\"A\","
+          + "\"content\":\"198.51.100.4\",\"ttl\":60}}";
+
+  private final List<CfTransport.Request> requests = new CopyOnWriteArrayList<>();
+
+  private CfDnsClient client(LoopbackTransport.Handler handler) {
+    LoopbackTransport transport =
+        new LoopbackTransport(
+            request -> {
+              requests.add(request);
+              return handler.handle(request);
+            });
+    return CfDnsClient.builder()
+        .baseUrl("http://loopback")
+        .tokenAuth("t0k3n")
+        .transport(transport)
+        .recordValidation(false)
+        .build();
+  }
+
+  private static CfTransport.Response json(int status, String body) {
+    return CfTransport.Response.of(status, Map.of(), body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testClientOverLoopback() throws Exception {
+    CfDnsClient client =
+        client(request -> json(200, request.url().contains("/zones?") ? ZONES : RECORD));
+    ZoneEntity zone = client.zoneListAll().get(0);
+    assertEquals("example.com", zone.getName());
+    RecordEntity created =
+        client.recordCreate(
+            zone, RecordEntity.build("www.example.com", RecordType.A, 60, "198.51.100.4"));
+    assertEquals("r1", created.getId());
+
+    CfTransport.Request list = requests.get(0);
+    assertEquals("GET", list.method());
+    assertTrue(list.url().startsWith("http://loopback/zones?"));
+    assertNull(list.body());
+    assertEquals("t0k3n", list.headers().get("X-Auth-Token"));
+    assertEquals("application/json", list.headers().get("Accept"));
+    assertFalse(list.headers().containsKey("X-Auth-Email"));
+    assertFalse(list.headers().containsKey("Content-Type"));
+
+    CfTransport.Request create = requests.get(1);
+    assertEquals("POST", create.method());
+    assertEquals("http://loopback/zones/z1/dns_records", create.url());
+    assertEquals("application/json", create.headers().get("Content-Type"));
+    assertTrue(new String(create.body(), StandardCharsets.UTF_8).contains("198.51.100.4"));
+  }
+
+  @Test
+  void testErrorResponse() {
+    CfDnsClient client =
+        client(
+            request ->
+                json(403, "{\"success\":false,\"errors\":[{\"code\":9109,\"message\":\"no\"}]}"));
+    CloudflareApiException e = assertThrows(CloudflareApiException.class, client::zoneListAll);
+    assertEquals(403, e.getStatusCode());
+    assertTrue(e.hasErrorCode(9109));
+  }
+}